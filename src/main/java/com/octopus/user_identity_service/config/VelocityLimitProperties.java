@@ -0,0 +1,33 @@
+package com.octopus.user_identity_service.config;
+
+import com.octopus.user_identity_service.enums.AccountType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Debit velocity limits. A null or missing limit means unlimited; account types without an
+ * entry under {@code velocity.account-types} have no per-account limit.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "velocity")
+public class VelocityLimitProperties {
+
+    private boolean enabled = true;
+    private Duration window = Duration.ofHours(1);
+    private int buckets = 60;
+    private Limit user = new Limit();
+    private Map<AccountType, Limit> accountTypes = new EnumMap<>(AccountType.class);
+
+    @Data
+    public static class Limit {
+        private BigDecimal maxAmount;
+        private Long maxCount;
+    }
+}
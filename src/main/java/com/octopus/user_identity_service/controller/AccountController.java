@@ -1,22 +1,41 @@
 package com.octopus.user_identity_service.controller;
 
+import com.octopus.user_identity_service.dto.AccountSummary;
+import com.octopus.user_identity_service.dto.BalanceDistribution;
+import com.octopus.user_identity_service.dto.BatchTransferRequest;
+import com.octopus.user_identity_service.dto.BatchTransferResult;
+import com.octopus.user_identity_service.dto.CurrencyBalance;
+import com.octopus.user_identity_service.dto.CursorPage;
+import com.octopus.user_identity_service.dto.LedgerBalance;
+import com.octopus.user_identity_service.dto.LedgerPosting;
+import com.octopus.user_identity_service.dto.TransferLeg;
+import com.octopus.user_identity_service.dto.VerificationMetrics;
 import com.octopus.user_identity_service.enums.AccountStatus;
 import com.octopus.user_identity_service.enums.AccountType;
 import com.octopus.user_identity_service.enums.VerificationStatus;
 import com.octopus.user_identity_service.exception.ResourceNotFoundException;
 import com.octopus.user_identity_service.model.Account;
 import com.octopus.user_identity_service.service.AccountService;
+import com.octopus.user_identity_service.service.AccountVerificationService;
+import com.octopus.user_identity_service.service.BatchTransferService;
+import com.octopus.user_identity_service.service.ExportService;
+import com.octopus.user_identity_service.service.IdempotencyService;
+import com.octopus.user_identity_service.service.LedgerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/accounts")
@@ -24,143 +43,248 @@ import java.util.List;
 @Slf4j
 public class AccountController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final AccountService accountService;
+    private final ExportService exportService;
+    private final LedgerService ledgerService;
+    private final IdempotencyService idempotencyService;
+    private final BatchTransferService batchTransferService;
+    private final AccountVerificationService accountVerificationService;
 
     @PostMapping("/user/{userId}")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
-    public ResponseEntity<Account> createAccountForUser(@PathVariable Long userId, @RequestBody Account account) {
+    public ResponseEntity<AccountSummary> createAccountForUser(@PathVariable Long userId, @RequestBody Account account) {
         log.info("Creating account for user: {}", userId);
         Account createdAccount = accountService.createAccount(account, userId);
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdAccount);
+        return ResponseEntity.status(HttpStatus.CREATED).body(AccountSummary.from(createdAccount));
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.canAccessAccount(authentication.name, #id)")
-    public ResponseEntity<Account> getAccountById(@PathVariable Long id) {
+    public ResponseEntity<AccountSummary> getAccountById(@PathVariable Long id) {
         Account account = accountService.getAccountById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Account not found with id: " + id));
-        return ResponseEntity.ok(account);
+        return ResponseEntity.ok(AccountSummary.from(account));
     }
 
     @GetMapping("/number/{accountNumber}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Account> getAccountByAccountNumber(@PathVariable String accountNumber) {
+    public ResponseEntity<AccountSummary> getAccountByAccountNumber(@PathVariable String accountNumber) {
         Account account = accountService.getAccountByAccountNumber(accountNumber)
                 .orElseThrow(() -> new ResourceNotFoundException("Account not found with number: " + accountNumber));
-        return ResponseEntity.ok(account);
+        return ResponseEntity.ok(AccountSummary.from(account));
     }
 
     @GetMapping("/user/{userId}")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
-    public ResponseEntity<List<Account>> getAccountsByUserId(@PathVariable Long userId) {
-        List<Account> accounts = accountService.getAccountsByUserId(userId);
+    public ResponseEntity<List<AccountSummary>> getAccountsByUserId(@PathVariable Long userId) {
+        List<AccountSummary> accounts = accountService.getAccountsByUserId(userId);
         return ResponseEntity.ok(accounts);
     }
 
     @GetMapping("/user/{userId}/primary")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
-    public ResponseEntity<Account> getPrimaryAccountByUserId(@PathVariable Long userId) {
+    public ResponseEntity<AccountSummary> getPrimaryAccountByUserId(@PathVariable Long userId) {
         Account account = accountService.getPrimaryAccountByUserId(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("No primary account found for user: " + userId));
-        return ResponseEntity.ok(account);
+        return ResponseEntity.ok(AccountSummary.from(account));
     }
 
     @GetMapping("/user/{userId}/status/{status}")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
-    public ResponseEntity<List<Account>> getAccountsByUserIdAndStatus(@PathVariable Long userId, @PathVariable AccountStatus status) {
-        List<Account> accounts = accountService.getAccountsByUserIdAndStatus(userId, status);
+    public ResponseEntity<List<AccountSummary>> getAccountsByUserIdAndStatus(@PathVariable Long userId, @PathVariable AccountStatus status) {
+        List<AccountSummary> accounts = accountService.getAccountsByUserIdAndStatus(userId, status);
         return ResponseEntity.ok(accounts);
     }
 
     @GetMapping("/type/{accountType}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Account>> getAccountsByAccountType(@PathVariable AccountType accountType) {
-        List<Account> accounts = accountService.getAccountsByAccountType(accountType);
+    public ResponseEntity<List<AccountSummary>> getAccountsByAccountType(@PathVariable AccountType accountType) {
+        List<AccountSummary> accounts = accountService.getAccountsByAccountType(accountType);
         return ResponseEntity.ok(accounts);
     }
 
     @GetMapping("/status/{status}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Account>> getAccountsByStatus(@PathVariable AccountStatus status) {
-        List<Account> accounts = accountService.getAccountsByStatus(status);
+    public ResponseEntity<List<AccountSummary>> getAccountsByStatus(@PathVariable AccountStatus status) {
+        List<AccountSummary> accounts = accountService.getAccountsByStatus(status);
         return ResponseEntity.ok(accounts);
     }
 
     @GetMapping("/verification/{verificationStatus}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Account>> getAccountsByVerificationStatus(@PathVariable VerificationStatus verificationStatus) {
-        List<Account> accounts = accountService.getAccountsByVerificationStatus(verificationStatus);
+    public ResponseEntity<Page<AccountSummary>> getAccountsByVerificationStatus(@PathVariable VerificationStatus verificationStatus,
+            Pageable pageable) {
+        Page<AccountSummary> accounts = accountService.getAccountsByVerificationStatus(verificationStatus, pageable);
         return ResponseEntity.ok(accounts);
     }
 
+    @GetMapping("/balance-range")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Page<AccountSummary>> getAccountsByBalanceRange(@RequestParam(required = false) BigDecimal minBalance,
+            @RequestParam(required = false) BigDecimal maxBalance,
+            Pageable pageable) {
+        Page<AccountSummary> accounts = accountService.getAccountsByBalanceRange(minBalance, maxBalance, pageable);
+        return ResponseEntity.ok(accounts);
+    }
+
+    @GetMapping("/balance-distribution")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<BalanceDistribution>> getBalanceDistributions(@RequestParam(required = false) String currency,
+            @RequestParam(required = false) AccountType accountType,
+            @RequestParam(defaultValue = "50,90,99") List<Double> percentiles) {
+        List<BalanceDistribution> distributions = accountService.getBalanceDistributions(currency, accountType, percentiles);
+        return ResponseEntity.ok(distributions);
+    }
+
+    @GetMapping("/verification/metrics")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<VerificationMetrics> getVerificationMetrics() {
+        return ResponseEntity.ok(accountVerificationService.getMetrics());
+    }
+
+    @PostMapping("/verification/run")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<VerificationMetrics> runVerification() {
+        return ResponseEntity.ok(accountVerificationService.runVerification());
+    }
+
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Page<Account>> getAllAccounts(Pageable pageable) {
-        Page<Account> accounts = accountService.getAllAccounts(pageable);
+    public ResponseEntity<Page<AccountSummary>> getAllAccounts(Pageable pageable) {
+        Page<AccountSummary> accounts = accountService.getAllAccounts(pageable);
         return ResponseEntity.ok(accounts);
     }
 
-    @GetMapping("/all")
+    @GetMapping("/cursor")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Account>> getAllAccountsList() {
-        List<Account> accounts = accountService.getAllAccounts();
+    public ResponseEntity<CursorPage<AccountSummary>> getAccountsByCursor(@RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        CursorPage<AccountSummary> accounts = accountService.getAccountsByCursor(cursor, size, includeTotal);
         return ResponseEntity.ok(accounts);
     }
 
+    @GetMapping("/all")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> getAllAccountsList() {
+        StreamingResponseBody body = exportService::exportAccounts;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.canAccessAccount(authentication.name, #id)")
-    public ResponseEntity<Account> updateAccount(@PathVariable Long id, @RequestBody Account accountDetails) {
+    public ResponseEntity<AccountSummary> updateAccount(@PathVariable Long id, @RequestBody Account accountDetails) {
         Account updatedAccount = accountService.updateAccount(id, accountDetails);
-        return ResponseEntity.ok(updatedAccount);
+        return ResponseEntity.ok(AccountSummary.from(updatedAccount));
     }
 
     @PutMapping("/{id}/balance")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Account> updateBalance(@PathVariable Long id, @RequestBody BigDecimal newBalance) {
+    public ResponseEntity<AccountSummary> updateBalance(@PathVariable Long id, @RequestBody BigDecimal newBalance) {
         Account account = accountService.updateBalance(id, newBalance);
-        return ResponseEntity.ok(account);
+        return ResponseEntity.ok(AccountSummary.from(account));
     }
 
     @PostMapping("/{id}/deposit")
     @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.canAccessAccount(authentication.name, #id)")
-    public ResponseEntity<Account> deposit(@PathVariable Long id, @RequestBody BigDecimal amount) {
-        Account account = accountService.deposit(id, amount);
+    public ResponseEntity<AccountSummary> deposit(@PathVariable Long id, @RequestBody BigDecimal amount,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        AccountSummary account = idempotent(authentication, idempotencyKey, "deposit:" + id + ":" + canonical(amount),
+                () -> AccountSummary.from(accountService.deposit(id, amount)));
         return ResponseEntity.ok(account);
     }
 
     @PostMapping("/{id}/withdraw")
     @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.canAccessAccount(authentication.name, #id)")
-    public ResponseEntity<Account> withdraw(@PathVariable Long id, @RequestBody BigDecimal amount) {
-        Account account = accountService.withdraw(id, amount);
+    public ResponseEntity<AccountSummary> withdraw(@PathVariable Long id, @RequestBody BigDecimal amount,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        AccountSummary account = idempotent(authentication, idempotencyKey, "withdraw:" + id + ":" + canonical(amount),
+                () -> AccountSummary.from(accountService.withdraw(id, amount)));
         return ResponseEntity.ok(account);
     }
 
     @PostMapping("/{fromAccountId}/transfer/{toAccountId}")
     @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.canAccessAccount(authentication.name, #fromAccountId)")
-    public ResponseEntity<Account> transfer(@PathVariable Long fromAccountId, @PathVariable Long toAccountId, @RequestBody BigDecimal amount) {
-        Account account = accountService.transfer(fromAccountId, toAccountId, amount);
+    public ResponseEntity<AccountSummary> transfer(@PathVariable Long fromAccountId, @PathVariable Long toAccountId, @RequestBody BigDecimal amount,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        AccountSummary account = idempotent(authentication, idempotencyKey,
+                "transfer:" + fromAccountId + ":" + toAccountId + ":" + canonical(amount),
+                () -> AccountSummary.from(accountService.transfer(fromAccountId, toAccountId, amount)));
         return ResponseEntity.ok(account);
     }
 
+    /**
+     * Returns 200 when the batch committed (in best-effort mode possibly with rejected legs) and
+     * 422 with the per-leg report when an atomic batch was rejected.
+     */
+    @PostMapping("/transfers/batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BatchTransferResult> batchTransfer(@RequestBody BatchTransferRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        Supplier<BatchTransferResult> action = () -> batchTransferService.transfer(request);
+        BatchTransferResult result = idempotencyKey == null ? action.get()
+                : idempotencyService.execute(authentication.getName(), idempotencyKey, "batch-transfer:" + canonical(request),
+                        BatchTransferResult.class, action);
+        return ResponseEntity.status(result.isCommitted() ? HttpStatus.OK : HttpStatus.UNPROCESSABLE_ENTITY).body(result);
+    }
+
+    @GetMapping("/{id}/ledger")
+    @PreAuthorize("hasRole('ADMIN') or @accountSecurityService.canAccessAccount(authentication.name, #id)")
+    public ResponseEntity<CursorPage<LedgerPosting>> getLedgerEntries(@PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        CursorPage<LedgerPosting> entries = ledgerService.getEntriesByCursor(id, cursor, size);
+        return ResponseEntity.ok(entries);
+    }
+
+    @GetMapping("/{id}/ledger-balance")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<LedgerBalance> getLedgerBalance(@PathVariable Long id) {
+        LedgerBalance balance = ledgerService.getLedgerBalance(id);
+        return ResponseEntity.ok(balance);
+    }
+
+    @PutMapping("/{id}/striping/{stripes}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AccountSummary> enableBalanceStriping(@PathVariable Long id, @PathVariable int stripes) {
+        Account account = accountService.enableBalanceStriping(id, stripes);
+        return ResponseEntity.ok(AccountSummary.from(account));
+    }
+
+    @DeleteMapping("/{id}/striping")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AccountSummary> disableBalanceStriping(@PathVariable Long id) {
+        Account account = accountService.disableBalanceStriping(id);
+        return ResponseEntity.ok(AccountSummary.from(account));
+    }
+
     @PutMapping("/{id}/set-primary/user/{userId}")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
-    public ResponseEntity<Account> setAsPrimaryAccount(@PathVariable Long id, @PathVariable Long userId) {
+    public ResponseEntity<AccountSummary> setAsPrimaryAccount(@PathVariable Long id, @PathVariable Long userId) {
         Account account = accountService.setAsPrimaryAccount(id, userId);
-        return ResponseEntity.ok(account);
+        return ResponseEntity.ok(AccountSummary.from(account));
     }
 
     @PutMapping("/{id}/status/{status}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Account> changeStatus(@PathVariable Long id, @PathVariable AccountStatus status) {
+    public ResponseEntity<AccountSummary> changeStatus(@PathVariable Long id, @PathVariable AccountStatus status) {
         Account account = accountService.changeStatus(id, status);
-        return ResponseEntity.ok(account);
+        return ResponseEntity.ok(AccountSummary.from(account));
     }
 
     @PutMapping("/{id}/verification/{verificationStatus}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Account> changeVerificationStatus(@PathVariable Long id, @PathVariable VerificationStatus verificationStatus) {
+    public ResponseEntity<AccountSummary> changeVerificationStatus(@PathVariable Long id, @PathVariable VerificationStatus verificationStatus) {
         Account account = accountService.changeVerificationStatus(id, verificationStatus);
-        return ResponseEntity.ok(account);
+        return ResponseEntity.ok(AccountSummary.from(account));
     }
 
     @DeleteMapping("/{id}")
@@ -183,4 +307,37 @@ public class AccountController {
         BigDecimal totalBalance = accountService.getTotalBalanceByUserId(userId);
         return ResponseEntity.ok(totalBalance);
     }
+
+    @GetMapping("/balance-summary/user/{userId}")
+    @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
+    public ResponseEntity<List<CurrencyBalance>> getBalanceSummaryByUserId(@PathVariable Long userId) {
+        List<CurrencyBalance> balances = accountService.getBalanceSummaryByUserId(userId);
+        return ResponseEntity.ok(balances);
+    }
+
+    private AccountSummary idempotent(Authentication authentication, String idempotencyKey, String request,
+                                      Supplier<AccountSummary> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        return idempotencyService.execute(authentication.getName(), idempotencyKey, request, AccountSummary.class, action);
+    }
+
+    private static String canonical(BigDecimal amount) {
+        return amount.stripTrailingZeros().toPlainString();
+    }
+
+    private static String canonical(BatchTransferRequest request) {
+        StringBuilder canonical = new StringBuilder(String.valueOf(request.getMode()));
+        if (request.getLegs() != null) {
+            for (TransferLeg leg : request.getLegs()) {
+                canonical.append(';');
+                if (leg != null) {
+                    canonical.append(leg.getFromAccountId()).append(':').append(leg.getToAccountId()).append(':')
+                            .append(leg.getAmount() == null ? null : canonical(leg.getAmount()));
+                }
+            }
+        }
+        return canonical.toString();
+    }
 }
@@ -2,6 +2,7 @@ package com.octopus.user_identity_service.controller;
 
 import com.octopus.user_identity_service.dto.AuthRequest;
 import com.octopus.user_identity_service.dto.AuthResponse;
+import com.octopus.user_identity_service.dto.LoginRisk;
 import com.octopus.user_identity_service.dto.RegisterRequest;
 import com.octopus.user_identity_service.model.User;
 import com.octopus.user_identity_service.security.CustomUserDetails;
@@ -10,6 +11,7 @@ import com.octopus.user_identity_service.util.JwtUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
 @RestController
@@ -36,8 +38,11 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody AuthRequest request) {
-        User user = authService.authenticate(request);
+    public ResponseEntity<AuthResponse> login(@Valid @RequestBody AuthRequest request,
+            @RequestHeader(value = "User-Agent", required = false) String userAgent, HttpServletRequest httpRequest) {
+        User user = authService.authenticate(request, httpRequest.getRemoteAddr());
+        Boolean knownDevice = authService.isKnownDevice(user, request, userAgent);
+        LoginRisk risk = authService.assessLoginRisk(user, request, userAgent, httpRequest.getRemoteAddr());
         CustomUserDetails userDetails = new CustomUserDetails(user);
         String token = jwtUtil.generateToken(userDetails);
         String refreshToken = jwtUtil.generateRefreshToken(userDetails);
@@ -47,6 +52,10 @@ public class AuthController {
                 .refreshToken(refreshToken)
                 .tokenType("Bearer")
                 .expiresIn(jwtUtil.getExpirationTime())
+                .knownDevice(knownDevice)
+                .riskScore(risk.getScore())
+                .riskFactors(risk.getFactors())
+                .stepUpRequired(risk.getStepUpRequired())
                 .build());
     }
 
@@ -0,0 +1,58 @@
+package com.octopus.user_identity_service.controller;
+
+import com.octopus.user_identity_service.dto.AddressDeduplicationRun;
+import com.octopus.user_identity_service.dto.BatchJobRun;
+import com.octopus.user_identity_service.service.AddressDeduplicationService;
+import com.octopus.user_identity_service.service.EndOfDayBatchService;
+import com.octopus.user_identity_service.service.UserAgentService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/batch")
+@RequiredArgsConstructor
+@Slf4j
+public class BatchJobController {
+
+    private final EndOfDayBatchService endOfDayBatchService;
+    private final UserAgentService userAgentService;
+    private final AddressDeduplicationService addressDeduplicationService;
+
+    @PostMapping("/eod/{businessDate}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BatchJobRun> runEndOfDay(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate businessDate) {
+        BatchJobRun run = endOfDayBatchService.run(businessDate);
+        return ResponseEntity.ok(run);
+    }
+
+    @GetMapping("/eod/{businessDate}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BatchJobRun> getEndOfDayRun(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate businessDate) {
+        BatchJobRun run = endOfDayBatchService.getRun(businessDate);
+        return ResponseEntity.ok(run);
+    }
+
+    @PostMapping("/user-agents/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Integer> backfillUserAgents() {
+        int devices = userAgentService.backfillDevices();
+        return ResponseEntity.ok(devices);
+    }
+
+    @PostMapping("/addresses/dedupe")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AddressDeduplicationRun> deduplicateAddresses() {
+        AddressDeduplicationRun run = addressDeduplicationService.run();
+        if (run == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok(run);
+    }
+}
@@ -1,16 +1,26 @@
 package com.octopus.user_identity_service.controller;
 
+import com.octopus.user_identity_service.dto.CursorPage;
+import com.octopus.user_identity_service.dto.DeviceHeartbeat;
+import com.octopus.user_identity_service.dto.DevicePresence;
+import com.octopus.user_identity_service.dto.DeviceResponse;
+import com.octopus.user_identity_service.dto.DeviceSummary;
+import com.octopus.user_identity_service.enums.DeviceType;
 import com.octopus.user_identity_service.exception.ResourceNotFoundException;
 import com.octopus.user_identity_service.model.Device;
+import com.octopus.user_identity_service.service.DeviceHeartbeatService;
 import com.octopus.user_identity_service.service.DeviceService;
+import com.octopus.user_identity_service.service.ExportService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -21,114 +31,162 @@ import java.util.List;
 public class DeviceController {
 
     private final DeviceService deviceService;
+    private final ExportService exportService;
+    private final DeviceHeartbeatService deviceHeartbeatService;
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
-    public ResponseEntity<Device> createDevice(@RequestBody Device device) {
+    public ResponseEntity<DeviceResponse> createDevice(@RequestBody Device device) {
         log.info("Creating device: {}", device.getName());
         Device createdDevice = deviceService.createDevice(device);
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdDevice);
+        return ResponseEntity.status(HttpStatus.CREATED).body(DeviceResponse.from(createdDevice));
     }
 
     @PostMapping("/user/{userId}")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
-    public ResponseEntity<Device> registerDeviceForUser(@PathVariable Long userId, @RequestBody Device device) {
+    public ResponseEntity<DeviceResponse> registerDeviceForUser(@PathVariable Long userId, @RequestBody Device device) {
         log.info("Registering device for user: {}", userId);
         Device registeredDevice = deviceService.registerDevice(device, userId);
-        return ResponseEntity.status(HttpStatus.CREATED).body(registeredDevice);
+        return ResponseEntity.status(HttpStatus.CREATED).body(DeviceResponse.from(registeredDevice));
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or @deviceSecurityService.canAccessDevice(authentication.name, #id)")
-    public ResponseEntity<Device> getDeviceById(@PathVariable Long id) {
+    public ResponseEntity<DeviceResponse> getDeviceById(@PathVariable Long id) {
         Device device = deviceService.getDeviceById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Device not found with id: " + id));
-        return ResponseEntity.ok(device);
+        return ResponseEntity.ok(DeviceResponse.from(device));
     }
 
     @GetMapping("/user/{userId}")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
-    public ResponseEntity<List<Device>> getDevicesByUserId(@PathVariable Long userId) {
-        List<Device> devices = deviceService.getDevicesByUserId(userId);
+    public ResponseEntity<List<DeviceSummary>> getDevicesByUserId(@PathVariable Long userId) {
+        List<DeviceSummary> devices = deviceService.getDevicesByUserId(userId);
         return ResponseEntity.ok(devices);
     }
 
     @GetMapping("/user/{userId}/primary")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
-    public ResponseEntity<Device> getPrimaryDeviceByUserId(@PathVariable Long userId) {
+    public ResponseEntity<DeviceResponse> getPrimaryDeviceByUserId(@PathVariable Long userId) {
         Device device = deviceService.getPrimaryDeviceByUserId(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("No primary device found for user: " + userId));
-        return ResponseEntity.ok(device);
+        return ResponseEntity.ok(DeviceResponse.from(device));
     }
 
     @GetMapping("/user/{userId}/active")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
-    public ResponseEntity<List<Device>> getActiveDevicesByUserId(@PathVariable Long userId) {
-        List<Device> devices = deviceService.getActiveDevicesByUserId(userId);
+    public ResponseEntity<List<DeviceSummary>> getActiveDevicesByUserId(@PathVariable Long userId) {
+        List<DeviceSummary> devices = deviceService.getActiveDevicesByUserId(userId);
         return ResponseEntity.ok(devices);
     }
 
+    @PostMapping("/user/{userId}/heartbeat")
+    @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
+    public ResponseEntity<Integer> recordHeartbeat(@PathVariable Long userId, @RequestBody DeviceHeartbeat heartbeat) {
+        int accepted = deviceHeartbeatService.record(userId, List.of(heartbeat));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(accepted);
+    }
+
+    @PostMapping("/user/{userId}/heartbeats")
+    @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
+    public ResponseEntity<Integer> recordHeartbeats(@PathVariable Long userId, @RequestBody List<DeviceHeartbeat> heartbeats) {
+        int accepted = deviceHeartbeatService.record(userId, heartbeats);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(accepted);
+    }
+
+    @GetMapping("/user/{userId}/online")
+    @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
+    public ResponseEntity<List<DevicePresence>> getOnlineDevicesByUserId(@PathVariable Long userId) {
+        List<DevicePresence> devices = deviceHeartbeatService.getOnlineDevices(userId);
+        return ResponseEntity.ok(devices);
+    }
+
+    @GetMapping("/count/online")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Long> countOnlineDevices() {
+        long count = deviceHeartbeatService.countOnlineDevices();
+        return ResponseEntity.ok(count);
+    }
+
     @GetMapping("/ip/{ipAddress}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Device>> getDevicesByIpAddress(@PathVariable String ipAddress) {
-        List<Device> devices = deviceService.getDevicesByIpAddress(ipAddress);
+    public ResponseEntity<List<DeviceSummary>> getDevicesByIpAddress(@PathVariable String ipAddress) {
+        List<DeviceSummary> devices = deviceService.getDevicesByIpAddress(ipAddress);
+        return ResponseEntity.ok(devices);
+    }
+
+    @GetMapping("/ip-range")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Page<DeviceSummary>> getDevicesByIpRange(@RequestParam String cidr, Pageable pageable) {
+        Page<DeviceSummary> devices = deviceService.getDevicesByIpRange(cidr, pageable);
         return ResponseEntity.ok(devices);
     }
 
     @GetMapping("/mac/{macAddress}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Device>> getDevicesByMacAddress(@PathVariable String macAddress) {
-        List<Device> devices = deviceService.getDevicesByMacAddress(macAddress);
+    public ResponseEntity<List<DeviceSummary>> getDevicesByMacAddress(@PathVariable String macAddress) {
+        List<DeviceSummary> devices = deviceService.getDevicesByMacAddress(macAddress);
         return ResponseEntity.ok(devices);
     }
 
     @GetMapping("/type/{type}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Device>> getDevicesByType(@PathVariable String type) {
-        List<Device> devices = deviceService.getDevicesByType(type);
+    public ResponseEntity<List<DeviceSummary>> getDevicesByType(@PathVariable DeviceType type) {
+        List<DeviceSummary> devices = deviceService.getDevicesByType(type);
         return ResponseEntity.ok(devices);
     }
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Page<Device>> getAllDevices(Pageable pageable) {
-        Page<Device> devices = deviceService.getAllDevices(pageable);
+    public ResponseEntity<Page<DeviceSummary>> getAllDevices(Pageable pageable) {
+        Page<DeviceSummary> devices = deviceService.getAllDevices(pageable);
         return ResponseEntity.ok(devices);
     }
 
-    @GetMapping("/all")
+    @GetMapping("/cursor")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Device>> getAllDevicesList() {
-        List<Device> devices = deviceService.getAllDevices();
+    public ResponseEntity<CursorPage<DeviceSummary>> getDevicesByCursor(@RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        CursorPage<DeviceSummary> devices = deviceService.getDevicesByCursor(cursor, size, includeTotal);
         return ResponseEntity.ok(devices);
     }
 
+    @GetMapping("/all")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> getAllDevicesList() {
+        StreamingResponseBody body = exportService::exportDevices;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or @deviceSecurityService.canAccessDevice(authentication.name, #id)")
-    public ResponseEntity<Device> updateDevice(@PathVariable Long id, @RequestBody Device deviceDetails) {
+    public ResponseEntity<DeviceResponse> updateDevice(@PathVariable Long id, @RequestBody Device deviceDetails) {
         Device updatedDevice = deviceService.updateDevice(id, deviceDetails);
-        return ResponseEntity.ok(updatedDevice);
+        return ResponseEntity.ok(DeviceResponse.from(updatedDevice));
     }
 
     @PutMapping("/{id}/set-primary/user/{userId}")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #userId)")
-    public ResponseEntity<Device> setAsPrimaryDevice(@PathVariable Long id, @PathVariable Long userId) {
+    public ResponseEntity<DeviceResponse> setAsPrimaryDevice(@PathVariable Long id, @PathVariable Long userId) {
         Device device = deviceService.setAsPrimaryDevice(id, userId);
-        return ResponseEntity.ok(device);
+        return ResponseEntity.ok(DeviceResponse.from(device));
     }
 
     @PutMapping("/{id}/activate")
     @PreAuthorize("hasRole('ADMIN') or @deviceSecurityService.canAccessDevice(authentication.name, #id)")
-    public ResponseEntity<Device> activateDevice(@PathVariable Long id) {
+    public ResponseEntity<DeviceResponse> activateDevice(@PathVariable Long id) {
         Device device = deviceService.activateDevice(id);
-        return ResponseEntity.ok(device);
+        return ResponseEntity.ok(DeviceResponse.from(device));
     }
 
     @PutMapping("/{id}/deactivate")
     @PreAuthorize("hasRole('ADMIN') or @deviceSecurityService.canAccessDevice(authentication.name, #id)")
-    public ResponseEntity<Device> deactivateDevice(@PathVariable Long id) {
+    public ResponseEntity<DeviceResponse> deactivateDevice(@PathVariable Long id) {
         Device device = deviceService.deactivateDevice(id);
-        return ResponseEntity.ok(device);
+        return ResponseEntity.ok(DeviceResponse.from(device));
     }
 
     @DeleteMapping("/{id}")
@@ -0,0 +1,38 @@
+package com.octopus.user_identity_service.controller;
+
+import com.octopus.user_identity_service.dto.CursorPage;
+import com.octopus.user_identity_service.dto.SecurityQuestionSummary;
+import com.octopus.user_identity_service.model.SecurityQuestion;
+import com.octopus.user_identity_service.service.SecurityQuestionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/security-questions")
+@RequiredArgsConstructor
+@Slf4j
+public class SecurityQuestionController {
+
+    private final SecurityQuestionService securityQuestionService;
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Page<SecurityQuestionSummary>> getAllSecurityQuestions(Pageable pageable) {
+        Page<SecurityQuestionSummary> securityQuestions = securityQuestionService.getAllSecurityQuestions(pageable);
+        return ResponseEntity.ok(securityQuestions);
+    }
+
+    @GetMapping("/cursor")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPage<SecurityQuestionSummary>> getSecurityQuestionsByCursor(@RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        CursorPage<SecurityQuestionSummary> securityQuestions = securityQuestionService.getSecurityQuestionsByCursor(cursor, size, includeTotal);
+        return ResponseEntity.ok(securityQuestions);
+    }
+}
@@ -0,0 +1,35 @@
+package com.octopus.user_identity_service.controller;
+
+import com.octopus.user_identity_service.dto.DimensionStats;
+import com.octopus.user_identity_service.enums.StatisticsDimension;
+import com.octopus.user_identity_service.service.StatisticsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/statistics")
+@RequiredArgsConstructor
+@Slf4j
+public class StatisticsController {
+
+    private final StatisticsService statisticsService;
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<StatisticsDimension, DimensionStats>> getAllStatistics() {
+        Map<StatisticsDimension, DimensionStats> statistics = statisticsService.getAllStatistics();
+        return ResponseEntity.ok(statistics);
+    }
+
+    @GetMapping("/{dimension}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<DimensionStats> getStatistics(@PathVariable StatisticsDimension dimension) {
+        DimensionStats statistics = statisticsService.getStatistics(dimension);
+        return ResponseEntity.ok(statistics);
+    }
+}
@@ -1,19 +1,24 @@
 package com.octopus.user_identity_service.controller;
 
+import com.octopus.user_identity_service.dto.CursorPage;
+import com.octopus.user_identity_service.dto.UserResponse;
+import com.octopus.user_identity_service.dto.UserSummary;
 import com.octopus.user_identity_service.exception.ResourceNotFoundException;
 import com.octopus.user_identity_service.model.User;
+import com.octopus.user_identity_service.service.ExportService;
 import com.octopus.user_identity_service.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 @RestController
 @RequestMapping("/api/users")
@@ -22,91 +27,103 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final ExportService exportService;
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<User> createUser(@RequestBody User user) {
+    public ResponseEntity<UserResponse> createUser(@RequestBody User user) {
         log.info("Creating user: {}", user.getUsername());
         User createdUser = userService.createUser(user);
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
+        return ResponseEntity.status(HttpStatus.CREATED).body(UserResponse.from(createdUser));
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #id)")
-    public ResponseEntity<User> getUserById(@PathVariable Long id) {
+    public ResponseEntity<UserResponse> getUserById(@PathVariable Long id) {
         User user = userService.getUserById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
-        return ResponseEntity.ok(user);
+        return ResponseEntity.ok(UserResponse.from(user));
     }
 
     @GetMapping("/username/{username}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<User> getUserByUsername(@PathVariable String username) {
+    public ResponseEntity<UserResponse> getUserByUsername(@PathVariable String username) {
         User user = userService.getUserByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with username: " + username));
-        return ResponseEntity.ok(user);
+        return ResponseEntity.ok(UserResponse.from(user));
     }
 
     @GetMapping("/email/{email}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<User> getUserByEmail(@PathVariable String email) {
+    public ResponseEntity<UserResponse> getUserByEmail(@PathVariable String email) {
         User user = userService.getUserByEmail(email)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with email: " + email));
-        return ResponseEntity.ok(user);
+        return ResponseEntity.ok(UserResponse.from(user));
     }
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Page<User>> getAllUsers(Pageable pageable) {
-        Page<User> users = userService.getAllUsers(pageable);
+    public ResponseEntity<Page<UserSummary>> getAllUsers(Pageable pageable) {
+        Page<UserSummary> users = userService.getAllUsers(pageable);
         return ResponseEntity.ok(users);
     }
 
-    @GetMapping("/all")
+    @GetMapping("/cursor")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<User>> getAllUsersList() {
-        List<User> users = userService.getAllUsers();
+    public ResponseEntity<CursorPage<UserSummary>> getUsersByCursor(@RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        CursorPage<UserSummary> users = userService.getUsersByCursor(cursor, size, includeTotal);
         return ResponseEntity.ok(users);
     }
 
+    @GetMapping("/all")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> getAllUsersList() {
+        StreamingResponseBody body = exportService::exportUsers;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @GetMapping("/role/{roleName}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<User>> getUsersByRole(@PathVariable String roleName) {
-        List<User> users = userService.getUsersByRole(roleName);
+    public ResponseEntity<Page<UserSummary>> getUsersByRole(@PathVariable String roleName, Pageable pageable) {
+        Page<UserSummary> users = userService.getUsersByRole(roleName, pageable);
         return ResponseEntity.ok(users);
     }
 
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #id)")
-    public ResponseEntity<User> updateUser(@PathVariable Long id, @RequestBody User userDetails) {
+    public ResponseEntity<UserResponse> updateUser(@PathVariable Long id, @RequestBody User userDetails) {
         User updatedUser = userService.updateUser(id, userDetails);
-        return ResponseEntity.ok(updatedUser);
+        return ResponseEntity.ok(UserResponse.from(updatedUser));
     }
 
     @PutMapping("/{id}/password")
     @PreAuthorize("hasRole('ADMIN') or @userSecurityService.canAccessUser(authentication.name, #id)")
-    public ResponseEntity<User> updatePassword(@PathVariable Long id, @RequestBody String newPassword) {
+    public ResponseEntity<UserResponse> updatePassword(@PathVariable Long id, @RequestBody String newPassword) {
         User updatedUser = userService.updatePassword(id, newPassword);
-        return ResponseEntity.ok(updatedUser);
+        return ResponseEntity.ok(UserResponse.from(updatedUser));
     }
 
     @PutMapping("/{id}/assign-role/{roleName}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<User> assignRole(@PathVariable Long id, @PathVariable String roleName) {
+    public ResponseEntity<UserResponse> assignRole(@PathVariable Long id, @PathVariable String roleName) {
         User updatedUser = userService.assignRole(id, roleName);
-        return ResponseEntity.ok(updatedUser);
+        return ResponseEntity.ok(UserResponse.from(updatedUser));
     }
 
     @PutMapping("/{id}/remove-role/{roleName}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<User> removeRole(@PathVariable Long id, @PathVariable String roleName) {
+    public ResponseEntity<UserResponse> removeRole(@PathVariable Long id, @PathVariable String roleName) {
         User updatedUser = userService.removeRole(id, roleName);
-        return ResponseEntity.ok(updatedUser);
+        return ResponseEntity.ok(UserResponse.from(updatedUser));
     }
 
     @PutMapping("/{id}/lock")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<User> lockAccount(@PathVariable Long id, @RequestBody(required = false) String durationHours) {
+    public ResponseEntity<UserResponse> lockAccount(@PathVariable Long id, @RequestBody(required = false) String durationHours) {
         LocalDateTime lockedUntil = null;
         if (durationHours != null && !durationHours.isEmpty()) {
             try {
@@ -120,14 +137,14 @@ public class UserController {
         }
         
         User lockedUser = userService.lockAccount(id, lockedUntil);
-        return ResponseEntity.ok(lockedUser);
+        return ResponseEntity.ok(UserResponse.from(lockedUser));
     }
 
     @PutMapping("/{id}/unlock")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<User> unlockAccount(@PathVariable Long id) {
+    public ResponseEntity<UserResponse> unlockAccount(@PathVariable Long id) {
         User unlockedUser = userService.unlockAccount(id);
-        return ResponseEntity.ok(unlockedUser);
+        return ResponseEntity.ok(UserResponse.from(unlockedUser));
     }
 
     @DeleteMapping("/{id}")
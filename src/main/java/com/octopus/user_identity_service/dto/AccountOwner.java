@@ -0,0 +1,16 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.AccountType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountOwner {
+
+    private Long accountId;
+    private Long userId;
+    private AccountType accountType;
+}
@@ -0,0 +1,48 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.AccountStatus;
+import com.octopus.user_identity_service.enums.AccountType;
+import com.octopus.user_identity_service.enums.VerificationStatus;
+import com.octopus.user_identity_service.model.Account;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountSummary {
+
+    private Long id;
+    private Long userId;
+    private String accountNumber;
+    private AccountType accountType;
+    private AccountStatus status;
+    private BigDecimal balance;
+    private String currency;
+    private Boolean isPrimary;
+    private VerificationStatus verificationStatus;
+    private LocalDateTime lastActivityAt;
+    private LocalDateTime createdAt;
+
+    public static AccountSummary from(Account account) {
+        return AccountSummary.builder()
+                .id(account.getId())
+                .userId(account.getUser() != null ? account.getUser().getId() : null)
+                .accountNumber(account.getAccountNumber())
+                .accountType(account.getAccountType())
+                .status(account.getStatus())
+                .balance(account.getEffectiveBalance())
+                .currency(account.getCurrency())
+                .isPrimary(account.getIsPrimary())
+                .verificationStatus(account.getVerificationStatus())
+                .lastActivityAt(account.getLastActivityAt())
+                .createdAt(account.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,18 @@
+package com.octopus.user_identity_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AddressDeduplicationRun {
+
+    private int addressesNormalised;
+    private int duplicatesMarked;
+    private int duplicatesCleared;
+    private long duplicateCount;
+}
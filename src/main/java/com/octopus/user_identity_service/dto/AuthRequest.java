@@ -18,4 +18,11 @@ public class AuthRequest {
 
     @NotBlank(message = "Password is required")
     private String password;
+
+    // Optional description of the device logging in, used to recognise known devices.
+    // The User-Agent header is used when userAgent is not given.
+    private String userAgent;
+    private String os;
+    private String deviceModel;
+    private String macAddress;
 }
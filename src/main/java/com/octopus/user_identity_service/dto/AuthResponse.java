@@ -1,10 +1,13 @@
 package com.octopus.user_identity_service.dto;
 
+import com.octopus.user_identity_service.enums.LoginRiskFactor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @AllArgsConstructor
@@ -15,4 +18,8 @@ public class AuthResponse {
     private String refreshToken;
     private String tokenType;
     private Long expiresIn;
+    private Boolean knownDevice;
+    private Double riskScore;
+    private List<LoginRiskFactor> riskFactors;
+    private Boolean stepUpRequired;
 }
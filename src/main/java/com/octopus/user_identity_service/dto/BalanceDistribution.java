@@ -0,0 +1,27 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.AccountType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BalanceDistribution {
+
+    private String currency;
+    private AccountType accountType;
+    private long accountCount;
+    private double relativeAccuracy;
+    private Map<String, BigDecimal> percentiles;
+    private List<BalanceHistogramBucket> histogram;
+    private LocalDateTime rebuiltAt;
+}
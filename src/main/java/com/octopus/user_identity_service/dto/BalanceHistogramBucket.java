@@ -0,0 +1,19 @@
+package com.octopus.user_identity_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BalanceHistogramBucket {
+
+    private BigDecimal lowerBound;
+    private BigDecimal upperBound;
+    private long accountCount;
+}
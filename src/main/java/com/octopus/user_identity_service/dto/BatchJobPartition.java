@@ -0,0 +1,24 @@
+package com.octopus.user_identity_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchJobPartition {
+
+    private int partitionNo;
+    private long rangeStart;
+    private long rangeEnd;
+    private long lastProcessedId;
+    private long processedCount;
+    private long transitionedCount;
+    private boolean completed;
+    private LocalDateTime updatedAt;
+}
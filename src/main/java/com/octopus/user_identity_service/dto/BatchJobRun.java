@@ -0,0 +1,29 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.BatchJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchJobRun {
+
+    private Long id;
+    private String jobName;
+    private LocalDate businessDate;
+    private BatchJobStatus status;
+    private LocalDateTime startedAt;
+    private LocalDateTime heartbeatAt;
+    private LocalDateTime finishedAt;
+    private long processedCount;
+    private long transitionedCount;
+    private List<BatchJobPartition> partitions;
+}
@@ -0,0 +1,21 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.BatchTransferMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchTransferRequest {
+
+    @Builder.Default
+    private BatchTransferMode mode = BatchTransferMode.ATOMIC;
+
+    private List<TransferLeg> legs;
+}
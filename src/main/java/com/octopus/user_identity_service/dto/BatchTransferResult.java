@@ -0,0 +1,23 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.BatchTransferMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchTransferResult {
+
+    private BatchTransferMode mode;
+    private boolean committed;
+    private int appliedLegs;
+    private int rejectedLegs;
+    private int accountsUpdated;
+    private List<TransferLegResult> legs;
+}
@@ -0,0 +1,14 @@
+package com.octopus.user_identity_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CountBucket {
+
+    private String key;
+    private Long count;
+}
@@ -0,0 +1,38 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.util.CursorUtil;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+    private Long totalElements;
+
+    /**
+     * Builds a page from a seek query that fetched {@code size + 1} rows ordered by id.
+     * The extra row only signals that another page exists and is dropped from the result.
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, Long> idExtractor) {
+        boolean hasMore = rows.size() > size;
+        List<T> items = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = hasMore ? CursorUtil.encode(idExtractor.apply(items.get(items.size() - 1))) : null;
+
+        return CursorPage.<T>builder()
+                .items(List.copyOf(items))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+}
@@ -0,0 +1,19 @@
+package com.octopus.user_identity_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeviceHeartbeat {
+
+    private Long deviceId;
+    // When the device was seen; the time of receipt if absent. Times in the future are clamped.
+    private LocalDateTime seenAt;
+}
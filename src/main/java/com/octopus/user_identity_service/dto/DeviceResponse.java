@@ -0,0 +1,70 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.DeviceType;
+import com.octopus.user_identity_service.model.Device;
+import com.octopus.user_identity_service.model.UserAgent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeviceResponse {
+
+    private Long id;
+    private Long userId;
+    private String name;
+    private DeviceType type;
+    private String os;
+    private String osVersion;
+    private String deviceModel;
+    private String ipAddress;
+    private String countryCode;
+    private Long asn;
+    private String macAddress;
+    private String userAgent;
+    private String detectedOs;
+    private String detectedOsVersion;
+    private String detectedDeviceModel;
+    private String fingerprint;
+    private Boolean isPrimary;
+    private Boolean isActive;
+    private LocalDateTime lastLoginAt;
+    private LocalDateTime lastSeenAt;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public static DeviceResponse from(Device device) {
+        // Parsed from the user agent, independent of what the client reported in os/osVersion/deviceModel.
+        UserAgent userAgent = device.getUserAgentEntry();
+        return DeviceResponse.builder()
+                .id(device.getId())
+                .userId(device.getUser() != null ? device.getUser().getId() : null)
+                .name(device.getName())
+                .type(device.getType())
+                .os(device.getOs())
+                .osVersion(device.getOsVersion())
+                .deviceModel(device.getDeviceModel())
+                .ipAddress(device.getIpAddress())
+                .countryCode(device.getCountryCode())
+                .asn(device.getAsn())
+                .macAddress(device.getMacAddress())
+                .userAgent(device.getUserAgent())
+                .detectedOs(userAgent != null ? userAgent.getOs() : null)
+                .detectedOsVersion(userAgent != null ? userAgent.getOsVersion() : null)
+                .detectedDeviceModel(userAgent != null ? userAgent.getDeviceModel() : null)
+                .fingerprint(device.getFingerprint())
+                .isPrimary(device.getIsPrimary())
+                .isActive(device.getIsActive())
+                .lastLoginAt(device.getLastLoginAt())
+                .lastSeenAt(device.getLastSeenAt())
+                .createdAt(device.getCreatedAt())
+                .updatedAt(device.getUpdatedAt())
+                .build();
+    }
+}
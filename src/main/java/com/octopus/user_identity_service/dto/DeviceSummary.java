@@ -0,0 +1,47 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.DeviceType;
+import com.octopus.user_identity_service.model.Device;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeviceSummary {
+
+    private Long id;
+    private Long userId;
+    private String name;
+    private DeviceType type;
+    private String os;
+    private String osVersion;
+    private String deviceModel;
+    private String ipAddress;
+    private Boolean isPrimary;
+    private Boolean isActive;
+    private LocalDateTime lastLoginAt;
+    private LocalDateTime createdAt;
+
+    public static DeviceSummary from(Device device) {
+        return DeviceSummary.builder()
+                .id(device.getId())
+                .userId(device.getUser() != null ? device.getUser().getId() : null)
+                .name(device.getName())
+                .type(device.getType())
+                .os(device.getOs())
+                .osVersion(device.getOsVersion())
+                .deviceModel(device.getDeviceModel())
+                .ipAddress(device.getIpAddress())
+                .isPrimary(device.getIsPrimary())
+                .isActive(device.getIsActive())
+                .lastLoginAt(device.getLastLoginAt())
+                .createdAt(device.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,21 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.StatisticsDimension;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DimensionStats {
+
+    private StatisticsDimension dimension;
+    private List<CountBucket> buckets;
+    private LocalDateTime refreshedAt;
+}
@@ -0,0 +1,23 @@
+package com.octopus.user_identity_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LedgerBalance {
+
+    private Long accountId;
+    private BigDecimal ledgerBalance;
+    private BigDecimal accountBalance;
+    private BigDecimal snapshotBalance;
+    private Long snapshotEntryId;
+    private Long tailEntries;
+    private boolean inSync;
+}
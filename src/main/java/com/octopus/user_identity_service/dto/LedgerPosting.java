@@ -0,0 +1,29 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.LedgerEntryType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One line of a journal transaction. A null accountId is the external side of money entering or
+ * leaving the system; the amounts of all postings sharing a transactionId sum to zero.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LedgerPosting {
+
+    private Long id;
+    private UUID transactionId;
+    private Long accountId;
+    private BigDecimal amount;
+    private LedgerEntryType entryType;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,20 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.LoginRiskFactor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoginRisk {
+
+    private Double score;
+    private List<LoginRiskFactor> factors;
+    private Boolean stepUpRequired;
+}
@@ -0,0 +1,26 @@
+package com.octopus.user_identity_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NearbyAddress {
+
+    private Long addressId;
+    private Long userId;
+    private String street;
+    private String city;
+    private String state;
+    private String postalCode;
+    private String country;
+    private BigDecimal latitude;
+    private BigDecimal longitude;
+    private Double distanceMeters;
+}
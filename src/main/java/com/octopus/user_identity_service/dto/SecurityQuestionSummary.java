@@ -0,0 +1,23 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.SecurityQuestionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SecurityQuestionSummary {
+
+    private Long id;
+    private Long userId;
+    private String question;
+    private SecurityQuestionType questionType;
+    private Boolean isActive;
+    private LocalDateTime createdAt;
+}
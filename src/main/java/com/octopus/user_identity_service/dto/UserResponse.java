@@ -0,0 +1,68 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.UserGender;
+import com.octopus.user_identity_service.model.Role;
+import com.octopus.user_identity_service.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserResponse {
+
+    private Long id;
+    private String username;
+    private String email;
+    private String phoneNumber;
+    private String firstName;
+    private String lastName;
+    private LocalDate dateOfBirth;
+    private UserGender gender;
+    private String profilePictureUrl;
+    private Boolean isEnabled;
+    private Boolean isAccountNonLocked;
+    private LocalDateTime accountLockedUntil;
+    private Boolean emailVerified;
+    private Boolean phoneVerified;
+    private Boolean twoFactorEnabled;
+    private LocalDateTime lastLoginAt;
+    private String lastLoginCountry;
+    private Long lastLoginAsn;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private List<String> roles;
+
+    public static UserResponse from(User user) {
+        return UserResponse.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .phoneNumber(user.getPhoneNumber())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .dateOfBirth(user.getDateOfBirth())
+                .gender(user.getGender())
+                .profilePictureUrl(user.getProfilePictureUrl())
+                .isEnabled(user.getIsEnabled())
+                .isAccountNonLocked(user.getIsAccountNonLocked())
+                .accountLockedUntil(user.getAccountLockedUntil())
+                .emailVerified(user.getEmailVerified())
+                .phoneVerified(user.getPhoneVerified())
+                .twoFactorEnabled(user.getTwoFactorEnabled())
+                .lastLoginAt(user.getLastLoginAt())
+                .lastLoginCountry(user.getLastLoginCountry())
+                .lastLoginAsn(user.getLastLoginAsn())
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .roles(user.getRoles().stream().map(Role::getName).sorted().toList())
+                .build();
+    }
+}
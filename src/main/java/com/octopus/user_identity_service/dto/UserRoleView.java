@@ -0,0 +1,11 @@
+package com.octopus.user_identity_service.dto;
+
+/**
+ * Interface-based projection of a single user_roles membership row.
+ */
+public interface UserRoleView {
+
+    Long getUserId();
+
+    String getRoleName();
+}
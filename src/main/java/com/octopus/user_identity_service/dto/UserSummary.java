@@ -0,0 +1,56 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.model.Role;
+import com.octopus.user_identity_service.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSummary {
+
+    private Long id;
+    private String username;
+    private String email;
+    private String phoneNumber;
+    private String firstName;
+    private String lastName;
+    private Boolean isEnabled;
+    private Boolean emailVerified;
+    private LocalDateTime lastLoginAt;
+    private LocalDateTime createdAt;
+    private List<String> roles;
+
+    /**
+     * Constructor used by JPQL projections; roles are attached afterwards with one batched query.
+     */
+    public UserSummary(Long id, String username, String email, String phoneNumber, String firstName,
+                       String lastName, Boolean isEnabled, Boolean emailVerified,
+                       LocalDateTime lastLoginAt, LocalDateTime createdAt) {
+        this(id, username, email, phoneNumber, firstName, lastName, isEnabled, emailVerified,
+                lastLoginAt, createdAt, List.of());
+    }
+
+    public static UserSummary from(User user) {
+        return UserSummary.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .phoneNumber(user.getPhoneNumber())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .isEnabled(user.getIsEnabled())
+                .emailVerified(user.getEmailVerified())
+                .lastLoginAt(user.getLastLoginAt())
+                .createdAt(user.getCreatedAt())
+                .roles(user.getRoles().stream().map(Role::getName).sorted().toList())
+                .build();
+    }
+}
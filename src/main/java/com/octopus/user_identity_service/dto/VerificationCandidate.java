@@ -0,0 +1,24 @@
+package com.octopus.user_identity_service.dto;
+
+import com.octopus.user_identity_service.enums.AccountStatus;
+import com.octopus.user_identity_service.enums.AccountType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class VerificationCandidate {
+
+    private Long accountId;
+    private Long userId;
+    private String accountNumber;
+    private AccountType accountType;
+    private AccountStatus status;
+    private String currency;
+    private boolean userEnabled;
+    private boolean userEmailVerified;
+}
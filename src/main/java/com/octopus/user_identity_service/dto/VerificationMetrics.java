@@ -0,0 +1,27 @@
+package com.octopus.user_identity_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class VerificationMetrics {
+
+    private long backlog;
+    private long processed;
+    private long verified;
+    private long rejected;
+    private long referred;
+    private long chunks;
+    private long failedChunks;
+    private LocalDateTime lastRunStartedAt;
+    private long lastRunDurationMs;
+    private long lastRunProcessed;
+    private double lastRunAccountsPerSecond;
+}
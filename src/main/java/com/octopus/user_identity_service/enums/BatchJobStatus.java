@@ -0,0 +1,7 @@
+package com.octopus.user_identity_service.enums;
+
+public enum BatchJobStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
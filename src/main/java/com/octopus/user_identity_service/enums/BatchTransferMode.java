@@ -0,0 +1,8 @@
+package com.octopus.user_identity_service.enums;
+
+public enum BatchTransferMode {
+    /** Every leg is applied or none is. */
+    ATOMIC,
+    /** Legs that cannot be applied are skipped and reported; the rest commit. */
+    BEST_EFFORT
+}
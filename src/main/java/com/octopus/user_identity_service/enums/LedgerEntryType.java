@@ -0,0 +1,5 @@
+package com.octopus.user_identity_service.enums;
+
+public enum LedgerEntryType {
+    OPENING, DEPOSIT, WITHDRAWAL, TRANSFER, ADJUSTMENT
+}
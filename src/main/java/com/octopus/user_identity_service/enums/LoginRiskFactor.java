@@ -0,0 +1,20 @@
+package com.octopus.user_identity_service.enums;
+
+/** Reasons a login scored as risky, with their contribution to the score. */
+public enum LoginRiskFactor {
+    NEW_DEVICE(0.5),
+    UNIDENTIFIED_DEVICE(0.25),
+    NEW_NETWORK(0.2),
+    NEW_ASN(0.1),
+    NEW_COUNTRY(0.2);
+
+    private final double weight;
+
+    LoginRiskFactor(double weight) {
+        this.weight = weight;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+}
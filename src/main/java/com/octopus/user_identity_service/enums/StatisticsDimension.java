@@ -0,0 +1,5 @@
+package com.octopus.user_identity_service.enums;
+
+public enum StatisticsDimension {
+    DEVICES_BY_TYPE, DEVICES_BY_OS, ADDRESSES_BY_COUNTRY, ADDRESSES_BY_CITY
+}
@@ -0,0 +1,11 @@
+package com.octopus.user_identity_service.exception;
+
+public class VelocityLimitExceededException extends RuntimeException {
+    public VelocityLimitExceededException(String message) {
+        super(message);
+    }
+
+    public VelocityLimitExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
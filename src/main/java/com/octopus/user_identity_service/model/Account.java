@@ -6,6 +6,7 @@ import com.octopus.user_identity_service.enums.VerificationStatus;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -27,9 +28,23 @@ public class Account extends BaseModel {
     @Enumerated(EnumType.STRING)
     private AccountStatus status = AccountStatus.ACTIVE;
 
-    @Column(name = "balance", precision = 15, scale = 2)
+    /**
+     * Only written on insert; afterwards the balance changes exclusively through the conditional
+     * UPDATEs in AccountRepository, so saving a stale entity can never overwrite it.
+     */
+    @Column(name = "balance", precision = 15, scale = 2, updatable = false)
     private BigDecimal balance = BigDecimal.ZERO;
 
+    /**
+     * Number of sub-balance rows credits are spread over; 0 when the account is not striped. Written
+     * only by BalanceStripeService together with the stripe rows, never from a request or a save.
+     */
+    @Column(name = "balance_stripes", nullable = false, insertable = false, updatable = false)
+    private Integer balanceStripes = 0;
+
+    @Formula("COALESCE(balance, 0) + COALESCE((SELECT SUM(s.balance) FROM account_balance_stripes s WHERE s.account_id = id), 0)")
+    private BigDecimal effectiveBalance;
+
     @Column(name = "currency", nullable = false)
     private String currency = "USD";
 
@@ -46,4 +61,9 @@ public class Account extends BaseModel {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
+
+    /** Consolidated balance plus any credits still sitting on stripes. */
+    public BigDecimal getEffectiveBalance() {
+        return effectiveBalance != null ? effectiveBalance : balance;
+    }
 }
@@ -5,6 +5,8 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.math.BigDecimal;
+
 @Entity
 @Table(name = "addresses")
 @Getter
@@ -32,11 +34,27 @@ public class Address extends BaseModel {
     @Column(name = "long_address")
     private String longAddress;
 
-    @Column(name = "longitude")
-    private String longitude;
+    @Column(name = "longitude", precision = 9, scale = 6)
+    private BigDecimal longitude;
+
+    @Column(name = "latitude", precision = 9, scale = 6)
+    private BigDecimal latitude;
+
+    @Column(name = "match_key")
+    private String matchKey;
+
+    @Column(name = "normalised_city")
+    private String normalisedCity;
+
+    @Column(name = "normalised_state")
+    private String normalisedState;
+
+    @Column(name = "normalised_country")
+    private String normalisedCountry;
 
-    @Column(name = "latitude")
-    private String latitude;
+    /** Oldest address with the same match key and country, as last marked by the deduplication job. */
+    @Column(name = "duplicate_of_id")
+    private Long duplicateOfId;
 
     @Column(name = "address_type")
     @Enumerated(EnumType.STRING)
@@ -1,10 +1,14 @@
 package com.octopus.user_identity_service.model;
 
 import com.octopus.user_identity_service.enums.DeviceType;
+import com.octopus.user_identity_service.util.IpAddressNormalizer;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
+import java.net.InetAddress;
 import java.time.LocalDateTime;
 
 @Entity
@@ -30,14 +34,29 @@ public class Device extends BaseModel {
     private String deviceModel;
 
     @Column(name = "ip_address")
-    private String ipAddress;
+    @JdbcTypeCode(SqlTypes.INET)
+    private InetAddress ipAddress;
 
     @Column(name = "mac_address")
     private String macAddress;
 
+    // Only rows written before user agents were interned still carry the text; see UserAgentService.
     @Column(name = "user_agent")
     private String userAgent;
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_agent_id")
+    private UserAgent userAgentEntry;
+
+    @Column(name = "country_code", length = 2)
+    private String countryCode;
+
+    @Column(name = "asn")
+    private Long asn;
+
+    @Column(name = "fingerprint", length = 64)
+    private String fingerprint;
+
     @Column(name = "is_primary", nullable = false)
     private Boolean isPrimary = false;
 
@@ -47,8 +66,28 @@ public class Device extends BaseModel {
     @Column(name = "last_login_at")
     private LocalDateTime lastLoginAt;
 
+    @Column(name = "last_seen_at")
+    private LocalDateTime lastSeenAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
+
+    // Stored as inet; exposed as canonical text so request and response bodies keep using strings.
+    public String getIpAddress() {
+        return IpAddressNormalizer.format(ipAddress);
+    }
+
+    public void setIpAddress(String ipAddress) {
+        this.ipAddress = IpAddressNormalizer.parse(ipAddress);
+    }
+
+    public String getUserAgent() {
+        return userAgent != null || userAgentEntry == null ? userAgent : userAgentEntry.getUserAgent();
+    }
+
+    public InetAddress getInetAddress() {
+        return ipAddress;
+    }
 }
 
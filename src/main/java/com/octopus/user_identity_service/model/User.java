@@ -2,8 +2,10 @@ package com.octopus.user_identity_service.model;
 
 import com.octopus.user_identity_service.enums.UserGender;
 import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalDateTime;
@@ -15,6 +17,8 @@ import java.util.Set;
 @Getter
 @Setter
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class User extends BaseModel {
 
     @Column(name = "username", nullable = false, unique = true)
@@ -64,6 +68,12 @@ public class User extends BaseModel {
     @Column(name = "last_login_at")
     private LocalDateTime lastLoginAt;
 
+    @Column(name = "last_login_country", length = 2)
+    private String lastLoginCountry;
+
+    @Column(name = "last_login_asn")
+    private Long lastLoginAsn;
+
     @Column(name = "email_verified", nullable = false)
     @Builder.Default
     private Boolean emailVerified = false;
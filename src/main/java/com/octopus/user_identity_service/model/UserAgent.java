@@ -0,0 +1,39 @@
+package com.octopus.user_identity_service.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/** Dictionary entry for one distinct User-Agent string; written only by UserAgentService. */
+@Entity
+@Table(name = "user_agents")
+@Immutable
+@Getter
+@NoArgsConstructor
+public class UserAgent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_agent", nullable = false)
+    private String userAgent;
+
+    @Column(name = "user_agent_hash", nullable = false, length = 64)
+    private String userAgentHash;
+
+    @Column(name = "os")
+    private String os;
+
+    @Column(name = "os_version")
+    private String osVersion;
+
+    @Column(name = "device_model")
+    private String deviceModel;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,41 +1,114 @@
 package com.octopus.user_identity_service.repository;
 
+import com.octopus.user_identity_service.dto.AccountOwner;
+import com.octopus.user_identity_service.dto.AccountSummary;
+import com.octopus.user_identity_service.enums.AccountStatus;
+import com.octopus.user_identity_service.enums.AccountType;
+import com.octopus.user_identity_service.enums.VerificationStatus;
 import com.octopus.user_identity_service.model.Account;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long> {
 
+    String SUMMARY_SELECT = "SELECT new com.octopus.user_identity_service.dto.AccountSummary("
+            + "a.id, a.user.id, a.accountNumber, a.accountType, a.status, a.effectiveBalance, a.currency, "
+            + "a.isPrimary, a.verificationStatus, a.lastActivityAt, a.createdAt) FROM Account a";
+
     Optional<Account> findByAccountNumber(String accountNumber);
 
     List<Account> findByUserId(Long userId);
 
     Optional<Account> findByUserIdAndIsPrimaryTrue(Long userId);
 
-    List<Account> findByUserIdAndStatus(Long userId, String status);
+    @Query("SELECT a FROM Account a WHERE a.user.id = :userId AND a.accountType = :accountType")
+    List<Account> findByUserIdAndAccountType(@Param("userId") Long userId, @Param("accountType") String accountType);
+
+    @Query("SELECT COUNT(a) FROM Account a WHERE a.user.id = :userId")
+    long countByUserId(@Param("userId") Long userId);
 
-    List<Account> findByAccountType(String accountType);
+    @Query("SELECT new com.octopus.user_identity_service.dto.AccountOwner(a.id, a.user.id, a.accountType) "
+            + "FROM Account a WHERE a.id = :id")
+    Optional<AccountOwner> findOwnerById(@Param("id") Long id);
 
-    List<Account> findByStatus(String status);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id = :id")
+    Optional<Account> findByIdForUpdate(@Param("id") Long id);
 
-    List<Account> findByVerificationStatus(String verificationStatus);
+    @Query(SUMMARY_SELECT + " WHERE a.user.id = :userId ORDER BY a.id")
+    List<AccountSummary> findSummariesByUserId(@Param("userId") Long userId);
 
-    @Query("SELECT a FROM Account a WHERE a.user.id = :userId AND a.accountType = :accountType")
-    List<Account> findByUserIdAndAccountType(@Param("userId") Long userId, @Param("accountType") String accountType);
+    @Query(SUMMARY_SELECT + " WHERE a.user.id = :userId AND a.status = :status ORDER BY a.id")
+    List<AccountSummary> findSummariesByUserIdAndStatus(@Param("userId") Long userId, @Param("status") AccountStatus status);
 
-    @Query("SELECT a FROM Account a WHERE a.balance > :minBalance")
-    List<Account> findByBalanceGreaterThan(@Param("minBalance") BigDecimal minBalance);
+    @Query(SUMMARY_SELECT + " WHERE a.accountType = :accountType ORDER BY a.id")
+    List<AccountSummary> findSummariesByAccountType(@Param("accountType") AccountType accountType);
 
-    @Query("SELECT a FROM Account a WHERE a.balance < :maxBalance")
-    List<Account> findByBalanceLessThan(@Param("maxBalance") BigDecimal maxBalance);
+    @Query(SUMMARY_SELECT + " WHERE a.status = :status ORDER BY a.id")
+    List<AccountSummary> findSummariesByStatus(@Param("status") AccountStatus status);
 
-    @Query("SELECT COUNT(a) FROM Account a WHERE a.user.id = :userId")
-    long countByUserId(@Param("userId") Long userId);
+    @Query(value = SUMMARY_SELECT + " WHERE a.verificationStatus = :verificationStatus",
+            countQuery = "SELECT COUNT(a) FROM Account a WHERE a.verificationStatus = :verificationStatus")
+    Page<AccountSummary> findSummariesByVerificationStatus(@Param("verificationStatus") VerificationStatus verificationStatus,
+                                                           Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT + " WHERE a.balance BETWEEN :minBalance AND :maxBalance ORDER BY a.balance, a.id",
+            countQuery = "SELECT COUNT(a) FROM Account a WHERE a.balance BETWEEN :minBalance AND :maxBalance")
+    Page<AccountSummary> findSummariesByBalanceBetween(@Param("minBalance") BigDecimal minBalance,
+                                                       @Param("maxBalance") BigDecimal maxBalance, Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT, countQuery = "SELECT COUNT(a) FROM Account a")
+    Page<AccountSummary> findAllSummaries(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE a.id > :id ORDER BY a.id")
+    List<AccountSummary> findSummariesByIdGreaterThan(@Param("id") Long id, Limit limit);
+
+    @Query("SELECT a.balanceStripes FROM Account a WHERE a.id = :id")
+    Optional<Integer> findBalanceStripesById(@Param("id") Long id);
+
+    @Query("SELECT a.id FROM Account a WHERE a.balanceStripes > 0 ORDER BY a.id")
+    List<Long> findStripedAccountIds();
+
+    /** Credits an unstriped account; matches nothing for striped accounts, which go through their stripes. */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, a.lastActivityAt = :now, a.updatedAt = :now "
+            + "WHERE a.id = :id AND a.balanceStripes = 0")
+    int credit(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    /** Debits an unstriped account; striped accounts are folded under lock before debiting. */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance - :amount, a.lastActivityAt = :now, a.updatedAt = :now "
+            + "WHERE a.id = :id AND a.balance >= :amount AND a.balanceStripes = 0")
+    int debit(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = :balance, a.lastActivityAt = :now, a.updatedAt = :now WHERE a.id = :id")
+    int setBalance(@Param("id") Long id, @Param("balance") BigDecimal balance, @Param("now") LocalDateTime now);
+
+    /** Makes {@code accountId} the user's only primary account, touching only rows whose flag changes. */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.isPrimary = (a.id = :accountId) "
+            + "WHERE a.user.id = :userId AND (a.isPrimary = true OR a.id = :accountId)")
+    int setPrimary(@Param("accountId") Long accountId, @Param("userId") Long userId);
+
+    /** Promotes the user's oldest account if the user is left without a primary one. */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.isPrimary = true "
+            + "WHERE a.id = (SELECT MIN(o.id) FROM Account o WHERE o.user.id = :userId) "
+            + "AND NOT EXISTS (SELECT p FROM Account p WHERE p.user.id = :userId AND p.isPrimary = true)")
+    int promoteSuccessor(@Param("userId") Long userId);
 }
@@ -1,6 +1,8 @@
 package com.octopus.user_identity_service.repository;
 
+import com.octopus.user_identity_service.dto.CountBucket;
 import com.octopus.user_identity_service.model.Address;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,20 +14,32 @@ import java.util.Optional;
 @Repository
 public interface AddressRepository extends JpaRepository<Address, Long> {
 
-    @Query("SELECT a FROM Address a WHERE a.street = :street AND a.city = :city AND a.state = :state")
-    List<Address> findByStreetAndCityAndState(@Param("street") String street, 
-                                            @Param("city") String city, 
-                                            @Param("state") String state);
+    @Query("SELECT a FROM Address a WHERE a.matchKey = :matchKey ORDER BY a.id")
+    List<Address> findByMatchKey(@Param("matchKey") String matchKey);
 
-    @Query("SELECT a FROM Address a WHERE a.city = :city")
-    List<Address> findByCity(@Param("city") String city);
+    @Query("SELECT a FROM Address a WHERE a.normalisedCity = :city")
+    List<Address> findByNormalisedCity(@Param("city") String city);
 
-    @Query("SELECT a FROM Address a WHERE a.state = :state")
-    List<Address> findByState(@Param("state") String state);
+    @Query("SELECT a FROM Address a WHERE a.normalisedState = :state")
+    List<Address> findByNormalisedState(@Param("state") String state);
 
-    @Query("SELECT a FROM Address a WHERE a.country = :country")
-    List<Address> findByCountry(@Param("country") String country);
+    @Query("SELECT a FROM Address a WHERE a.normalisedCountry = :country")
+    List<Address> findByNormalisedCountry(@Param("country") String country);
 
     @Query("SELECT a FROM Address a WHERE a.addressType = :addressType")
     List<Address> findByAddressType(@Param("addressType") String addressType);
+
+    long countByNormalisedCity(String city);
+
+    long countByNormalisedState(String state);
+
+    long countByNormalisedCountry(String country);
+
+    @Query("SELECT new com.octopus.user_identity_service.dto.CountBucket(a.country, COUNT(a)) "
+            + "FROM Address a GROUP BY a.country ORDER BY COUNT(a) DESC")
+    List<CountBucket> countGroupedByCountry(Limit limit);
+
+    @Query("SELECT new com.octopus.user_identity_service.dto.CountBucket(a.city, COUNT(a)) "
+            + "FROM Address a GROUP BY a.city ORDER BY COUNT(a) DESC")
+    List<CountBucket> countGroupedByCity(Limit limit);
 }
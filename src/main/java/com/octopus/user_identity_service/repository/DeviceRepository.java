@@ -1,27 +1,44 @@
 package com.octopus.user_identity_service.repository;
 
+import com.octopus.user_identity_service.dto.CountBucket;
+import com.octopus.user_identity_service.dto.DeviceSummary;
+import com.octopus.user_identity_service.enums.DeviceType;
 import com.octopus.user_identity_service.model.Device;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.net.InetAddress;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DeviceRepository extends JpaRepository<Device, Long> {
 
+    String SUMMARY_SELECT = "SELECT new com.octopus.user_identity_service.dto.DeviceSummary("
+            + "d.id, d.user.id, d.name, d.type, d.os, d.osVersion, d.deviceModel, CAST(function('host', d.ipAddress) AS String), "
+            + "d.isPrimary, d.isActive, d.lastLoginAt, d.createdAt) FROM Device d";
+
     List<Device> findByUserId(Long userId);
 
     Optional<Device> findByUserIdAndIsPrimaryTrue(Long userId);
 
     List<Device> findByUserIdAndIsActiveTrue(Long userId);
 
-    List<Device> findByIpAddress(String ipAddress);
+    List<Device> findByIpAddress(InetAddress ipAddress);
 
     List<Device> findByMacAddress(String macAddress);
 
+    Optional<Device> findByUserIdAndFingerprint(Long userId, String fingerprint);
+
+    @Query("SELECT d.fingerprint FROM Device d WHERE d.user.id = :userId AND d.fingerprint IS NOT NULL")
+    List<String> findFingerprintsByUserId(@Param("userId") Long userId);
+
     @Query("SELECT d FROM Device d WHERE d.user.id = :userId AND d.type = :type")
     List<Device> findByUserIdAndType(@Param("userId") Long userId, @Param("type") String type);
 
@@ -33,4 +50,60 @@ public interface DeviceRepository extends JpaRepository<Device, Long> {
 
     @Query("SELECT COUNT(d) FROM Device d WHERE d.user.id = :userId")
     long countByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT COUNT(d) FROM Device d WHERE d.user.id = :userId AND d.isActive = true")
+    long countActiveByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT new com.octopus.user_identity_service.dto.CountBucket(CAST(d.type AS String), COUNT(d)) "
+            + "FROM Device d GROUP BY d.type ORDER BY COUNT(d) DESC")
+    List<CountBucket> countGroupedByType(Limit limit);
+
+    @Query("SELECT new com.octopus.user_identity_service.dto.CountBucket(d.os, COUNT(d)) "
+            + "FROM Device d GROUP BY d.os ORDER BY COUNT(d) DESC")
+    List<CountBucket> countGroupedByOs(Limit limit);
+
+    @Query(SUMMARY_SELECT + " WHERE d.user.id = :userId ORDER BY d.id")
+    List<DeviceSummary> findSummariesByUserId(@Param("userId") Long userId);
+
+    @Query(SUMMARY_SELECT + " WHERE d.user.id = :userId AND d.isActive = true ORDER BY d.id")
+    List<DeviceSummary> findActiveSummariesByUserId(@Param("userId") Long userId);
+
+    @Query(SUMMARY_SELECT + " WHERE d.ipAddress = :ipAddress ORDER BY d.id")
+    List<DeviceSummary> findSummariesByIpAddress(@Param("ipAddress") InetAddress ipAddress);
+
+    /** Devices whose address lies in {@code cidr} (e.g. "10.1.2.0/24"); served by the GiST index on ip_address. */
+    @Query(value = "SELECT * FROM devices WHERE ip_address <<= CAST(:cidr AS inet) ORDER BY ip_address, id",
+            countQuery = "SELECT COUNT(*) FROM devices WHERE ip_address <<= CAST(:cidr AS inet)",
+            nativeQuery = true)
+    Page<Device> findByIpAddressInRange(@Param("cidr") String cidr, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE d.macAddress = :macAddress ORDER BY d.id")
+    List<DeviceSummary> findSummariesByMacAddress(@Param("macAddress") String macAddress);
+
+    @Query(SUMMARY_SELECT + " WHERE d.type = :type ORDER BY d.id")
+    List<DeviceSummary> findSummariesByType(@Param("type") DeviceType type);
+
+    @Query(value = SUMMARY_SELECT, countQuery = "SELECT COUNT(d) FROM Device d")
+    Page<DeviceSummary> findAllSummaries(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE d.id > :id ORDER BY d.id")
+    List<DeviceSummary> findSummariesByIdGreaterThan(@Param("id") Long id, Limit limit);
+
+    /** Makes {@code deviceId} the user's only primary device, touching only rows whose flag changes. */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Device d SET d.isPrimary = (d.id = :deviceId) "
+            + "WHERE d.user.id = :userId AND (d.isPrimary = true OR d.id = :deviceId)")
+    int setPrimary(@Param("deviceId") Long deviceId, @Param("userId") Long userId);
+
+    /**
+     * Promotes the user's oldest active device if the user is left without a primary one, falling
+     * back to the oldest device of any state unless {@code activeOnly} is set.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Device d SET d.isPrimary = true "
+            + "WHERE d.id = COALESCE("
+            + "(SELECT MIN(o.id) FROM Device o WHERE o.user.id = :userId AND o.isActive = true), "
+            + "(SELECT MIN(o.id) FROM Device o WHERE o.user.id = :userId AND :activeOnly = false)) "
+            + "AND NOT EXISTS (SELECT p FROM Device p WHERE p.user.id = :userId AND p.isPrimary = true)")
+    int promoteSuccessor(@Param("userId") Long userId, @Param("activeOnly") boolean activeOnly);
 }
@@ -2,6 +2,8 @@ package com.octopus.user_identity_service.repository;
 
 import com.octopus.user_identity_service.model.Role;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -12,4 +14,9 @@ public interface RoleRepository extends JpaRepository<Role, Long> {
     Optional<Role> findByName(String name);
 
     boolean existsByName(String name);
+
+    /** Counted on user_roles alone, as an index-only scan of idx_user_roles_role_user; users is never read. */
+    @Query(value = "SELECT COUNT(*) FROM user_roles WHERE role_id = (SELECT id FROM roles WHERE name = :name)",
+            nativeQuery = true)
+    long countMembersByName(@Param("name") String name);
 }
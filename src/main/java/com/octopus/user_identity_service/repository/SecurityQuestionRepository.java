@@ -1,6 +1,10 @@
 package com.octopus.user_identity_service.repository;
 
+import com.octopus.user_identity_service.dto.SecurityQuestionSummary;
 import com.octopus.user_identity_service.model.SecurityQuestion;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,6 +16,9 @@ import java.util.Optional;
 @Repository
 public interface SecurityQuestionRepository extends JpaRepository<SecurityQuestion, Long> {
 
+    String SUMMARY_SELECT = "SELECT new com.octopus.user_identity_service.dto.SecurityQuestionSummary("
+            + "sq.id, sq.user.id, sq.question, sq.questionType, sq.isActive, sq.createdAt) FROM SecurityQuestion sq";
+
     List<SecurityQuestion> findByUserId(Long userId);
 
     List<SecurityQuestion> findByUserIdAndIsActiveTrue(Long userId);
@@ -20,6 +27,8 @@ public interface SecurityQuestionRepository extends JpaRepository<SecurityQuesti
 
     List<SecurityQuestion> findByIsActiveTrue();
 
+    long countByIsActiveTrue();
+
     @Query("SELECT sq FROM SecurityQuestion sq WHERE sq.user.id = :userId AND sq.questionType = :questionType")
     List<SecurityQuestion> findByUserIdAndQuestionType(@Param("userId") Long userId, @Param("questionType") String questionType);
 
@@ -31,4 +40,10 @@ public interface SecurityQuestionRepository extends JpaRepository<SecurityQuesti
 
     @Query("SELECT COUNT(sq) FROM SecurityQuestion sq WHERE sq.user.id = :userId AND sq.isActive = true")
     long countActiveByUserId(@Param("userId") Long userId);
+
+    @Query(value = SUMMARY_SELECT, countQuery = "SELECT COUNT(sq) FROM SecurityQuestion sq")
+    Page<SecurityQuestionSummary> findAllSummaries(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE sq.id > :id ORDER BY sq.id")
+    List<SecurityQuestionSummary> findSummariesByIdGreaterThan(@Param("id") Long id, Limit limit);
 }
@@ -1,16 +1,27 @@
 package com.octopus.user_identity_service.repository;
 
+import com.octopus.user_identity_service.dto.UserRoleView;
+import com.octopus.user_identity_service.dto.UserSummary;
 import com.octopus.user_identity_service.model.User;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    String SUMMARY_SELECT = "SELECT new com.octopus.user_identity_service.dto.UserSummary("
+            + "u.id, u.username, u.email, u.phoneNumber, u.firstName, u.lastName, "
+            + "u.isEnabled, u.emailVerified, u.lastLoginAt, u.createdAt) FROM User u";
+
     Optional<User> findByUsername(String username);
 
     Optional<User> findByEmail(String email);
@@ -23,4 +34,17 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
 
     boolean existsByPhoneNumber(String phoneNumber);
+
+    @Query(value = SUMMARY_SELECT, countQuery = "SELECT COUNT(u) FROM User u")
+    Page<UserSummary> findAllSummaries(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE u.id > :id ORDER BY u.id")
+    List<UserSummary> findSummariesByIdGreaterThan(@Param("id") Long id, Limit limit);
+
+    @Query(value = SUMMARY_SELECT + " JOIN u.roles r WHERE r.name = :roleName",
+            countQuery = "SELECT COUNT(u) FROM User u JOIN u.roles r WHERE r.name = :roleName")
+    Page<UserSummary> findSummariesByRoleName(@Param("roleName") String roleName, Pageable pageable);
+
+    @Query("SELECT u.id AS userId, r.name AS roleName FROM User u JOIN u.roles r WHERE u.id IN :userIds ORDER BY r.name")
+    List<UserRoleView> findRoleNamesByUserIds(@Param("userIds") Collection<Long> userIds);
 }
@@ -1,25 +1,35 @@
 package com.octopus.user_identity_service.service;
 
+import com.octopus.user_identity_service.dto.AccountSummary;
+import com.octopus.user_identity_service.dto.BalanceDistribution;
+import com.octopus.user_identity_service.dto.CurrencyBalance;
+import com.octopus.user_identity_service.dto.CursorPage;
 import com.octopus.user_identity_service.enums.AccountStatus;
 import com.octopus.user_identity_service.enums.AccountType;
+import com.octopus.user_identity_service.enums.LedgerEntryType;
 import com.octopus.user_identity_service.enums.VerificationStatus;
 import com.octopus.user_identity_service.exception.ResourceNotFoundException;
 import com.octopus.user_identity_service.model.Account;
 import com.octopus.user_identity_service.model.User;
 import com.octopus.user_identity_service.repository.AccountRepository;
 import com.octopus.user_identity_service.repository.UserRepository;
+import com.octopus.user_identity_service.util.AccountNumberGenerator;
+import com.octopus.user_identity_service.util.CursorUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -27,8 +37,24 @@ import java.util.UUID;
 @Transactional
 public class AccountService {
 
+    private static final int PRIMARY_ACCOUNT_LOCK_SPACE = 7_340_002;
+
+    // Bounds of DECIMAL(15, 2), used when a balance range is open on one side.
+    private static final BigDecimal MAX_BALANCE = new BigDecimal("9999999999999.99");
+    private static final BigDecimal MIN_BALANCE = MAX_BALANCE.negate();
+
     private final AccountRepository accountRepository;
     private final UserRepository userRepository;
+    private final LedgerService ledgerService;
+    private final BalanceStripeService balanceStripeService;
+    private final AccountNumberGenerator accountNumberGenerator;
+    private final BalanceSummaryService balanceSummaryService;
+    private final BalanceDistributionService balanceDistributionService;
+    private final VelocityLimiter velocityLimiter;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${accounts.stripes.max-count:64}")
+    private int maxStripes;
 
     public Account createAccount(Account account, Long userId) {
         log.info("Creating account for user with id: {}", userId);
@@ -36,24 +62,42 @@ public class AccountService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
 
-        // Generate unique account number if not provided
+        // Generated numbers are unique by construction; only caller-supplied ones need checking.
+        // Those must be legacy numbers: one in the generated format could claim a serial that the
+        // generator has yet to issue, and that later issue would then fail on the unique constraint.
         if (account.getAccountNumber() == null || account.getAccountNumber().isEmpty()) {
-            account.setAccountNumber(generateAccountNumber(account.getAccountType()));
-        }
-
-        // Check if account number already exists
-        if (accountRepository.findByAccountNumber(account.getAccountNumber()).isPresent()) {
-            throw new IllegalArgumentException("Account number already exists: " + account.getAccountNumber());
+            account.setAccountNumber(accountNumberGenerator.next(account.getAccountType()));
+        } else {
+            validateAccountNumber(account.getAccountNumber());
+            if (!AccountNumberGenerator.isLegacy(account.getAccountNumber())) {
+                throw new IllegalArgumentException("Account numbers in this format are assigned by the service: "
+                        + account.getAccountNumber());
+            }
+            if (accountRepository.findByAccountNumber(account.getAccountNumber()).isPresent()) {
+                throw new IllegalArgumentException("Account number already exists: " + account.getAccountNumber());
+            }
         }
 
         account.setUser(user);
-        
-        // If this is the first account or marked as primary, make it primary
-        if (account.getIsPrimary() || accountRepository.countByUserId(userId) == 0) {
-            setAsPrimaryAccount(account.getId(), userId);
-        }
+        // The column is not inserted; keep the returned entity in step with the stored 0.
+        account.setBalanceStripes(0);
 
-        return accountRepository.save(account);
+        // If this is the first account or marked as primary, make it primary once it has an id
+        lockPrimarySelection(userId);
+        boolean makePrimary = Boolean.TRUE.equals(account.getIsPrimary()) || accountRepository.countByUserId(userId) == 0;
+        account.setIsPrimary(false);
+
+        Account savedAccount = accountRepository.save(account);
+        if (savedAccount.getBalance() != null && savedAccount.getBalance().signum() != 0) {
+            ledgerService.post(LedgerEntryType.OPENING, null, savedAccount.getId(), savedAccount.getBalance());
+        }
+        balanceSummaryService.evict(userId);
+        balanceDistributionService.recordAdded(savedAccount.getCurrency(), savedAccount.getAccountType(), savedAccount.getBalance());
+        if (makePrimary) {
+            accountRepository.setPrimary(savedAccount.getId(), userId);
+            return getAccountOrThrow(savedAccount.getId());
+        }
+        return savedAccount;
     }
 
     @Transactional(readOnly = true)
@@ -63,12 +107,13 @@ public class AccountService {
 
     @Transactional(readOnly = true)
     public Optional<Account> getAccountByAccountNumber(String accountNumber) {
+        // No format check: accounts opened before the generator may carry numbers in any format.
         return accountRepository.findByAccountNumber(accountNumber);
     }
 
     @Transactional(readOnly = true)
-    public List<Account> getAccountsByUserId(Long userId) {
-        return accountRepository.findByUserId(userId);
+    public List<AccountSummary> getAccountsByUserId(Long userId) {
+        return accountRepository.findSummariesByUserId(userId);
     }
 
     @Transactional(readOnly = true)
@@ -77,23 +122,42 @@ public class AccountService {
     }
 
     @Transactional(readOnly = true)
-    public List<Account> getAccountsByUserIdAndStatus(Long userId, AccountStatus status) {
-        return accountRepository.findByUserIdAndStatus(userId, status.name());
+    public List<AccountSummary> getAccountsByUserIdAndStatus(Long userId, AccountStatus status) {
+        return accountRepository.findSummariesByUserIdAndStatus(userId, status);
+    }
+
+    @Transactional(readOnly = true)
+    public List<AccountSummary> getAccountsByAccountType(AccountType accountType) {
+        return accountRepository.findSummariesByAccountType(accountType);
     }
 
     @Transactional(readOnly = true)
-    public List<Account> getAccountsByAccountType(AccountType accountType) {
-        return accountRepository.findByAccountType(accountType.name());
+    public List<AccountSummary> getAccountsByStatus(AccountStatus status) {
+        return accountRepository.findSummariesByStatus(status);
     }
 
     @Transactional(readOnly = true)
-    public List<Account> getAccountsByStatus(AccountStatus status) {
-        return accountRepository.findByStatus(status.name());
+    public Page<AccountSummary> getAccountsByVerificationStatus(VerificationStatus verificationStatus, Pageable pageable) {
+        return accountRepository.findSummariesByVerificationStatus(verificationStatus, pageable);
     }
 
+    /**
+     * Accounts whose stored balance lies in [minBalance, maxBalance], either bound optional, ordered
+     * by balance. Credits still on balance stripes are not considered until they are consolidated.
+     */
     @Transactional(readOnly = true)
-    public List<Account> getAccountsByVerificationStatus(VerificationStatus verificationStatus) {
-        return accountRepository.findByVerificationStatus(verificationStatus.name());
+    public Page<AccountSummary> getAccountsByBalanceRange(BigDecimal minBalance, BigDecimal maxBalance, Pageable pageable) {
+        BigDecimal min = minBalance != null ? minBalance : MIN_BALANCE;
+        BigDecimal max = maxBalance != null ? maxBalance : MAX_BALANCE;
+        if (min.compareTo(max) > 0) {
+            throw new IllegalArgumentException("Minimum balance must not exceed maximum balance");
+        }
+        return accountRepository.findSummariesByBalanceBetween(min, max, pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public List<BalanceDistribution> getBalanceDistributions(String currency, AccountType accountType, List<Double> percentiles) {
+        return balanceDistributionService.getDistributions(currency, accountType, percentiles);
     }
 
     @Transactional(readOnly = true)
@@ -102,8 +166,20 @@ public class AccountService {
     }
 
     @Transactional(readOnly = true)
-    public Page<Account> getAllAccounts(Pageable pageable) {
-        return accountRepository.findAll(pageable);
+    public Page<AccountSummary> getAllAccounts(Pageable pageable) {
+        return accountRepository.findAllSummaries(pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<AccountSummary> getAccountsByCursor(String cursor, int size, boolean includeTotal) {
+        int pageSize = CursorUtil.clampPageSize(size);
+        List<AccountSummary> rows = accountRepository.findSummariesByIdGreaterThan(CursorUtil.decode(cursor), Limit.of(pageSize + 1));
+
+        CursorPage<AccountSummary> page = CursorPage.of(rows, pageSize, AccountSummary::getId);
+        if (includeTotal) {
+            page.setTotalElements(accountRepository.count());
+        }
+        return page;
     }
 
     public Account updateAccount(Long id, Account accountDetails) {
@@ -112,87 +188,131 @@ public class AccountService {
         Account account = accountRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Account not found with id: " + id));
 
+        if (!Objects.equals(account.getCurrency(), accountDetails.getCurrency())
+                || account.getAccountType() != accountDetails.getAccountType()) {
+            balanceDistributionService.recordRemoved(account.getCurrency(), account.getAccountType(), account.getEffectiveBalance());
+            balanceDistributionService.recordAdded(accountDetails.getCurrency(), accountDetails.getAccountType(),
+                    account.getEffectiveBalance());
+        }
+
+        // The account number keeps the type prefix it was issued with; see AccountNumberGenerator.
         account.setAccountType(accountDetails.getAccountType());
         account.setStatus(accountDetails.getStatus());
         account.setCurrency(accountDetails.getCurrency());
-        account.setIsPrimary(accountDetails.getIsPrimary());
         account.setVerificationStatus(accountDetails.getVerificationStatus());
 
+        balanceSummaryService.evict(account.getUser().getId());
+        velocityLimiter.evictAccount(id);
+
+        // The primary flag can only be moved to an account, never cleared, so a user always keeps one
+        if (Boolean.TRUE.equals(accountDetails.getIsPrimary()) && !account.getIsPrimary()) {
+            accountRepository.save(account);
+            return setAsPrimaryAccount(id, account.getUser().getId());
+        }
         return accountRepository.save(account);
     }
 
     public Account updateBalance(Long id, BigDecimal newBalance) {
         log.info("Updating balance for account with id: {} to {}", id, newBalance);
-        
-        Account account = accountRepository.findById(id)
+
+        Account account = accountRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Account not found with id: " + id));
+        BigDecimal currentBalance = account.getBalance();
+        if (account.getBalanceStripes() > 0) {
+            currentBalance = currentBalance.add(balanceStripeService.fold(id));
+        }
+        BigDecimal adjustment = newBalance.subtract(currentBalance);
 
-        account.setBalance(newBalance);
-        account.setLastActivityAt(LocalDateTime.now());
-        return accountRepository.save(account);
+        accountRepository.setBalance(id, newBalance, LocalDateTime.now());
+        ledgerService.post(LedgerEntryType.ADJUSTMENT, null, id, adjustment);
+        return balanceChanged(getAccountOrThrow(id), adjustment);
     }
 
     public Account deposit(Long id, BigDecimal amount) {
         log.info("Depositing {} to account with id: {}", amount, id);
-        
-        Account account = accountRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Account not found with id: " + id));
 
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Deposit amount must be positive");
         }
 
-        account.setBalance(account.getBalance().add(amount));
-        account.setLastActivityAt(LocalDateTime.now());
-        return accountRepository.save(account);
+        credit(id, amount, LocalDateTime.now(), "Account not found with id: ");
+        ledgerService.post(LedgerEntryType.DEPOSIT, null, id, amount);
+        return balanceChanged(getAccountOrThrow(id), amount);
     }
 
     public Account withdraw(Long id, BigDecimal amount) {
         log.info("Withdrawing {} from account with id: {}", amount, id);
-        
-        Account account = accountRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Account not found with id: " + id));
 
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
 
-        if (account.getBalance().compareTo(amount) < 0) {
-            throw new IllegalArgumentException("Insufficient balance");
-        }
-
-        account.setBalance(account.getBalance().subtract(amount));
-        account.setLastActivityAt(LocalDateTime.now());
-        return accountRepository.save(account);
+        velocityLimiter.reserve(id, amount);
+        debit(id, amount, LocalDateTime.now(), "Account not found with id: ", "Insufficient balance");
+        ledgerService.post(LedgerEntryType.WITHDRAWAL, id, null, amount);
+        return balanceChanged(getAccountOrThrow(id), amount.negate());
     }
 
+    /**
+     * Moves money with two conditional UPDATEs issued in ascending account-id order. Each UPDATE
+     * takes the row lock for its account (or, for a credit to a striped account, one stripe's), so
+     * concurrent transfers always lock in the same order and cannot deadlock; a failed debit rolls
+     * back a credit that was applied first.
+     */
     public Account transfer(Long fromAccountId, Long toAccountId, BigDecimal amount) {
         log.info("Transferring {} from account {} to account {}", amount, fromAccountId, toAccountId);
-        
-        Account fromAccount = accountRepository.findById(fromAccountId)
-                .orElseThrow(() -> new ResourceNotFoundException("Source account not found with id: " + fromAccountId));
-
-        Account toAccount = accountRepository.findById(toAccountId)
-                .orElseThrow(() -> new ResourceNotFoundException("Destination account not found with id: " + toAccountId));
 
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Transfer amount must be positive");
         }
 
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
-            throw new IllegalArgumentException("Insufficient balance in source account");
+        if (fromAccountId.equals(toAccountId)) {
+            throw new IllegalArgumentException("Source and destination accounts must be different");
         }
 
-        // Perform transfer
-        fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-        toAccount.setBalance(toAccount.getBalance().add(amount));
-        
+        velocityLimiter.reserve(fromAccountId, amount);
+
         LocalDateTime now = LocalDateTime.now();
-        fromAccount.setLastActivityAt(now);
-        toAccount.setLastActivityAt(now);
+        if (fromAccountId < toAccountId) {
+            debit(fromAccountId, amount, now, "Source account not found with id: ", "Insufficient balance in source account");
+            credit(toAccountId, amount, now, "Destination account not found with id: ");
+        } else {
+            credit(toAccountId, amount, now, "Destination account not found with id: ");
+            debit(fromAccountId, amount, now, "Source account not found with id: ", "Insufficient balance in source account");
+        }
+
+        ledgerService.post(LedgerEntryType.TRANSFER, fromAccountId, toAccountId, amount);
+        balanceChanged(getAccountOrThrow(fromAccountId), amount.negate());
+        return balanceChanged(getAccountOrThrow(toAccountId), amount);
+    }
+
+    /**
+     * Spreads future credits to this account over {@code stripes} sub-balance rows so that
+     * concurrent deposits stop queueing on the account row. Meant for a handful of hot accounts.
+     */
+    public Account enableBalanceStriping(Long id, int stripes) {
+        log.info("Enabling {} balance stripes for account with id: {}", stripes, id);
+
+        if (stripes < 1 || stripes > maxStripes) {
+            throw new IllegalArgumentException("Stripe count must be between 1 and " + maxStripes);
+        }
+        if (!accountRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Account not found with id: " + id);
+        }
 
-        accountRepository.save(fromAccount);
-        return accountRepository.save(toAccount);
+        balanceStripeService.enable(id, stripes);
+        return getAccountOrThrow(id);
+    }
+
+    public Account disableBalanceStriping(Long id) {
+        log.info("Disabling balance stripes for account with id: {}", id);
+
+        if (!accountRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Account not found with id: " + id);
+        }
+
+        balanceStripeService.disable(id);
+        return getAccountOrThrow(id);
     }
 
     public Account setAsPrimaryAccount(Long accountId, Long userId) {
@@ -205,14 +325,9 @@ public class AccountService {
             throw new IllegalArgumentException("Account does not belong to the specified user");
         }
 
-        // First, unset all primary accounts for this user
-        List<Account> userAccounts = accountRepository.findByUserId(userId);
-        userAccounts.forEach(a -> a.setIsPrimary(false));
-        accountRepository.saveAll(userAccounts);
-
-        // Set this account as primary
-        account.setIsPrimary(true);
-        return accountRepository.save(account);
+        lockPrimarySelection(userId);
+        accountRepository.setPrimary(accountId, userId);
+        return getAccountOrThrow(accountId);
     }
 
     public Account changeStatus(Long id, AccountStatus status) {
@@ -241,17 +356,21 @@ public class AccountService {
         Account account = accountRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Account not found with id: " + id));
 
-        // If this was the primary account, set another account as primary
-        if (account.getIsPrimary()) {
-            List<Account> remainingAccounts = accountRepository.findByUserId(account.getUser().getId());
-            remainingAccounts.remove(account);
-            if (!remainingAccounts.isEmpty()) {
-                remainingAccounts.get(0).setIsPrimary(true);
-                accountRepository.save(remainingAccounts.get(0));
-            }
+        Long userId = account.getUser().getId();
+        boolean wasPrimary = account.getIsPrimary();
+        if (wasPrimary) {
+            lockPrimarySelection(userId);
         }
 
-        accountRepository.deleteById(id);
+        accountRepository.delete(account);
+        balanceSummaryService.evict(userId);
+        balanceDistributionService.recordRemoved(account.getCurrency(), account.getAccountType(), account.getEffectiveBalance());
+        velocityLimiter.evictAccount(id);
+
+        // If this was the primary account, set another account as primary
+        if (wasPrimary) {
+            accountRepository.promoteSuccessor(userId);
+        }
     }
 
     @Transactional(readOnly = true)
@@ -261,15 +380,71 @@ public class AccountService {
 
     @Transactional(readOnly = true)
     public BigDecimal getTotalBalanceByUserId(Long userId) {
-        return accountRepository.findByUserId(userId)
-                .stream()
-                .map(Account::getBalance)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return balanceSummaryService.getTotalBalance(userId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<CurrencyBalance> getBalanceSummaryByUserId(Long userId) {
+        return balanceSummaryService.getBalanceSummary(userId);
+    }
+
+    private void credit(Long id, BigDecimal amount, LocalDateTime now, String notFoundMessage) {
+        // A miss on both paths means striping was switched between the statements; one retry in the
+        // account's current mode settles that. A second miss means the stripe count and the stripe
+        // rows disagree, which retrying cannot fix.
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (accountRepository.credit(id, amount, now) == 1) {
+                return;
+            }
+            int stripes = accountRepository.findBalanceStripesById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException(notFoundMessage + id));
+            if (stripes > 0 && balanceStripeService.credit(id, stripes, amount, now)) {
+                return;
+            }
+        }
+        throw new IllegalStateException("Account " + id + " has no stripe rows for its stripe count");
+    }
+
+    private void debit(Long id, BigDecimal amount, LocalDateTime now, String notFoundMessage, String insufficientMessage) {
+        if (accountRepository.debit(id, amount, now) == 1) {
+            return;
+        }
+
+        int stripes = accountRepository.findBalanceStripesById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(notFoundMessage + id));
+        boolean debited = stripes > 0
+                ? balanceStripeService.debit(id, amount, now)
+                : accountRepository.debit(id, amount, now) == 1;
+        if (!debited) {
+            throw new IllegalArgumentException(insufficientMessage);
+        }
     }
 
-    private static String generateAccountNumber(AccountType accountType) {
-        String prefix = accountType.name().substring(0, 3);
-        String uuid = UUID.randomUUID().toString().replace("-", "").substring(0, 8).toUpperCase();
-        return prefix + "-" + uuid;
+    /**
+     * Serialises primary-flag changes for one user's accounts. Without it two concurrent
+     * set-primary calls each clear the flag only on the rows they saw and both set theirs.
+     */
+    private void lockPrimarySelection(Long userId) {
+        jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?, ?)", Object.class,
+                PRIMARY_ACCOUNT_LOCK_SPACE, Long.hashCode(userId));
+    }
+
+    /** {@code account} is the reloaded account after its balance moved by {@code delta}. */
+    private Account balanceChanged(Account account, BigDecimal delta) {
+        balanceSummaryService.evict(account.getUser().getId());
+        BigDecimal after = account.getEffectiveBalance();
+        balanceDistributionService.recordChanged(account.getCurrency(), account.getAccountType(), after.subtract(delta), after);
+        return account;
+    }
+
+    private Account getAccountOrThrow(Long id) {
+        return accountRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Account not found with id: " + id));
+    }
+
+    private static void validateAccountNumber(String accountNumber) {
+        if (!AccountNumberGenerator.isValid(accountNumber)) {
+            throw new IllegalArgumentException("Invalid account number: " + accountNumber);
+        }
     }
 }
@@ -0,0 +1,221 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.VerificationCandidate;
+import com.octopus.user_identity_service.dto.VerificationMetrics;
+import com.octopus.user_identity_service.enums.AccountStatus;
+import com.octopus.user_identity_service.enums.AccountType;
+import com.octopus.user_identity_service.enums.VerificationStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background verification of PENDING accounts. Each run starts a number of workers; a worker
+ * claims the next chunk of pending accounts with FOR UPDATE SKIP LOCKED, asks the
+ * {@link AccountVerifier} about each one and writes the outcomes back as one JDBC batch in the
+ * same transaction. Workers on this and other nodes therefore never see the same account twice
+ * and never wait for each other. A chunk that fails rolls back and is picked up again by a later
+ * run.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AccountVerificationService {
+
+    private static final String CLAIM_SQL = """
+            SELECT a.id, a.user_id, a.account_number, a.account_type, a.status, a.currency,
+                   u.is_enabled, u.email_verified
+            FROM accounts a
+            JOIN users u ON u.id = a.user_id
+            WHERE a.verification_status = 'PENDING'
+            ORDER BY a.id
+            LIMIT ?
+            FOR UPDATE OF a SKIP LOCKED
+            """;
+
+    private static final String UPDATE_SQL = "UPDATE accounts SET verification_status = ?, updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountVerifier accountVerifier;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong referred = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong failedChunks = new AtomicLong();
+    private volatile LastRun lastRun;
+
+    private ExecutorService workers;
+
+    @Value("${verification.worker.enabled:false}")
+    private boolean enabled;
+
+    @Value("${verification.worker.threads:4}")
+    private int threads;
+
+    @Value("${verification.worker.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${verification.worker.max-chunks-per-run:500}")
+    private int maxChunksPerRun;
+
+    @PostConstruct
+    void startWorkers() {
+        workers = Executors.newFixedThreadPool(threads);
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        workers.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${verification.worker.interval-ms:10000}")
+    public void runScheduled() {
+        if (enabled) {
+            runVerification();
+        }
+    }
+
+    /** Drains up to {@code max-chunks-per-run} chunks with all workers and returns the metrics afterwards. */
+    public VerificationMetrics runVerification() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.nanoTime();
+        AtomicInteger chunkBudget = new AtomicInteger(maxChunksPerRun);
+
+        List<Future<Integer>> results = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            results.add(workers.submit(() -> drain(chunkBudget)));
+        }
+        long runProcessed = 0;
+        for (Future<Integer> result : results) {
+            try {
+                runProcessed += result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Verification worker failed", e);
+            }
+        }
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        lastRun = new LastRun(startedAt, durationMs, runProcessed);
+        if (runProcessed > 0) {
+            log.info("Verified {} pending accounts in {} ms", runProcessed, durationMs);
+        }
+        return getMetrics();
+    }
+
+    public VerificationMetrics getMetrics() {
+        LastRun run = lastRun;
+        Long backlog = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM accounts WHERE verification_status = 'PENDING'", Long.class);
+        return VerificationMetrics.builder()
+                .backlog(backlog != null ? backlog : 0)
+                .processed(processed.get())
+                .verified(verified.get())
+                .rejected(rejected.get())
+                .referred(referred.get())
+                .chunks(chunks.get())
+                .failedChunks(failedChunks.get())
+                .lastRunStartedAt(run != null ? run.startedAt() : null)
+                .lastRunDurationMs(run != null ? run.durationMs() : 0)
+                .lastRunProcessed(run != null ? run.processed() : 0)
+                .lastRunAccountsPerSecond(run != null && run.durationMs() > 0 ? run.processed() * 1000.0 / run.durationMs() : 0)
+                .build();
+    }
+
+    private int drain(AtomicInteger chunkBudget) {
+        int total = 0;
+        while (chunkBudget.getAndDecrement() > 0) {
+            ChunkOutcome chunk;
+            try {
+                chunk = transactionTemplate.execute(status -> processChunk());
+            } catch (RuntimeException e) {
+                failedChunks.incrementAndGet();
+                log.error("Verification chunk failed and was rolled back", e);
+                break;
+            }
+            if (chunk.claimed() > 0) {
+                processed.addAndGet(chunk.claimed());
+                verified.addAndGet(chunk.verified());
+                rejected.addAndGet(chunk.rejected());
+                referred.addAndGet(chunk.claimed() - chunk.verified() - chunk.rejected());
+                chunks.incrementAndGet();
+            }
+            total += chunk.claimed();
+            if (chunk.claimed() < chunkSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private ChunkOutcome processChunk() {
+        List<VerificationCandidate> candidates = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> VerificationCandidate.builder()
+                .accountId(rs.getLong("id"))
+                .userId(rs.getLong("user_id"))
+                .accountNumber(rs.getString("account_number"))
+                .accountType(AccountType.valueOf(rs.getString("account_type")))
+                .status(AccountStatus.valueOf(rs.getString("status")))
+                .currency(rs.getString("currency"))
+                .userEnabled(rs.getBoolean("is_enabled"))
+                .userEmailVerified(rs.getBoolean("email_verified"))
+                .build(), chunkSize);
+        if (candidates.isEmpty()) {
+            return new ChunkOutcome(0, 0, 0);
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> updates = new ArrayList<>(candidates.size());
+        int chunkVerified = 0;
+        int chunkRejected = 0;
+        for (VerificationCandidate candidate : candidates) {
+            VerificationStatus outcome = decide(candidate);
+            if (outcome == VerificationStatus.VERIFIED) {
+                chunkVerified++;
+            } else if (outcome == VerificationStatus.REJECTED) {
+                chunkRejected++;
+            }
+            updates.add(new Object[] {outcome.name(), now, candidate.getAccountId()});
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        return new ChunkOutcome(candidates.size(), chunkVerified, chunkRejected);
+    }
+
+    private VerificationStatus decide(VerificationCandidate candidate) {
+        try {
+            VerificationStatus outcome = accountVerifier.verify(candidate);
+            if (outcome == VerificationStatus.VERIFIED || outcome == VerificationStatus.REJECTED) {
+                return outcome;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Verifier failed for account {}, referring it for manual review", candidate.getAccountId(), e);
+        }
+        return VerificationStatus.REQUIRED;
+    }
+
+    private record ChunkOutcome(int claimed, int verified, int rejected) {
+    }
+
+    private record LastRun(LocalDateTime startedAt, long durationMs, long processed) {
+    }
+}
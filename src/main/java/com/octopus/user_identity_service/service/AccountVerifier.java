@@ -0,0 +1,16 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.VerificationCandidate;
+import com.octopus.user_identity_service.enums.VerificationStatus;
+
+/**
+ * Decides the outcome for one PENDING account. Called by the verification workers while the
+ * account row is locked, so implementations should be quick. Returning anything other than
+ * VERIFIED or REJECTED refers the account for manual review (REQUIRED).
+ * <p>
+ * {@link DefaultAccountVerifier} is used unless another implementation is declared {@code @Primary}.
+ */
+public interface AccountVerifier {
+
+    VerificationStatus verify(VerificationCandidate candidate);
+}
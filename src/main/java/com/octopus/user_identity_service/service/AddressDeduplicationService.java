@@ -0,0 +1,160 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.AddressDeduplicationRun;
+import com.octopus.user_identity_service.util.AddressNormalizer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Batch job over existing addresses. It first computes the match key and normalised
+ * city/state/country of rows that lack them (V22 filled in the rows that predate the columns, so
+ * these are rows written other than through AddressService, or cleared after a change to
+ * AddressNormalizer), then marks every address whose key and country repeat an older address's as a
+ * duplicate of the oldest one. Duplicates are only marked, never deleted: each belongs to its own
+ * user, and deleting it would take the address away from that user.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AddressDeduplicationService {
+
+    private static final long DEDUPLICATION_LOCK_KEY = 7_340_004L;
+
+    private static final String NORMALISE_SELECT_SQL = """
+            SELECT id, street, city, state, country FROM addresses
+            WHERE match_key IS NULL AND id > ?
+            ORDER BY id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private static final String NORMALISE_UPDATE_SQL = """
+            UPDATE addresses a
+            SET match_key = v.match_key, normalised_city = v.city, normalised_state = v.state, normalised_country = v.country
+            FROM unnest(?::bigint[], ?::text[], ?::text[], ?::text[], ?::text[]) AS v(id, match_key, city, state, country)
+            WHERE a.id = v.id
+            """;
+
+    // Addresses without a street (keys starting with the separator) say too little to call duplicates.
+    private static final String MARK_DUPLICATES_SQL = """
+            WITH ranked AS (
+                SELECT id,
+                       CASE WHEN match_key NOT LIKE '|%'
+                            THEN NULLIF(min(id) OVER (PARTITION BY match_key, normalised_country), id) END AS duplicate_of_id
+                FROM addresses
+                WHERE match_key IS NOT NULL
+            ), changed AS (
+                UPDATE addresses a
+                SET duplicate_of_id = r.duplicate_of_id
+                FROM ranked r
+                WHERE a.id = r.id AND a.duplicate_of_id IS DISTINCT FROM r.duplicate_of_id
+                RETURNING r.duplicate_of_id
+            )
+            SELECT count(duplicate_of_id) AS marked, count(*) - count(duplicate_of_id) AS cleared FROM changed
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${addresses.dedupe.enabled:true}")
+    private boolean enabled;
+
+    @Value("${addresses.dedupe.batch-size:1000}")
+    private int batchSize;
+
+    @Scheduled(cron = "${addresses.dedupe.cron:0 0 2 * * *}")
+    public void runScheduled() {
+        if (enabled) {
+            run();
+        }
+    }
+
+    /**
+     * Normalises unkeyed addresses, one transaction per batch, then re-marks duplicates in a single
+     * transaction. Returns null when a run is already in progress on this node or another.
+     */
+    public AddressDeduplicationRun run() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            int normalised = normaliseAddresses();
+            AddressDeduplicationRun run = transactionTemplate.execute(status -> markDuplicates(normalised));
+            if (run != null) {
+                log.info("Address deduplication normalised {} addresses, marked {} and cleared {} duplicates; {} duplicates in total",
+                        run.getAddressesNormalised(), run.getDuplicatesMarked(), run.getDuplicatesCleared(), run.getDuplicateCount());
+            }
+            return run;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int normaliseAddresses() {
+        int total = 0;
+        long lastId = 0;
+        while (true) {
+            long afterId = lastId;
+            NormaliseBatch batch = transactionTemplate.execute(status -> normaliseBatch(afterId));
+            if (batch == null || batch.addresses() == 0) {
+                return total;
+            }
+            total += batch.addresses();
+            lastId = batch.lastAddressId();
+        }
+    }
+
+    private NormaliseBatch normaliseBatch(long afterId) {
+        List<Long> ids = new ArrayList<>();
+        List<String> matchKeys = new ArrayList<>();
+        List<String> cities = new ArrayList<>();
+        List<String> states = new ArrayList<>();
+        List<String> countries = new ArrayList<>();
+        jdbcTemplate.query(NORMALISE_SELECT_SQL, rs -> {
+            ids.add(rs.getLong("id"));
+            matchKeys.add(AddressNormalizer.matchKey(rs.getString("street"), rs.getString("city"), rs.getString("state")));
+            cities.add(AddressNormalizer.normalise(rs.getString("city")));
+            states.add(AddressNormalizer.normalise(rs.getString("state")));
+            countries.add(AddressNormalizer.normalise(rs.getString("country")));
+        }, afterId, batchSize);
+        if (ids.isEmpty()) {
+            return new NormaliseBatch(0, afterId);
+        }
+
+        jdbcTemplate.update(NORMALISE_UPDATE_SQL, ids.toArray(Long[]::new), matchKeys.toArray(String[]::new),
+                cities.toArray(String[]::new), states.toArray(String[]::new), countries.toArray(String[]::new));
+        return new NormaliseBatch(ids.size(), ids.get(ids.size() - 1));
+    }
+
+    private AddressDeduplicationRun markDuplicates(int normalised) {
+        Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, DEDUPLICATION_LOCK_KEY);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.info("Address deduplication is already running on another node");
+            return null;
+        }
+        int[] changes = jdbcTemplate.queryForObject(MARK_DUPLICATES_SQL,
+                (rs, rowNum) -> new int[]{rs.getInt("marked"), rs.getInt("cleared")});
+        Long duplicates = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM addresses WHERE duplicate_of_id IS NOT NULL", Long.class);
+        return AddressDeduplicationRun.builder()
+                .addressesNormalised(normalised)
+                .duplicatesMarked(changes[0])
+                .duplicatesCleared(changes[1])
+                .duplicateCount(duplicates == null ? 0 : duplicates)
+                .build();
+    }
+
+    private record NormaliseBatch(int addresses, long lastAddressId) {
+    }
+}
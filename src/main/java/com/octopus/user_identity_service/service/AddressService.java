@@ -1,19 +1,30 @@
 package com.octopus.user_identity_service.service;
 
+import com.octopus.user_identity_service.dto.NearbyAddress;
 import com.octopus.user_identity_service.enums.AddressType;
+import com.octopus.user_identity_service.enums.StatisticsDimension;
 import com.octopus.user_identity_service.exception.ResourceNotFoundException;
 import com.octopus.user_identity_service.model.Address;
 import com.octopus.user_identity_service.model.User;
 import com.octopus.user_identity_service.repository.AddressRepository;
 import com.octopus.user_identity_service.repository.UserRepository;
+import com.octopus.user_identity_service.util.AddressNormalizer;
+import com.octopus.user_identity_service.util.GeoHash;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -22,11 +33,65 @@ import java.util.Optional;
 @Transactional
 public class AddressService {
 
+    public static final int MAX_SEARCH_RESULTS = 500;
+
+    // A circle is covered by at most this many geohash cells, each read as one index range.
+    private static final int MAX_COVERING_CELLS = 9;
+    private static final double INITIAL_NEAREST_RADIUS_METERS = 1_000;
+    private static final double NEAREST_RADIUS_GROWTH = 4;
+    private static final int COORDINATE_SCALE = 6;
+
+    private static final String DISTANCE_SQL = """
+            2 * %s * asin(least(1, sqrt(
+                power(sin(radians(a.latitude::float8 - ?) / 2), 2)
+                + cos(radians(?)) * cos(radians(a.latitude::float8)) * power(sin(radians(a.longitude::float8 - ?) / 2), 2))))
+            """.formatted(GeoHash.EARTH_RADIUS_METERS);
+
+    // The candidate filter is filled in per search: one geohash range per covering prefix, each an
+    // index range scan, or TRUE when the circle is too large to cover. The exact distance then drops
+    // the parts of those cells outside the circle.
+    private static final String NEARBY_SQL = """
+            SELECT n.*, u.id AS user_id
+            FROM (
+                SELECT a.id, a.street, a.city, a.state, a.postal_code, a.country, a.latitude, a.longitude, d.distance
+                FROM addresses a
+                CROSS JOIN LATERAL (SELECT %s AS distance) d
+                WHERE a.latitude IS NOT NULL AND (%%s) AND d.distance <= ?
+                ORDER BY d.distance, a.id
+                LIMIT ?
+            ) n
+            LEFT JOIN users u ON u.address_id = n.id
+            ORDER BY n.distance, n.id
+            """.formatted(DISTANCE_SQL);
+
+    private static final String GEOHASH_RANGE_SQL = "a.geohash >= ? AND a.geohash < ?";
+
+    // Sorts after every geohash character, so [prefix, prefix + '~') holds exactly the prefix's cell.
+    private static final String GEOHASH_RANGE_END = "~";
+
+    private static final RowMapper<NearbyAddress> NEARBY_ADDRESS_MAPPER = (rs, rowNum) -> NearbyAddress.builder()
+            .addressId(rs.getLong("id"))
+            .userId(rs.getObject("user_id", Long.class))
+            .street(rs.getString("street"))
+            .city(rs.getString("city"))
+            .state(rs.getString("state"))
+            .postalCode(rs.getString("postal_code"))
+            .country(rs.getString("country"))
+            .latitude(rs.getBigDecimal("latitude"))
+            .longitude(rs.getBigDecimal("longitude"))
+            .distanceMeters(rs.getDouble("distance"))
+            .build();
+
     private final AddressRepository addressRepository;
     private final UserRepository userRepository;
+    private final StatisticsService statisticsService;
+    private final JdbcTemplate jdbcTemplate;
 
     public Address createAddress(Address address) {
         log.info("Creating address");
+        normaliseCoordinates(address);
+        normaliseForMatching(address);
+        markStatisticsDirty();
         return addressRepository.save(address);
     }
 
@@ -41,7 +106,10 @@ public class AddressService {
             throw new IllegalArgumentException("User already has an address. Use update instead.");
         }
 
+        normaliseCoordinates(address);
+        normaliseForMatching(address);
         address = addressRepository.save(address);
+        markStatisticsDirty();
         user.setAddress(address);
         userRepository.save(user);
         
@@ -61,17 +129,20 @@ public class AddressService {
 
     @Transactional(readOnly = true)
     public List<Address> getAddressesByCity(String city) {
-        return addressRepository.findByCity(city);
+        String normalised = AddressNormalizer.normalise(city);
+        return normalised == null ? List.of() : addressRepository.findByNormalisedCity(normalised);
     }
 
     @Transactional(readOnly = true)
     public List<Address> getAddressesByState(String state) {
-        return addressRepository.findByState(state);
+        String normalised = AddressNormalizer.normalise(state);
+        return normalised == null ? List.of() : addressRepository.findByNormalisedState(normalised);
     }
 
     @Transactional(readOnly = true)
     public List<Address> getAddressesByCountry(String country) {
-        return addressRepository.findByCountry(country);
+        String normalised = AddressNormalizer.normalise(country);
+        return normalised == null ? List.of() : addressRepository.findByNormalisedCountry(normalised);
     }
 
     @Transactional(readOnly = true)
@@ -81,7 +152,7 @@ public class AddressService {
 
     @Transactional(readOnly = true)
     public List<Address> getAddressesByStreetAndCityAndState(String street, String city, String state) {
-        return addressRepository.findByStreetAndCityAndState(street, city, state);
+        return addressRepository.findByMatchKey(AddressNormalizer.matchKey(street, city, state));
     }
 
     @Transactional(readOnly = true)
@@ -110,7 +181,10 @@ public class AddressService {
         address.setLongitude(addressDetails.getLongitude());
         address.setLatitude(addressDetails.getLatitude());
         address.setAddressType(addressDetails.getAddressType());
+        normaliseCoordinates(address);
+        normaliseForMatching(address);
 
+        markStatisticsDirty();
         return addressRepository.save(address);
     }
 
@@ -135,7 +209,10 @@ public class AddressService {
         address.setLongitude(addressDetails.getLongitude());
         address.setLatitude(addressDetails.getLatitude());
         address.setAddressType(addressDetails.getAddressType());
+        normaliseCoordinates(address);
+        normaliseForMatching(address);
 
+        markStatisticsDirty();
         return addressRepository.save(address);
     }
 
@@ -146,6 +223,7 @@ public class AddressService {
             throw new ResourceNotFoundException("Address not found with id: " + id);
         }
         
+        markStatisticsDirty();
         addressRepository.deleteById(id);
     }
 
@@ -162,6 +240,7 @@ public class AddressService {
 
         user.setAddress(null);
         userRepository.save(user);
+        markStatisticsDirty();
         addressRepository.deleteById(address.getId());
     }
 
@@ -179,16 +258,148 @@ public class AddressService {
 
     @Transactional(readOnly = true)
     public long countAddressesByCity(String city) {
-        return addressRepository.findByCity(city).size();
+        String normalised = AddressNormalizer.normalise(city);
+        return normalised == null ? 0 : addressRepository.countByNormalisedCity(normalised);
     }
 
     @Transactional(readOnly = true)
     public long countAddressesByState(String state) {
-        return addressRepository.findByState(state).size();
+        String normalised = AddressNormalizer.normalise(state);
+        return normalised == null ? 0 : addressRepository.countByNormalisedState(normalised);
     }
 
     @Transactional(readOnly = true)
     public long countAddressesByCountry(String country) {
-        return addressRepository.findByCountry(country).size();
+        String normalised = AddressNormalizer.normalise(country);
+        return normalised == null ? 0 : addressRepository.countByNormalisedCountry(normalised);
+    }
+
+    /**
+     * Other stored addresses that normalise to the same street, city, state and country, oldest
+     * first. Works for an address that has not been saved yet, e.g. to warn before creating it.
+     */
+    @Transactional(readOnly = true)
+    public List<Address> findDuplicateAddresses(Address address) {
+        // Like the deduplication job, addresses without a street are never called duplicates.
+        if (AddressNormalizer.normaliseStreet(address.getStreet()) == null) {
+            return List.of();
+        }
+        String matchKey = AddressNormalizer.matchKey(address.getStreet(), address.getCity(), address.getState());
+        String country = AddressNormalizer.normalise(address.getCountry());
+        return addressRepository.findByMatchKey(matchKey).stream()
+                .filter(candidate -> !candidate.getId().equals(address.getId()))
+                .filter(candidate -> Objects.equals(candidate.getNormalisedCountry(), country))
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<Address> getDuplicateAddresses(Long id) {
+        Address address = addressRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Address not found with id: " + id));
+        return findDuplicateAddresses(address);
+    }
+
+    /**
+     * Addresses within {@code radiusMeters} of the given point, nearest first, together with the
+     * user living at each. Candidates are narrowed by geohash prefix and then filtered by exact
+     * great-circle distance.
+     */
+    @Transactional(readOnly = true)
+    public List<NearbyAddress> findAddressesWithinRadius(double latitude, double longitude, double radiusMeters, int limit) {
+        validatePoint(latitude, longitude);
+        if (!(radiusMeters > 0)) {
+            throw new IllegalArgumentException("Radius must be positive");
+        }
+        List<String> prefixes = GeoHash.coveringPrefixes(latitude, longitude, radiusMeters, MAX_COVERING_CELLS);
+        return findNearby(prefixes, latitude, longitude, radiusMeters, clampLimit(limit));
+    }
+
+    /**
+     * The {@code count} addresses nearest to the given point, nearest first. Searches a growing
+     * radius until it holds enough addresses; since every address inside the radius is considered,
+     * those found are the true nearest.
+     */
+    @Transactional(readOnly = true)
+    public List<NearbyAddress> findNearestAddresses(double latitude, double longitude, int count) {
+        validatePoint(latitude, longitude);
+        int limit = clampLimit(count);
+        double radius = INITIAL_NEAREST_RADIUS_METERS;
+        while (true) {
+            List<String> prefixes = GeoHash.coveringPrefixes(latitude, longitude, radius, MAX_COVERING_CELLS);
+            if (prefixes == null) {
+                return findNearby(null, latitude, longitude, Double.MAX_VALUE, limit);
+            }
+            List<NearbyAddress> found = findNearby(prefixes, latitude, longitude, radius, limit);
+            if (found.size() >= limit) {
+                return found;
+            }
+            radius *= NEAREST_RADIUS_GROWTH;
+        }
+    }
+
+    /** Addresses within the radius, restricted to the cells of {@code prefixes} unless it is null. */
+    private List<NearbyAddress> findNearby(List<String> prefixes, double latitude, double longitude,
+                                           double radiusMeters, int limit) {
+        List<Object> args = new ArrayList<>();
+        args.add(latitude);
+        args.add(latitude);
+        args.add(longitude);
+        String candidates = "TRUE";
+        if (prefixes != null) {
+            candidates = String.join(" OR ", Collections.nCopies(prefixes.size(), "(" + GEOHASH_RANGE_SQL + ")"));
+            for (String prefix : prefixes) {
+                args.add(prefix);
+                args.add(prefix + GEOHASH_RANGE_END);
+            }
+        }
+        args.add(radiusMeters);
+        args.add(limit);
+        return jdbcTemplate.query(NEARBY_SQL.formatted(candidates), NEARBY_ADDRESS_MAPPER, args.toArray());
+    }
+
+    private static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS));
+    }
+
+    private static void validatePoint(double latitude, double longitude) {
+        if (!(Math.abs(latitude) <= 90) || !(Math.abs(longitude) <= 180)) {
+            throw new IllegalArgumentException("Latitude must be within [-90, 90] and longitude within [-180, 180]");
+        }
+    }
+
+    /**
+     * Keeps the match key and normalised fields in step with the address. A changed key drops the
+     * duplicate mark; the deduplication job re-marks the address on its next run if it applies.
+     */
+    private static void normaliseForMatching(Address address) {
+        String matchKey = AddressNormalizer.matchKey(address.getStreet(), address.getCity(), address.getState());
+        String country = AddressNormalizer.normalise(address.getCountry());
+        if (address.getId() == null || !matchKey.equals(address.getMatchKey())
+                || !Objects.equals(country, address.getNormalisedCountry())) {
+            address.setDuplicateOfId(null);
+        }
+        address.setMatchKey(matchKey);
+        address.setNormalisedCity(AddressNormalizer.normalise(address.getCity()));
+        address.setNormalisedState(AddressNormalizer.normalise(address.getState()));
+        address.setNormalisedCountry(country);
+    }
+
+    /** Rejects half or out-of-range coordinates and rounds them to the stored six decimal places. */
+    private static void normaliseCoordinates(Address address) {
+        BigDecimal latitude = address.getLatitude();
+        BigDecimal longitude = address.getLongitude();
+        if (latitude == null && longitude == null) {
+            return;
+        }
+        if (latitude == null || longitude == null) {
+            throw new IllegalArgumentException("Latitude and longitude must be given together");
+        }
+        validatePoint(latitude.doubleValue(), longitude.doubleValue());
+        address.setLatitude(latitude.setScale(COORDINATE_SCALE, RoundingMode.HALF_UP));
+        address.setLongitude(longitude.setScale(COORDINATE_SCALE, RoundingMode.HALF_UP));
+    }
+
+    private void markStatisticsDirty() {
+        statisticsService.markDirty(StatisticsDimension.ADDRESSES_BY_COUNTRY, StatisticsDimension.ADDRESSES_BY_CITY);
     }
 }
@@ -1,6 +1,7 @@
 package com.octopus.user_identity_service.service;
 
 import com.octopus.user_identity_service.dto.AuthRequest;
+import com.octopus.user_identity_service.dto.LoginRisk;
 import com.octopus.user_identity_service.dto.RegisterRequest;
 import com.octopus.user_identity_service.exception.AuthenticationException;
 import com.octopus.user_identity_service.exception.UserAlreadyExistsException;
@@ -9,6 +10,9 @@ import com.octopus.user_identity_service.model.User;
 import com.octopus.user_identity_service.repository.RoleRepository;
 import com.octopus.user_identity_service.repository.UserRepository;
 import com.octopus.user_identity_service.security.CustomUserDetails;
+import com.octopus.user_identity_service.util.DeviceFingerprint;
+import com.octopus.user_identity_service.util.GeoIpDatabase;
+import com.octopus.user_identity_service.util.IpAddressNormalizer;
 import com.octopus.user_identity_service.util.JwtUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,6 +24,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.net.InetAddress;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
@@ -34,6 +39,9 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
+    private final DeviceService deviceService;
+    private final GeoLocationService geoLocationService;
+    private final LoginRiskService loginRiskService;
 
     @Transactional
     public User register(RegisterRequest request) {
@@ -68,7 +76,7 @@ public class AuthService {
     }
 
     @Transactional
-    public User authenticate(AuthRequest request) {
+    public User authenticate(AuthRequest request, String clientAddress) {
         try {
             Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
@@ -82,11 +90,13 @@ public class AuthService {
             User user = userRepository.findByUsernameOrEmail(request.getUsername())
                     .orElseThrow(() -> new AuthenticationException("User not found"));
 
-            // Update last login time
+            // Update last login time and where it came from
             user.setLastLoginAt(LocalDateTime.now());
+            locateLogin(user, clientAddress);
             userRepository.save(user);
 
-            log.info("User authenticated successfully: {}", user.getUsername());
+            log.info("User authenticated successfully: {} (country {}, ASN {})", user.getUsername(),
+                    user.getLastLoginCountry(), user.getLastLoginAsn());
             return user;
 
         } catch (Exception e) {
@@ -95,6 +105,47 @@ public class AuthService {
         }
     }
 
+    /**
+     * Classifies the device a login came from as known or new for the user. Returns null when the
+     * request describes no device.
+     */
+    public Boolean isKnownDevice(User user, AuthRequest request, String userAgentHeader) {
+        String userAgent = request.getUserAgent() != null ? request.getUserAgent() : userAgentHeader;
+        return deviceService.isKnownDevice(user.getId(), userAgent, request.getOs(), request.getDeviceModel(),
+                request.getMacAddress());
+    }
+
+    /**
+     * Scores how unfamiliar the login's device and network are to the user, from 0 (seen before)
+     * to 1, so the client can ask for a second factor. Answered from memory for returning users.
+     */
+    public LoginRisk assessLoginRisk(User user, AuthRequest request, String userAgentHeader, String clientAddress) {
+        return loginRiskService.assess(user.getId(), Boolean.TRUE.equals(user.getTwoFactorEnabled()),
+                fingerprint(request, userAgentHeader), parseClientAddress(clientAddress));
+    }
+
+    private static String fingerprint(AuthRequest request, String userAgentHeader) {
+        String userAgent = request.getUserAgent() != null ? request.getUserAgent() : userAgentHeader;
+        return DeviceFingerprint.of(userAgent, request.getOs(), request.getDeviceModel(), request.getMacAddress());
+    }
+
+    private void locateLogin(User user, String clientAddress) {
+        if (!geoLocationService.isAvailable()) {
+            return;
+        }
+        long location = geoLocationService.lookup(parseClientAddress(clientAddress));
+        user.setLastLoginCountry(GeoIpDatabase.countryCode(location));
+        user.setLastLoginAsn(GeoIpDatabase.asn(location));
+    }
+
+    private static InetAddress parseClientAddress(String clientAddress) {
+        try {
+            return IpAddressNormalizer.parse(clientAddress);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     @Transactional(readOnly = true)
     public User refreshToken(String refreshToken) {
         try {
@@ -0,0 +1,200 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.BalanceDistribution;
+import com.octopus.user_identity_service.dto.BalanceHistogramBucket;
+import com.octopus.user_identity_service.enums.AccountType;
+import com.octopus.user_identity_service.util.QuantileSketch;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Balance percentiles and histograms per currency and account type, served from in-memory
+ * {@link QuantileSketch}es instead of sorting the accounts table. Balance changes made through
+ * {@link AccountService} and {@link BatchTransferService} move the account's value in its sketch
+ * once the change commits. The sketches are also rebuilt from a streamed scan of accounts on a
+ * schedule, which picks up writes from other instances or outside the services and bounds any
+ * drift to one rebuild interval.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceDistributionService {
+
+    private static final String BALANCES_SQL = """
+            SELECT currency, account_type,
+                   COALESCE(balance, 0) + COALESCE((SELECT SUM(s.balance) FROM account_balance_stripes s
+                                                    WHERE s.account_id = accounts.id), 0) AS balance
+            FROM accounts
+            """;
+
+    private static final Comparator<SketchKey> KEY_ORDER = Comparator
+            .comparing(SketchKey::currency, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(SketchKey::accountType, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Object rebuildLock = new Object();
+    private volatile Map<SketchKey, QuantileSketch> sketches;
+    private volatile LocalDateTime rebuiltAt;
+
+    @Value("${balances.distribution.relative-accuracy:0.01}")
+    private double relativeAccuracy;
+
+    @Value("${balances.distribution.fetch-size:1000}")
+    private int fetchSize;
+
+    public void recordAdded(String currency, AccountType accountType, BigDecimal balance) {
+        afterCommit(() -> sketch(new SketchKey(currency, accountType)).add(toDouble(balance)));
+    }
+
+    public void recordRemoved(String currency, AccountType accountType, BigDecimal balance) {
+        afterCommit(() -> sketch(new SketchKey(currency, accountType)).remove(toDouble(balance)));
+    }
+
+    public void recordChanged(String currency, AccountType accountType, BigDecimal before, BigDecimal after) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        afterCommit(() -> {
+            QuantileSketch sketch = sketch(new SketchKey(currency, accountType));
+            sketch.remove(toDouble(before));
+            sketch.add(toDouble(after));
+        });
+    }
+
+    /**
+     * Distributions for every currency and account type matching the optional filters.
+     * {@code percentiles} are in percent, e.g. 50, 90, 99.9.
+     */
+    public List<BalanceDistribution> getDistributions(String currency, AccountType accountType, List<Double> percentiles) {
+        for (Double percentile : percentiles) {
+            if (percentile == null || percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentiles must be between 0 and 100");
+            }
+        }
+
+        return sketches().entrySet().stream()
+                .filter(entry -> currency == null || currency.equals(entry.getKey().currency()))
+                .filter(entry -> accountType == null || accountType == entry.getKey().accountType())
+                .filter(entry -> entry.getValue().getCount() > 0)
+                .sorted(Map.Entry.comparingByKey(KEY_ORDER))
+                .map(entry -> toDistribution(entry.getKey(), entry.getValue(), percentiles))
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${balances.distribution.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long started = System.nanoTime();
+            Map<SketchKey, QuantileSketch> rebuilt = new ConcurrentHashMap<>();
+            // Postgres only honours the fetch size inside a transaction.
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(BALANCES_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, rs -> {
+                String type = rs.getString("account_type");
+                SketchKey key = new SketchKey(rs.getString("currency"), type == null ? null : AccountType.valueOf(type));
+                rebuilt.computeIfAbsent(key, k -> new QuantileSketch(relativeAccuracy))
+                        .add(toDouble(rs.getBigDecimal("balance")));
+            }));
+
+            sketches = rebuilt;
+            rebuiltAt = LocalDateTime.now();
+            log.info("Rebuilt {} balance distribution sketches in {} ms", rebuilt.size(),
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    private BalanceDistribution toDistribution(SketchKey key, QuantileSketch sketch, List<Double> percentiles) {
+        Map<String, BigDecimal> values = new LinkedHashMap<>();
+        for (Double percentile : percentiles) {
+            String label = "p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString();
+            values.put(label, toAmount(sketch.quantile(percentile / 100)));
+        }
+
+        List<BalanceHistogramBucket> histogram = sketch.decadeHistogram().stream()
+                .map(band -> BalanceHistogramBucket.builder()
+                        .lowerBound(toAmount(band.lower()))
+                        .upperBound(toAmount(band.upper()))
+                        .accountCount(band.count())
+                        .build())
+                .toList();
+
+        return BalanceDistribution.builder()
+                .currency(key.currency())
+                .accountType(key.accountType())
+                .accountCount(sketch.getCount())
+                .relativeAccuracy(sketch.getRelativeAccuracy())
+                .percentiles(values)
+                .histogram(histogram)
+                .rebuiltAt(rebuiltAt)
+                .build();
+    }
+
+    private Map<SketchKey, QuantileSketch> sketches() {
+        Map<SketchKey, QuantileSketch> current = sketches;
+        if (current == null) {
+            synchronized (rebuildLock) {
+                if (sketches == null) {
+                    rebuild();
+                }
+                current = sketches;
+            }
+        }
+        return current;
+    }
+
+    /** Changes that arrive before the first rebuild are skipped; the rebuild will see them. */
+    private QuantileSketch sketch(SketchKey key) {
+        Map<SketchKey, QuantileSketch> current = sketches;
+        return current == null
+                ? new QuantileSketch(relativeAccuracy)
+                : current.computeIfAbsent(key, k -> new QuantileSketch(relativeAccuracy));
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+
+    private static double toDouble(BigDecimal balance) {
+        return balance == null ? 0 : balance.doubleValue();
+    }
+
+    private static BigDecimal toAmount(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    private record SketchKey(String currency, AccountType accountType) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sub-balance rows for hot accounts. Credits to a striped account update one randomly chosen
+ * stripe and never touch the accounts row, so concurrent deposits contend on N rows instead of one.
+ * Anything that needs the exact balance (debits, admin overrides, the consolidator) locks the
+ * accounts row first and then the stripes, always in that order, and folds the stripes back into
+ * accounts.balance before acting.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(propagation = Propagation.MANDATORY)
+public class BalanceStripeService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Adds {@code amount} to a random stripe of the account. Returns false if the stripes are gone,
+     * i.e. striping was disabled after the caller read the stripe count.
+     */
+    public boolean credit(Long accountId, int stripes, BigDecimal amount, LocalDateTime now) {
+        int stripe = ThreadLocalRandom.current().nextInt(stripes);
+        return jdbcTemplate.update(
+                "UPDATE account_balance_stripes SET balance = balance + ?, updated_at = ? WHERE account_id = ? AND stripe = ?",
+                amount, Timestamp.valueOf(now), accountId, stripe) == 1;
+    }
+
+    /**
+     * Locks the account and its stripes, moves everything on the stripes into accounts.balance and
+     * returns the amount moved. The row locks are held until the caller's transaction ends.
+     */
+    public BigDecimal fold(Long accountId) {
+        jdbcTemplate.queryForList("SELECT id FROM accounts WHERE id = ? FOR UPDATE", Long.class, accountId);
+        // Lock every stripe, not just the non-zero ones: a stripe that is still empty here could be
+        // credited before the zeroing UPDATE below and would otherwise be wiped without being folded.
+        List<BigDecimal> stripeBalances = jdbcTemplate.queryForList(
+                "SELECT balance FROM account_balance_stripes WHERE account_id = ? ORDER BY stripe FOR UPDATE",
+                BigDecimal.class, accountId);
+
+        BigDecimal folded = stripeBalances.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (folded.signum() == 0) {
+            return folded;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("UPDATE account_balance_stripes SET balance = 0, updated_at = ? WHERE account_id = ? AND balance <> 0",
+                Timestamp.valueOf(now), accountId);
+        jdbcTemplate.update("UPDATE accounts SET balance = COALESCE(balance, 0) + ?, last_activity_at = ?, updated_at = ? WHERE id = ?",
+                folded, Timestamp.valueOf(now), Timestamp.valueOf(now), accountId);
+        return folded;
+    }
+
+    /** Folds the account and debits it if the consolidated balance covers {@code amount}. */
+    public boolean debit(Long accountId, BigDecimal amount, LocalDateTime now) {
+        fold(accountId);
+        return jdbcTemplate.update(
+                "UPDATE accounts SET balance = balance - ?, last_activity_at = ?, updated_at = ? WHERE id = ? AND balance >= ?",
+                amount, Timestamp.valueOf(now), Timestamp.valueOf(now), accountId, amount) == 1;
+    }
+
+    /** (Re)creates {@code stripes} empty stripes, folding any existing ones first. */
+    public void enable(Long accountId, int stripes) {
+        disable(accountId);
+        jdbcTemplate.update("""
+                INSERT INTO account_balance_stripes (account_id, stripe, balance)
+                SELECT ?, gs, 0 FROM generate_series(0, ? - 1) gs
+                """, accountId, stripes);
+        jdbcTemplate.update("UPDATE accounts SET balance_stripes = ? WHERE id = ?", stripes, accountId);
+    }
+
+    public void disable(Long accountId) {
+        fold(accountId);
+        jdbcTemplate.update("DELETE FROM account_balance_stripes WHERE account_id = ?", accountId);
+        jdbcTemplate.update("UPDATE accounts SET balance_stripes = 0 WHERE id = ?", accountId);
+    }
+
+    @Scheduled(fixedDelayString = "${accounts.stripes.consolidate-interval-ms:5000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void consolidateStripes() {
+        int consolidated = 0;
+        for (Long accountId : accountRepository.findStripedAccountIds()) {
+            // One short transaction per account so a hot account is only blocked for its own fold.
+            BigDecimal folded = transactionTemplate.execute(status -> fold(accountId));
+            if (folded != null && folded.signum() != 0) {
+                consolidated++;
+            }
+        }
+        if (consolidated > 0) {
+            log.debug("Consolidated balance stripes for {} accounts", consolidated);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.CurrencyBalance;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user, per-currency balance totals. A trigger on accounts appends every balance, currency or
+ * ownership change to user_balance_deltas; {@link #foldDeltas} periodically moves them into
+ * user_balance_summaries. A read adds the user's summary rows, their pending deltas and any credits
+ * still on balance stripes in one statement, so it is exact and costs O(currencies) rather than
+ * O(accounts). Results are cached per user and evicted when a balance change for that user commits;
+ * writes that bypass {@link AccountService} are picked up when the entry expires.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceSummaryService {
+
+    private static final String SUMMARY_SQL = """
+            SELECT currency, SUM(balance) AS balance, SUM(account_count) AS account_count
+            FROM (
+                SELECT currency, balance, account_count
+                FROM user_balance_summaries WHERE user_id = ?
+                UNION ALL
+                SELECT currency, balance_delta, account_delta
+                FROM user_balance_deltas WHERE user_id = ?
+                UNION ALL
+                SELECT a.currency, st.balance, 0
+                FROM accounts a JOIN account_balance_stripes st ON st.account_id = a.id
+                WHERE a.user_id = ? AND a.balance_stripes > 0
+            ) b
+            GROUP BY currency
+            HAVING SUM(account_count) > 0
+            ORDER BY currency
+            """;
+
+    /** Folds the oldest batch of deltas and returns how many were folded. */
+    private static final String FOLD_SQL = """
+            WITH folded AS (
+                DELETE FROM user_balance_deltas
+                WHERE id IN (SELECT id FROM user_balance_deltas ORDER BY id LIMIT ?)
+                RETURNING user_id, currency, balance_delta, account_delta
+            ), applied AS (
+                INSERT INTO user_balance_summaries AS s (user_id, currency, balance, account_count, updated_at)
+                SELECT f.user_id, f.currency, SUM(f.balance_delta), SUM(f.account_delta), now()
+                FROM folded f
+                WHERE EXISTS (SELECT 1 FROM users u WHERE u.id = f.user_id)
+                GROUP BY f.user_id, f.currency
+                ON CONFLICT (user_id, currency) DO UPDATE
+                SET balance = s.balance + EXCLUDED.balance,
+                    account_count = s.account_count + EXCLUDED.account_count,
+                    updated_at = EXCLUDED.updated_at
+            )
+            SELECT COUNT(*) FROM folded
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, CachedSummary> cache = new ConcurrentHashMap<>();
+
+    @Value("${balances.summary.cache-ttl-ms:5000}")
+    private long cacheTtlMs;
+
+    @Value("${balances.summary.cache-max-entries:10000}")
+    private int cacheMaxEntries;
+
+    @Value("${balances.summary.fold-batch-size:5000}")
+    private int foldBatchSize;
+
+    public List<CurrencyBalance> getBalanceSummary(Long userId) {
+        long now = System.currentTimeMillis();
+        CachedSummary cached = cache.get(userId);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.balances();
+        }
+
+        List<CurrencyBalance> balances = List.copyOf(jdbcTemplate.query(SUMMARY_SQL, (rs, rowNum) -> CurrencyBalance.builder()
+                .currency(rs.getString("currency"))
+                .balance(rs.getBigDecimal("balance"))
+                .accountCount(rs.getLong("account_count"))
+                .build(), userId, userId, userId));
+
+        if (cache.size() >= cacheMaxEntries) {
+            cache.clear();
+        }
+        cache.put(userId, new CachedSummary(balances, now + cacheTtlMs));
+        return balances;
+    }
+
+    /** Sum over all currencies, kept for callers that predate per-currency totals. */
+    public BigDecimal getTotalBalance(Long userId) {
+        return getBalanceSummary(userId).stream()
+                .map(CurrencyBalance::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    /** Drops the cached summaries of these users once the current transaction commits. */
+    public void evict(Long... userIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictNow(userIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictNow(userIds);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${balances.summary.fold-interval-ms:1000}")
+    public void foldDeltas() {
+        // Folding moves amounts between two tables a reader sums together, so cached totals stay valid.
+        int folded;
+        do {
+            folded = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(FOLD_SQL, Integer.class, foldBatchSize));
+            if (folded > 0) {
+                log.debug("Folded {} balance deltas into user summaries", folded);
+            }
+        } while (folded >= foldBatchSize);
+    }
+
+    private void evictNow(Long... userIds) {
+        for (Long userId : userIds) {
+            cache.remove(userId);
+        }
+    }
+
+    private record CachedSummary(List<CurrencyBalance> balances, long expiresAt) {
+    }
+}
@@ -0,0 +1,220 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.BatchTransferRequest;
+import com.octopus.user_identity_service.dto.BatchTransferResult;
+import com.octopus.user_identity_service.dto.TransferLeg;
+import com.octopus.user_identity_service.dto.TransferLegResult;
+import com.octopus.user_identity_service.enums.AccountType;
+import com.octopus.user_identity_service.enums.BatchTransferMode;
+import com.octopus.user_identity_service.exception.VelocityLimitExceededException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Applies many transfers in one transaction. Every account the batch touches is locked once, in
+ * ascending id order like single transfers, and striped accounts are folded as their row is
+ * reached, so batches cannot deadlock with each other or with {@link AccountService#transfer}.
+ * Legs are then replayed in request order against the locked balances in memory, and only the net
+ * change per account is written, as one JDBC batch.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class BatchTransferService {
+
+    private static final String LOCK_SQL = """
+            SELECT id, user_id, currency, account_type, COALESCE(balance, 0) AS balance, balance_stripes
+            FROM accounts
+            WHERE id = ?
+            FOR UPDATE
+            """;
+
+    private static final String APPLY_SQL =
+            "UPDATE accounts SET balance = COALESCE(balance, 0) + ?, last_activity_at = ?, updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BalanceStripeService balanceStripeService;
+    private final LedgerService ledgerService;
+    private final BalanceSummaryService balanceSummaryService;
+    private final BalanceDistributionService balanceDistributionService;
+    private final VelocityLimiter velocityLimiter;
+
+    @Value("${accounts.batch-transfer.max-legs:5000}")
+    private int maxLegs;
+
+    /**
+     * In {@link BatchTransferMode#ATOMIC} mode nothing is written unless every leg can be applied;
+     * in {@link BatchTransferMode#BEST_EFFORT} mode failing legs are skipped. Either way each leg's
+     * outcome is reported, and a leg may spend money credited by an earlier leg of the same batch.
+     */
+    public BatchTransferResult transfer(BatchTransferRequest request) {
+        List<TransferLeg> legs = request.getLegs();
+        if (legs == null || legs.isEmpty()) {
+            throw new IllegalArgumentException("Batch transfer must contain at least one leg");
+        }
+        if (legs.size() > maxLegs) {
+            throw new IllegalArgumentException("Batch transfer cannot contain more than " + maxLegs + " legs");
+        }
+        BatchTransferMode mode = request.getMode() != null ? request.getMode() : BatchTransferMode.ATOMIC;
+        log.info("Applying batch transfer of {} legs in {} mode", legs.size(), mode);
+
+        Map<Long, LockedAccount> locked = new HashMap<>();
+        Map<Long, BigDecimal> balances = lockAccounts(legs, locked);
+        Map<Long, BigDecimal> opening = new HashMap<>(balances);
+
+        List<TransferLegResult> results = new ArrayList<>(legs.size());
+        List<TransferLeg> applied = new ArrayList<>(legs.size());
+        List<VelocityLimiter.Reservation> reservations = new ArrayList<>(legs.size());
+        for (int i = 0; i < legs.size(); i++) {
+            TransferLeg leg = legs.get(i);
+            String rejection = check(leg, balances);
+            if (rejection == null) {
+                try {
+                    reservations.add(velocityLimiter.reserve(leg.getFromAccountId(), leg.getAmount()));
+                } catch (VelocityLimitExceededException e) {
+                    rejection = e.getMessage();
+                }
+            }
+            if (rejection == null) {
+                balances.merge(leg.getFromAccountId(), leg.getAmount().negate(), BigDecimal::add);
+                balances.merge(leg.getToAccountId(), leg.getAmount(), BigDecimal::add);
+                applied.add(leg);
+            }
+            results.add(TransferLegResult.builder()
+                    .index(i)
+                    .applied(rejection == null)
+                    .message(rejection)
+                    .build());
+        }
+
+        int rejected = legs.size() - applied.size();
+        if (mode == BatchTransferMode.ATOMIC && rejected > 0) {
+            log.info("Batch transfer rejected: {} of {} legs cannot be applied", rejected, legs.size());
+            // Nothing has been written yet, so the legs that would have succeeded are not applied either.
+            reservations.forEach(VelocityLimiter.Reservation::release);
+            results.stream().filter(TransferLegResult::isApplied).forEach(result -> {
+                result.setApplied(false);
+                result.setMessage("Not applied because another leg of the atomic batch was rejected");
+            });
+            return result(mode, false, 0, rejected, 0, results);
+        }
+
+        int accountsUpdated = applyNetChanges(opening, balances, locked);
+        ledgerService.postTransfers(applied);
+        balanceSummaryService.evict(applied.stream()
+                .flatMap(leg -> Stream.of(locked.get(leg.getFromAccountId()), locked.get(leg.getToAccountId())))
+                .map(LockedAccount::userId)
+                .distinct()
+                .toArray(Long[]::new));
+        log.info("Batch transfer applied {} legs ({} rejected) across {} accounts", applied.size(), rejected, accountsUpdated);
+        return result(mode, true, applied.size(), rejected, accountsUpdated, results);
+    }
+
+    /**
+     * Locks every referenced account in id order and returns its exact balance, recording each
+     * account's owner, currency and type in {@code locked}. Accounts are locked one at a time and a
+     * striped account is folded (account row, then stripes) before the next row is locked. Locking
+     * all rows first and folding afterwards would deadlock with a single transfer that has credited
+     * a stripe of a lower account and is waiting for the row of a higher one.
+     */
+    private Map<Long, BigDecimal> lockAccounts(List<TransferLeg> legs, Map<Long, LockedAccount> locked) {
+        TreeSet<Long> accountIds = new TreeSet<>();
+        for (TransferLeg leg : legs) {
+            if (leg != null && leg.getFromAccountId() != null) {
+                accountIds.add(leg.getFromAccountId());
+            }
+            if (leg != null && leg.getToAccountId() != null) {
+                accountIds.add(leg.getToAccountId());
+            }
+        }
+
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (Long accountId : accountIds) {
+            boolean[] striped = new boolean[1];
+            jdbcTemplate.query(LOCK_SQL, rs -> {
+                long id = rs.getLong("id");
+                balances.put(id, rs.getBigDecimal("balance"));
+                String accountType = rs.getString("account_type");
+                locked.put(id, new LockedAccount(rs.getLong("user_id"), rs.getString("currency"),
+                        accountType == null ? null : AccountType.valueOf(accountType)));
+                striped[0] = rs.getInt("balance_stripes") > 0;
+            }, accountId);
+            if (striped[0]) {
+                balances.merge(accountId, balanceStripeService.fold(accountId), BigDecimal::add);
+            }
+        }
+        return balances;
+    }
+
+    private static String check(TransferLeg leg, Map<Long, BigDecimal> balances) {
+        if (leg == null || leg.getFromAccountId() == null || leg.getToAccountId() == null || leg.getAmount() == null) {
+            return "Source account, destination account and amount are required";
+        }
+        if (leg.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            return "Transfer amount must be positive";
+        }
+        if (leg.getFromAccountId().equals(leg.getToAccountId())) {
+            return "Source and destination accounts must be different";
+        }
+        BigDecimal available = balances.get(leg.getFromAccountId());
+        if (available == null) {
+            return "Source account not found with id: " + leg.getFromAccountId();
+        }
+        if (!balances.containsKey(leg.getToAccountId())) {
+            return "Destination account not found with id: " + leg.getToAccountId();
+        }
+        if (available.compareTo(leg.getAmount()) < 0) {
+            return "Insufficient balance in source account";
+        }
+        return null;
+    }
+
+    private int applyNetChanges(Map<Long, BigDecimal> opening, Map<Long, BigDecimal> closing,
+                                Map<Long, LockedAccount> locked) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> updates = new ArrayList<>();
+        // Same id order as the locks were taken in, although every row is already held at this point.
+        for (Long id : new TreeSet<>(closing.keySet())) {
+            BigDecimal delta = closing.get(id).subtract(opening.get(id));
+            if (delta.signum() != 0) {
+                updates.add(new Object[] {delta, now, now, id});
+                LockedAccount account = locked.get(id);
+                balanceDistributionService.recordChanged(account.currency(), account.accountType(), opening.get(id), closing.get(id));
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(APPLY_SQL, updates);
+        }
+        return updates.size();
+    }
+
+    private static BatchTransferResult result(BatchTransferMode mode, boolean committed, int applied, int rejected,
+                                              int accountsUpdated, List<TransferLegResult> legs) {
+        return BatchTransferResult.builder()
+                .mode(mode)
+                .committed(committed)
+                .appliedLegs(applied)
+                .rejectedLegs(rejected)
+                .accountsUpdated(accountsUpdated)
+                .legs(legs)
+                .build();
+    }
+
+    private record LockedAccount(long userId, String currency, AccountType accountType) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.VerificationCandidate;
+import com.octopus.user_identity_service.enums.AccountStatus;
+import com.octopus.user_identity_service.enums.VerificationStatus;
+import com.octopus.user_identity_service.util.AccountNumberGenerator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Verifies active accounts of enabled users whose number is in a known format and refers everything
+ * else for manual review. An unknown format is not grounds for rejection: accounts opened before
+ * the generator could be given any number.
+ */
+@Component
+public class DefaultAccountVerifier implements AccountVerifier {
+
+    @Override
+    public VerificationStatus verify(VerificationCandidate candidate) {
+        if (AccountNumberGenerator.isValid(candidate.getAccountNumber())
+                && candidate.getStatus() == AccountStatus.ACTIVE && candidate.isUserEnabled()) {
+            return VerificationStatus.VERIFIED;
+        }
+        return VerificationStatus.REQUIRED;
+    }
+}
@@ -0,0 +1,225 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.DeviceHeartbeat;
+import com.octopus.user_identity_service.dto.DevicePresence;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Device presence pings. A ping only updates two in-memory maps: the pending last-seen time per
+ * device, where repeated pings coalesce into the latest one, and the online view per user. A
+ * scheduled flush writes all pending times with one UPDATE over unnest()ed arrays, so database
+ * load depends on the number of distinct devices per interval, not on the ping rate.
+ * <p>
+ * Pings are only accepted for devices the user owns. Each user's device ids are cached from the
+ * first ping on and reloaded when a ping names an unknown device, at most once per
+ * {@code devices.heartbeat.ownership-refresh-ms}, so a newly registered device is picked up quickly
+ * while pings for made-up ids cost no query. The flush UPDATE matches on the owner again, and a
+ * device deleted in the meantime is dropped at that point and removed from the online view.
+ * <p>
+ * Presence is per instance: the online view holds only the pings this instance received, so behind
+ * a load balancer {@link #getOnlineDevices} and {@link #countOnlineDevices} cover the devices whose
+ * pings were routed here. devices.last_seen_at is the cluster-wide record, at most one flush
+ * interval behind.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceHeartbeatService {
+
+    private static final String FLUSH_SQL = """
+            UPDATE devices d
+            SET last_seen_at = GREATEST(d.last_seen_at, v.seen_at)
+            FROM unnest(?::bigint[], ?::bigint[], ?::timestamp[]) AS v(device_id, user_id, seen_at)
+            WHERE d.id = v.device_id AND d.user_id = v.user_id
+            RETURNING d.id, d.user_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentHashMap<PingKey, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<Long, LocalDateTime>> online = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, OwnedDevices> owned = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Value("${devices.heartbeat.max-batch:1000}")
+    private int maxBatch;
+
+    @Value("${devices.heartbeat.flush-batch-size:5000}")
+    private int flushBatchSize;
+
+    @Value("${devices.heartbeat.ownership-refresh-ms:30000}")
+    private long ownershipRefreshMs;
+
+    @Value("${devices.presence.online-window-ms:180000}")
+    private long onlineWindowMs;
+
+    /**
+     * Records pings for devices of {@code userId} and returns how many were accepted. Pings without
+     * a device id or for devices the user does not own are ignored.
+     */
+    public int record(Long userId, List<DeviceHeartbeat> heartbeats) {
+        if (heartbeats == null || heartbeats.isEmpty()) {
+            throw new IllegalArgumentException("At least one heartbeat is required");
+        }
+        if (heartbeats.size() > maxBatch) {
+            throw new IllegalArgumentException("A heartbeat batch cannot contain more than " + maxBatch + " pings");
+        }
+
+        Set<Long> deviceIds = new HashSet<>();
+        for (DeviceHeartbeat heartbeat : heartbeats) {
+            if (heartbeat != null && heartbeat.getDeviceId() != null) {
+                deviceIds.add(heartbeat.getDeviceId());
+            }
+        }
+        if (deviceIds.isEmpty()) {
+            return 0;
+        }
+        Set<Long> ownedIds = ownedDevices(userId, deviceIds);
+
+        LocalDateTime now = LocalDateTime.now();
+        int accepted = 0;
+        for (DeviceHeartbeat heartbeat : heartbeats) {
+            if (heartbeat == null || heartbeat.getDeviceId() == null || !ownedIds.contains(heartbeat.getDeviceId())) {
+                continue;
+            }
+            LocalDateTime seenAt = heartbeat.getSeenAt() == null || heartbeat.getSeenAt().isAfter(now)
+                    ? now : heartbeat.getSeenAt();
+            pending.merge(new PingKey(heartbeat.getDeviceId(), userId), seenAt, DeviceHeartbeatService::latest);
+            online.computeIfAbsent(userId, id -> new ConcurrentHashMap<>())
+                    .merge(heartbeat.getDeviceId(), seenAt, DeviceHeartbeatService::latest);
+            accepted++;
+        }
+        return accepted;
+    }
+
+    /** The user's devices seen within the online window, most recent first. Never reads the database. */
+    public List<DevicePresence> getOnlineDevices(Long userId) {
+        Map<Long, LocalDateTime> devices = online.get(userId);
+        if (devices == null) {
+            return List.of();
+        }
+        LocalDateTime cutoff = onlineCutoff();
+        return devices.entrySet().stream()
+                .filter(entry -> entry.getValue().isAfter(cutoff))
+                .map(entry -> DevicePresence.builder().deviceId(entry.getKey()).lastSeenAt(entry.getValue()).build())
+                .sorted(Comparator.comparing(DevicePresence::getLastSeenAt).reversed())
+                .toList();
+    }
+
+    public long countOnlineDevices() {
+        LocalDateTime cutoff = onlineCutoff();
+        return online.values().stream()
+                .flatMap(devices -> devices.values().stream())
+                .filter(seenAt -> seenAt.isAfter(cutoff))
+                .count();
+    }
+
+    @Scheduled(fixedDelayString = "${devices.heartbeat.flush-interval-ms:5000}")
+    @PreDestroy
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Map.Entry<PingKey, LocalDateTime>> batch = new ArrayList<>(Math.min(pending.size(), flushBatchSize));
+            for (Map.Entry<PingKey, LocalDateTime> entry : pending.entrySet()) {
+                batch.add(Map.entry(entry.getKey(), entry.getValue()));
+                if (batch.size() == flushBatchSize) {
+                    write(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } catch (RuntimeException e) {
+            // Unwritten pings stay pending and go out with the next flush.
+            log.error("Failed to flush device heartbeats, will retry", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${devices.presence.prune-interval-ms:60000}")
+    public void pruneOffline() {
+        LocalDateTime cutoff = onlineCutoff();
+        for (Long userId : online.keySet()) {
+            online.computeIfPresent(userId, (id, devices) -> {
+                devices.values().removeIf(seenAt -> !seenAt.isAfter(cutoff));
+                return devices.isEmpty() ? null : devices;
+            });
+        }
+        // Ownership is reloaded on the next ping of a user who went offline.
+        owned.keySet().removeIf(userId -> !online.containsKey(userId));
+    }
+
+    private Set<Long> ownedDevices(Long userId, Set<Long> deviceIds) {
+        long now = System.currentTimeMillis();
+        OwnedDevices known = owned.get(userId);
+        if (known == null || (!known.deviceIds().containsAll(deviceIds) && now - known.loadedAt() >= ownershipRefreshMs)) {
+            known = new OwnedDevices(Set.copyOf(jdbcTemplate.queryForList(
+                    "SELECT id FROM devices WHERE user_id = ?", Long.class, userId)), now);
+            owned.put(userId, known);
+        }
+        return known.deviceIds();
+    }
+
+    private void write(List<Map.Entry<PingKey, LocalDateTime>> batch) {
+        Long[] deviceIds = new Long[batch.size()];
+        Long[] userIds = new Long[batch.size()];
+        String[] seenAt = new String[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            deviceIds[i] = batch.get(i).getKey().deviceId();
+            userIds[i] = batch.get(i).getKey().userId();
+            seenAt[i] = batch.get(i).getValue().toString();
+        }
+
+        Set<PingKey> updated = new HashSet<>(jdbcTemplate.query(FLUSH_SQL,
+                (rs, rowNum) -> new PingKey(rs.getLong("id"), rs.getLong("user_id")), deviceIds, userIds, seenAt));
+
+        for (Map.Entry<PingKey, LocalDateTime> entry : batch) {
+            PingKey key = entry.getKey();
+            // A newer ping that arrived during the write stays pending for the next flush.
+            pending.remove(key, entry.getValue());
+            if (!updated.contains(key)) {
+                log.debug("Dropped heartbeat for unknown device {} of user {}", key.deviceId(), key.userId());
+                Map<Long, LocalDateTime> devices = online.get(key.userId());
+                if (devices != null) {
+                    devices.remove(key.deviceId());
+                }
+                owned.remove(key.userId());
+            }
+        }
+        log.debug("Flushed {} device heartbeats", batch.size());
+    }
+
+    private LocalDateTime onlineCutoff() {
+        return LocalDateTime.now().minusNanos(onlineWindowMs * 1_000_000);
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private record PingKey(Long deviceId, Long userId) {
+    }
+
+    private record OwnedDevices(Set<Long> deviceIds, long loadedAt) {
+    }
+}
@@ -1,19 +1,30 @@
 package com.octopus.user_identity_service.service;
 
+import com.octopus.user_identity_service.dto.CursorPage;
+import com.octopus.user_identity_service.dto.DeviceSummary;
+import com.octopus.user_identity_service.enums.DeviceType;
+import com.octopus.user_identity_service.enums.StatisticsDimension;
 import com.octopus.user_identity_service.exception.ResourceNotFoundException;
 import com.octopus.user_identity_service.model.Device;
 import com.octopus.user_identity_service.model.User;
 import com.octopus.user_identity_service.repository.DeviceRepository;
 import com.octopus.user_identity_service.repository.UserRepository;
+import com.octopus.user_identity_service.util.CursorUtil;
+import com.octopus.user_identity_service.util.DeviceFingerprint;
+import com.octopus.user_identity_service.util.IpAddressNormalizer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.net.InetAddress;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -22,8 +33,16 @@ import java.util.Optional;
 @Transactional
 public class DeviceService {
 
+    private static final int DEVICE_LOCK_SPACE = 7_340_003;
+
     private final DeviceRepository deviceRepository;
     private final UserRepository userRepository;
+    private final StatisticsService statisticsService;
+    private final KnownDeviceRegistry knownDeviceRegistry;
+    private final GeoLocationService geoLocationService;
+    private final UserAgentService userAgentService;
+    private final LoginRiskService loginRiskService;
+    private final JdbcTemplate jdbcTemplate;
 
     public Device registerDevice(Device device, Long userId) {
         log.info("Registering device {} for user with id: {}", device.getName(), userId);
@@ -32,18 +51,42 @@ public class DeviceService {
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
 
         device.setUser(user);
-        
-        // If this is the first device or marked as primary, make it primary
-        if (device.getIsPrimary() || deviceRepository.countByUserId(userId) == 0) {
-            setAsPrimaryDevice(device.getId(), userId);
+        device.setFingerprint(fingerprint(device));
+
+        lockDevices(userId);
+        Optional<Device> existing = findRegistered(device);
+        if (existing.isPresent()) {
+            return refreshRegisteredDevice(existing.get(), device);
         }
 
-        return deviceRepository.save(device);
+        // If this is the first device or marked as primary, make it primary once it has an id
+        boolean makePrimary = Boolean.TRUE.equals(device.getIsPrimary()) || deviceRepository.countByUserId(userId) == 0;
+        return saveNewDevice(device, makePrimary);
     }
 
     public Device createDevice(Device device) {
         log.info("Creating device: {}", device.getName());
-        return deviceRepository.save(device);
+        device.setFingerprint(fingerprint(device));
+        if (device.getUser() == null) {
+            return saveNewDevice(device, false);
+        }
+
+        lockDevices(device.getUser().getId());
+        Optional<Device> existing = findRegistered(device);
+        if (existing.isPresent()) {
+            return refreshRegisteredDevice(existing.get(), device);
+        }
+        return saveNewDevice(device, Boolean.TRUE.equals(device.getIsPrimary()));
+    }
+
+    /**
+     * Whether the user has registered a device with these attributes. Returns null when the
+     * attributes are all blank and the device cannot be recognised either way.
+     */
+    @Transactional(readOnly = true)
+    public Boolean isKnownDevice(Long userId, String userAgent, String os, String deviceModel, String macAddress) {
+        String fingerprint = DeviceFingerprint.of(userAgent, os, deviceModel, macAddress);
+        return fingerprint == null ? null : knownDeviceRegistry.isKnown(userId, fingerprint);
     }
 
     @Transactional(readOnly = true)
@@ -52,8 +95,8 @@ public class DeviceService {
     }
 
     @Transactional(readOnly = true)
-    public List<Device> getDevicesByUserId(Long userId) {
-        return deviceRepository.findByUserId(userId);
+    public List<DeviceSummary> getDevicesByUserId(Long userId) {
+        return deviceRepository.findSummariesByUserId(userId);
     }
 
     @Transactional(readOnly = true)
@@ -62,25 +105,37 @@ public class DeviceService {
     }
 
     @Transactional(readOnly = true)
-    public List<Device> getActiveDevicesByUserId(Long userId) {
-        return deviceRepository.findByUserIdAndIsActiveTrue(userId);
+    public List<DeviceSummary> getActiveDevicesByUserId(Long userId) {
+        return deviceRepository.findActiveSummariesByUserId(userId);
     }
 
     @Transactional(readOnly = true)
-    public List<Device> getDevicesByIpAddress(String ipAddress) {
-        return deviceRepository.findByIpAddress(ipAddress);
+    public List<DeviceSummary> getDevicesByIpAddress(String ipAddress) {
+        // parse() drops a prefix length like the V16 conversion did; here it would mean a range.
+        if (ipAddress != null && ipAddress.contains("/")) {
+            throw new IllegalArgumentException("Use the IP range search for CIDR ranges");
+        }
+        InetAddress address = IpAddressNormalizer.parse(ipAddress);
+        if (address == null) {
+            throw new IllegalArgumentException("IP address is required");
+        }
+        return deviceRepository.findSummariesByIpAddress(address);
     }
 
     @Transactional(readOnly = true)
-    public List<Device> getDevicesByMacAddress(String macAddress) {
-        return deviceRepository.findByMacAddress(macAddress);
+    public Page<DeviceSummary> getDevicesByIpRange(String cidr, Pageable pageable) {
+        IpAddressNormalizer.Cidr range = IpAddressNormalizer.parseCidr(cidr);
+        return deviceRepository.findByIpAddressInRange(range.toString(), pageable).map(DeviceSummary::from);
     }
 
     @Transactional(readOnly = true)
-    public List<Device> getDevicesByType(String type) {
-        return deviceRepository.findAll().stream()
-                .filter(device -> device.getType() != null && device.getType().name().equals(type))
-                .toList();
+    public List<DeviceSummary> getDevicesByMacAddress(String macAddress) {
+        return deviceRepository.findSummariesByMacAddress(macAddress);
+    }
+
+    @Transactional(readOnly = true)
+    public List<DeviceSummary> getDevicesByType(DeviceType type) {
+        return deviceRepository.findSummariesByType(type);
     }
 
     @Transactional(readOnly = true)
@@ -89,8 +144,20 @@ public class DeviceService {
     }
 
     @Transactional(readOnly = true)
-    public Page<Device> getAllDevices(Pageable pageable) {
-        return deviceRepository.findAll(pageable);
+    public Page<DeviceSummary> getAllDevices(Pageable pageable) {
+        return deviceRepository.findAllSummaries(pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<DeviceSummary> getDevicesByCursor(String cursor, int size, boolean includeTotal) {
+        int pageSize = CursorUtil.clampPageSize(size);
+        List<DeviceSummary> rows = deviceRepository.findSummariesByIdGreaterThan(CursorUtil.decode(cursor), Limit.of(pageSize + 1));
+
+        CursorPage<DeviceSummary> page = CursorPage.of(rows, pageSize, DeviceSummary::getId);
+        if (includeTotal) {
+            page.setTotalElements(deviceRepository.count());
+        }
+        return page;
     }
 
     public Device updateDevice(Long id, Device deviceDetails) {
@@ -107,8 +174,24 @@ public class DeviceService {
         device.setIpAddress(deviceDetails.getIpAddress());
         device.setMacAddress(deviceDetails.getMacAddress());
         device.setUserAgent(deviceDetails.getUserAgent());
+        // Otherwise getUserAgent() falls back to the interned entry and a cleared user agent is kept.
+        device.setUserAgentEntry(null);
         device.setIsActive(deviceDetails.getIsActive());
+        geoLocationService.enrich(device);
+
+        String fingerprint = fingerprint(device);
+        if (!Objects.equals(fingerprint, device.getFingerprint())) {
+            Long userId = device.getUser().getId();
+            lockDevices(userId);
+            if (fingerprint != null && deviceRepository.findByUserIdAndFingerprint(userId, fingerprint).isPresent()) {
+                throw new IllegalArgumentException("Another device of this user has the same user agent, OS, model and MAC address");
+            }
+            device.setFingerprint(fingerprint);
+            knownDeviceRegistry.evict(userId);
+        }
+        userAgentService.intern(device);
 
+        markStatisticsDirty();
         return deviceRepository.save(device);
     }
 
@@ -122,14 +205,9 @@ public class DeviceService {
             throw new IllegalArgumentException("Device does not belong to the specified user");
         }
 
-        // First, unset all primary devices for this user
-        List<Device> userDevices = deviceRepository.findByUserId(userId);
-        userDevices.forEach(d -> d.setIsPrimary(false));
-        deviceRepository.saveAll(userDevices);
-
-        // Set this device as primary
-        device.setIsPrimary(true);
-        return deviceRepository.save(device);
+        lockDevices(userId);
+        deviceRepository.setPrimary(deviceId, userId);
+        return getDeviceOrThrow(deviceId);
     }
 
     public Device updateLastLogin(Long deviceId) {
@@ -139,6 +217,7 @@ public class DeviceService {
                 .orElseThrow(() -> new ResourceNotFoundException("Device not found with id: " + deviceId));
 
         device.setLastLoginAt(LocalDateTime.now());
+        geoLocationService.enrich(device);
         return deviceRepository.save(device);
     }
 
@@ -149,16 +228,17 @@ public class DeviceService {
                 .orElseThrow(() -> new ResourceNotFoundException("Device not found with id: " + id));
 
         device.setIsActive(false);
-        
+
         // If this was the primary device, set another active device as primary
         if (device.getIsPrimary()) {
-            List<Device> activeDevices = deviceRepository.findByUserIdAndIsActiveTrue(device.getUser().getId());
-            if (!activeDevices.isEmpty()) {
-                activeDevices.get(0).setIsPrimary(true);
-                deviceRepository.save(activeDevices.get(0));
-            }
+            Long userId = device.getUser().getId();
+            lockDevices(userId);
+            device.setIsPrimary(false);
+            deviceRepository.save(device);
+            deviceRepository.promoteSuccessor(userId, true);
+            return getDeviceOrThrow(id);
         }
-        
+
         return deviceRepository.save(device);
     }
 
@@ -178,17 +258,20 @@ public class DeviceService {
         Device device = deviceRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Device not found with id: " + id));
 
-        // If this was the primary device, set another device as primary
-        if (device.getIsPrimary()) {
-            List<Device> remainingDevices = deviceRepository.findByUserId(device.getUser().getId());
-            remainingDevices.remove(device);
-            if (!remainingDevices.isEmpty()) {
-                remainingDevices.get(0).setIsPrimary(true);
-                deviceRepository.save(remainingDevices.get(0));
-            }
+        Long userId = device.getUser().getId();
+        boolean wasPrimary = device.getIsPrimary();
+        if (wasPrimary) {
+            lockDevices(userId);
         }
 
-        deviceRepository.deleteById(id);
+        markStatisticsDirty();
+        deviceRepository.delete(device);
+        knownDeviceRegistry.evict(userId);
+
+        // If this was the primary device, set another device as primary, preferring active ones
+        if (wasPrimary) {
+            deviceRepository.promoteSuccessor(userId, false);
+        }
     }
 
     @Transactional(readOnly = true)
@@ -198,7 +281,7 @@ public class DeviceService {
 
     @Transactional(readOnly = true)
     public long countActiveDevicesByUserId(Long userId) {
-        return deviceRepository.findByUserIdAndIsActiveTrue(userId).size();
+        return deviceRepository.countActiveByUserId(userId);
     }
 
     @Transactional(readOnly = true)
@@ -207,4 +290,74 @@ public class DeviceService {
                 .map(Device::getIsPrimary)
                 .orElse(false);
     }
+
+    private Device saveNewDevice(Device device, boolean makePrimary) {
+        device.setIsPrimary(false);
+        geoLocationService.enrich(device);
+        userAgentService.intern(device);
+        Device savedDevice = deviceRepository.save(device);
+        markStatisticsDirty();
+        if (savedDevice.getUser() != null) {
+            knownDeviceRegistry.registered(savedDevice.getUser().getId(), savedDevice.getFingerprint());
+            loginRiskService.deviceRegistered(savedDevice.getUser().getId(), savedDevice.getFingerprint());
+        }
+        if (makePrimary) {
+            deviceRepository.setPrimary(savedDevice.getId(), savedDevice.getUser().getId());
+            return getDeviceOrThrow(savedDevice.getId());
+        }
+        return savedDevice;
+    }
+
+    /**
+     * Registering the same device again updates the existing row instead of adding another one.
+     * Only the descriptive attributes change; the fingerprinted ones are equal by definition.
+     */
+    private Device refreshRegisteredDevice(Device existing, Device device) {
+        log.info("Device {} is already registered for user {}, updating it", existing.getId(), existing.getUser().getId());
+        existing.setName(device.getName());
+        existing.setType(device.getType());
+        existing.setOsVersion(device.getOsVersion());
+        existing.setIpAddress(device.getIpAddress());
+        existing.setUserAgent(device.getUserAgent());
+        existing.setIsActive(true);
+        geoLocationService.enrich(existing);
+        userAgentService.intern(existing);
+        Device savedDevice = deviceRepository.save(existing);
+
+        if (Boolean.TRUE.equals(device.getIsPrimary()) && !savedDevice.getIsPrimary()) {
+            deviceRepository.setPrimary(savedDevice.getId(), savedDevice.getUser().getId());
+            return getDeviceOrThrow(savedDevice.getId());
+        }
+        return savedDevice;
+    }
+
+    private Optional<Device> findRegistered(Device device) {
+        if (device.getFingerprint() == null) {
+            return Optional.empty();
+        }
+        return deviceRepository.findByUserIdAndFingerprint(device.getUser().getId(), device.getFingerprint());
+    }
+
+    /**
+     * Serialises registrations and primary-flag changes for one user's devices. Without it two
+     * concurrent registrations of the same device both miss the existing row, and two concurrent
+     * set-primary calls each clear the flag only on the rows they saw and both set theirs.
+     */
+    private void lockDevices(Long userId) {
+        jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?, ?)", Object.class,
+                DEVICE_LOCK_SPACE, Long.hashCode(userId));
+    }
+
+    private Device getDeviceOrThrow(Long id) {
+        return deviceRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Device not found with id: " + id));
+    }
+
+    private static String fingerprint(Device device) {
+        return DeviceFingerprint.of(device.getUserAgent(), device.getOs(), device.getDeviceModel(), device.getMacAddress());
+    }
+
+    private void markStatisticsDirty() {
+        statisticsService.markDirty(StatisticsDimension.DEVICES_BY_TYPE, StatisticsDimension.DEVICES_BY_OS);
+    }
 }
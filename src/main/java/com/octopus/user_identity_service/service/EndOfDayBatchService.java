@@ -0,0 +1,256 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.BatchJobPartition;
+import com.octopus.user_identity_service.dto.BatchJobRun;
+import com.octopus.user_identity_service.enums.BatchJobStatus;
+import com.octopus.user_identity_service.exception.ResourceNotFoundException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Nightly pass over every account: accounts with no activity for {@code eod.dormancy-days} go from
+ * ACTIVE to INACTIVE, then every account's end-of-day balance and status is snapshotted.
+ * <p>
+ * The job runs after midnight, so the snapshot balance is taken as of the end of the business day:
+ * the current balance less every ledger posting made since. Only closed business dates can be run,
+ * and accounts opened after the day ended are left out. Status is not journalled and is recorded
+ * as it stands when the chunk is processed.
+ * <p>
+ * The id space is split into one range per worker thread and each range is walked in id chunks.
+ * A chunk is two set-based statements plus its checkpoint update, committed together, so nothing
+ * is loaded into a persistence context and a run that dies resumes from the last committed chunk.
+ * A run is owned by whichever node last claimed it; another node takes it over only after its
+ * heartbeat is older than {@code eod.lease-ms}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EndOfDayBatchService {
+
+    private static final String JOB_NAME = "ACCOUNTS_EOD";
+
+    private static final String CLAIM_SQL = """
+            INSERT INTO batch_job_runs (job_name, business_date, status, started_at, heartbeat_at)
+            VALUES (?, ?, 'RUNNING', ?, ?)
+            ON CONFLICT (job_name, business_date) DO UPDATE
+            SET status = 'RUNNING', heartbeat_at = EXCLUDED.heartbeat_at, finished_at = NULL
+            WHERE batch_job_runs.status = 'FAILED'
+               OR (batch_job_runs.status = 'RUNNING' AND batch_job_runs.heartbeat_at < ?)
+            RETURNING id
+            """;
+
+    private static final String CREATE_PARTITIONS_SQL = """
+            INSERT INTO batch_job_checkpoints (run_id, partition_no, range_start, range_end, last_processed_id, completed)
+            SELECT ?, p, lo + p * span, LEAST(lo + (p + 1) * span - 1, hi), lo + p * span - 1, FALSE
+            FROM (SELECT MIN(id) AS lo, MAX(id) AS hi, (MAX(id) - MIN(id)) / ? + 1 AS span FROM accounts) r
+            CROSS JOIN generate_series(0, ? - 1) p
+            WHERE r.lo IS NOT NULL AND lo + p * span <= hi
+            ON CONFLICT (run_id, partition_no) DO NOTHING
+            """;
+
+    private static final String DORMANCY_SQL = """
+            UPDATE accounts SET status = 'INACTIVE', updated_at = ?
+            WHERE id BETWEEN ? AND ? AND status = 'ACTIVE' AND COALESCE(last_activity_at, created_at) < ?
+            """;
+
+    // Postings are written in the same transaction as the balance change (see LedgerService), so
+    // balance, stripes, journal and outbox are read consistently by this one statement.
+    private static final String SNAPSHOT_SQL = """
+            INSERT INTO account_eod_snapshots (business_date, account_id, user_id, balance, currency, status)
+            SELECT ?, a.id, a.user_id,
+                   COALESCE(a.balance, 0)
+                   + COALESCE((SELECT SUM(s.balance) FROM account_balance_stripes s WHERE s.account_id = a.id), 0)
+                   - COALESCE((SELECT SUM(e.amount) FROM ledger_entries e
+                               WHERE e.account_id = a.id AND e.created_at >= ?), 0)
+                   - COALESCE((SELECT SUM(o.amount) FROM ledger_outbox o
+                               WHERE o.account_id = a.id AND o.created_at >= ?), 0),
+                   a.currency, a.status
+            FROM accounts a
+            WHERE a.id BETWEEN ? AND ? AND a.created_at < ?
+            ON CONFLICT (business_date, account_id) DO NOTHING
+            """;
+
+    private static final String CHECKPOINT_SQL = """
+            UPDATE batch_job_checkpoints
+            SET last_processed_id = ?, processed_count = processed_count + ?,
+                transitioned_count = transitioned_count + ?, completed = ?, updated_at = ?
+            WHERE run_id = ? AND partition_no = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private ExecutorService workers;
+
+    @Value("${eod.enabled:false}")
+    private boolean enabled;
+
+    @Value("${eod.threads:4}")
+    private int threads;
+
+    @Value("${eod.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${eod.dormancy-days:365}")
+    private int dormancyDays;
+
+    @Value("${eod.lease-ms:300000}")
+    private long leaseMs;
+
+    @PostConstruct
+    void startWorkers() {
+        workers = Executors.newFixedThreadPool(threads);
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        workers.shutdownNow();
+    }
+
+    @Scheduled(cron = "${eod.cron:0 30 0 * * *}")
+    public void runScheduled() {
+        if (enabled) {
+            run(LocalDate.now().minusDays(1));
+        }
+    }
+
+    /**
+     * Runs, resumes or re-runs the job for {@code businessDate}, which must be a day that has ended.
+     * Returns the run as it stands afterwards; if another node holds a live claim on it, nothing is
+     * done here.
+     */
+    public BatchJobRun run(LocalDate businessDate) {
+        if (!businessDate.isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("Business date " + businessDate + " has not ended yet");
+        }
+        Long runId = claim(businessDate);
+        if (runId == null) {
+            log.info("End-of-day run for {} is completed or owned by another node", businessDate);
+            return getRun(businessDate);
+        }
+
+        jdbcTemplate.update(CREATE_PARTITIONS_SQL, runId, threads, threads);
+        List<BatchJobPartition> pending = loadPartitions(runId).stream()
+                .filter(partition -> !partition.isCompleted())
+                .toList();
+        log.info("Starting end-of-day run {} for {} with {} pending partitions", runId, businessDate, pending.size());
+
+        LocalDateTime cutoff = businessDate.plusDays(1).atStartOfDay();
+        List<Future<?>> results = new ArrayList<>(pending.size());
+        for (BatchJobPartition partition : pending) {
+            results.add(workers.submit(() -> processPartition(runId, businessDate, cutoff, partition)));
+        }
+
+        boolean failed = false;
+        for (Future<?> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed = true;
+                break;
+            } catch (Exception e) {
+                log.error("End-of-day partition failed for run {}", runId, e);
+                failed = true;
+            }
+        }
+
+        BatchJobStatus status = failed ? BatchJobStatus.FAILED : BatchJobStatus.COMPLETED;
+        jdbcTemplate.update("UPDATE batch_job_runs SET status = ?, finished_at = ? WHERE id = ?",
+                status.name(), Timestamp.valueOf(LocalDateTime.now()), runId);
+        BatchJobRun run = getRun(businessDate);
+        log.info("End-of-day run {} for {} {}: {} accounts snapshotted, {} made dormant",
+                runId, businessDate, status, run.getProcessedCount(), run.getTransitionedCount());
+        return run;
+    }
+
+    public BatchJobRun getRun(LocalDate businessDate) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT * FROM batch_job_runs WHERE job_name = ? AND business_date = ?", JOB_NAME, Date.valueOf(businessDate));
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("No end-of-day run found for " + businessDate);
+        }
+        Map<String, Object> row = rows.get(0);
+        Long runId = ((Number) row.get("id")).longValue();
+        List<BatchJobPartition> partitions = loadPartitions(runId);
+        return BatchJobRun.builder()
+                .id(runId)
+                .jobName(JOB_NAME)
+                .businessDate(businessDate)
+                .status(BatchJobStatus.valueOf((String) row.get("status")))
+                .startedAt(toLocalDateTime(row.get("started_at")))
+                .heartbeatAt(toLocalDateTime(row.get("heartbeat_at")))
+                .finishedAt(toLocalDateTime(row.get("finished_at")))
+                .processedCount(partitions.stream().mapToLong(BatchJobPartition::getProcessedCount).sum())
+                .transitionedCount(partitions.stream().mapToLong(BatchJobPartition::getTransitionedCount).sum())
+                .partitions(partitions)
+                .build();
+    }
+
+    private Long claim(LocalDate businessDate) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> claimed = jdbcTemplate.queryForList(CLAIM_SQL, Long.class, JOB_NAME, Date.valueOf(businessDate),
+                Timestamp.valueOf(now), Timestamp.valueOf(now), Timestamp.valueOf(now.minusNanos(leaseMs * 1_000_000)));
+        return claimed.isEmpty() ? null : claimed.get(0);
+    }
+
+    private void processPartition(Long runId, LocalDate businessDate, LocalDateTime cutoff, BatchJobPartition partition) {
+        Timestamp dormantBefore = Timestamp.valueOf(cutoff.minusDays(dormancyDays));
+        Timestamp endOfDay = Timestamp.valueOf(cutoff);
+        long cursor = partition.getLastProcessedId();
+        while (cursor < partition.getRangeEnd()) {
+            long from = cursor + 1;
+            long to = Math.min(cursor + chunkSize, partition.getRangeEnd());
+            boolean last = to == partition.getRangeEnd();
+
+            transactionTemplate.executeWithoutResult(status -> {
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                int dormant = jdbcTemplate.update(DORMANCY_SQL, now, from, to, dormantBefore);
+                int snapshotted = jdbcTemplate.update(SNAPSHOT_SQL, Date.valueOf(businessDate), endOfDay, endOfDay,
+                        from, to, endOfDay);
+                jdbcTemplate.update(CHECKPOINT_SQL, to, snapshotted, dormant, last, now, runId, partition.getPartitionNo());
+            });
+            // Outside the chunk transaction so partitions do not queue on the run row.
+            jdbcTemplate.update("UPDATE batch_job_runs SET heartbeat_at = ? WHERE id = ?",
+                    Timestamp.valueOf(LocalDateTime.now()), runId);
+            cursor = to;
+        }
+    }
+
+    private List<BatchJobPartition> loadPartitions(Long runId) {
+        return jdbcTemplate.query("SELECT * FROM batch_job_checkpoints WHERE run_id = ? ORDER BY partition_no",
+                (rs, rowNum) -> BatchJobPartition.builder()
+                        .partitionNo(rs.getInt("partition_no"))
+                        .rangeStart(rs.getLong("range_start"))
+                        .rangeEnd(rs.getLong("range_end"))
+                        .lastProcessedId(rs.getLong("last_processed_id"))
+                        .processedCount(rs.getLong("processed_count"))
+                        .transitionedCount(rs.getLong("transitioned_count"))
+                        .completed(rs.getBoolean("completed"))
+                        .updatedAt(rs.getObject("updated_at", LocalDateTime.class))
+                        .build(),
+                runId);
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        return value == null ? null : ((Timestamp) value).toLocalDateTime();
+    }
+}
@@ -0,0 +1,165 @@
+package com.octopus.user_identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.octopus.user_identity_service.dto.AccountSummary;
+import com.octopus.user_identity_service.dto.DeviceSummary;
+import com.octopus.user_identity_service.dto.UserSummary;
+import com.octopus.user_identity_service.enums.AccountStatus;
+import com.octopus.user_identity_service.enums.AccountType;
+import com.octopus.user_identity_service.enums.DeviceType;
+import com.octopus.user_identity_service.enums.VerificationStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Streams whole tables as NDJSON without materialising them. Rows are read through a
+ * forward-only, read-only cursor (Postgres only honours the fetch size inside a transaction)
+ * and projected straight into summary DTOs, so no entities enter a persistence context.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class ExportService {
+
+    private static final String USERS_SQL = """
+            SELECT u.id, u.username, u.email, u.phone_number, u.first_name, u.last_name,
+                   u.is_enabled, u.email_verified, u.last_login_at, u.created_at,
+                   ARRAY(SELECT r.name FROM user_roles ur JOIN roles r ON r.id = ur.role_id
+                         WHERE ur.user_id = u.id ORDER BY r.name) AS roles
+            FROM users u
+            ORDER BY u.id
+            """;
+
+    private static final String DEVICES_SQL = """
+            SELECT id, user_id, name, type, os, os_version, device_model, ip_address,
+                   is_primary, is_active, last_login_at, created_at
+            FROM devices
+            ORDER BY id
+            """;
+
+    private static final String ACCOUNTS_SQL = """
+            SELECT id, user_id, account_number, account_type, status,
+                   COALESCE(balance, 0) + COALESCE((SELECT SUM(s.balance) FROM account_balance_stripes s
+                                                    WHERE s.account_id = accounts.id), 0) AS balance,
+                   currency, is_primary, verification_status, last_activity_at, created_at
+            FROM accounts
+            ORDER BY id
+            """;
+
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${export.fetch-size:500}")
+    private int fetchSize;
+
+    public void exportUsers(OutputStream out) {
+        log.info("Streaming user export");
+        stream(USERS_SQL, out, UserSummary.class, (rs, rowNum) -> UserSummary.builder()
+                .id(rs.getLong("id"))
+                .username(rs.getString("username"))
+                .email(rs.getString("email"))
+                .phoneNumber(rs.getString("phone_number"))
+                .firstName(rs.getString("first_name"))
+                .lastName(rs.getString("last_name"))
+                .isEnabled(rs.getBoolean("is_enabled"))
+                .emailVerified(rs.getBoolean("email_verified"))
+                .lastLoginAt(rs.getObject("last_login_at", LocalDateTime.class))
+                .createdAt(rs.getObject("created_at", LocalDateTime.class))
+                .roles(toStringList(rs.getArray("roles")))
+                .build());
+    }
+
+    public void exportDevices(OutputStream out) {
+        log.info("Streaming device export");
+        stream(DEVICES_SQL, out, DeviceSummary.class, (rs, rowNum) -> DeviceSummary.builder()
+                .id(rs.getLong("id"))
+                .userId(rs.getLong("user_id"))
+                .name(rs.getString("name"))
+                .type(toEnum(DeviceType.class, rs.getString("type")))
+                .os(rs.getString("os"))
+                .osVersion(rs.getString("os_version"))
+                .deviceModel(rs.getString("device_model"))
+                .ipAddress(rs.getString("ip_address"))
+                .isPrimary(rs.getBoolean("is_primary"))
+                .isActive(rs.getBoolean("is_active"))
+                .lastLoginAt(rs.getObject("last_login_at", LocalDateTime.class))
+                .createdAt(rs.getObject("created_at", LocalDateTime.class))
+                .build());
+    }
+
+    public void exportAccounts(OutputStream out) {
+        log.info("Streaming account export");
+        stream(ACCOUNTS_SQL, out, AccountSummary.class, (rs, rowNum) -> AccountSummary.builder()
+                .id(rs.getLong("id"))
+                .userId(rs.getLong("user_id"))
+                .accountNumber(rs.getString("account_number"))
+                .accountType(toEnum(AccountType.class, rs.getString("account_type")))
+                .status(toEnum(AccountStatus.class, rs.getString("status")))
+                .balance(rs.getBigDecimal("balance"))
+                .currency(rs.getString("currency"))
+                .isPrimary(rs.getBoolean("is_primary"))
+                .verificationStatus(toEnum(VerificationStatus.class, rs.getString("verification_status")))
+                .lastActivityAt(rs.getObject("last_activity_at", LocalDateTime.class))
+                .createdAt(rs.getObject("created_at", LocalDateTime.class))
+                .build());
+    }
+
+    private <T> void stream(String sql, OutputStream out, Class<T> type, RowMapper<T> rowMapper) {
+        ObjectWriter writer = objectMapper.writerFor(type);
+        int[] rowCount = {0};
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, rs -> {
+            try {
+                out.write(writer.writeValueAsBytes(rowMapper.mapRow(rs, rowCount[0])));
+                out.write('\n');
+                if (++rowCount[0] % FLUSH_EVERY_ROWS == 0) {
+                    out.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Streamed {} {} rows", rowCount[0], type.getSimpleName());
+    }
+
+    private static <E extends Enum<E>> E toEnum(Class<E> type, String value) {
+        return value == null ? null : Enum.valueOf(type, value);
+    }
+
+    private static List<String> toStringList(Array array) throws SQLException {
+        if (array == null) {
+            return List.of();
+        }
+        return List.of((String[]) array.getArray());
+    }
+}
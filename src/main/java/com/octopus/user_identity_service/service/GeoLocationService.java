@@ -0,0 +1,129 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.model.Device;
+import com.octopus.user_identity_service.util.GeoIpDatabase;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Country and ASN lookups against a local {@link GeoIpDatabase}; nothing leaves the process.
+ * <p>
+ * The database file is checked on a schedule and swapped in whenever it is replaced, so a new
+ * release is deployed by moving a compiled file over the old one. If {@code geo.csv-path} is set,
+ * a CSV newer than the compiled file is compiled next to it and moved into place first. Lookups
+ * keep using the previous mapping until the new one has been opened and validated.
+ */
+@Service
+@Slf4j
+public class GeoLocationService {
+
+    @Value("${geo.database-path:}")
+    private String databasePath;
+
+    @Value("${geo.csv-path:}")
+    private String csvPath;
+
+    private volatile GeoIpDatabase database;
+    private FileStamp loadedStamp;
+
+    @PostConstruct
+    void init() {
+        if (databasePath.isBlank()) {
+            log.info("No geolocation database configured, devices and logins will not be geolocated");
+            return;
+        }
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${geo.reload-interval-ms:60000}")
+    public synchronized void reload() {
+        if (databasePath.isBlank()) {
+            return;
+        }
+        Path target = Path.of(databasePath);
+        try {
+            compileIfStale(target);
+
+            FileStamp stamp = FileStamp.of(target);
+            if (stamp == null || stamp.equals(loadedStamp)) {
+                return;
+            }
+            GeoIpDatabase loaded = GeoIpDatabase.open(target);
+            database = loaded;
+            loadedStamp = stamp;
+            log.info("Loaded geolocation database {} with {} IPv4 and {} IPv6 ranges",
+                    target, loaded.getIpv4RangeCount(), loaded.getIpv6RangeCount());
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to load geolocation database {}, keeping the current one", target, e);
+        }
+    }
+
+    public boolean isAvailable() {
+        return database != null;
+    }
+
+    /** Packed lookup result, see {@link GeoIpDatabase#countryCode} and {@link GeoIpDatabase#asn}. */
+    public long lookup(InetAddress address) {
+        GeoIpDatabase current = database;
+        return current == null ? GeoIpDatabase.NOT_FOUND : current.lookup(address);
+    }
+
+    /**
+     * Sets the device's country and ASN from its IP address. Without a database the stored values
+     * are left alone rather than cleared.
+     */
+    public void enrich(Device device) {
+        if (!isAvailable()) {
+            return;
+        }
+        long location = lookup(device.getInetAddress());
+        device.setCountryCode(GeoIpDatabase.countryCode(location));
+        device.setAsn(GeoIpDatabase.asn(location));
+    }
+
+    private void compileIfStale(Path target) throws IOException {
+        if (csvPath.isBlank()) {
+            return;
+        }
+        Path csv = Path.of(csvPath);
+        FileStamp csvStamp = FileStamp.of(csv);
+        FileStamp targetStamp = FileStamp.of(target);
+        if (csvStamp == null || (targetStamp != null && targetStamp.modified().compareTo(csvStamp.modified()) >= 0)) {
+            return;
+        }
+
+        Path compiled = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            GeoIpDatabase.compile(csv, compiled);
+            // Replacing rather than rewriting keeps the file that is currently mapped intact.
+            Files.move(compiled, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Compiled geolocation database {} from {}", target, csv);
+        } finally {
+            Files.deleteIfExists(compiled);
+        }
+    }
+
+    private record FileStamp(Object fileKey, FileTime modified, long size) {
+
+        static FileStamp of(Path file) throws IOException {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new FileStamp(attributes.fileKey(), attributes.lastModifiedTime(), attributes.size());
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+    }
+}
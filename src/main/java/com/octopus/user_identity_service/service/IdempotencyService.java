@@ -0,0 +1,209 @@
+package com.octopus.user_identity_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.octopus.user_identity_service.exception.IdempotencyKeyConflictException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Makes retried money-moving requests safe. The first request for an Idempotency-Key reserves the
+ * key in idempotency_records inside the same transaction that moves the money and stores the
+ * response there, so the record exists exactly when the movement committed. Results are also kept
+ * in memory: duplicates are answered from the map without touching the database, and concurrent
+ * duplicates wait on the in-flight execution instead of running it again. Another instance racing
+ * on the same key blocks on the reservation row and then reads the stored response.
+ * <p>
+ * Keys are chosen by clients, so they are scoped to the caller: two users sending the same key
+ * never see each other's responses. At most {@code idempotency.cache-max-entries} results are kept
+ * in memory; past that, completed results are dropped and duplicates are answered from the table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<ScopedKey, InFlight> results = new ConcurrentHashMap<>();
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${idempotency.cache-max-entries:10000}")
+    private int cacheMaxEntries;
+
+    /**
+     * Runs {@code action} once per key and {@code owner}, the name of the authenticated caller.
+     * {@code request} identifies what the key was used for; reusing a key for a different request is
+     * rejected with {@link IdempotencyKeyConflictException}, also while the first request is running.
+     */
+    public <T> T execute(String owner, String key, String request, Class<T> responseType, Supplier<T> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String fingerprint = fingerprint(request);
+        ScopedKey scopedKey = new ScopedKey(owner, key);
+
+        if (results.size() >= cacheMaxEntries) {
+            evictCompleted();
+        }
+        InFlight pending = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight existing = results.putIfAbsent(scopedKey, pending);
+        if (existing != null) {
+            if (!existing.fingerprint().equals(fingerprint)) {
+                throw new IdempotencyKeyConflictException("Idempotency key was already used for a different request");
+            }
+            StoredResult result = await(existing.result());
+            if (result.isExpired()) {
+                results.remove(scopedKey, existing);
+                return execute(owner, key, request, responseType, action);
+            }
+            log.debug("Replaying stored response for idempotency key {} of {}", key, owner);
+            return read(result, fingerprint, responseType);
+        }
+
+        try {
+            StoredResult result = reserveAndRun(scopedKey, fingerprint, action);
+            pending.result().complete(result);
+            return read(result, fingerprint, responseType);
+        } catch (RuntimeException e) {
+            // Nothing was committed, so the key stays free for the client's next retry.
+            results.remove(scopedKey, pending);
+            pending.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        results.values().removeIf(entry -> entry.result().isDone() && !entry.result().isCompletedExceptionally()
+                && entry.result().join().isExpired());
+        int purged = jdbcTemplate.update("DELETE FROM idempotency_records WHERE expires_at < ?",
+                Timestamp.valueOf(LocalDateTime.now()));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency records", purged);
+        }
+    }
+
+    /** Drops every completed result; their records stay in the table and answer later duplicates. */
+    private void evictCompleted() {
+        int before = results.size();
+        results.values().removeIf(entry -> entry.result().isDone());
+        log.debug("Evicted {} cached idempotent results", before - results.size());
+    }
+
+    private <T> StoredResult reserveAndRun(ScopedKey key, String fingerprint, Supplier<T> action) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime expiresAt = now.plus(Duration.ofHours(ttlHours));
+
+            // Re-reserves a key whose record expired but has not been purged yet.
+            int reserved = jdbcTemplate.update("""
+                    INSERT INTO idempotency_records (owner, idempotency_key, request_fingerprint, created_at, expires_at)
+                    VALUES (?, ?, ?, ?, ?)
+                    ON CONFLICT (owner, idempotency_key) DO UPDATE
+                    SET request_fingerprint = EXCLUDED.request_fingerprint, response_body = NULL,
+                        created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at
+                    WHERE idempotency_records.expires_at < EXCLUDED.created_at
+                    """, key.owner(), key.key(), fingerprint, Timestamp.valueOf(now), Timestamp.valueOf(expiresAt));
+
+            if (reserved == 0) {
+                return loadStored(key);
+            }
+
+            String responseBody = toJson(action.get());
+            jdbcTemplate.update("UPDATE idempotency_records SET response_body = ? WHERE owner = ? AND idempotency_key = ?",
+                    responseBody, key.owner(), key.key());
+            return new StoredResult(fingerprint, responseBody, expiresAt);
+        });
+    }
+
+    private StoredResult loadStored(ScopedKey key) {
+        List<StoredResult> stored = jdbcTemplate.query(
+                "SELECT request_fingerprint, response_body, expires_at FROM idempotency_records WHERE owner = ? AND idempotency_key = ?",
+                (rs, rowNum) -> new StoredResult(rs.getString("request_fingerprint"), rs.getString("response_body"),
+                        rs.getObject("expires_at", LocalDateTime.class)),
+                key.owner(), key.key());
+        if (stored.isEmpty()) {
+            // Purged between the reservation attempt and this read; the caller can simply retry.
+            throw new IdempotencyKeyConflictException("Idempotency key " + key.key() + " is being released, retry the request");
+        }
+        return stored.get(0);
+    }
+
+    private <T> T read(StoredResult result, String fingerprint, Class<T> responseType) {
+        if (!result.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyConflictException("Idempotency key was already used for a different request");
+        }
+        try {
+            return objectMapper.readValue(result.responseBody(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response could not be read", e);
+        }
+    }
+
+    private String toJson(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Idempotent response could not be stored", e);
+        }
+    }
+
+    private static StoredResult await(CompletableFuture<StoredResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static String fingerprint(String request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record ScopedKey(String owner, String key) {
+    }
+
+    /** A result that may still be running, with the fingerprint of the request that started it. */
+    private record InFlight(String fingerprint, CompletableFuture<StoredResult> result) {
+    }
+
+    private record StoredResult(String fingerprint, String responseBody, LocalDateTime expiresAt) {
+
+        boolean isExpired() {
+            return expiresAt.isBefore(LocalDateTime.now());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.repository.DeviceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user sets of registered device fingerprints, so a login can be classified as coming from a
+ * known or a new device with one hash lookup. A user's set is loaded with one indexed query on first
+ * use and kept for a TTL; registrations through {@link DeviceService} add to it once they commit and
+ * updates or deletions drop it. Devices registered on another instance are seen when the entry expires.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KnownDeviceRegistry {
+
+    private final DeviceRepository deviceRepository;
+
+    private final ConcurrentHashMap<Long, KnownDevices> cache = new ConcurrentHashMap<>();
+
+    @Value("${devices.known.cache-ttl-ms:300000}")
+    private long cacheTtlMs;
+
+    @Value("${devices.known.cache-max-entries:100000}")
+    private int cacheMaxEntries;
+
+    public boolean isKnown(Long userId, String fingerprint) {
+        return fingerprint != null && knownDevices(userId).fingerprints().contains(fingerprint);
+    }
+
+    /** Adds the fingerprint to the user's cached set once the current transaction commits. */
+    public void registered(Long userId, String fingerprint) {
+        if (fingerprint == null) {
+            return;
+        }
+        afterCommit(() -> {
+            KnownDevices known = cache.get(userId);
+            if (known != null) {
+                known.fingerprints().add(fingerprint);
+            }
+        });
+    }
+
+    /** Drops the user's cached set once the current transaction commits. */
+    public void evict(Long userId) {
+        afterCommit(() -> cache.remove(userId));
+    }
+
+    private KnownDevices knownDevices(Long userId) {
+        long now = System.currentTimeMillis();
+        KnownDevices known = cache.get(userId);
+        if (known != null && known.expiresAt() > now) {
+            return known;
+        }
+
+        Set<String> fingerprints = ConcurrentHashMap.newKeySet();
+        fingerprints.addAll(deviceRepository.findFingerprintsByUserId(userId));
+        known = new KnownDevices(fingerprints, now + cacheTtlMs);
+        if (cache.size() >= cacheMaxEntries) {
+            cache.clear();
+        }
+        cache.put(userId, known);
+        log.debug("Loaded {} known devices for user {}", fingerprints.size(), userId);
+        return known;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private record KnownDevices(Set<String> fingerprints, long expiresAt) {
+    }
+}
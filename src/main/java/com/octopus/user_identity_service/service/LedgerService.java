@@ -0,0 +1,215 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.CursorPage;
+import com.octopus.user_identity_service.dto.LedgerBalance;
+import com.octopus.user_identity_service.dto.LedgerPosting;
+import com.octopus.user_identity_service.dto.TransferLeg;
+import com.octopus.user_identity_service.enums.LedgerEntryType;
+import com.octopus.user_identity_service.exception.ResourceNotFoundException;
+import com.octopus.user_identity_service.util.CursorUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only double-entry journal for balance movements.
+ * <p>
+ * Postings are written to ledger_outbox in the same transaction as the balance change, so they
+ * commit or roll back with it and survive a crash. A single writer moves them into ledger_entries
+ * in batches, one statement and transaction per batch, so the contended part of journalling (id
+ * allocation under the ledger lock, index maintenance on the journal) is paid per batch instead of
+ * per request. A batch that fails stays in the outbox and is retried on the next flush.
+ * <p>
+ * Writers and snapshotting serialise on a transaction-scoped advisory lock, so a snapshot never
+ * skips an entry id that a concurrent batch has reserved but not yet committed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerService {
+
+    private static final long LEDGER_LOCK_KEY = 7_340_001L;
+
+    private static final String OUTBOX_INSERT_SQL = """
+            INSERT INTO ledger_outbox (transaction_id, account_id, amount, entry_type, created_at)
+            VALUES (?, ?, ?, ?, ?), (?, ?, ?, ?, ?)
+            """;
+
+    private static final String MOVE_SQL = """
+            WITH moved AS (
+                DELETE FROM ledger_outbox
+                WHERE id IN (SELECT id FROM ledger_outbox ORDER BY id LIMIT ?)
+                RETURNING id, transaction_id, account_id, amount, entry_type, created_at
+            )
+            INSERT INTO ledger_entries (transaction_id, account_id, amount, entry_type, created_at)
+            SELECT transaction_id, account_id, amount, entry_type, created_at FROM moved ORDER BY id
+            """;
+
+    private static final String SNAPSHOT_SQL = """
+            INSERT INTO balance_snapshots (account_id, balance, last_entry_id, created_at)
+            SELECT e.account_id, COALESCE(s.balance, 0) + SUM(e.amount), MAX(e.id), now()
+            FROM ledger_entries e
+            JOIN accounts a ON a.id = e.account_id
+            LEFT JOIN balance_snapshots s ON s.account_id = e.account_id
+            WHERE e.id > COALESCE(s.last_entry_id, 0)
+            GROUP BY e.account_id, s.balance
+            ON CONFLICT (account_id) DO UPDATE
+            SET balance = EXCLUDED.balance, last_entry_id = EXCLUDED.last_entry_id, created_at = EXCLUDED.created_at
+            """;
+
+    private static final String BALANCE_SQL = """
+            SELECT COALESCE(a.balance, 0) + COALESCE((SELECT SUM(st.balance) FROM account_balance_stripes st
+                                                      WHERE st.account_id = a.id), 0) AS account_balance,
+                   COALESCE(s.balance, 0) AS snapshot_balance,
+                   COALESCE(s.last_entry_id, 0) AS snapshot_entry_id,
+                   t.tail_sum, t.tail_entries
+            FROM accounts a
+            LEFT JOIN balance_snapshots s ON s.account_id = a.id
+            CROSS JOIN LATERAL (
+                SELECT COALESCE(SUM(e.amount), 0) AS tail_sum, COUNT(*) AS tail_entries
+                FROM (
+                    SELECT amount FROM ledger_entries
+                    WHERE account_id = a.id AND id > COALESCE(s.last_entry_id, 0)
+                    UNION ALL
+                    SELECT amount FROM ledger_outbox WHERE account_id = a.id
+                ) e
+            ) t
+            WHERE a.id = ?
+            """;
+
+    private static final String ENTRIES_SQL = """
+            SELECT id, transaction_id, account_id, amount, entry_type, created_at
+            FROM ledger_entries
+            WHERE account_id = ? AND id > ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    private static final RowMapper<LedgerPosting> POSTING_MAPPER = (rs, rowNum) -> LedgerPosting.builder()
+            .id(rs.getLong("id"))
+            .transactionId(rs.getObject("transaction_id", UUID.class))
+            .accountId(rs.getObject("account_id", Long.class))
+            .amount(rs.getBigDecimal("amount"))
+            .entryType(LedgerEntryType.valueOf(rs.getString("entry_type")))
+            .createdAt(rs.getObject("created_at", LocalDateTime.class))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Value("${ledger.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Journals {@code amount} moving from one account to another. Either side may be null for
+     * money entering or leaving the system. The postings join the caller's transaction, so
+     * rolled-back balance changes never reach the journal.
+     */
+    public void post(LedgerEntryType entryType, Long fromAccountId, Long toAccountId, BigDecimal amount) {
+        jdbcTemplate.update(OUTBOX_INSERT_SQL, outboxRow(entryType, fromAccountId, toAccountId, amount, LocalDateTime.now()));
+    }
+
+    /** As {@link #post} for every leg, as TRANSFER postings, in one JDBC batch. */
+    public void postTransfers(List<TransferLeg> legs) {
+        if (legs.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(legs.size());
+        for (TransferLeg leg : legs) {
+            rows.add(outboxRow(LedgerEntryType.TRANSFER, leg.getFromAccountId(), leg.getToAccountId(), leg.getAmount(), now));
+        }
+        jdbcTemplate.batchUpdate(OUTBOX_INSERT_SQL, rows);
+    }
+
+    @Scheduled(fixedDelayString = "${ledger.flush-interval-ms:100}")
+    @PreDestroy
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            int moved;
+            do {
+                moved = transactionTemplate.execute(status -> {
+                    acquireLedgerLock();
+                    return jdbcTemplate.update(MOVE_SQL, batchSize);
+                });
+                log.debug("Moved {} ledger postings from the outbox", moved);
+            } while (moved == batchSize);
+        } catch (RuntimeException e) {
+            // The batch rolled back and is still in the outbox; the next flush retries it.
+            log.error("Failed to move ledger postings from the outbox, will retry", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ledger.snapshot-interval-ms:300000}")
+    public void snapshotBalances() {
+        Integer accounts = transactionTemplate.execute(status -> {
+            acquireLedgerLock();
+            return jdbcTemplate.update(SNAPSHOT_SQL);
+        });
+        log.info("Snapshotted ledger balances for {} accounts", accounts);
+    }
+
+    public LedgerBalance getLedgerBalance(Long accountId) {
+        List<LedgerBalance> rows = jdbcTemplate.query(BALANCE_SQL, (rs, rowNum) -> {
+            BigDecimal snapshotBalance = rs.getBigDecimal("snapshot_balance");
+            BigDecimal ledgerBalance = snapshotBalance.add(rs.getBigDecimal("tail_sum"));
+            BigDecimal accountBalance = rs.getBigDecimal("account_balance");
+            return LedgerBalance.builder()
+                    .accountId(accountId)
+                    .ledgerBalance(ledgerBalance)
+                    .accountBalance(accountBalance)
+                    .snapshotBalance(snapshotBalance)
+                    .snapshotEntryId(rs.getLong("snapshot_entry_id"))
+                    .tailEntries(rs.getLong("tail_entries"))
+                    .inSync(accountBalance != null && accountBalance.compareTo(ledgerBalance) == 0)
+                    .build();
+        }, accountId);
+
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Account not found with id: " + accountId);
+        }
+        return rows.get(0);
+    }
+
+    public CursorPage<LedgerPosting> getEntriesByCursor(Long accountId, String cursor, int size) {
+        int pageSize = CursorUtil.clampPageSize(size);
+        List<LedgerPosting> rows = jdbcTemplate.query(ENTRIES_SQL, POSTING_MAPPER,
+                accountId, CursorUtil.decode(cursor), pageSize + 1);
+        return CursorPage.of(rows, pageSize, LedgerPosting::getId);
+    }
+
+    private void acquireLedgerLock() {
+        jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, LEDGER_LOCK_KEY);
+    }
+
+    private static Object[] outboxRow(LedgerEntryType entryType, Long fromAccountId, Long toAccountId,
+                                      BigDecimal amount, LocalDateTime createdAt) {
+        UUID transactionId = UUID.randomUUID();
+        Timestamp now = Timestamp.valueOf(createdAt);
+        return new Object[] {
+                transactionId, fromAccountId, amount.negate(), entryType.name(), now,
+                transactionId, toAccountId, amount, entryType.name(), now
+        };
+    }
+}
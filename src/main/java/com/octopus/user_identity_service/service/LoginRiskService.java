@@ -0,0 +1,313 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.LoginRisk;
+import com.octopus.user_identity_service.enums.LoginRiskFactor;
+import com.octopus.user_identity_service.util.BloomFilter;
+import com.octopus.user_identity_service.util.GeoIpDatabase;
+import com.octopus.user_identity_service.util.IpAddressNormalizer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Scores a successful login by how familiar its device and network are to the user. Each user has
+ * a small Bloom filter of the device fingerprints, network prefixes (/24 for IPv4, /48 for IPv6),
+ * ASNs and countries seen at earlier logins. Filters live in memory: the first login after a user's
+ * filter expires or the process starts costs one query, every other login none. Changes are written
+ * back on a schedule and OR-merged with what other instances wrote.
+ * <p>
+ * Only trusted logins teach the filter: one scoring below the step-up threshold, or one whose
+ * second factor has been passed and {@link #confirm confirmed}. Learning from a login that still
+ * owes a second factor would let an attacker retry until the device no longer looked new.
+ * <p>
+ * Users without a stored filter start from their registered devices rather than from nothing.
+ * A Bloom filter false positive can only make a login look less risky than it is; at the configured
+ * size this stays around 1% for a user with a hundred distinct signals.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LoginRiskService {
+
+    private static final int IPV4_PREFIX_LENGTH = 24;
+    private static final int IPV6_PREFIX_LENGTH = 48;
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO user_login_signals (user_id, signals, updated_at)
+            SELECT v.user_id, v.signals::varbit, now()
+            FROM unnest(?::bigint[], ?::text[]) AS v(user_id, signals)
+            JOIN users u ON u.id = v.user_id
+            ON CONFLICT (user_id) DO UPDATE
+            SET signals = CASE WHEN length(user_login_signals.signals) = length(EXCLUDED.signals)
+                               THEN user_login_signals.signals | EXCLUDED.signals
+                               ELSE EXCLUDED.signals END,
+                updated_at = EXCLUDED.updated_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GeoLocationService geoLocationService;
+
+    private final ConcurrentHashMap<Long, LoginHistory> cache = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Value("${login-risk.filter-bits:1024}")
+    private int filterBits;
+
+    @Value("${login-risk.filter-hashes:5}")
+    private int filterHashes;
+
+    @Value("${login-risk.cache-ttl-ms:3600000}")
+    private long cacheTtlMs;
+
+    @Value("${login-risk.cache-max-entries:100000}")
+    private int cacheMaxEntries;
+
+    @Value("${login-risk.step-up-threshold:0.5}")
+    private double stepUpThreshold;
+
+    /**
+     * Scores the login. Below the step-up threshold its signals are remembered straight away, so the
+     * next login from the same device and network scores lower. At or above it, a user who can step
+     * up ({@code canStepUp}, i.e. has two-factor enabled) is asked to, and nothing is learned until
+     * {@link #confirm} is called. A user who cannot step up would otherwise be flagged on every
+     * login from that device, so their signals are remembered whatever the score; the score and
+     * factors are still reported. {@code fingerprint} may be null when the client described no device.
+     */
+    public LoginRisk assess(Long userId, boolean canStepUp, String fingerprint, InetAddress address) {
+        List<String> signals = signals(fingerprint, address);
+        List<LoginRiskFactor> factors = new ArrayList<>();
+        if (fingerprint == null) {
+            factors.add(LoginRiskFactor.UNIDENTIFIED_DEVICE);
+        }
+
+        LoginHistory history = history(userId);
+        synchronized (history) {
+            for (String signal : signals) {
+                if (!history.filter.mightContain(signal)) {
+                    factors.add(factorFor(signal));
+                }
+            }
+        }
+
+        double score = Math.min(1.0, factors.stream().mapToDouble(LoginRiskFactor::getWeight).sum());
+        boolean stepUpRequired = canStepUp && score >= stepUpThreshold;
+        if (!stepUpRequired) {
+            remember(history, signals);
+        }
+        return LoginRisk.builder()
+                .score(score)
+                .factors(factors)
+                .stepUpRequired(stepUpRequired)
+                .build();
+    }
+
+    /**
+     * Remembers the signals of a login that needed a second factor, once the user has passed it.
+     * Takes the same device and address that were assessed. For the two-factor check to call; it
+     * must never be reachable with the password alone.
+     */
+    public void confirm(Long userId, String fingerprint, InetAddress address) {
+        remember(history(userId), signals(fingerprint, address));
+    }
+
+    /** Remembers a device registered by the user once the current transaction commits. */
+    public void deviceRegistered(Long userId, String fingerprint) {
+        if (fingerprint == null) {
+            return;
+        }
+        afterCommit(() -> {
+            LoginHistory history = cache.get(userId);
+            if (history != null) {
+                synchronized (history) {
+                    history.dirty |= history.filter.add(deviceSignal(fingerprint));
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${login-risk.flush-interval-ms:30000}")
+    @PreDestroy
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Long> userIds = new ArrayList<>();
+            List<String> filters = new ArrayList<>();
+            List<LoginHistory> flushed = new ArrayList<>();
+            cache.forEach((userId, history) -> {
+                synchronized (history) {
+                    if (history.dirty) {
+                        userIds.add(userId);
+                        filters.add(history.filter.toBitString());
+                        flushed.add(history);
+                        history.dirty = false;
+                    }
+                }
+            });
+            if (userIds.isEmpty()) {
+                return;
+            }
+
+            try {
+                jdbcTemplate.update(UPSERT_SQL, userIds.toArray(Long[]::new), filters.toArray(String[]::new));
+                log.debug("Stored login signals for {} users", userIds.size());
+            } catch (RuntimeException e) {
+                log.error("Failed to store login signals for {} users, will retry", userIds.size(), e);
+                for (LoginHistory history : flushed) {
+                    synchronized (history) {
+                        history.dirty = true;
+                    }
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private List<String> signals(String fingerprint, InetAddress address) {
+        List<String> signals = new ArrayList<>(4);
+        if (fingerprint != null) {
+            signals.add(deviceSignal(fingerprint));
+        }
+        if (address != null) {
+            signals.add(networkSignal(address));
+            long location = geoLocationService.lookup(address);
+            Long asn = GeoIpDatabase.asn(location);
+            String country = GeoIpDatabase.countryCode(location);
+            if (asn != null) {
+                signals.add(asnSignal(asn));
+            }
+            if (country != null) {
+                signals.add(countrySignal(country));
+            }
+        }
+        return signals;
+    }
+
+    private static void remember(LoginHistory history, List<String> signals) {
+        synchronized (history) {
+            for (String signal : signals) {
+                history.dirty |= history.filter.add(signal);
+            }
+        }
+    }
+
+    private LoginHistory history(Long userId) {
+        long now = System.currentTimeMillis();
+        LoginHistory history = cache.get(userId);
+        // A filter with unsaved signals is kept past its TTL; reloading it would drop them.
+        if (history != null && (history.expiresAt > now || history.dirty)) {
+            return history;
+        }
+
+        LoginHistory loaded = new LoginHistory(load(userId), now + cacheTtlMs);
+        if (cache.size() >= cacheMaxEntries) {
+            flush();
+            cache.values().removeIf(entry -> !entry.dirty);
+        }
+        boolean installed = history == null
+                ? cache.putIfAbsent(userId, loaded) == null
+                : cache.replace(userId, history, loaded);
+        if (installed) {
+            return loaded;
+        }
+        // Another login loaded the same user meanwhile and may already have added to it; use that copy.
+        LoginHistory current = cache.get(userId);
+        return current != null ? current : loaded;
+    }
+
+    private BloomFilter load(Long userId) {
+        List<String> stored = jdbcTemplate.queryForList(
+                "SELECT signals::text FROM user_login_signals WHERE user_id = ?", String.class, userId);
+        if (!stored.isEmpty() && stored.get(0).length() == filterBits) {
+            return BloomFilter.fromBitString(stored.get(0), filterHashes);
+        }
+
+        BloomFilter filter = new BloomFilter(filterBits, filterHashes);
+        jdbcTemplate.query("SELECT fingerprint, host(ip_address) AS ip_address, asn, country_code FROM devices WHERE user_id = ?",
+                rs -> {
+                    String fingerprint = rs.getString("fingerprint");
+                    if (fingerprint != null) {
+                        filter.add(deviceSignal(fingerprint));
+                    }
+                    String ipAddress = rs.getString("ip_address");
+                    if (ipAddress != null) {
+                        filter.add(networkSignal(IpAddressNormalizer.parse(ipAddress)));
+                    }
+                    long asn = rs.getLong("asn");
+                    if (!rs.wasNull()) {
+                        filter.add(asnSignal(asn));
+                    }
+                    String country = rs.getString("country_code");
+                    if (country != null) {
+                        filter.add(countrySignal(country));
+                    }
+                }, userId);
+        return filter;
+    }
+
+    private static String deviceSignal(String fingerprint) {
+        return "d:" + fingerprint;
+    }
+
+    private static String networkSignal(InetAddress address) {
+        int prefixLength = address instanceof Inet4Address ? IPV4_PREFIX_LENGTH : IPV6_PREFIX_LENGTH;
+        return "n:" + IpAddressNormalizer.parseCidr(IpAddressNormalizer.format(address) + "/" + prefixLength);
+    }
+
+    private static String asnSignal(long asn) {
+        return "a:" + asn;
+    }
+
+    private static String countrySignal(String country) {
+        return "c:" + country;
+    }
+
+    private static LoginRiskFactor factorFor(String signal) {
+        return switch (signal.charAt(0)) {
+            case 'd' -> LoginRiskFactor.NEW_DEVICE;
+            case 'n' -> LoginRiskFactor.NEW_NETWORK;
+            case 'a' -> LoginRiskFactor.NEW_ASN;
+            default -> LoginRiskFactor.NEW_COUNTRY;
+        };
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static final class LoginHistory {
+
+        private final BloomFilter filter;
+        private final long expiresAt;
+        private volatile boolean dirty;
+
+        private LoginHistory(BloomFilter filter, long expiresAt) {
+            this.filter = filter;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.octopus.user_identity_service.service;
 
+import com.octopus.user_identity_service.dto.CursorPage;
+import com.octopus.user_identity_service.dto.SecurityQuestionSummary;
 import com.octopus.user_identity_service.enums.PredefinedQuestions;
 import com.octopus.user_identity_service.enums.SecurityQuestionType;
 import com.octopus.user_identity_service.exception.ResourceNotFoundException;
@@ -7,8 +9,10 @@ import com.octopus.user_identity_service.model.SecurityQuestion;
 import com.octopus.user_identity_service.model.User;
 import com.octopus.user_identity_service.repository.SecurityQuestionRepository;
 import com.octopus.user_identity_service.repository.UserRepository;
+import com.octopus.user_identity_service.util.CursorUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -87,8 +91,20 @@ public class SecurityQuestionService {
     }
 
     @Transactional(readOnly = true)
-    public Page<SecurityQuestion> getAllSecurityQuestions(Pageable pageable) {
-        return securityQuestionRepository.findAll(pageable);
+    public Page<SecurityQuestionSummary> getAllSecurityQuestions(Pageable pageable) {
+        return securityQuestionRepository.findAllSummaries(pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<SecurityQuestionSummary> getSecurityQuestionsByCursor(String cursor, int size, boolean includeTotal) {
+        int pageSize = CursorUtil.clampPageSize(size);
+        List<SecurityQuestionSummary> rows = securityQuestionRepository.findSummariesByIdGreaterThan(CursorUtil.decode(cursor), Limit.of(pageSize + 1));
+
+        CursorPage<SecurityQuestionSummary> page = CursorPage.of(rows, pageSize, SecurityQuestionSummary::getId);
+        if (includeTotal) {
+            page.setTotalElements(securityQuestionRepository.count());
+        }
+        return page;
     }
 
     public SecurityQuestion updateSecurityQuestion(Long id, SecurityQuestion securityQuestionDetails) {
@@ -198,6 +214,6 @@ public class SecurityQuestionService {
 
     @Transactional(readOnly = true)
     public long countActiveSecurityQuestions() {
-        return securityQuestionRepository.findByIsActiveTrue().size();
+        return securityQuestionRepository.countByIsActiveTrue();
     }
 }
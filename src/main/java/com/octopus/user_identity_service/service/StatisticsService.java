@@ -0,0 +1,110 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.CountBucket;
+import com.octopus.user_identity_service.dto.DimensionStats;
+import com.octopus.user_identity_service.enums.StatisticsDimension;
+import com.octopus.user_identity_service.repository.AddressRepository;
+import com.octopus.user_identity_service.repository.DeviceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches GROUP BY counts for the admin dashboard. Writers mark the dimensions they touch as dirty
+ * once their transaction commits, and the scheduled refresh re-runs only those aggregates, so
+ * reads never scan the underlying tables.
+ * <p>
+ * The refresh is incremental per dimension, not per row: a dirty dimension is counted again in
+ * full rather than adjusted by deltas. Deltas would drift, because devices also disappear through
+ * ON DELETE CASCADE when a user is removed, which UserService can only report as the whole
+ * dimension changing, and a top-{@code statistics.max-buckets} list cannot be maintained without
+ * counts for every bucket.
+ * The recount reads only the V4 indexes on the grouped columns and runs at most once per
+ * {@code statistics.refresh-interval-ms}, however many writes marked the dimension.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatisticsService {
+
+    private final DeviceRepository deviceRepository;
+    private final AddressRepository addressRepository;
+
+    private final Map<StatisticsDimension, DimensionStats> cache = new ConcurrentHashMap<>();
+    private final Set<StatisticsDimension> dirty = ConcurrentHashMap.newKeySet();
+
+    @Value("${statistics.max-buckets:100}")
+    private int maxBuckets;
+
+    public Map<StatisticsDimension, DimensionStats> getAllStatistics() {
+        Map<StatisticsDimension, DimensionStats> statistics = new EnumMap<>(StatisticsDimension.class);
+        for (StatisticsDimension dimension : StatisticsDimension.values()) {
+            statistics.put(dimension, getStatistics(dimension));
+        }
+        return statistics;
+    }
+
+    public DimensionStats getStatistics(StatisticsDimension dimension) {
+        DimensionStats stats = cache.get(dimension);
+        if (stats != null) {
+            return stats;
+        }
+        // Loaded outside computeIfAbsent, which would hold the map's bin lock for the whole query.
+        // Readers racing on a cold dimension may both count it; the first result is kept.
+        stats = load(dimension);
+        DimensionStats existing = cache.putIfAbsent(dimension, stats);
+        return existing != null ? existing : stats;
+    }
+
+    public void markDirty(StatisticsDimension... dimensions) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dirty.addAll(List.of(dimensions));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dirty.addAll(List.of(dimensions));
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.refresh-interval-ms:60000}")
+    public void refreshDirtyStatistics() {
+        for (StatisticsDimension dimension : StatisticsDimension.values()) {
+            // Clear the flag before reloading so a write that lands mid-refresh is picked up next round.
+            if (dirty.remove(dimension) && cache.containsKey(dimension)) {
+                cache.put(dimension, load(dimension));
+                log.debug("Refreshed statistics for {}", dimension);
+            }
+        }
+    }
+
+    private DimensionStats load(StatisticsDimension dimension) {
+        Limit limit = Limit.of(maxBuckets);
+        List<CountBucket> buckets = switch (dimension) {
+            case DEVICES_BY_TYPE -> deviceRepository.countGroupedByType(limit);
+            case DEVICES_BY_OS -> deviceRepository.countGroupedByOs(limit);
+            case ADDRESSES_BY_COUNTRY -> addressRepository.countGroupedByCountry(limit);
+            case ADDRESSES_BY_CITY -> addressRepository.countGroupedByCity(limit);
+        };
+
+        return DimensionStats.builder()
+                .dimension(dimension)
+                .buckets(buckets)
+                .refreshedAt(LocalDateTime.now())
+                .build();
+    }
+}
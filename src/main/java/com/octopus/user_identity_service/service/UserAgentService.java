@@ -0,0 +1,234 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.model.Device;
+import com.octopus.user_identity_service.model.UserAgent;
+import com.octopus.user_identity_service.util.LruCache;
+import com.octopus.user_identity_service.util.UserAgentParser;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Interns User-Agent strings into the user_agents dictionary. Each distinct string is parsed and
+ * stored once; devices only keep its id. Interned ids are held in an LRU cache, so a repeated agent
+ * costs neither a parse nor a query. Devices written before the dictionary existed are moved over
+ * by {@link #backfillDevices()} in id-ordered batches.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserAgentService {
+
+    private static final int MAX_INTERN_ATTEMPTS = 3;
+
+    // Rows another transaction inserted concurrently are skipped by ON CONFLICT and invisible to this
+    // statement's snapshot; the caller retries those, and a new statement sees them once committed.
+    private static final String INTERN_SQL = """
+            WITH input AS (
+                SELECT * FROM unnest(?::text[], ?::text[], ?::text[], ?::text[]) AS t(user_agent, os, os_version, device_model)
+            ), inserted AS (
+                INSERT INTO user_agents (user_agent, user_agent_hash, os, os_version, device_model, created_at)
+                SELECT user_agent, encode(sha256(convert_to(user_agent, 'UTF8')), 'hex'), os, os_version, device_model, now()
+                FROM input
+                ON CONFLICT (user_agent_hash) DO NOTHING
+                RETURNING id, user_agent
+            )
+            SELECT id, user_agent FROM inserted
+            UNION ALL
+            SELECT ua.id, ua.user_agent
+            FROM user_agents ua
+            JOIN input i ON ua.user_agent_hash = encode(sha256(convert_to(i.user_agent, 'UTF8')), 'hex')
+            """;
+
+    private static final String BACKFILL_SELECT_SQL = """
+            SELECT id, user_agent FROM devices
+            WHERE user_agent IS NOT NULL AND id > ?
+            ORDER BY id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private static final String BACKFILL_UPDATE_SQL = """
+            UPDATE devices d SET user_agent_id = v.user_agent_id, user_agent = NULL
+            FROM unnest(?::bigint[], ?::bigint[]) AS v(device_id, user_agent_id)
+            WHERE d.id = v.device_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+    private LruCache<String, Long> cache;
+
+    @Value("${user-agents.cache-max-entries:10000}")
+    private int cacheMaxEntries;
+
+    @Value("${user-agents.backfill.enabled:true}")
+    private boolean backfillEnabled;
+
+    @Value("${user-agents.backfill.batch-size:1000}")
+    private int backfillBatchSize;
+
+    @PostConstruct
+    void init() {
+        cache = new LruCache<>(cacheMaxEntries);
+    }
+
+    /**
+     * Replaces the device's own copy of its user agent with a reference to the dictionary entry.
+     * Call before saving a device whose user agent may have been set.
+     */
+    public void intern(Device device) {
+        String userAgent = normalise(device.getUserAgent());
+        device.setUserAgent(null);
+        if (userAgent == null) {
+            device.setUserAgentEntry(null);
+            return;
+        }
+        Long id = resolve(List.of(userAgent)).get(userAgent);
+        device.setUserAgentEntry(entityManager.getReference(UserAgent.class, id));
+    }
+
+    @Scheduled(fixedDelayString = "${user-agents.backfill.interval-ms:60000}")
+    public void scheduledBackfill() {
+        if (backfillEnabled) {
+            backfillDevices();
+        }
+    }
+
+    /**
+     * Moves inline user agents of existing devices into the dictionary, one transaction per batch.
+     * Rows locked by a concurrent device update are skipped and picked up by the next run.
+     * Returns the number of devices processed.
+     */
+    public int backfillDevices() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            long lastId = 0;
+            while (true) {
+                long afterId = lastId;
+                BackfillBatch batch = transactionTemplate.execute(status -> backfillBatch(afterId));
+                if (batch == null || batch.devices() == 0) {
+                    break;
+                }
+                total += batch.devices();
+                lastId = batch.lastDeviceId();
+            }
+            if (total > 0) {
+                log.info("Moved the user agents of {} devices into the dictionary", total);
+            }
+            return total;
+        } finally {
+            backfillRunning.set(false);
+        }
+    }
+
+    private BackfillBatch backfillBatch(long afterId) {
+        List<Long> deviceIds = new ArrayList<>();
+        List<String> userAgents = new ArrayList<>();
+        jdbcTemplate.query(BACKFILL_SELECT_SQL, rs -> {
+            deviceIds.add(rs.getLong("id"));
+            userAgents.add(normalise(rs.getString("user_agent")));
+        }, afterId, backfillBatchSize);
+        if (deviceIds.isEmpty()) {
+            return new BackfillBatch(0, afterId);
+        }
+
+        Map<String, Long> ids = resolve(userAgents.stream().filter(Objects::nonNull).toList());
+        Long[] userAgentIds = new Long[deviceIds.size()];
+        for (int i = 0; i < userAgentIds.length; i++) {
+            String userAgent = userAgents.get(i);
+            userAgentIds[i] = userAgent == null ? null : ids.get(userAgent);
+        }
+        jdbcTemplate.update(BACKFILL_UPDATE_SQL, deviceIds.toArray(Long[]::new), userAgentIds);
+        return new BackfillBatch(deviceIds.size(), deviceIds.get(deviceIds.size() - 1));
+    }
+
+    /** Dictionary ids of the given (normalised, non-null) user agents, creating entries as needed. */
+    private Map<String, Long> resolve(Collection<String> userAgents) {
+        Map<String, Long> ids = new HashMap<>();
+        // Sorted so concurrent batches insert shared keys in the same order and cannot deadlock.
+        TreeSet<String> missing = new TreeSet<>();
+        for (String userAgent : userAgents) {
+            Long id = cache.get(userAgent);
+            if (id != null) {
+                ids.put(userAgent, id);
+            } else {
+                missing.add(userAgent);
+            }
+        }
+        if (missing.isEmpty()) {
+            return ids;
+        }
+
+        Map<String, Long> interned = new HashMap<>();
+        for (int attempt = 1; !missing.isEmpty(); attempt++) {
+            if (attempt > MAX_INTERN_ATTEMPTS) {
+                throw new IllegalStateException("Could not intern " + missing.size() + " user agents");
+            }
+            String[] texts = missing.toArray(String[]::new);
+            String[] os = new String[texts.length];
+            String[] osVersions = new String[texts.length];
+            String[] models = new String[texts.length];
+            for (int i = 0; i < texts.length; i++) {
+                UserAgentParser.Parsed parsed = UserAgentParser.parse(texts[i]);
+                os[i] = parsed.os();
+                osVersions[i] = parsed.osVersion();
+                models[i] = parsed.deviceModel();
+            }
+            jdbcTemplate.query(INTERN_SQL, rs -> {
+                String userAgent = rs.getString("user_agent");
+                interned.put(userAgent, rs.getLong("id"));
+                missing.remove(userAgent);
+            }, texts, os, osVersions, models);
+        }
+        ids.putAll(interned);
+        // Only cache ids whose rows are committed; a rolled-back insert would leave a dangling id.
+        afterCommit(() -> cache.putAll(interned));
+        return ids;
+    }
+
+    private static String normalise(String userAgent) {
+        if (userAgent == null || userAgent.isBlank()) {
+            return null;
+        }
+        return userAgent.strip();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private record BackfillBatch(int devices, long lastDeviceId) {
+    }
+}
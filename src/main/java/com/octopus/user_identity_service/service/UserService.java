@@ -1,12 +1,18 @@
 package com.octopus.user_identity_service.service;
 
+import com.octopus.user_identity_service.dto.CursorPage;
+import com.octopus.user_identity_service.dto.UserRoleView;
+import com.octopus.user_identity_service.dto.UserSummary;
+import com.octopus.user_identity_service.enums.StatisticsDimension;
 import com.octopus.user_identity_service.exception.ResourceNotFoundException;
 import com.octopus.user_identity_service.model.Role;
 import com.octopus.user_identity_service.model.User;
 import com.octopus.user_identity_service.repository.RoleRepository;
 import com.octopus.user_identity_service.repository.UserRepository;
+import com.octopus.user_identity_service.util.CursorUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -15,8 +21,10 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -27,6 +35,7 @@ public class UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final StatisticsService statisticsService;
 
     public User createUser(User user) {
         log.info("Creating new user: {}", user.getUsername());
@@ -65,15 +74,30 @@ public class UserService {
     }
 
     @Transactional(readOnly = true)
-    public Page<User> getAllUsers(Pageable pageable) {
-        return userRepository.findAll(pageable);
+    public Page<UserSummary> getAllUsers(Pageable pageable) {
+        Page<UserSummary> users = userRepository.findAllSummaries(pageable);
+        attachRoles(users.getContent());
+        return users;
     }
 
     @Transactional(readOnly = true)
-    public List<User> getUsersByRole(String roleName) {
-        return userRepository.findAll().stream()
-                .filter(user -> user.hasRole(roleName))
-                .toList();
+    public CursorPage<UserSummary> getUsersByCursor(String cursor, int size, boolean includeTotal) {
+        int pageSize = CursorUtil.clampPageSize(size);
+        List<UserSummary> rows = userRepository.findSummariesByIdGreaterThan(CursorUtil.decode(cursor), Limit.of(pageSize + 1));
+
+        CursorPage<UserSummary> page = CursorPage.of(rows, pageSize, UserSummary::getId);
+        attachRoles(page.getItems());
+        if (includeTotal) {
+            page.setTotalElements(userRepository.count());
+        }
+        return page;
+    }
+
+    @Transactional(readOnly = true)
+    public Page<UserSummary> getUsersByRole(String roleName, Pageable pageable) {
+        Page<UserSummary> users = userRepository.findSummariesByRoleName(roleName, pageable);
+        attachRoles(users.getContent());
+        return users;
     }
 
     public User updateUser(Long id, User userDetails) {
@@ -180,6 +204,8 @@ public class UserService {
         }
         
         userRepository.deleteById(id);
+        // The user's devices go with it through ON DELETE CASCADE.
+        statisticsService.markDirty(StatisticsDimension.DEVICES_BY_TYPE, StatisticsDimension.DEVICES_BY_OS);
     }
 
     @Transactional(readOnly = true)
@@ -204,8 +230,23 @@ public class UserService {
 
     @Transactional(readOnly = true)
     public long countUsersByRole(String roleName) {
-        return userRepository.findAll().stream()
-                .filter(user -> user.hasRole(roleName))
-                .count();
+        return roleRepository.countMembersByName(roleName);
+    }
+
+    /**
+     * Fills in role names for a page of projected users with a single query over user_roles,
+     * instead of letting each user's EAGER role collection load separately.
+     */
+    private void attachRoles(List<UserSummary> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+
+        List<Long> userIds = users.stream().map(UserSummary::getId).toList();
+        Map<Long, List<String>> rolesByUserId = userRepository.findRoleNamesByUserIds(userIds).stream()
+                .collect(Collectors.groupingBy(UserRoleView::getUserId,
+                        Collectors.mapping(UserRoleView::getRoleName, Collectors.toList())));
+
+        users.forEach(user -> user.setRoles(rolesByUserId.getOrDefault(user.getId(), List.of())));
     }
 }
@@ -0,0 +1,196 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.config.VelocityLimitProperties;
+import com.octopus.user_identity_service.dto.AccountOwner;
+import com.octopus.user_identity_service.exception.ResourceNotFoundException;
+import com.octopus.user_identity_service.exception.VelocityLimitExceededException;
+import com.octopus.user_identity_service.repository.AccountRepository;
+import com.octopus.user_identity_service.util.SlidingWindowCounter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-account and per-user debit velocity limits over a sliding window, checked before money
+ * leaves an account. Windows live in memory on each instance, so with several instances the
+ * effective limit is per instance. A debit is recorded when it is checked and taken back if its
+ * transaction rolls back, or explicitly through {@link Reservation#release()}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VelocityLimiter {
+
+    private static final int OWNER_CACHE_MAX_ENTRIES = 100_000;
+
+    private final VelocityLimitProperties properties;
+    private final AccountRepository accountRepository;
+
+    private final ConcurrentHashMap<Long, SlidingWindowCounter> accountWindows = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, SlidingWindowCounter> userWindows = new ConcurrentHashMap<>();
+    private final Map<Long, AccountOwner> owners = new ConcurrentHashMap<>();
+
+    /**
+     * Records a debit of {@code amount} from the account, or throws
+     * {@link VelocityLimitExceededException} without recording anything if that would exceed the
+     * account's or its owner's limits.
+     */
+    public Reservation reserve(Long accountId, BigDecimal amount) {
+        if (!properties.isEnabled()) {
+            return Reservation.NONE;
+        }
+        AccountOwner owner = owner(accountId);
+        long minorUnits = toMinorUnits(amount);
+        long now = System.currentTimeMillis();
+
+        boolean accountLimited = isLimited(properties.getAccountTypes().get(owner.getAccountType()));
+        boolean userLimited = isLimited(properties.getUser());
+        if (accountLimited) {
+            record(accountWindows, accountId, now, minorUnits,
+                    properties.getAccountTypes().get(owner.getAccountType()), "account " + accountId);
+        }
+        if (userLimited) {
+            try {
+                record(userWindows, owner.getUserId(), now, minorUnits, properties.getUser(), "user " + owner.getUserId());
+            } catch (VelocityLimitExceededException e) {
+                if (accountLimited) {
+                    remove(accountWindows, accountId, now, minorUnits);
+                }
+                throw e;
+            }
+        }
+
+        Reservation reservation = new Reservation(this, accountId, owner.getUserId(), accountLimited, userLimited, now, minorUnits);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        reservation.release();
+                    }
+                }
+            });
+        }
+        return reservation;
+    }
+
+    /** Forgets the cached owner and type of an account after it was changed or deleted. */
+    public void evictAccount(Long accountId) {
+        owners.remove(accountId);
+    }
+
+    @Scheduled(fixedDelayString = "${velocity.cleanup-interval-ms:60000}")
+    public void dropIdleWindows() {
+        long now = System.currentTimeMillis();
+        dropIdle(accountWindows, now);
+        dropIdle(userWindows, now);
+    }
+
+    private void record(ConcurrentHashMap<Long, SlidingWindowCounter> windows, Long key, long now, long minorUnits,
+                        VelocityLimitProperties.Limit limit, String subject) {
+        // The debit is added inside compute() so that dropIdle, which checks and unmaps under the
+        // same entry lock, never removes a window between its idle check and this add.
+        SlidingWindowCounter.Totals[] recorded = new SlidingWindowCounter.Totals[1];
+        SlidingWindowCounter window = windows.compute(key, (k, current) -> {
+            SlidingWindowCounter counter = current != null
+                    ? current : new SlidingWindowCounter(properties.getWindow().toMillis(), properties.getBuckets());
+            recorded[0] = counter.add(now, 1, minorUnits);
+            return counter;
+        });
+        SlidingWindowCounter.Totals totals = recorded[0];
+
+        boolean countExceeded = limit.getMaxCount() != null && totals.count() > limit.getMaxCount();
+        boolean amountExceeded = limit.getMaxAmount() != null && totals.amount() > toMinorUnits(limit.getMaxAmount());
+        if (countExceeded || amountExceeded) {
+            window.remove(now, 1, minorUnits);
+            log.warn("Velocity limit exceeded for {}: {} debits totalling {} in the last {}",
+                    subject, totals.count(), BigDecimal.valueOf(totals.amount(), 2), properties.getWindow());
+            throw new VelocityLimitExceededException("Debit " + (countExceeded ? "count" : "amount")
+                    + " limit exceeded for " + subject + " in the last " + properties.getWindow());
+        }
+    }
+
+    private AccountOwner owner(Long accountId) {
+        AccountOwner owner = owners.get(accountId);
+        if (owner == null) {
+            owner = accountRepository.findOwnerById(accountId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Account not found with id: " + accountId));
+            if (owners.size() >= OWNER_CACHE_MAX_ENTRIES) {
+                owners.clear();
+            }
+            owners.put(accountId, owner);
+        }
+        return owner;
+    }
+
+    private static boolean isLimited(VelocityLimitProperties.Limit limit) {
+        return limit != null && (limit.getMaxAmount() != null || limit.getMaxCount() != null);
+    }
+
+    private static void dropIdle(ConcurrentHashMap<Long, SlidingWindowCounter> windows, long now) {
+        for (Long key : windows.keySet()) {
+            windows.computeIfPresent(key, (k, window) -> window.isIdle(now) ? null : window);
+        }
+    }
+
+    private static void remove(Map<Long, SlidingWindowCounter> windows, Long key, long recordedAt, long minorUnits) {
+        SlidingWindowCounter window = windows.get(key);
+        if (window != null) {
+            window.remove(recordedAt, 1, minorUnits);
+        }
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.UP).unscaledValue().longValueExact();
+    }
+
+    private void release(Reservation reservation) {
+        if (reservation.accountLimited) {
+            remove(accountWindows, reservation.accountId, reservation.recordedAt, reservation.minorUnits);
+        }
+        if (reservation.userLimited) {
+            remove(userWindows, reservation.userId, reservation.recordedAt, reservation.minorUnits);
+        }
+    }
+
+    /** A debit recorded against the windows; releasing it more than once has no further effect. */
+    public static final class Reservation {
+
+        static final Reservation NONE = new Reservation(null, null, null, false, false, 0, 0);
+
+        private final VelocityLimiter limiter;
+        private final Long accountId;
+        private final Long userId;
+        private final boolean accountLimited;
+        private final boolean userLimited;
+        private final long recordedAt;
+        private final long minorUnits;
+        private boolean released;
+
+        private Reservation(VelocityLimiter limiter, Long accountId, Long userId, boolean accountLimited,
+                            boolean userLimited, long recordedAt, long minorUnits) {
+            this.limiter = limiter;
+            this.accountId = accountId;
+            this.userId = userId;
+            this.accountLimited = accountLimited;
+            this.userLimited = userLimited;
+            this.recordedAt = recordedAt;
+            this.minorUnits = minorUnits;
+        }
+
+        public synchronized void release() {
+            if (limiter != null && !released) {
+                released = true;
+                limiter.release(this);
+            }
+        }
+    }
+}
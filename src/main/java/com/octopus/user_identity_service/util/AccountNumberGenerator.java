@@ -0,0 +1,113 @@
+package com.octopus.user_identity_service.util;
+
+import com.octopus.user_identity_service.enums.AccountType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+/**
+ * Issues account numbers of the form {@code CHE-00000012345} + Luhn check digit: a three-letter
+ * type prefix, a ten-digit serial and one check digit. Serials come from blocks of
+ * {@link #BLOCK_SIZE} reserved with a single sequence call, so numbers are unique across nodes
+ * without an existence query, and a mistyped number fails {@link #isValid}. Only numbers about to be
+ * issued are held to these formats: accounts opened earlier may carry any number up to 50 characters.
+ * <p>
+ * The check digit covers the serial only. Serials are unique whatever the prefix, so a mistyped
+ * prefix can never name another account. The prefix records the type the account was opened with
+ * and stays when the type is changed later: the number has been handed out and must not change.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AccountNumberGenerator {
+
+    /** Serials per reserved block. Changing it would make new blocks overlap issued ones. */
+    public static final long BLOCK_SIZE = 1_000;
+
+    private static final int SERIAL_DIGITS = 10;
+    private static final long MAX_SERIAL = 9_999_999_999L;
+    private static final Pattern FORMAT = Pattern.compile("[A-Z]{3}-\\d{" + (SERIAL_DIGITS + 1) + "}");
+    // Numbers issued before the generator existed: prefix plus eight hex characters of a UUID.
+    private static final Pattern LEGACY_FORMAT = Pattern.compile("[A-Z]{3}-[0-9A-F]{8}");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long nextSerial;
+    private long blockEnd;
+
+    public String next(AccountType accountType) {
+        return format(accountType, nextSerial());
+    }
+
+    /** True for numbers in the pre-generator format, which callers may still supply when creating an account. */
+    public static boolean isLegacy(String accountNumber) {
+        return accountNumber != null && LEGACY_FORMAT.matcher(accountNumber).matches();
+    }
+
+    /** True for well-formed numbers with a correct check digit, and for legacy numbers. */
+    public static boolean isValid(String accountNumber) {
+        if (accountNumber == null) {
+            return false;
+        }
+        if (isLegacy(accountNumber)) {
+            return prefixType(accountNumber) != null;
+        }
+        if (!FORMAT.matcher(accountNumber).matches() || prefixType(accountNumber) == null) {
+            return false;
+        }
+        String digits = accountNumber.substring(4);
+        int checkDigit = digits.charAt(SERIAL_DIGITS) - '0';
+        return luhnCheckDigit(digits.substring(0, SERIAL_DIGITS)) == checkDigit;
+    }
+
+    static String format(AccountType accountType, long serial) {
+        String digits = String.format("%0" + SERIAL_DIGITS + "d", serial);
+        return prefix(accountType) + "-" + digits + luhnCheckDigit(digits);
+    }
+
+    static int luhnCheckDigit(String digits) {
+        int sum = 0;
+        // Walking right to left, double every other digit starting with the rightmost payload digit.
+        for (int i = digits.length() - 1, position = 0; i >= 0; i--, position++) {
+            int digit = digits.charAt(i) - '0';
+            if (position % 2 == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private synchronized long nextSerial() {
+        if (nextSerial == blockEnd) {
+            Long block = jdbcTemplate.queryForObject("SELECT nextval('account_number_block_seq')", Long.class);
+            nextSerial = block * BLOCK_SIZE;
+            blockEnd = nextSerial + BLOCK_SIZE;
+            if (blockEnd - 1 > MAX_SERIAL) {
+                throw new IllegalStateException("Account number serial space is exhausted");
+            }
+            log.info("Reserved account number block {} ({} - {})", block, nextSerial, blockEnd - 1);
+        }
+        return nextSerial++;
+    }
+
+    private static String prefix(AccountType accountType) {
+        return accountType.name().substring(0, 3);
+    }
+
+    private static AccountType prefixType(String accountNumber) {
+        String prefix = accountNumber.substring(0, 3);
+        for (AccountType type : AccountType.values()) {
+            if (prefix(type).equals(prefix)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
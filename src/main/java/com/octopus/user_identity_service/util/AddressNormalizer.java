@@ -0,0 +1,128 @@
+package com.octopus.user_identity_service.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces address fields to a comparable form, so that "12 Main St." and "12 main street" match.
+ * Text is case-folded, accents are dropped, punctuation becomes a space and whitespace is
+ * collapsed; in streets, common abbreviations are also spelled out. The stored match keys depend
+ * on these rules: changing them means clearing addresses.match_key so the batch job recomputes it.
+ */
+public final class AddressNormalizer {
+
+    private static final char KEY_SEPARATOR = '|';
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Apostrophes are dropped rather than split on, so "O'Connell" stays one word.
+    private static final Pattern APOSTROPHES = Pattern.compile("['’]");
+    // Likewise the dots of an initialism, so "U.S.A." and "N.W." read as "usa" and "nw".
+    private static final Pattern INITIALISM_DOTS = Pattern.compile("(?<=\\b\\p{L})\\.(?=\\p{L}\\b)");
+
+    private static final Map<String, String> STREET_ABBREVIATIONS = Map.ofEntries(
+            Map.entry("aly", "alley"),
+            Map.entry("apt", "apartment"),
+            Map.entry("av", "avenue"),
+            Map.entry("ave", "avenue"),
+            Map.entry("bldg", "building"),
+            Map.entry("blvd", "boulevard"),
+            Map.entry("cir", "circle"),
+            Map.entry("cl", "close"),
+            Map.entry("cres", "crescent"),
+            Map.entry("ct", "court"),
+            Map.entry("dr", "drive"),
+            Map.entry("e", "east"),
+            Map.entry("expy", "expressway"),
+            Map.entry("fl", "floor"),
+            Map.entry("ft", "fort"),
+            Map.entry("gdns", "gardens"),
+            Map.entry("hwy", "highway"),
+            Map.entry("ln", "lane"),
+            Map.entry("mt", "mount"),
+            Map.entry("n", "north"),
+            Map.entry("ne", "northeast"),
+            Map.entry("nw", "northwest"),
+            Map.entry("pkwy", "parkway"),
+            Map.entry("pl", "place"),
+            Map.entry("plz", "plaza"),
+            Map.entry("rd", "road"),
+            Map.entry("s", "south"),
+            Map.entry("se", "southeast"),
+            Map.entry("sq", "square"),
+            Map.entry("ste", "suite"),
+            Map.entry("sw", "southwest"),
+            Map.entry("ter", "terrace"),
+            Map.entry("trl", "trail"),
+            Map.entry("w", "west"));
+
+    // After these, or at the end of the street, "st" is "street"; anywhere else it is "saint".
+    private static final Set<String> STREET_SUFFIX_FOLLOWERS = Set.of(
+            "apartment", "suite", "floor", "building",
+            "north", "south", "east", "west", "northeast", "northwest", "southeast", "southwest");
+
+    private AddressNormalizer() {
+    }
+
+    /** Case-folded words separated by single spaces; null when nothing is left. */
+    public static String normalise(String value) {
+        List<String> words = words(value);
+        return words.isEmpty() ? null : String.join(" ", words);
+    }
+
+    /** As {@link #normalise(String)}, with street-type, directional and unit abbreviations spelled out. */
+    public static String normaliseStreet(String street) {
+        List<String> words = words(street);
+        if (words.isEmpty()) {
+            return null;
+        }
+        List<String> expanded = new ArrayList<>(words.size());
+        for (String word : words) {
+            expanded.add(STREET_ABBREVIATIONS.getOrDefault(word, word));
+        }
+        for (int i = 0; i < expanded.size(); i++) {
+            if (expanded.get(i).equals("st")) {
+                boolean last = i == expanded.size() - 1;
+                expanded.set(i, last || STREET_SUFFIX_FOLLOWERS.contains(expanded.get(i + 1)) ? "street" : "saint");
+            }
+        }
+        return String.join(" ", expanded);
+    }
+
+    /**
+     * Key under which addresses with the same normalised street, city and state collide. Empty
+     * parts stay in place, so "street||" never equals "|street|".
+     */
+    public static String matchKey(String street, String city, String state) {
+        return nullToEmpty(normaliseStreet(street)) + KEY_SEPARATOR
+                + nullToEmpty(normalise(city)) + KEY_SEPARATOR
+                + nullToEmpty(normalise(state));
+    }
+
+    private static List<String> words(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        String text = Normalizer.normalize(value, Normalizer.Form.NFKD);
+        text = COMBINING_MARKS.matcher(text).replaceAll("");
+        text = APOSTROPHES.matcher(text).replaceAll("");
+        text = INITIALISM_DOTS.matcher(text).replaceAll("");
+        text = text.toLowerCase(Locale.ROOT).replace("ß", "ss");
+        List<String> words = new ArrayList<>();
+        for (String word : NON_ALPHANUMERIC.split(text)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,90 @@
+package com.octopus.user_identity_service.util;
+
+/**
+ * Fixed-size Bloom filter over strings. Membership answers are "definitely not added" or "probably
+ * added"; with {@code n} entries the false-positive rate is about (1 - e^(-hashes * n / bits))^hashes.
+ * Serialises to a '0'/'1' string so it can be stored as a Postgres bit string and merged with '|'.
+ * Not thread-safe.
+ */
+public final class BloomFilter {
+
+    private final long[] words;
+    private final int bits;
+    private final int hashes;
+
+    public BloomFilter(int bits, int hashes) {
+        if (bits < 64 || hashes < 1) {
+            throw new IllegalArgumentException("A Bloom filter needs at least 64 bits and one hash");
+        }
+        this.words = new long[(bits + 63) / 64];
+        this.bits = bits;
+        this.hashes = hashes;
+    }
+
+    /** Reads {@link #toBitString()} output; the bit string's length becomes the filter size. */
+    public static BloomFilter fromBitString(String value, int hashes) {
+        BloomFilter filter = new BloomFilter(value.length(), hashes);
+        for (int i = 0; i < value.length(); i++) {
+            char bit = value.charAt(i);
+            if (bit == '1') {
+                filter.words[i >>> 6] |= 1L << i;
+            } else if (bit != '0') {
+                throw new IllegalArgumentException("Not a bit string");
+            }
+        }
+        return filter;
+    }
+
+    /** Adds the value and returns whether any bit changed, i.e. whether it was definitely new. */
+    public boolean add(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bits);
+            long mask = 1L << bit;
+            if ((words[bit >>> 6] & mask) == 0) {
+                words[bit >>> 6] |= mask;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String toBitString() {
+        char[] text = new char[bits];
+        for (int i = 0; i < bits; i++) {
+            text[i] = (words[i >>> 6] & (1L << i)) != 0 ? '1' : '0';
+        }
+        return new String(text);
+    }
+
+    // 64-bit FNV-1a over the UTF-16 code units, finished with the MurmurHash3 mixer so both halves are usable.
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
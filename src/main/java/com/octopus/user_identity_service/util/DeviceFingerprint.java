@@ -0,0 +1,53 @@
+package com.octopus.user_identity_service.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Stable identity of a device across registrations and logins: SHA-256 over the normalised user
+ * agent, OS, model and MAC address. Whitespace is collapsed, text is lower-cased and the MAC is
+ * reduced to its hex digits, so cosmetic differences in what clients report do not produce a
+ * new device. V14__Add_device_fingerprint.sql backfilled existing rows with the same rules in SQL,
+ * which only agree on ASCII, so V26 recomputed them with this class.
+ */
+public final class DeviceFingerprint {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern NON_HEX = Pattern.compile("[^0-9A-Fa-f]");
+    private static final String SEPARATOR = "\u001f";
+
+    private DeviceFingerprint() {
+    }
+
+    /** Returns the fingerprint, or null when none of the attributes is known. */
+    public static String of(String userAgent, String os, String deviceModel, String macAddress) {
+        String normalisedUserAgent = normalise(userAgent);
+        String normalisedOs = normalise(os);
+        String normalisedModel = normalise(deviceModel);
+        String normalisedMac = macAddress == null ? "" : NON_HEX.matcher(macAddress).replaceAll("").toLowerCase(Locale.ROOT);
+        if (normalisedUserAgent.isEmpty() && normalisedOs.isEmpty() && normalisedModel.isEmpty() && normalisedMac.isEmpty()) {
+            return null;
+        }
+        return sha256(String.join(SEPARATOR, normalisedUserAgent, normalisedOs, normalisedModel, normalisedMac));
+    }
+
+    private static String normalise(String value) {
+        if (value == null) {
+            return "";
+        }
+        return WHITESPACE.matcher(value).replaceAll(" ").strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
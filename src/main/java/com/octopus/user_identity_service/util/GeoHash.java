@@ -0,0 +1,119 @@
+package com.octopus.user_identity_service.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Geohash encoding and the geometry needed to search by it. The encoding must stay identical to the
+ * geohash_encode() database function that fills addresses.geohash (V20), since searches compare
+ * prefixes computed here with hashes computed there.
+ */
+public final class GeoHash {
+
+    public static final int MAX_PRECISION = 12;
+
+    public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    private static final long AXIS_CELLS = 1L << 30;
+    private static final long LONGITUDE_BITS = 0x0AAAAAAAAAAAAAAAL;
+    private static final long LATITUDE_BITS = 0x0555555555555555L;
+
+    private static final char[] ALPHABET = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeoHash() {
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Geohash precision must be between 1 and " + MAX_PRECISION);
+        }
+        // Quantise each axis to 30 bits and interleave them, longitude first; every character is
+        // then five consecutive bits. Same arithmetic as the database function, so both round alike.
+        long lon = Math.min((long) Math.floor((longitude + 180) / 360 * AXIS_CELLS), AXIS_CELLS - 1);
+        long lat = Math.min((long) Math.floor((latitude + 90) / 180 * AXIS_CELLS), AXIS_CELLS - 1);
+        long bits = Long.expand(lon, LONGITUDE_BITS) | Long.expand(lat, LATITUDE_BITS);
+        char[] hash = new char[precision];
+        for (int i = 0; i < precision; i++) {
+            hash[i] = ALPHABET[(int) (bits >>> (5 * (MAX_PRECISION - 1 - i))) & 31];
+        }
+        return new String(hash);
+    }
+
+    /** Height of a cell at the given precision, in degrees of latitude. */
+    public static double cellHeight(int precision) {
+        return 180.0 / (1L << (5 * precision / 2));
+    }
+
+    /** Width of a cell at the given precision, in degrees of longitude. */
+    public static double cellWidth(int precision) {
+        return 360.0 / (1L << ((5 * precision + 1) / 2));
+    }
+
+    /**
+     * The longest geohash prefixes, at most {@code maxCells} of them, whose cells together cover
+     * every point within {@code radiusMeters} of the centre. Returns null when no precision covers
+     * the circle in that few cells, in which case the caller has to look everywhere.
+     */
+    public static List<String> coveringPrefixes(double latitude, double longitude, double radiusMeters, int maxCells) {
+        double angle = radiusMeters / EARTH_RADIUS_METERS;
+        double minLat = latitude - Math.toDegrees(angle);
+        double maxLat = latitude + Math.toDegrees(angle);
+        double lonSpan = Math.sin(angle) / Math.cos(Math.toRadians(latitude));
+        if (minLat <= -90 || maxLat >= 90 || angle >= Math.PI / 2 || lonSpan >= 1) {
+            // The circle contains a pole or is too wide for a longitude bound, so it spans every longitude.
+            return coveringPrefixes(Math.max(minLat, -90), Math.min(maxLat, 90), -180, 180, maxCells);
+        }
+        // Widest longitude extent of a circle on the sphere, reached poleward of its centre.
+        double lonDelta = Math.toDegrees(Math.asin(lonSpan));
+        return coveringPrefixes(minLat, maxLat, longitude - lonDelta, longitude + lonDelta, maxCells);
+    }
+
+    /**
+     * The longest prefixes, at most {@code maxCells}, covering the box. {@code minLon} may be below
+     * -180 and {@code maxLon} above 180 for boxes crossing the antimeridian.
+     */
+    static List<String> coveringPrefixes(double minLat, double maxLat, double minLon, double maxLon, int maxCells) {
+        for (int precision = MAX_PRECISION; precision >= 1; precision--) {
+            double height = cellHeight(precision);
+            double width = cellWidth(precision);
+            long latCells = Math.round(180 / height);
+            long lonCells = Math.round(360 / width);
+            long firstRow = row(minLat, height, latCells);
+            long lastRow = row(maxLat, height, latCells);
+            long firstColumn = (long) Math.floor((minLon + 180) / width);
+            long lastColumn = (long) Math.floor((maxLon + 180) / width);
+            // A box spanning the whole circle of longitude needs each column once.
+            long columns = Math.min(lastColumn - firstColumn + 1, lonCells);
+            long rows = lastRow - firstRow + 1;
+            if (rows * columns > maxCells) {
+                continue;
+            }
+
+            Set<String> prefixes = new LinkedHashSet<>();
+            for (long r = firstRow; r <= lastRow; r++) {
+                double cellLat = -90 + (r + 0.5) * height;
+                for (long c = firstColumn; c < firstColumn + columns; c++) {
+                    double cellLon = -180 + (Math.floorMod(c, lonCells) + 0.5) * width;
+                    prefixes.add(encode(cellLat, cellLon, precision));
+                }
+            }
+            return new ArrayList<>(prefixes);
+        }
+        return null;
+    }
+
+    /** Great-circle distance by the haversine formula, on a spherical earth. */
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.pow(Math.sin(dLat / 2), 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.pow(Math.sin(dLon / 2), 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(Math.min(1, a)));
+    }
+
+    private static long row(double latitude, double height, long latCells) {
+        return Math.min((long) Math.floor((latitude + 90) / height), latCells - 1);
+    }
+}
@@ -0,0 +1,299 @@
+package com.octopus.user_identity_service.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Read-only IP-range database mapped straight from disk. {@link #compile} turns a CSV of
+ * {@code start_ip,end_ip,country_code,asn} rows into sorted fixed-width records, and lookups
+ * binary-search the mapping with absolute reads, so they allocate nothing and need no locking.
+ * <p>
+ * Layout (big-endian): a 16-byte header of magic, version, IPv4 record count and IPv6 record
+ * count, then the IPv4 records (start, end, country, padding, ASN: 16 bytes) and the IPv6 records
+ * (start and end as two longs each, then country, padding, ASN: 40 bytes).
+ * <p>
+ * A mapped file must never be rewritten in place; publish a new version by writing it elsewhere
+ * and moving it over the old one, as GeoLocationService does.
+ */
+public final class GeoIpDatabase {
+
+    /** Result of a lookup that matched no range. */
+    public static final long NOT_FOUND = -1L;
+
+    private static final int MAGIC = 0x47454F31; // "GEO1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int IPV4_RECORD_BYTES = 16;
+    private static final int IPV6_RECORD_BYTES = 40;
+    private static final long NO_ASN = 0xFFFFFFFFL;
+
+    private final ByteBuffer buffer;
+    private final int ipv4Count;
+    private final int ipv6Count;
+    private final int ipv6Offset;
+
+    private GeoIpDatabase(ByteBuffer buffer, int ipv4Count, int ipv6Count) {
+        this.buffer = buffer;
+        this.ipv4Count = ipv4Count;
+        this.ipv6Count = ipv6Count;
+        this.ipv6Offset = HEADER_BYTES + ipv4Count * IPV4_RECORD_BYTES;
+    }
+
+    public static GeoIpDatabase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a geolocation database: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a geolocation database: " + file);
+            }
+            int ipv4Count = buffer.getInt(8);
+            int ipv6Count = buffer.getInt(12);
+            if (ipv4Count < 0 || ipv6Count < 0
+                    || HEADER_BYTES + (long) ipv4Count * IPV4_RECORD_BYTES + (long) ipv6Count * IPV6_RECORD_BYTES != size) {
+                throw new IOException("Truncated geolocation database: " + file);
+            }
+            return new GeoIpDatabase(buffer, ipv4Count, ipv6Count);
+        }
+    }
+
+    /**
+     * Compiles {@code csv} into {@code target}. Blank lines, lines starting with '#' and a
+     * {@code start_ip} header line are skipped; country and ASN may be empty. Ranges of one family
+     * must not overlap.
+     */
+    public static void compile(Path csv, Path target) throws IOException {
+        List<Range> ipv4 = new ArrayList<>();
+        List<Range> ipv6 = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.strip();
+                if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith("start_ip")) {
+                    continue;
+                }
+                Range range = parseRange(trimmed, lineNumber);
+                (range.start().length == 4 ? ipv4 : ipv6).add(range);
+            }
+        }
+        sortAndCheck(ipv4);
+        sortAndCheck(ipv6);
+        if (HEADER_BYTES + (long) ipv4.size() * IPV4_RECORD_BYTES + (long) ipv6.size() * IPV6_RECORD_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Geolocation database would exceed 2 GB");
+        }
+
+        try (OutputStream file = Files.newOutputStream(target);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ipv4.size());
+            out.writeInt(ipv6.size());
+            for (Range range : ipv4) {
+                out.write(range.start());
+                out.write(range.end());
+                writePayload(out, range);
+            }
+            for (Range range : ipv6) {
+                out.write(range.start());
+                out.write(range.end());
+                writePayload(out, range);
+            }
+        }
+    }
+
+    /** Convenience over the primitive lookups; only {@link InetAddress#getAddress()} allocates. */
+    public long lookup(InetAddress address) {
+        if (address == null) {
+            return NOT_FOUND;
+        }
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            return lookupIpv4((int) bigEndian(bytes, 0, 4));
+        }
+        return lookupIpv6(bigEndian(bytes, 0, 8), bigEndian(bytes, 8, 8));
+    }
+
+    public long lookupIpv4(int address) {
+        int low = 0;
+        int high = ipv4Count - 1;
+        int match = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Integer.compareUnsigned(buffer.getInt(ipv4Record(mid)), address) <= 0) {
+                match = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (match < 0) {
+            return NOT_FOUND;
+        }
+        int record = ipv4Record(match);
+        if (Integer.compareUnsigned(address, buffer.getInt(record + 4)) > 0) {
+            return NOT_FOUND;
+        }
+        return payload(record + 8);
+    }
+
+    public long lookupIpv6(long high64, long low64) {
+        int low = 0;
+        int high = ipv6Count - 1;
+        int match = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int record = ipv6Record(mid);
+            if (compare(buffer.getLong(record), buffer.getLong(record + 8), high64, low64) <= 0) {
+                match = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (match < 0) {
+            return NOT_FOUND;
+        }
+        int record = ipv6Record(match);
+        if (compare(high64, low64, buffer.getLong(record + 16), buffer.getLong(record + 24)) > 0) {
+            return NOT_FOUND;
+        }
+        return payload(record + 32);
+    }
+
+    public int getIpv4RangeCount() {
+        return ipv4Count;
+    }
+
+    public int getIpv6RangeCount() {
+        return ipv6Count;
+    }
+
+    /** ISO country code of a lookup result, or null when the range or result has none. */
+    public static String countryCode(long result) {
+        if (result == NOT_FOUND || (result >>> 32) == 0) {
+            return null;
+        }
+        return new String(new char[] {(char) ((result >>> 40) & 0xff), (char) ((result >>> 32) & 0xff)});
+    }
+
+    /** Autonomous system number of a lookup result, or null when the range or result has none. */
+    public static Long asn(long result) {
+        long asn = result & NO_ASN;
+        return result == NOT_FOUND || asn == NO_ASN ? null : asn;
+    }
+
+    // Country in bits 32-47, ASN in the low 32 bits; the top bits stay clear so NOT_FOUND is unambiguous.
+    private long payload(int offset) {
+        long country = buffer.getShort(offset) & 0xffffL;
+        return (country << 32) | (buffer.getInt(offset + 4) & NO_ASN);
+    }
+
+    private int ipv4Record(int index) {
+        return HEADER_BYTES + index * IPV4_RECORD_BYTES;
+    }
+
+    private int ipv6Record(int index) {
+        return ipv6Offset + index * IPV6_RECORD_BYTES;
+    }
+
+    private static long bigEndian(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+
+    private static int compare(long aHigh, long aLow, long bHigh, long bLow) {
+        int high = Long.compareUnsigned(aHigh, bHigh);
+        return high != 0 ? high : Long.compareUnsigned(aLow, bLow);
+    }
+
+    private static Range parseRange(String line, int lineNumber) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": expected start_ip,end_ip,country_code,asn");
+        }
+        try {
+            InetAddress start = IpAddressNormalizer.parse(fields[0]);
+            InetAddress end = IpAddressNormalizer.parse(fields[1]);
+            if (start == null || end == null || start.getClass() != end.getClass()) {
+                throw new IllegalArgumentException("start and end must be addresses of the same family");
+            }
+            byte[] startBytes = start.getAddress();
+            byte[] endBytes = end.getAddress();
+            if (Arrays.compareUnsigned(startBytes, endBytes) > 0) {
+                throw new IllegalArgumentException("start is after end");
+            }
+
+            String country = fields[2].strip().toUpperCase(Locale.ROOT);
+            if (!country.isEmpty() && !country.matches("[A-Z]{2}")) {
+                throw new IllegalArgumentException("country code must be two letters");
+            }
+            String asnText = fields[3].strip();
+            if (asnText.regionMatches(true, 0, "AS", 0, 2)) {
+                asnText = asnText.substring(2);
+            }
+            long asn = asnText.isEmpty() ? NO_ASN : Long.parseLong(asnText);
+            if (asn < 0 || asn > NO_ASN) {
+                throw new IllegalArgumentException("ASN out of range");
+            }
+            return new Range(startBytes, endBytes, country, asn);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void sortAndCheck(List<Range> ranges) {
+        ranges.sort(Comparator.comparing(Range::start, Arrays::compareUnsigned));
+        for (int i = 1; i < ranges.size(); i++) {
+            Range previous = ranges.get(i - 1);
+            Range range = ranges.get(i);
+            if (Arrays.compareUnsigned(previous.end(), range.start()) >= 0) {
+                throw new IllegalArgumentException("Overlapping ranges starting at "
+                        + IpAddressNormalizer.format(toAddress(previous.start())) + " and "
+                        + IpAddressNormalizer.format(toAddress(range.start())));
+            }
+        }
+    }
+
+    private static void writePayload(DataOutputStream out, Range range) throws IOException {
+        out.writeByte(range.country().isEmpty() ? 0 : range.country().charAt(0));
+        out.writeByte(range.country().isEmpty() ? 0 : range.country().charAt(1));
+        out.writeShort(0);
+        out.writeInt((int) range.asn());
+    }
+
+    private static InetAddress toAddress(byte[] bytes) {
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Range(byte[] start, byte[] end, String country, long asn) {
+    }
+}
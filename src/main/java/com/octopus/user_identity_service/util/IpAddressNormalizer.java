@@ -0,0 +1,187 @@
+package com.octopus.user_identity_service.util;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses client-reported IP addresses into {@link InetAddress} without ever resolving a host
+ * name. Surrounding whitespace, brackets, ports, zone ids and prefix lengths are dropped and
+ * IPv4-mapped IPv6 addresses become plain IPv4, so one address always has one stored form.
+ * V16__Store_device_ip_address_as_inet.sql converted existing rows with the same rules, which is
+ * why an {@code address/prefix} value is read the way Postgres reads it: without brackets or a
+ * port, and for IPv4 with trailing zero octets left out if the prefix does not reach into them
+ * ("10/8" is 10.0.0.0).
+ */
+public final class IpAddressNormalizer {
+
+    private static final Pattern WITH_PREFIX_LENGTH = Pattern.compile("^([^\\[\\]/]+)/(\\d{1,3})$");
+    private static final Pattern IPV4_NETWORK = Pattern.compile("^\\d{1,3}(\\.\\d{1,3}){0,2}$");
+    private static final Pattern BRACKETED = Pattern.compile("^\\[([^\\]]*)](:\\d+)?$");
+    private static final Pattern IPV4 = Pattern.compile("^(\\d{1,3})\\.(\\d{1,3})\\.(\\d{1,3})\\.(\\d{1,3})(:\\d+)?$");
+    private static final Pattern IPV6 = Pattern.compile("^[0-9A-Fa-f:.]+$");
+
+    private IpAddressNormalizer() {
+    }
+
+    /** Returns null for a null or blank value and rejects anything that is not an address literal. */
+    public static InetAddress parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String address = value.strip();
+        Matcher withPrefix = WITH_PREFIX_LENGTH.matcher(address);
+        if (withPrefix.matches()) {
+            return parseWithPrefix(withPrefix.group(1), Integer.parseInt(withPrefix.group(2)), value);
+        }
+        Matcher bracketed = BRACKETED.matcher(address);
+        if (bracketed.matches()) {
+            address = bracketed.group(1);
+        }
+        return parseLiteral(address, value);
+    }
+
+    /** {@code address/prefix} with host bits cleared, e.g. "10.1.2.7/24" becomes 10.1.2.0/24. */
+    public static Cidr parseCidr(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("CIDR range is required");
+        }
+        String[] parts = value.strip().split("/", -1);
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("Invalid CIDR range: " + value);
+        }
+        InetAddress address = parse(parts[0]);
+        if (address == null) {
+            throw new IllegalArgumentException("Invalid CIDR range: " + value);
+        }
+        int maxPrefix = address.getAddress().length * 8;
+        int prefix = maxPrefix;
+        if (parts.length == 2) {
+            try {
+                prefix = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid CIDR range: " + value);
+            }
+            if (prefix < 0 || prefix > maxPrefix) {
+                throw new IllegalArgumentException("Prefix length must be between 0 and " + maxPrefix);
+            }
+        }
+
+        byte[] network = address.getAddress();
+        for (int bit = prefix; bit < maxPrefix; bit++) {
+            network[bit / 8] &= (byte) ~(0x80 >>> (bit % 8));
+        }
+        return new Cidr(byAddress(network, value), prefix);
+    }
+
+    /** Canonical text: dotted quad for IPv4, RFC 5952 (lower case, longest zero run compressed) for IPv6. */
+    public static String format(InetAddress address) {
+        if (address == null) {
+            return null;
+        }
+        if (address instanceof Inet4Address) {
+            return address.getHostAddress();
+        }
+
+        byte[] bytes = address.getAddress();
+        int[] groups = new int[8];
+        for (int i = 0; i < 8; i++) {
+            groups[i] = ((bytes[2 * i] & 0xff) << 8) | (bytes[2 * i + 1] & 0xff);
+        }
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int i = 0; i < 8; ) {
+            int j = i;
+            while (j < 8 && groups[j] == 0) {
+                j++;
+            }
+            if (j - i > bestLength) {
+                bestStart = i;
+                bestLength = j - i;
+            }
+            i = j == i ? i + 1 : j;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                text.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (!text.isEmpty() && text.charAt(text.length() - 1) != ':') {
+                text.append(':');
+            }
+            text.append(Integer.toHexString(groups[i]));
+        }
+        return text.toString();
+    }
+
+    private static InetAddress parseWithPrefix(String address, int prefix, String value) {
+        if (IPV4_NETWORK.matcher(address).matches()) {
+            int octets = address.split("\\.").length;
+            if (prefix > 8 * octets) {
+                throw invalid(value);
+            }
+            address += ".0".repeat(4 - octets);
+        }
+        int maxPrefix = address.contains(":") ? 128 : 32;
+        Matcher ipv4 = IPV4.matcher(address);
+        if (prefix > maxPrefix || (ipv4.matches() && ipv4.group(5) != null)) {
+            throw invalid(value);
+        }
+        return parseLiteral(address, value);
+    }
+
+    private static InetAddress parseLiteral(String address, String value) {
+        int zone = address.indexOf('%');
+        if (zone >= 0) {
+            address = address.substring(0, zone);
+        }
+
+        Matcher ipv4 = IPV4.matcher(address);
+        if (ipv4.matches()) {
+            byte[] octets = new byte[4];
+            for (int i = 0; i < 4; i++) {
+                int octet = Integer.parseInt(ipv4.group(i + 1));
+                if (octet > 255) {
+                    throw invalid(value);
+                }
+                octets[i] = (byte) octet;
+            }
+            return byAddress(octets, value);
+        }
+
+        if (!address.contains(":") || !IPV6.matcher(address).matches()) {
+            throw invalid(value);
+        }
+        try {
+            // A literal containing ':' is parsed, never looked up. Mapped IPv4 comes back as Inet4Address.
+            return InetAddress.getByName(address);
+        } catch (UnknownHostException e) {
+            throw invalid(value);
+        }
+    }
+
+    private static InetAddress byAddress(byte[] bytes, String value) {
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            throw invalid(value);
+        }
+    }
+
+    private static IllegalArgumentException invalid(String value) {
+        return new IllegalArgumentException("Invalid IP address: " + value);
+    }
+
+    public record Cidr(InetAddress network, int prefixLength) {
+
+        @Override
+        public String toString() {
+            return format(network) + "/" + prefixLength;
+        }
+    }
+}
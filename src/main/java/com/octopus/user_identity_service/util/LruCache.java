@@ -0,0 +1,41 @@
+package com.octopus.user_identity_service.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded map that evicts the least recently read or written entry. All operations lock the
+ * cache, so it suits small values that are cheap to look up and expensive to recompute.
+ */
+public final class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> entries;
+
+    public LruCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    public synchronized void putAll(Map<? extends K, ? extends V> values) {
+        entries.putAll(values);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
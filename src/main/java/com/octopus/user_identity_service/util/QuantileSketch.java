@@ -0,0 +1,142 @@
+package com.octopus.user_identity_service.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Relative-error quantile sketch (DDSketch-style). Values are counted in logarithmically sized
+ * buckets, so any quantile is reported within {@code relativeAccuracy} of a true value while
+ * memory grows with the logarithm of the value range rather than with the number of values.
+ * Unlike rank-based sketches it supports removal, which lets a value be moved when a balance
+ * changes. Values with magnitude below {@link #MIN_INDEXABLE} count as zero.
+ */
+public final class QuantileSketch {
+
+    public static final double MIN_INDEXABLE = 0.005;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private final TreeMap<Integer, Long> positive = new TreeMap<>();
+    private final TreeMap<Integer, Long> negative = new TreeMap<>();
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public synchronized void add(double value) {
+        adjust(value, 1);
+    }
+
+    /** Removes one occurrence of a value added earlier; removing a value that is not there is ignored. */
+    public synchronized void remove(double value) {
+        adjust(value, -1);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /** Value at quantile {@code q} (0..1), or NaN if the sketch is empty. */
+    public synchronized double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+
+        long seen = 0;
+        for (Map.Entry<Integer, Long> bucket : negative.descendingMap().entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) {
+                return -value(bucket.getKey());
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (Map.Entry<Integer, Long> bucket : positive.entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) {
+                return value(bucket.getKey());
+            }
+        }
+        return value(positive.lastKey());
+    }
+
+    /**
+     * Counts per power-of-ten band: [0, 0] for zero, then [10^k, 10^(k+1)) bands (mirrored for
+     * negative values), in ascending order. Bucket edges are only as exact as the sketch.
+     */
+    public synchronized List<Band> decadeHistogram() {
+        TreeMap<Integer, Long> negativeDecades = new TreeMap<>();
+        negative.forEach((index, n) -> negativeDecades.merge(decade(value(index)), n, Long::sum));
+        TreeMap<Integer, Long> positiveDecades = new TreeMap<>();
+        positive.forEach((index, n) -> positiveDecades.merge(decade(value(index)), n, Long::sum));
+
+        List<Band> bands = new ArrayList<>();
+        negativeDecades.descendingMap().forEach((decade, n) ->
+                bands.add(new Band(-Math.pow(10, decade + 1), -Math.pow(10, decade), n)));
+        if (zeroCount > 0) {
+            bands.add(new Band(0, 0, zeroCount));
+        }
+        positiveDecades.forEach((decade, n) ->
+                bands.add(new Band(Math.pow(10, decade), Math.pow(10, decade + 1), n)));
+        return bands;
+    }
+
+    private void adjust(double value, long delta) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Value must be finite");
+        }
+        if (Math.abs(value) < MIN_INDEXABLE) {
+            if (zeroCount + delta < 0) {
+                return;
+            }
+            zeroCount += delta;
+        } else {
+            TreeMap<Integer, Long> store = value > 0 ? positive : negative;
+            int index = index(Math.abs(value));
+            long updated = store.getOrDefault(index, 0L) + delta;
+            if (updated < 0) {
+                return;
+            }
+            if (updated == 0) {
+                store.remove(index);
+            } else {
+                store.put(index, updated);
+            }
+        }
+        count += delta;
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    /** Midpoint (in relative terms) of bucket {@code index}, within relativeAccuracy of anything in it. */
+    private double value(int index) {
+        return 2 * Math.exp(index * logGamma) / (Math.exp(logGamma) + 1);
+    }
+
+    private static int decade(double magnitude) {
+        return (int) Math.floor(Math.log10(magnitude));
+    }
+
+    public record Band(double lower, double upper, long count) {
+    }
+}
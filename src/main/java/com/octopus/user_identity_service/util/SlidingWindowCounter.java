@@ -0,0 +1,85 @@
+package com.octopus.user_identity_service.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Event count and amount over a sliding window, split into a ring of buckets. Each bucket is an
+ * immutable snapshot replaced by compare-and-set, so recording and summing never lock; a bucket
+ * whose slot has come round again is reset by whichever writer gets there first. The window
+ * slides one bucket at a time, i.e. totals may include up to one bucket width of older events.
+ */
+public final class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    public SlidingWindowCounter(long windowMillis, int bucketCount) {
+        if (windowMillis <= 0 || bucketCount <= 0 || windowMillis < bucketCount) {
+            throw new IllegalArgumentException("Window must be positive and at least one millisecond per bucket");
+        }
+        this.bucketMillis = windowMillis / bucketCount;
+        this.bucketCount = bucketCount;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    /** Records an event at {@code nowMillis} and returns the window totals including it. */
+    public Totals add(long nowMillis, long count, long amount) {
+        long epoch = nowMillis / bucketMillis;
+        int slot = (int) (epoch % bucketCount);
+        while (true) {
+            Bucket current = buckets.get(slot);
+            Bucket updated = current == null || current.epoch() != epoch
+                    ? new Bucket(epoch, count, amount)
+                    : new Bucket(epoch, current.count() + count, current.amount() + amount);
+            if (buckets.compareAndSet(slot, current, updated)) {
+                return totals(nowMillis);
+            }
+        }
+    }
+
+    /**
+     * Takes back an event recorded at {@code recordedAtMillis}. Does nothing if its bucket has
+     * already left the window.
+     */
+    public void remove(long recordedAtMillis, long count, long amount) {
+        long epoch = recordedAtMillis / bucketMillis;
+        int slot = (int) (epoch % bucketCount);
+        while (true) {
+            Bucket current = buckets.get(slot);
+            if (current == null || current.epoch() != epoch) {
+                return;
+            }
+            Bucket updated = new Bucket(epoch, current.count() - count, current.amount() - amount);
+            if (buckets.compareAndSet(slot, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    public Totals totals(long nowMillis) {
+        long oldestEpoch = nowMillis / bucketMillis - bucketCount + 1;
+        long count = 0;
+        long amount = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.epoch() >= oldestEpoch) {
+                count += bucket.count();
+                amount += bucket.amount();
+            }
+        }
+        return new Totals(count, amount);
+    }
+
+    /** True if nothing recorded is still inside the window, i.e. the counter can be dropped. */
+    public boolean isIdle(long nowMillis) {
+        Totals totals = totals(nowMillis);
+        return totals.count() == 0 && totals.amount() == 0;
+    }
+
+    public record Totals(long count, long amount) {
+    }
+
+    private record Bucket(long epoch, long count, long amount) {
+    }
+}
@@ -0,0 +1,118 @@
+package com.octopus.user_identity_service.util;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts operating system, OS version and device model from a User-Agent header. Only the
+ * platform part (the first parenthesised group) and a few well-known tokens are looked at, which
+ * covers browsers and the common mobile HTTP clients; anything unrecognised yields nulls rather
+ * than a guess.
+ */
+public final class UserAgentParser {
+
+    private static final Pattern PLATFORM = Pattern.compile("\\(([^)]*)\\)");
+    private static final Pattern WINDOWS_PHONE = Pattern.compile("Windows Phone(?: OS)? (\\d+(?:\\.\\d+)*)");
+    private static final Pattern WINDOWS = Pattern.compile("Windows NT (\\d+\\.\\d+)");
+    private static final Pattern ANDROID = Pattern.compile("^Android(?:[ /](\\d+(?:\\.\\d+)*))?");
+    private static final Pattern IOS_DEVICE = Pattern.compile("\\b(iPhone|iPad|iPod)");
+    private static final Pattern IOS_VERSION = Pattern.compile("(?:\\bOS|\\biOS) (\\d+(?:[_.]\\d+)*)");
+    private static final Pattern MAC = Pattern.compile("Mac OS X(?: (\\d+(?:[_.]\\d+)*))?");
+    private static final Pattern CHROME_OS = Pattern.compile("CrOS \\S+ (\\d+(?:\\.\\d+)*)");
+    private static final Pattern LOCALE = Pattern.compile("^[a-z]{2}(?:[-_][A-Za-z]{2})?$");
+    private static final Pattern BUILD = Pattern.compile("\\s+Build/.*$");
+
+    private static final Map<String, String> WINDOWS_VERSIONS = Map.of(
+            "10.0", "10",
+            "6.3", "8.1",
+            "6.2", "8",
+            "6.1", "7",
+            "6.0", "Vista",
+            "5.1", "XP");
+
+    // Column sizes of user_agents.
+    private static final int MAX_OS_LENGTH = 100;
+    private static final int MAX_VERSION_LENGTH = 50;
+    private static final int MAX_MODEL_LENGTH = 100;
+
+    private UserAgentParser() {
+    }
+
+    public static Parsed parse(String userAgent) {
+        if (userAgent == null || userAgent.isBlank()) {
+            return Parsed.UNKNOWN;
+        }
+        Matcher platformMatcher = PLATFORM.matcher(userAgent);
+        String platform = platformMatcher.find() ? platformMatcher.group(1) : "";
+
+        Matcher matcher = WINDOWS_PHONE.matcher(userAgent);
+        if (matcher.find()) {
+            return parsed("Windows Phone", matcher.group(1), null);
+        }
+        matcher = WINDOWS.matcher(platform);
+        if (matcher.find()) {
+            return parsed("Windows", WINDOWS_VERSIONS.getOrDefault(matcher.group(1), matcher.group(1)), null);
+        }
+        Parsed android = parseAndroid(platform);
+        if (android != null) {
+            return android;
+        }
+        matcher = IOS_DEVICE.matcher(userAgent);
+        if (matcher.find()) {
+            String model = matcher.group(1);
+            Matcher version = IOS_VERSION.matcher(userAgent);
+            return parsed("iOS", version.find() ? version.group(1).replace('_', '.') : null, model);
+        }
+        matcher = CHROME_OS.matcher(platform);
+        if (matcher.find()) {
+            return parsed("ChromeOS", matcher.group(1), null);
+        }
+        matcher = MAC.matcher(platform);
+        if (matcher.find()) {
+            return parsed("macOS", matcher.group(1) == null ? null : matcher.group(1).replace('_', '.'), "Mac");
+        }
+        if (platform.contains("Linux")) {
+            return parsed("Linux", null, null);
+        }
+        return Parsed.UNKNOWN;
+    }
+
+    /**
+     * Android platform groups look like "Linux; U; Android 4.0.3; ko-kr; LG-L160L Build/IML74K":
+     * the model is the first token after the version that is not a flag or a locale. Reduced
+     * user agents report the model as "K", which says nothing.
+     */
+    private static Parsed parseAndroid(String platform) {
+        String[] tokens = platform.split(";");
+        for (int i = 0; i < tokens.length; i++) {
+            Matcher matcher = ANDROID.matcher(tokens[i].strip());
+            if (!matcher.find()) {
+                continue;
+            }
+            String model = null;
+            for (int j = i + 1; j < tokens.length && model == null; j++) {
+                String token = BUILD.matcher(tokens[j].strip()).replaceFirst("");
+                if (!token.isEmpty() && !token.equals("U") && !token.equals("wv") && !token.equals("K")
+                        && !LOCALE.matcher(token).matches()) {
+                    model = token;
+                }
+            }
+            return parsed("Android", matcher.group(1), model);
+        }
+        return null;
+    }
+
+    private static Parsed parsed(String os, String version, String model) {
+        return new Parsed(truncate(os, MAX_OS_LENGTH), truncate(version, MAX_VERSION_LENGTH), truncate(model, MAX_MODEL_LENGTH));
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value == null || value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+
+    public record Parsed(String os, String osVersion, String deviceModel) {
+
+        public static final Parsed UNKNOWN = new Parsed(null, null, null);
+    }
+}
@@ -0,0 +1,61 @@
+package db.migration;
+
+import com.octopus.user_identity_service.util.AddressNormalizer;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills the match key and normalised city/state/country added by V21 for every existing address.
+ * Lookups by city, state and country go through those columns, so an address without them would
+ * not be found until the deduplication job had run. The keys are computed by AddressNormalizer,
+ * which SQL cannot reproduce, hence a Java migration.
+ */
+public class V22__Backfill_address_match_keys extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String SELECT_SQL = """
+            SELECT id, street, city, state, country FROM addresses
+            WHERE match_key IS NULL AND id > ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    private static final String UPDATE_SQL = """
+            UPDATE addresses a
+            SET match_key = v.match_key, normalised_city = v.city, normalised_state = v.state, normalised_country = v.country
+            FROM unnest(?::bigint[], ?::text[], ?::text[], ?::text[], ?::text[]) AS v(id, match_key, city, state, country)
+            WHERE a.id = v.id
+            """;
+
+    @Override
+    public void migrate(Context context) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+        long lastId = 0;
+        while (true) {
+            List<Long> ids = new ArrayList<>();
+            List<String> matchKeys = new ArrayList<>();
+            List<String> cities = new ArrayList<>();
+            List<String> states = new ArrayList<>();
+            List<String> countries = new ArrayList<>();
+            jdbcTemplate.query(SELECT_SQL, rs -> {
+                ids.add(rs.getLong("id"));
+                matchKeys.add(AddressNormalizer.matchKey(rs.getString("street"), rs.getString("city"), rs.getString("state")));
+                cities.add(AddressNormalizer.normalise(rs.getString("city")));
+                states.add(AddressNormalizer.normalise(rs.getString("state")));
+                countries.add(AddressNormalizer.normalise(rs.getString("country")));
+            }, lastId, BATCH_SIZE);
+            if (ids.isEmpty()) {
+                return;
+            }
+            jdbcTemplate.update(UPDATE_SQL, ids.toArray(Long[]::new), matchKeys.toArray(String[]::new),
+                    cities.toArray(String[]::new), states.toArray(String[]::new), countries.toArray(String[]::new));
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+}
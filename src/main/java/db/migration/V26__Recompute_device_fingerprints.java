@@ -0,0 +1,82 @@
+package db.migration;
+
+import com.octopus.user_identity_service.util.DeviceFingerprint;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Recomputes the fingerprints V14 backfilled in SQL with DeviceFingerprint itself. The two agree on
+ * ASCII, but Postgres lower() and \s follow the database collation while Java's rules do not, so a
+ * device with non-ASCII attributes got a fingerprint the application never computes and was
+ * registered again at its next login. As in V14, rows of a user that now share a fingerprint are
+ * not merged: a row that already had it keeps it, otherwise the oldest gets it, and the others stay
+ * unfingerprinted. Since V18 most devices keep their user agent in user_agents, read here the way
+ * Device.getUserAgent() reads it.
+ */
+public class V26__Recompute_device_fingerprints extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String SELECT_SQL = """
+            SELECT d.id, d.user_id, COALESCE(d.user_agent, ua.user_agent) AS user_agent,
+                   d.os, d.device_model, d.mac_address, d.fingerprint
+            FROM devices d
+            LEFT JOIN user_agents ua ON ua.id = d.user_agent_id
+            WHERE d.fingerprint IS NOT NULL AND d.id > ?
+            ORDER BY d.id
+            LIMIT ?
+            """;
+
+    private static final String CLEAR_SQL = "UPDATE devices SET fingerprint = NULL WHERE id = ANY(?::bigint[])";
+
+    private static final String UPDATE_SQL = """
+            UPDATE devices d
+            SET fingerprint = v.fingerprint
+            FROM (
+                SELECT DISTINCT ON (user_id, fingerprint) id, user_id, fingerprint
+                FROM unnest(?::bigint[], ?::bigint[], ?::text[]) AS u(id, user_id, fingerprint)
+                WHERE fingerprint IS NOT NULL
+                ORDER BY user_id, fingerprint, id
+            ) v
+            WHERE d.id = v.id
+              AND NOT EXISTS (SELECT 1 FROM devices o WHERE o.user_id = v.user_id AND o.fingerprint = v.fingerprint)
+            """;
+
+    @Override
+    public void migrate(Context context) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+        long lastId = 0;
+        while (true) {
+            List<Long> ids = new ArrayList<>();
+            List<Long> changedIds = new ArrayList<>();
+            List<Long> userIds = new ArrayList<>();
+            List<String> fingerprints = new ArrayList<>();
+            jdbcTemplate.query(SELECT_SQL, rs -> {
+                ids.add(rs.getLong("id"));
+                String fingerprint = DeviceFingerprint.of(rs.getString("user_agent"), rs.getString("os"),
+                        rs.getString("device_model"), rs.getString("mac_address"));
+                if (!Objects.equals(fingerprint, rs.getString("fingerprint"))) {
+                    changedIds.add(rs.getLong("id"));
+                    userIds.add(rs.getLong("user_id"));
+                    fingerprints.add(fingerprint);
+                }
+            }, lastId, BATCH_SIZE);
+            if (ids.isEmpty()) {
+                return;
+            }
+            if (!changedIds.isEmpty()) {
+                // Cleared first, so rows of one batch can swap fingerprints without tripping the unique index.
+                Long[] changed = changedIds.toArray(Long[]::new);
+                jdbcTemplate.update(CLEAR_SQL, (Object) changed);
+                jdbcTemplate.update(UPDATE_SQL, changed, userIds.toArray(Long[]::new), fingerprints.toArray(String[]::new));
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+-- Per-user, per-currency totals of accounts.balance so that portfolio reads touch one row per
+-- currency instead of every account.
+CREATE TABLE IF NOT EXISTS user_balance_summaries (
+    user_id BIGINT NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    balance DECIMAL(19,2) NOT NULL DEFAULT 0,
+    account_count BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, currency),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- Changes are appended here by the trigger below and folded into user_balance_summaries by the
+-- application. Updating the summary row directly from the trigger would make it a hot row and,
+-- since a transfer between two users would lock both users' rows in account-id order rather than
+-- user order, two opposite transfers could deadlock. Readers add the pending deltas themselves.
+CREATE TABLE IF NOT EXISTS user_balance_deltas (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    balance_delta DECIMAL(19,2) NOT NULL,
+    account_delta INTEGER NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_balance_deltas_user ON user_balance_deltas(user_id);
+
+INSERT INTO user_balance_summaries (user_id, currency, balance, account_count)
+SELECT user_id, currency, SUM(COALESCE(balance, 0)), COUNT(*)
+FROM accounts
+GROUP BY user_id, currency
+ON CONFLICT (user_id, currency) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION record_user_balance_delta() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND NEW.user_id = OLD.user_id AND NEW.currency = OLD.currency THEN
+        IF COALESCE(NEW.balance, 0) <> COALESCE(OLD.balance, 0) THEN
+            INSERT INTO user_balance_deltas (user_id, currency, balance_delta, account_delta)
+            VALUES (NEW.user_id, NEW.currency, COALESCE(NEW.balance, 0) - COALESCE(OLD.balance, 0), 0);
+        END IF;
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('DELETE', 'UPDATE') THEN
+        INSERT INTO user_balance_deltas (user_id, currency, balance_delta, account_delta)
+        VALUES (OLD.user_id, OLD.currency, -COALESCE(OLD.balance, 0), -1);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO user_balance_deltas (user_id, currency, balance_delta, account_delta)
+        VALUES (NEW.user_id, NEW.currency, COALESCE(NEW.balance, 0), 1);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_accounts_balance_delta ON accounts;
+CREATE TRIGGER trg_accounts_balance_delta
+    AFTER INSERT OR DELETE OR UPDATE OF balance, currency, user_id ON accounts
+    FOR EACH ROW EXECUTE FUNCTION record_user_balance_delta();
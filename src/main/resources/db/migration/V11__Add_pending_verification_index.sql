@@ -0,0 +1,3 @@
+-- Verification workers claim PENDING accounts in id order and the backlog gauge counts them; both
+-- only ever look at the (small) pending set.
+CREATE INDEX IF NOT EXISTS idx_accounts_pending_verification ON accounts(id) WHERE verification_status = 'PENDING';
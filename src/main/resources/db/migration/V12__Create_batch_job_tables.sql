@@ -0,0 +1,40 @@
+-- One row per (job, business date). heartbeat_at is bumped after every committed chunk so that a
+-- run whose node died can be taken over once it goes stale.
+CREATE TABLE IF NOT EXISTS batch_job_runs (
+    id BIGSERIAL PRIMARY KEY,
+    job_name VARCHAR(50) NOT NULL,
+    business_date DATE NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    started_at TIMESTAMP NOT NULL,
+    heartbeat_at TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP,
+    UNIQUE (job_name, business_date)
+);
+
+-- Progress of one id-range partition of a run. last_processed_id is advanced in the same
+-- transaction as the chunk it covers, so a restarted run resumes exactly where it stopped.
+CREATE TABLE IF NOT EXISTS batch_job_checkpoints (
+    run_id BIGINT NOT NULL,
+    partition_no INTEGER NOT NULL,
+    range_start BIGINT NOT NULL,
+    range_end BIGINT NOT NULL,
+    last_processed_id BIGINT NOT NULL,
+    processed_count BIGINT NOT NULL DEFAULT 0,
+    transitioned_count BIGINT NOT NULL DEFAULT 0,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (run_id, partition_no),
+    FOREIGN KEY (run_id) REFERENCES batch_job_runs(id) ON DELETE CASCADE
+);
+
+-- End-of-day state of every account. No foreign key: history outlives deleted accounts.
+CREATE TABLE IF NOT EXISTS account_eod_snapshots (
+    business_date DATE NOT NULL,
+    account_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    balance DECIMAL(15,2) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    PRIMARY KEY (business_date, account_id)
+);
+
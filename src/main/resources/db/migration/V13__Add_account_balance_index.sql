@@ -0,0 +1,2 @@
+-- Balance range queries filter on balance and page in (balance, id) order.
+CREATE INDEX IF NOT EXISTS idx_accounts_balance ON accounts(balance, id);
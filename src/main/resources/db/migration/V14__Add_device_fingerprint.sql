@@ -0,0 +1,28 @@
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS fingerprint VARCHAR(64);
+
+-- Same normalisation as DeviceFingerprint: whitespace collapsed and trimmed, lower-cased, MAC reduced
+-- to hex digits, fields joined with the unit separator. Where a user already has several rows for one
+-- device only the oldest gets the fingerprint; the others stay unfingerprinted rather than being removed.
+WITH normalised AS (
+    SELECT id, user_id,
+           lower(btrim(regexp_replace(COALESCE(user_agent, ''), '\s+', ' ', 'g'))) AS user_agent,
+           lower(btrim(regexp_replace(COALESCE(os, ''), '\s+', ' ', 'g'))) AS os,
+           lower(btrim(regexp_replace(COALESCE(device_model, ''), '\s+', ' ', 'g'))) AS device_model,
+           lower(regexp_replace(COALESCE(mac_address, ''), '[^0-9A-Fa-f]', '', 'g')) AS mac_address
+    FROM devices
+), hashed AS (
+    SELECT id, user_id,
+           encode(sha256(convert_to(concat_ws(chr(31), user_agent, os, device_model, mac_address), 'UTF8')), 'hex') AS fingerprint
+    FROM normalised
+    WHERE user_agent <> '' OR os <> '' OR device_model <> '' OR mac_address <> ''
+), ranked AS (
+    SELECT id, fingerprint, row_number() OVER (PARTITION BY user_id, fingerprint ORDER BY id) AS rn
+    FROM hashed
+)
+UPDATE devices d
+SET fingerprint = r.fingerprint
+FROM ranked r
+WHERE r.id = d.id AND r.rn = 1;
+
+-- One row per physical device and user; NULL fingerprints (nothing known about the device) never collide.
+CREATE UNIQUE INDEX IF NOT EXISTS ux_devices_user_fingerprint ON devices(user_id, fingerprint);
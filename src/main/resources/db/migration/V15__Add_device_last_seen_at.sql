@@ -0,0 +1,2 @@
+-- Written by the heartbeat flush only; last_login_at keeps meaning an actual login.
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS last_seen_at TIMESTAMP;
@@ -0,0 +1,41 @@
+-- Values that cannot be read as an IP address are set aside here instead of being silently dropped.
+CREATE TABLE IF NOT EXISTS device_ip_address_rejects (
+    device_id BIGINT PRIMARY KEY REFERENCES devices(id) ON DELETE CASCADE,
+    ip_address VARCHAR(45) NOT NULL,
+    rejected_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Same rules as IpAddressNormalizer: surrounding whitespace, brackets, ports, zone ids and prefix
+-- lengths are dropped, and IPv4-mapped IPv6 addresses become plain IPv4. NULL when unreadable.
+CREATE FUNCTION pg_temp.normalise_ip(value TEXT) RETURNS INET
+LANGUAGE plpgsql IMMUTABLE AS $$
+DECLARE
+    address TEXT := btrim(value);
+    parsed INET;
+BEGIN
+    IF address IS NULL OR address = '' THEN
+        RETURN NULL;
+    END IF;
+    address := regexp_replace(address, '^\[([^]]*)\](:[0-9]+)?$', '\1');
+    address := regexp_replace(address, '^([0-9.]+):[0-9]+$', '\1');
+    address := regexp_replace(address, '%[^/]*', '');
+    parsed := host(address::inet)::inet;
+    IF family(parsed) = 6 AND parsed <<= '::ffff:0:0/96'::inet THEN
+        parsed := '0.0.0.0'::inet + (parsed - '::ffff:0.0.0.0'::inet);
+    END IF;
+    RETURN parsed;
+EXCEPTION
+    WHEN invalid_text_representation THEN
+        RETURN NULL;
+END;
+$$;
+
+INSERT INTO device_ip_address_rejects (device_id, ip_address)
+SELECT id, ip_address
+FROM devices
+WHERE btrim(ip_address) <> '' AND pg_temp.normalise_ip(ip_address) IS NULL;
+
+ALTER TABLE devices ALTER COLUMN ip_address TYPE INET USING pg_temp.normalise_ip(ip_address);
+
+-- Serves CIDR containment (<<=) as well as exact matches.
+CREATE INDEX IF NOT EXISTS idx_devices_ip_address ON devices USING gist (ip_address inet_ops);
@@ -0,0 +1,6 @@
+-- Filled from the local IP-range database when a device registers or logs in, and for every login.
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS country_code VARCHAR(2);
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS asn BIGINT;
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS last_login_country VARCHAR(2);
+ALTER TABLE users ADD COLUMN IF NOT EXISTS last_login_asn BIGINT;
@@ -0,0 +1,19 @@
+-- One row per distinct user agent, parsed once; devices reference it instead of repeating the text.
+CREATE TABLE IF NOT EXISTS user_agents (
+    id BIGSERIAL PRIMARY KEY,
+    user_agent TEXT NOT NULL,
+    user_agent_hash VARCHAR(64) NOT NULL,
+    os VARCHAR(100),
+    os_version VARCHAR(50),
+    device_model VARCHAR(100),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Unique on the SHA-256 of the text: a b-tree entry over the text itself fails for agents of a few kilobytes.
+CREATE UNIQUE INDEX IF NOT EXISTS ux_user_agents_hash ON user_agents(user_agent_hash);
+
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS user_agent_id BIGINT REFERENCES user_agents(id);
+CREATE INDEX IF NOT EXISTS idx_devices_user_agent_id ON devices(user_agent_id);
+
+-- Rows still carrying their own copy of the text, i.e. what the backfill has left to do.
+CREATE INDEX IF NOT EXISTS idx_devices_inline_user_agent ON devices(id) WHERE user_agent IS NOT NULL;
@@ -0,0 +1,8 @@
+-- Bloom filter of the device fingerprints, network prefixes, ASNs and countries each user has logged
+-- in from. Stored as a bit string so instances can merge their copies with '|'.
+CREATE TABLE IF NOT EXISTS user_login_signals (
+    user_id BIGINT PRIMARY KEY,
+    signals BIT VARYING NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
@@ -0,0 +1,102 @@
+-- Coordinates that cannot be read as a latitude/longitude pair are set aside here instead of being silently dropped.
+CREATE TABLE IF NOT EXISTS address_coordinate_rejects (
+    address_id BIGINT PRIMARY KEY REFERENCES addresses(id) ON DELETE CASCADE,
+    latitude VARCHAR(50),
+    longitude VARCHAR(50),
+    rejected_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Accepts decimal degrees with an optional degree sign, a decimal comma, and a leading or trailing
+-- hemisphere letter for the right axis (S and W negate). NULL when unreadable or outside +/- max_degrees.
+CREATE FUNCTION pg_temp.parse_coordinate(value TEXT, max_degrees NUMERIC, positive_hemisphere TEXT, negative_hemisphere TEXT)
+RETURNS NUMERIC
+LANGUAGE plpgsql IMMUTABLE AS $$
+DECLARE
+    coordinate TEXT := upper(replace(replace(btrim(value), ',', '.'), '°', ''));
+    hemisphere TEXT;
+    parsed NUMERIC;
+BEGIN
+    IF coordinate IS NULL OR coordinate = '' THEN
+        RETURN NULL;
+    END IF;
+    hemisphere := coalesce(substring(coordinate FROM '^([A-Z])'), substring(coordinate FROM '([A-Z])$'));
+    IF hemisphere IS NOT NULL AND hemisphere NOT IN (positive_hemisphere, negative_hemisphere) THEN
+        RETURN NULL;
+    END IF;
+    coordinate := btrim(regexp_replace(coordinate, '^[A-Z]|[A-Z]$', '', 'g'));
+    IF coordinate !~ '^[+-]?([0-9]+(\.[0-9]*)?|\.[0-9]+)$' THEN
+        RETURN NULL;
+    END IF;
+    parsed := coordinate::numeric;
+    IF hemisphere = negative_hemisphere THEN
+        parsed := -abs(parsed);
+    END IF;
+    IF abs(parsed) > max_degrees THEN
+        RETURN NULL;
+    END IF;
+    RETURN round(parsed, 6);
+END;
+$$;
+
+INSERT INTO address_coordinate_rejects (address_id, latitude, longitude)
+SELECT id, latitude, longitude
+FROM addresses
+WHERE (btrim(latitude) <> '' OR btrim(longitude) <> '')
+  AND (pg_temp.parse_coordinate(latitude, 90, 'N', 'S') IS NULL OR pg_temp.parse_coordinate(longitude, 180, 'E', 'W') IS NULL);
+
+-- A coordinate is only kept together with its other half.
+ALTER TABLE addresses
+    ALTER COLUMN latitude TYPE NUMERIC(9,6) USING
+        CASE WHEN pg_temp.parse_coordinate(longitude, 180, 'E', 'W') IS NOT NULL
+             THEN pg_temp.parse_coordinate(latitude, 90, 'N', 'S') END,
+    ALTER COLUMN longitude TYPE NUMERIC(9,6) USING
+        CASE WHEN pg_temp.parse_coordinate(latitude, 90, 'N', 'S') IS NOT NULL
+             THEN pg_temp.parse_coordinate(longitude, 180, 'E', 'W') END;
+
+ALTER TABLE addresses ADD CONSTRAINT chk_addresses_coordinates CHECK (
+    (latitude IS NULL) = (longitude IS NULL)
+    AND latitude BETWEEN -90 AND 90
+    AND longitude BETWEEN -180 AND 180
+);
+
+-- Standard base-32 geohash, computed by quantising each axis to 30 bits and interleaving them
+-- (longitude first). GeoHash.encode in the application must produce the same strings.
+CREATE OR REPLACE FUNCTION geohash_encode(latitude NUMERIC, longitude NUMERIC, chars INT) RETURNS TEXT
+LANGUAGE plpgsql IMMUTABLE STRICT PARALLEL SAFE AS $$
+DECLARE
+    alphabet CONSTANT TEXT := '0123456789bcdefghjkmnpqrstuvwxyz';
+    lon BIGINT := least(floor((longitude::float8 + 180) / 360 * 1073741824), 1073741823);
+    lat BIGINT := least(floor((latitude::float8 + 90) / 180 * 1073741824), 1073741823);
+    bits BIGINT;
+    hash TEXT := '';
+BEGIN
+    -- Spread the 30 bits of each axis out to every other bit (0x0000FFFF0000FFFF ... 0x5555555555555555).
+    lon := (lon | (lon << 16)) & 281470681808895;
+    lon := (lon | (lon << 8)) & 71777214294589695;
+    lon := (lon | (lon << 4)) & 1085102592571150095;
+    lon := (lon | (lon << 2)) & 3689348814741910323;
+    lon := (lon | (lon << 1)) & 6148914691236517205;
+    lat := (lat | (lat << 16)) & 281470681808895;
+    lat := (lat | (lat << 8)) & 71777214294589695;
+    lat := (lat | (lat << 4)) & 1085102592571150095;
+    lat := (lat | (lat << 2)) & 3689348814741910323;
+    lat := (lat | (lat << 1)) & 6148914691236517205;
+    bits := (lon << 1) | lat;
+    FOR i IN 1..chars LOOP
+        hash := hash || substr(alphabet, ((bits >> (60 - 5 * i)) & 31)::int + 1, 1);
+    END LOOP;
+    RETURN hash;
+END;
+$$;
+
+-- C collation keeps prefix ranges (geohash >= 'u10h' AND geohash < 'u10h~') usable on the index.
+ALTER TABLE addresses ADD COLUMN IF NOT EXISTS geohash VARCHAR(12) COLLATE "C"
+    GENERATED ALWAYS AS (geohash_encode(latitude, longitude, 12)) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_addresses_geohash ON addresses(geohash);
+
+-- Finds the user living at each address a search returns.
+CREATE INDEX IF NOT EXISTS idx_users_address_id ON users(address_id);
+
+-- Searches are planned from geohash statistics, which the rewritten table does not have yet.
+ANALYZE addresses;
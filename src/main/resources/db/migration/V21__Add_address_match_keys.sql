@@ -0,0 +1,15 @@
+-- Normalised forms written by the application (AddressNormalizer); existing rows are filled in by
+-- the address deduplication job, which picks up every row whose match_key is still NULL.
+ALTER TABLE addresses ADD COLUMN IF NOT EXISTS match_key TEXT;
+ALTER TABLE addresses ADD COLUMN IF NOT EXISTS normalised_city TEXT;
+ALTER TABLE addresses ADD COLUMN IF NOT EXISTS normalised_state TEXT;
+ALTER TABLE addresses ADD COLUMN IF NOT EXISTS normalised_country TEXT;
+ALTER TABLE addresses ADD COLUMN IF NOT EXISTS duplicate_of_id BIGINT REFERENCES addresses(id) ON DELETE SET NULL;
+
+-- Duplicate detection: addresses with the same key in the same country are the same place.
+CREATE INDEX IF NOT EXISTS idx_addresses_match_key ON addresses(match_key, normalised_country);
+CREATE INDEX IF NOT EXISTS idx_addresses_normalised_country_city ON addresses(normalised_country, normalised_city);
+CREATE INDEX IF NOT EXISTS idx_addresses_normalised_city ON addresses(normalised_city);
+CREATE INDEX IF NOT EXISTS idx_addresses_normalised_state ON addresses(normalised_state);
+CREATE INDEX IF NOT EXISTS idx_addresses_duplicate_of_id ON addresses(duplicate_of_id) WHERE duplicate_of_id IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_addresses_unkeyed ON addresses(id) WHERE match_key IS NULL;
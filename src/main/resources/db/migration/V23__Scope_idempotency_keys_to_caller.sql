@@ -0,0 +1,7 @@
+-- Idempotency keys are chosen by clients and only unique per caller, so records are keyed by the
+-- authenticated username as well. Records written before this have no owner and no longer match;
+-- they expire within idempotency.ttl-hours.
+ALTER TABLE idempotency_records ADD COLUMN IF NOT EXISTS owner VARCHAR(255) NOT NULL DEFAULT '';
+ALTER TABLE idempotency_records ALTER COLUMN owner DROP DEFAULT;
+ALTER TABLE idempotency_records DROP CONSTRAINT IF EXISTS idempotency_records_pkey;
+ALTER TABLE idempotency_records ADD PRIMARY KEY (owner, idempotency_key);
@@ -0,0 +1,12 @@
+-- Postings written in the same transaction as the balance change they record, so they commit or
+-- roll back with it. The ledger writer moves them into ledger_entries in batches.
+CREATE TABLE IF NOT EXISTS ledger_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    transaction_id UUID NOT NULL,
+    account_id BIGINT,
+    amount DECIMAL(15,2) NOT NULL,
+    entry_type VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_ledger_outbox_account_id ON ledger_outbox(account_id);
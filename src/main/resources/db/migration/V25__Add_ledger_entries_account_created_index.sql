@@ -0,0 +1,3 @@
+-- End-of-day snapshots take each account's balance as of midnight by subtracting the postings made
+-- since; this finds those postings without reading the account's whole history.
+CREATE INDEX IF NOT EXISTS idx_ledger_entries_account_created_at ON ledger_entries(account_id, created_at);
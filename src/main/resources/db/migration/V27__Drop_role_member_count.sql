@@ -0,0 +1,5 @@
+-- Every registration added a USER membership and so updated the same roles row, serialising
+-- concurrent sign-ups on its row lock. Role counts are read from idx_user_roles_role_user instead.
+DROP TRIGGER IF EXISTS trg_user_roles_member_count ON user_roles;
+DROP FUNCTION IF EXISTS maintain_role_member_count();
+ALTER TABLE roles DROP COLUMN IF EXISTS member_count;
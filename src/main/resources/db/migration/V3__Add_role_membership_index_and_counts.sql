@@ -0,0 +1,25 @@
+-- The user_roles primary key is (user_id, role_id), which cannot serve "members of role X" lookups.
+CREATE INDEX IF NOT EXISTS idx_user_roles_role_user ON user_roles(role_id, user_id);
+
+-- Denormalised member count so dashboard counts are a single-row read.
+ALTER TABLE roles ADD COLUMN IF NOT EXISTS member_count BIGINT NOT NULL DEFAULT 0;
+
+UPDATE roles r
+SET member_count = (SELECT COUNT(*) FROM user_roles ur WHERE ur.role_id = r.id);
+
+CREATE OR REPLACE FUNCTION maintain_role_member_count() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        UPDATE roles SET member_count = member_count + 1 WHERE id = NEW.role_id;
+    END IF;
+    IF TG_OP IN ('DELETE', 'UPDATE') THEN
+        UPDATE roles SET member_count = member_count - 1 WHERE id = OLD.role_id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_user_roles_member_count ON user_roles;
+CREATE TRIGGER trg_user_roles_member_count
+    AFTER INSERT OR DELETE OR UPDATE OF role_id ON user_roles
+    FOR EACH ROW EXECUTE FUNCTION maintain_role_member_count();
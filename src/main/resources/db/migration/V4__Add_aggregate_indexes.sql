@@ -0,0 +1,10 @@
+-- Supporting indexes for the GROUP BY / COUNT statistics queries.
+CREATE INDEX IF NOT EXISTS idx_devices_type ON devices(type);
+CREATE INDEX IF NOT EXISTS idx_devices_os ON devices(os);
+CREATE INDEX IF NOT EXISTS idx_devices_user_active ON devices(user_id) WHERE is_active;
+
+CREATE INDEX IF NOT EXISTS idx_addresses_country_city ON addresses(country, city);
+CREATE INDEX IF NOT EXISTS idx_addresses_city ON addresses(city);
+CREATE INDEX IF NOT EXISTS idx_addresses_state ON addresses(state);
+
+CREATE INDEX IF NOT EXISTS idx_security_questions_active ON security_questions(user_id) WHERE is_active;
@@ -0,0 +1,34 @@
+-- Append-only journal of double-entry postings. account_id is NULL for the external side
+-- (cash in / cash out); the postings of one transaction_id always sum to zero. There is
+-- deliberately no foreign key to accounts: the journal outlives deleted accounts.
+CREATE TABLE IF NOT EXISTS ledger_entries (
+    id BIGSERIAL PRIMARY KEY,
+    transaction_id UUID NOT NULL,
+    account_id BIGINT,
+    amount DECIMAL(15,2) NOT NULL,
+    entry_type VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_ledger_entries_account_id ON ledger_entries(account_id, id);
+CREATE INDEX IF NOT EXISTS idx_ledger_entries_transaction_id ON ledger_entries(transaction_id);
+
+-- Latest folded balance per account; reads add the entries after last_entry_id.
+CREATE TABLE IF NOT EXISTS balance_snapshots (
+    account_id BIGINT PRIMARY KEY,
+    balance DECIMAL(15,2) NOT NULL,
+    last_entry_id BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+);
+
+-- Open the journal for balances that existed before it.
+WITH opening AS (
+    SELECT id, balance, gen_random_uuid() AS transaction_id
+    FROM accounts
+    WHERE balance IS NOT NULL AND balance <> 0
+)
+INSERT INTO ledger_entries (transaction_id, account_id, amount, entry_type)
+SELECT transaction_id, id, balance, 'OPENING' FROM opening
+UNION ALL
+SELECT transaction_id, NULL, -balance, 'OPENING' FROM opening;
@@ -0,0 +1,15 @@
+-- Opt-in striped balances for hot accounts. 0 means the account is not striped; otherwise credits
+-- land on one of balance_stripes sub-balance rows and the effective balance is
+-- accounts.balance plus the sum of its stripes.
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS balance_stripes INTEGER NOT NULL DEFAULT 0;
+
+CREATE TABLE IF NOT EXISTS account_balance_stripes (
+    account_id BIGINT NOT NULL,
+    stripe INTEGER NOT NULL,
+    balance DECIMAL(15,2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (account_id, stripe),
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_accounts_striped ON accounts(id) WHERE balance_stripes > 0;
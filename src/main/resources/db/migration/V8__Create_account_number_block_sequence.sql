@@ -0,0 +1,3 @@
+-- Each value hands one application node a block of account number serials
+-- (see AccountNumberGenerator.BLOCK_SIZE); serials are never shared between nodes.
+CREATE SEQUENCE IF NOT EXISTS account_number_block_seq START WITH 1 INCREMENT BY 1;
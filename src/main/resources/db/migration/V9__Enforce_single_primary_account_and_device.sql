@@ -0,0 +1,27 @@
+-- Keep the lowest-id primary per user where earlier code left several.
+UPDATE accounts a
+SET is_primary = FALSE
+WHERE a.is_primary
+  AND EXISTS (SELECT 1 FROM accounts o WHERE o.user_id = a.user_id AND o.is_primary AND o.id < a.id);
+
+UPDATE devices d
+SET is_primary = FALSE
+WHERE d.is_primary
+  AND EXISTS (SELECT 1 FROM devices o WHERE o.user_id = d.user_id AND o.is_primary AND o.id < d.id);
+
+-- At most one primary per user, enforced by a partial unique btree index on (user_id) WHERE is_primary.
+-- It is declared as an exclusion constraint only so that it can be DEFERRABLE: a plain unique index is
+-- checked row by row, and "SET is_primary = (id = ?)" would trip over the old primary whenever the new
+-- one happens to be updated first. INITIALLY IMMEDIATE still checks at the end of every statement.
+ALTER TABLE accounts
+    ADD CONSTRAINT ux_accounts_one_primary_per_user
+    EXCLUDE USING btree (user_id WITH =) WHERE (is_primary)
+    DEFERRABLE INITIALLY IMMEDIATE;
+
+ALTER TABLE devices
+    ADD CONSTRAINT ux_devices_one_primary_per_user
+    EXCLUDE USING btree (user_id WITH =) WHERE (is_primary)
+    DEFERRABLE INITIALLY IMMEDIATE;
+
+-- Superseded by the constraint's index, which also answers "primary device of user X".
+DROP INDEX IF EXISTS idx_devices_is_primary;
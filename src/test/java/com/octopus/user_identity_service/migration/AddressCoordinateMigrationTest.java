@@ -0,0 +1,75 @@
+package com.octopus.user_identity_service.migration;
+
+import com.octopus.user_identity_service.util.GeoHash;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Runs V20 against addresses written by the old schema, where coordinates were free text. */
+class AddressCoordinateMigrationTest extends FlywayMigrationTest {
+
+    @Test
+    void testCoordinatesAreParsedOrSetAside() {
+        migrate("19");
+        long decimal = insert("51.5074", "-0.1278");
+        long hemispheres = insert("33.8688° S", "151.2093E");
+        long decimalComma = insert(" 48,8566 ", "2,3522");
+        long outOfRange = insert("91.5", "10");
+        long wrongHemisphere = insert("12.5E", "10");
+        long halfPair = insert("40.7128", "");
+        long blank = insert("", null);
+        migrate("20");
+
+        assertCoordinates(decimal, "51.507400", "-0.127800");
+        assertCoordinates(hemispheres, "-33.868800", "151.209300");
+        assertCoordinates(decimalComma, "48.856600", "2.352200");
+        assertCoordinates(outOfRange, null, null);
+        assertCoordinates(wrongHemisphere, null, null);
+        assertCoordinates(halfPair, null, null);
+        assertCoordinates(blank, null, null);
+
+        assertEquals(List.of(outOfRange, wrongHemisphere, halfPair),
+                scratch.queryForList("SELECT address_id FROM address_coordinate_rejects ORDER BY address_id", Long.class));
+        assertEquals("91.5", scratch.queryForObject(
+                "SELECT latitude FROM address_coordinate_rejects WHERE address_id = ?", String.class, outOfRange));
+    }
+
+    @Test
+    void testStoredGeohashMatchesGeoHashEncode() {
+        migrate("20");
+        double[][] points = {{51.5074, -0.1278}, {-33.8688, 151.2093}, {0, 0}, {-0.000001, -0.000001},
+                {90, 180}, {-90, -180}, {64.1466, -21.9426}, {-54.8019, -68.303}};
+        for (double[] point : points) {
+            long id = insert(BigDecimal.valueOf(point[0]).toPlainString(), BigDecimal.valueOf(point[1]).toPlainString());
+            assertEquals(GeoHash.encode(point[0], point[1], GeoHash.MAX_PRECISION),
+                    scratch.queryForObject("SELECT geohash FROM addresses WHERE id = ?", String.class, id),
+                    () -> point[0] + "," + point[1]);
+        }
+        assertNull(scratch.queryForObject("SELECT geohash FROM addresses WHERE id = ?", String.class, insert(null, null)));
+    }
+
+    /** Inserts an address; coordinates are bound as text, which both the old and the new column types accept. */
+    private long insert(String latitude, String longitude) {
+        return scratch.queryForObject(
+                "INSERT INTO addresses (street, city, latitude, longitude) VALUES ('1 Test Street', 'Testville', ?::text::" + coordinateType()
+                        + ", ?::text::" + coordinateType() + ") RETURNING id",
+                Long.class, latitude, longitude);
+    }
+
+    private String coordinateType() {
+        return scratch.queryForObject("""
+                SELECT CASE WHEN data_type = 'numeric' THEN 'numeric' ELSE 'varchar' END
+                FROM information_schema.columns WHERE table_name = 'addresses' AND column_name = 'latitude'
+                """, String.class);
+    }
+
+    private void assertCoordinates(long id, String latitude, String longitude) {
+        Map<String, Object> row = scratch.queryForMap("SELECT latitude, longitude FROM addresses WHERE id = ?", id);
+        assertEquals(latitude == null ? null : new BigDecimal(latitude), row.get("latitude"), "latitude of " + id);
+        assertEquals(longitude == null ? null : new BigDecimal(longitude), row.get("longitude"), "longitude of " + id);
+    }
+}
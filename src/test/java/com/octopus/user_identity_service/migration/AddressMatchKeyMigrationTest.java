@@ -0,0 +1,44 @@
+package com.octopus.user_identity_service.migration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Runs V22 against addresses that existed before V21 added the match key columns. */
+class AddressMatchKeyMigrationTest extends FlywayMigrationTest {
+
+    @Test
+    void testExistingAddressesAreKeyed() {
+        migrate("21");
+        long full = insert("12 Main St.", "São Paulo", "S.P.", "Brazil");
+        long streetless = insert(null, "Berlin", null, " Germany ");
+        long empty = insert(null, null, null, null);
+        migrate("22");
+
+        Map<String, Object> row = columns(full);
+        assertEquals("12 main street|sao paulo|sp", row.get("match_key"));
+        assertEquals("sao paulo", row.get("normalised_city"));
+        assertEquals("sp", row.get("normalised_state"));
+        assertEquals("brazil", row.get("normalised_country"));
+
+        row = columns(streetless);
+        assertEquals("|berlin|", row.get("match_key"));
+        assertNull(row.get("normalised_state"));
+        assertEquals("germany", row.get("normalised_country"));
+
+        assertEquals("||", columns(empty).get("match_key"));
+        assertEquals(0, scratch.queryForObject("SELECT count(*) FROM addresses WHERE match_key IS NULL", Integer.class));
+    }
+
+    private long insert(String street, String city, String state, String country) {
+        return scratch.queryForObject("INSERT INTO addresses (street, city, state, country) VALUES (?, ?, ?, ?) RETURNING id",
+                Long.class, street, city, state, country);
+    }
+
+    private Map<String, Object> columns(long id) {
+        return scratch.queryForMap(
+                "SELECT match_key, normalised_city, normalised_state, normalised_country FROM addresses WHERE id = ?", id);
+    }
+}
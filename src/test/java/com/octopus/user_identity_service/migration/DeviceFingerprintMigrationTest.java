@@ -0,0 +1,125 @@
+package com.octopus.user_identity_service.migration;
+
+import com.octopus.user_identity_service.util.DeviceFingerprint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the fingerprints V14 computes in SQL, and V26 recomputes in Java, with what
+ * DeviceFingerprint makes of the same attributes at registration.
+ */
+class DeviceFingerprintMigrationTest extends FlywayMigrationTest {
+
+    private long userId;
+
+    @BeforeEach
+    void migrateToBeforeFingerprints() {
+        migrate("13");
+        userId = scratch.queryForObject(
+                "INSERT INTO users (username, password, email) VALUES ('fp', 'secret', 'fp@example.com') RETURNING id",
+                Long.class);
+    }
+
+    @Test
+    void testSqlBackfillMatchesOnAscii() {
+        long[] ids = {
+                insert("Mozilla/5.0  (iPhone;\tCPU OS 17_0)\n", "iOS", "iPhone", null),
+                insert(null, "  Android   14 ", "Pixel 8 Pro", "AA-BB-CC-DD-EE-FF"),
+                insert(null, null, null, "aa:bb:cc:dd:ee:01"),
+                insert("\u000bcurl/8.4.0\f", null, null, null)};
+        long unknown = insert(" ", "", null, "--");
+        migrate("14");
+
+        for (long id : ids) {
+            assertEquals(expected(id), stored(id), () -> "device " + id);
+        }
+        assertNull(stored(unknown));
+    }
+
+    @Test
+    void testNonAsciiAttributesMatchAfterRecompute() {
+        long[] ids = {
+                insert(null, "ΣΊΣΥΦΟΣ OS", "Sisyphus", null),
+                insert(null, null, "İPHONE", null),
+                insert("Browser STRASSE ẞ", null, null, null),
+                insert(null, null, "Galaxy\u00a0S24", null),
+                insert(null, "\u2003Android\u2003", null, null),
+                insert(null, null, "Ideographic\u3000Space", null),
+                insert(null, null, "Ǆungla", null),
+                insert(null, "Android", null, "ＡＢ:cd:ef:01:23:45"),
+                insert("Mozilla/5.0 (X11)", "Linux", "ThinkPad", "00:11:22:33:44:55")};
+        migrate("26");
+
+        for (long id : ids) {
+            assertEquals(expected(id), stored(id), () -> "device " + id);
+        }
+    }
+
+    @Test
+    void testInternedUserAgentIsPartOfTheFingerprint() {
+        migrate("25");
+        String userAgent = "Mozilla/5.0 (Linux; Android 14) ÜBERAPP/2.1";
+        long userAgentId = scratch.queryForObject(
+                "INSERT INTO user_agents (user_agent, user_agent_hash) VALUES (?, 'hash') RETURNING id", Long.class, userAgent);
+        String fingerprint = DeviceFingerprint.of(userAgent, "Android", "Pixel 8", null);
+        long current = insertInterned(userAgentId, "Pixel 8", fingerprint);
+        long stale = insertInterned(userAgentId, "PIXEL 9", "stale");
+        migrate("26");
+
+        assertEquals(fingerprint, stored(current));
+        assertEquals(DeviceFingerprint.of(userAgent, "Android", "pixel 9", null), stored(stale));
+    }
+
+    @Test
+    void testRecomputedDuplicatesAreLeftUnfingerprinted() {
+        long otherUserId = scratch.queryForObject(
+                "INSERT INTO users (username, password, email) VALUES ('fp2', 'secret', 'fp2@example.com') RETURNING id",
+                Long.class);
+        // Distinct for a collation that only folds ASCII, one device for DeviceFingerprint.
+        long older = insert(null, null, "ÉCLAIRÉ", null);
+        long newer = insert(null, null, "ÉCLAIRé", null);
+        // The second already has the fingerprint the application computes; logins find that row.
+        long stale = insert(null, null, "FLÂNEUR", null);
+        long settled = insert(null, null, "flâneur", null);
+        long elsewhere = insert(otherUserId, null, null, "ÉclairÉ", null);
+        migrate("26");
+
+        assertEquals(DeviceFingerprint.of(null, null, "éclairé", null), stored(older));
+        assertNull(stored(newer));
+        assertEquals(DeviceFingerprint.of(null, null, "flâneur", null), stored(settled));
+        assertNull(stored(stale));
+        // Another user's device with the same attributes is not a duplicate.
+        assertEquals(stored(older), stored(elsewhere));
+    }
+
+    private long insert(String userAgent, String os, String deviceModel, String macAddress) {
+        return insert(userId, userAgent, os, deviceModel, macAddress);
+    }
+
+    private long insert(long owner, String userAgent, String os, String deviceModel, String macAddress) {
+        return scratch.queryForObject("""
+                INSERT INTO devices (name, user_id, user_agent, os, device_model, mac_address)
+                VALUES ('device', ?, ?, ?, ?, ?) RETURNING id
+                """, Long.class, owner, userAgent, os, deviceModel, macAddress);
+    }
+
+    /** A device as saved since V18: the user agent lives in user_agents, devices.user_agent is null. */
+    private long insertInterned(long userAgentId, String deviceModel, String fingerprint) {
+        return scratch.queryForObject("""
+                INSERT INTO devices (name, user_id, user_agent_id, os, device_model, fingerprint)
+                VALUES ('device', ?, ?, 'Android', ?, ?) RETURNING id
+                """, Long.class, userId, userAgentId, deviceModel, fingerprint);
+    }
+
+    private String expected(long id) {
+        return scratch.queryForObject("SELECT user_agent, os, device_model, mac_address FROM devices WHERE id = ?",
+                (rs, rowNum) -> DeviceFingerprint.of(rs.getString("user_agent"), rs.getString("os"),
+                        rs.getString("device_model"), rs.getString("mac_address")), id);
+    }
+
+    private String stored(long id) {
+        return scratch.queryForObject("SELECT fingerprint FROM devices WHERE id = ?", String.class, id);
+    }
+}
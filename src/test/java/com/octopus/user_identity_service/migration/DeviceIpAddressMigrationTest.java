@@ -0,0 +1,61 @@
+package com.octopus.user_identity_service.migration;
+
+import com.octopus.user_identity_service.util.IpAddressNormalizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs V16 against device addresses stored as text, and checks that every value ends up as what
+ * {@link IpAddressNormalizer#parse} makes of it: the same address, or a reject where parse throws.
+ */
+class DeviceIpAddressMigrationTest extends FlywayMigrationTest {
+
+    private static final List<String> VALUES = List.of(
+            "192.168.1.20", " 10.0.0.1 ", "010.001.000.001", "10.0.0.1:8080", "256.1.1.1", "1.2.3",
+            "2001:DB8::1", "2001:db8:0:0:0:0:0:1", "[2001:db8::1]:443", "[10.0.0.1]", "fe80::1%eth0",
+            "::ffff:192.0.2.1", "::1", "::",
+            "10.0.0.1/24", "10.0.0.1/32", "10.0.0.1/024", "10.0.0.1/33", "10.0.0.1/", "10.0.0.1:80/24",
+            "2001:db8::1/64", "fe80::1%eth0/64", "[2001:db8::1]/64", "::ffff:10.0.0.1/120",
+            "10.0.0/24", "10/8", "10/16", "1.2.3/23", "10.0.0/32", "1.2.3.4%eth0", "10.0.0.1%eth0/24",
+            "localhost", "example.com", "1.2.3.4.5", "::g", "unknown");
+
+    @Test
+    void testMigratedAddressesMatchIpAddressNormalizer() {
+        migrate("15");
+        long userId = scratch.queryForObject(
+                "INSERT INTO users (username, password, email) VALUES ('ip', 'secret', 'ip@example.com') RETURNING id",
+                Long.class);
+        Map<Long, String> devices = new LinkedHashMap<>();
+        for (String value : VALUES) {
+            devices.put(scratch.queryForObject(
+                    "INSERT INTO devices (name, user_id, ip_address) VALUES ('device', ?, ?) RETURNING id",
+                    Long.class, userId, value), value);
+        }
+        migrate("16");
+
+        List<Executable> checks = new ArrayList<>();
+        devices.forEach((id, value) -> {
+            String migrated = scratch.queryForObject(
+                    "SELECT host(ip_address) FROM devices WHERE id = ?", String.class, id);
+            boolean rejected = scratch.queryForObject(
+                    "SELECT count(*) FROM device_ip_address_rejects WHERE device_id = ?", Integer.class, id) == 1;
+            String parsed;
+            try {
+                parsed = IpAddressNormalizer.format(IpAddressNormalizer.parse(value));
+            } catch (IllegalArgumentException e) {
+                parsed = null;
+            }
+            String expected = parsed;
+            checks.add(() -> assertEquals(expected, migrated, () -> "\"" + value + "\""));
+            checks.add(() -> assertEquals(expected == null, rejected, () -> "\"" + value + "\" rejected"));
+        });
+        assertAll(checks);
+    }
+}
@@ -0,0 +1,58 @@
+package com.octopus.user_identity_service.migration;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Base for tests of a single migration. Each test gets a database of its own, which it migrates
+ * step by step with {@link #migrate(String)}; the database is dropped again afterwards.
+ */
+@SpringBootTest
+abstract class FlywayMigrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    private String database;
+    private DriverManagerDataSource dataSource;
+
+    /** Connected to the test's own database. */
+    protected JdbcTemplate scratch;
+
+    @BeforeEach
+    void createDatabase() {
+        database = "migration_test_" + System.nanoTime();
+        jdbcTemplate.execute("CREATE DATABASE " + database);
+        dataSource = new DriverManagerDataSource(url.replaceFirst("/[^/?]+(\\?|$)", "/" + database + "$1"), username, password);
+        scratch = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("DROP DATABASE IF EXISTS " + database + " WITH (FORCE)");
+    }
+
+    protected void migrate(String target) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .target(target)
+                .load()
+                .migrate();
+    }
+}
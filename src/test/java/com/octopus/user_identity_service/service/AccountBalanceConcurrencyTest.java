@@ -0,0 +1,257 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.BatchTransferRequest;
+import com.octopus.user_identity_service.dto.TransferLeg;
+import com.octopus.user_identity_service.enums.AccountType;
+import com.octopus.user_identity_service.enums.BatchTransferMode;
+import com.octopus.user_identity_service.model.Account;
+import com.octopus.user_identity_service.model.User;
+import com.octopus.user_identity_service.repository.AccountRepository;
+import com.octopus.user_identity_service.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hammers a small set of accounts with concurrent deposits, withdrawals and transfers in both
+ * directions. Any lost update shows up as a drift in the total, any deadlock as an unexpected
+ * exception. Scale it with -Dbenchmark.ops and -Dbenchmark.threads. Velocity limits are off so
+ * that the debit volume is not capped.
+ */
+@SpringBootTest(properties = "velocity.enabled=false")
+class AccountBalanceConcurrencyTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountBalanceConcurrencyTest.class);
+
+    private static final int ACCOUNTS = 6;
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000.00");
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BalanceStripeService balanceStripeService;
+
+    @Autowired
+    private BatchTransferService batchTransferService;
+
+    private User user;
+    private final List<Long> accountIds = new ArrayList<>();
+
+    @BeforeEach
+    void createAccounts() {
+        String run = Long.toString(System.nanoTime());
+        user = userRepository.save(User.builder()
+                .username("bench" + run)
+                .email("bench" + run + "@example.com")
+                .password("secret")
+                .build());
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = new Account();
+            account.setAccountNumber("BEN-" + run + "-" + i);
+            account.setAccountType(AccountType.CHECKING);
+            account.setBalance(OPENING_BALANCE);
+            account.setUser(user);
+            accountIds.add(accountRepository.save(account).getId());
+        }
+    }
+
+    @AfterEach
+    void removeAccounts() {
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", user.getId());
+    }
+
+    @Test
+    void testConcurrentBalanceUpdatesAreNotLost() throws Exception {
+        runWorkload(false);
+    }
+
+    @Test
+    void testConcurrentBalanceUpdatesOnStripedAccountsAreNotLost() throws Exception {
+        for (int i = 0; i < ACCOUNTS; i += 2) {
+            accountService.enableBalanceStriping(accountIds.get(i), 4);
+        }
+        runWorkload(true);
+    }
+
+    @Test
+    void testStripeCountIsOnlyWrittenWithTheStripes() {
+        Account requested = new Account();
+        requested.setAccountType(AccountType.SAVINGS);
+        requested.setBalanceStripes(4);
+        Account created = accountService.createAccount(requested, user.getId());
+        assertEquals(0, created.getBalanceStripes());
+        assertEquals(0, storedStripeCount(created.getId()));
+        accountService.deposit(created.getId(), new BigDecimal("5.00"));
+
+        // A save from an entity loaded before striping was enabled must not reset the count.
+        Long striped = accountIds.get(0);
+        Account stale = accountRepository.findById(striped).orElseThrow();
+        accountService.enableBalanceStriping(striped, 4);
+        stale.setCurrency("EUR");
+        accountRepository.save(stale);
+        assertEquals(4, storedStripeCount(striped));
+        accountService.deposit(striped, new BigDecimal("5.00"));
+    }
+
+    @Test
+    void testAccountsWithNumbersInAnyFormatCanBeLookedUp() {
+        Account existing = accountRepository.findById(accountIds.get(0)).orElseThrow();
+        // Numbers like "BEN-<run>-0" predate the generator and are neither generated nor legacy.
+        assertEquals(existing.getId(), accountService.getAccountByAccountNumber(existing.getAccountNumber())
+                .map(Account::getId).orElseThrow());
+        assertTrue(accountService.getAccountByAccountNumber("NOT-A-NUMBER").isEmpty());
+    }
+
+    @Test
+    void testCreditToStripeCountWithoutStripesFails() {
+        Long broken = accountIds.get(0);
+        jdbcTemplate.update("UPDATE accounts SET balance_stripes = 4 WHERE id = ?", broken);
+        assertThrows(IllegalStateException.class, () -> accountService.deposit(broken, new BigDecimal("5.00")));
+    }
+
+    /**
+     * A single transfer into a striped account holds a stripe while it waits for the source row; a
+     * batch touching the same two accounts must not hold that row while it waits for the stripe.
+     */
+    @Test
+    void testBatchAndSingleTransfersOnStripedAccountDoNotDeadlock() throws Exception {
+        Long striped = accountIds.get(0);
+        Long plain = accountIds.get(1);
+        accountService.enableBalanceStriping(striped, 4);
+
+        AtomicLong depositedCents = new AtomicLong();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 400; i++) {
+            int operation = i % 4;
+            executor.execute(() -> {
+                long cents = ThreadLocalRandom.current().nextLong(1, 500);
+                BigDecimal amount = BigDecimal.valueOf(cents, 2);
+                try {
+                    switch (operation) {
+                        case 0 -> accountService.transfer(plain, striped, amount);
+                        case 1 -> {
+                            accountService.deposit(striped, amount);
+                            depositedCents.addAndGet(cents);
+                        }
+                        case 2 -> batchTransferService.transfer(BatchTransferRequest.builder()
+                                .mode(BatchTransferMode.BEST_EFFORT)
+                                .legs(List.of(leg(plain, striped, amount), leg(striped, plain, amount)))
+                                .build());
+                        default -> accountService.transfer(striped, plain, amount);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Insufficient balance is fine here; only deadlocks and lost updates are not.
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES), "operations did not finish");
+
+        assertTrue(failures.isEmpty(), () -> failures.size() + " unexpected failures, first: " + failures.peek());
+        BigDecimal total = accountRepository.findAllById(List.of(striped, plain)).stream()
+                .map(Account::getEffectiveBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal expected = OPENING_BALANCE.multiply(BigDecimal.valueOf(2)).add(BigDecimal.valueOf(depositedCents.get(), 2));
+        assertEquals(0, expected.compareTo(total), "balance drifted: expected " + expected + " but was " + total);
+    }
+
+    private static TransferLeg leg(Long from, Long to, BigDecimal amount) {
+        return TransferLeg.builder().fromAccountId(from).toAccountId(to).amount(amount).build();
+    }
+
+    private void runWorkload(boolean consolidate) throws Exception {
+        int operations = Integer.getInteger("benchmark.ops", 2000);
+        int threads = Integer.getInteger("benchmark.threads", 16);
+
+        // Net amount deposited minus withdrawn, in cents; transfers must not change the total.
+        AtomicLong netCents = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long started = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            if (consolidate && i % 200 == 0) {
+                // Fold stripes while deposits and withdrawals are still landing on them.
+                executor.execute(balanceStripeService::consolidateStripes);
+            }
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long cents = random.nextLong(1, 5000);
+                BigDecimal amount = BigDecimal.valueOf(cents, 2);
+                Long from = accountIds.get(random.nextInt(ACCOUNTS));
+                Long to = accountIds.get(random.nextInt(ACCOUNTS));
+                try {
+                    switch (random.nextInt(4)) {
+                        case 0 -> {
+                            accountService.deposit(from, amount);
+                            netCents.addAndGet(cents);
+                        }
+                        case 1 -> {
+                            accountService.withdraw(from, amount);
+                            netCents.addAndGet(-cents);
+                        }
+                        default -> {
+                            if (!from.equals(to)) {
+                                accountService.transfer(from, to, amount);
+                            }
+                        }
+                    }
+                } catch (IllegalArgumentException e) {
+                    rejected.incrementAndGet();
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES), "operations did not finish");
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        assertTrue(failures.isEmpty(), () -> "unexpected failures, first: " + failures.peek());
+
+        List<Account> accounts = accountRepository.findAllById(accountIds);
+        BigDecimal total = accounts.stream().map(Account::getEffectiveBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal expected = OPENING_BALANCE.multiply(BigDecimal.valueOf(ACCOUNTS)).add(BigDecimal.valueOf(netCents.get(), 2));
+
+        assertEquals(0, expected.compareTo(total), "balance drifted: expected " + expected + " but was " + total);
+        assertTrue(accounts.stream().allMatch(account -> account.getEffectiveBalance().signum() >= 0));
+        log.info("{} balance operations on {} threads in {} s ({} ops/s, {} rejected)",
+                operations, threads, String.format("%.2f", seconds), Math.round(operations / seconds), rejected.get());
+    }
+
+    private int storedStripeCount(Long accountId) {
+        return jdbcTemplate.queryForObject("SELECT balance_stripes FROM accounts WHERE id = ?", Integer.class, accountId);
+    }
+}
@@ -0,0 +1,121 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.AddressDeduplicationRun;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes addresses straight to the table, as an import would, so they arrive without match keys.
+ * Every address uses a city unique to the run and is deleted afterwards.
+ */
+@SpringBootTest(properties = "addresses.dedupe.batch-size=2")
+class AddressDeduplicationServiceTest {
+
+    private static final long DEDUPLICATION_LOCK_KEY = 7_340_004L;
+
+    @Autowired
+    private AddressDeduplicationService addressDeduplicationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private String city;
+
+    @BeforeEach
+    void chooseCity() {
+        city = "Dedupe" + System.nanoTime();
+    }
+
+    @AfterEach
+    void removeAddresses() {
+        jdbcTemplate.update("DELETE FROM addresses WHERE city = ?", city);
+    }
+
+    @Test
+    void testNormalisesAndMarksDuplicatesOfTheOldestAddress() {
+        long original = insert("12 Main Street", "UK");
+        long abbreviated = insert("12 Main St.", "UK");
+        long shouted = insert("12 MAIN STREET", " uk ");
+        long otherCountry = insert("12 Main Street", "Ireland");
+        long streetless = insert(null, "UK");
+        long alsoStreetless = insert(null, "UK");
+
+        AddressDeduplicationRun run = addressDeduplicationService.run();
+
+        assertNotNull(run);
+        assertTrue(run.getAddressesNormalised() >= 6);
+        assertTrue(run.getDuplicatesMarked() >= 2);
+        assertEquals("12 main street|" + city.toLowerCase() + "|", matchKey(abbreviated));
+        assertEquals("uk", jdbcTemplate.queryForObject(
+                "SELECT normalised_country FROM addresses WHERE id = ?", String.class, shouted));
+        assertNull(duplicateOf(original));
+        assertEquals(original, duplicateOf(abbreviated));
+        assertEquals(original, duplicateOf(shouted));
+        assertNull(duplicateOf(otherCountry));
+        // A city alone is not enough to call two addresses the same.
+        assertNull(duplicateOf(streetless));
+        assertNull(duplicateOf(alsoStreetless));
+    }
+
+    @Test
+    void testClearsDuplicateWhoseAddressChanged() {
+        long original = insert("1 High Street", "UK");
+        long copy = insert("1 High St", "UK");
+        addressDeduplicationService.run();
+        assertEquals(original, duplicateOf(copy));
+
+        // Changed behind AddressService's back: the key has to be recomputed on the next run.
+        jdbcTemplate.update("UPDATE addresses SET street = '2 High Street', match_key = NULL WHERE id = ?", copy);
+        AddressDeduplicationRun run = addressDeduplicationService.run();
+
+        assertNotNull(run);
+        assertTrue(run.getDuplicatesCleared() >= 1);
+        assertNull(duplicateOf(copy));
+    }
+
+    @Test
+    void testSkipsWhileAnotherNodeHoldsTheLock() throws Exception {
+        long original = insert("3 Low Road", "UK");
+        long copy = insert("3 Low Rd", "UK");
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SELECT pg_advisory_xact_lock(" + DEDUPLICATION_LOCK_KEY + ")");
+            }
+            assertNull(addressDeduplicationService.run());
+            connection.rollback();
+        }
+        assertNull(duplicateOf(copy));
+
+        assertNotNull(addressDeduplicationService.run());
+        assertEquals(original, duplicateOf(copy));
+    }
+
+    private long insert(String street, String country) {
+        return jdbcTemplate.queryForObject("INSERT INTO addresses (street, city, country) VALUES (?, ?, ?) RETURNING id",
+                Long.class, street, city, country);
+    }
+
+    private String matchKey(long id) {
+        return jdbcTemplate.queryForObject("SELECT match_key FROM addresses WHERE id = ?", String.class, id);
+    }
+
+    private Long duplicateOf(long id) {
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT duplicate_of_id FROM addresses WHERE id = ?", id);
+        return (Long) row.get("duplicate_of_id");
+    }
+}
@@ -0,0 +1,161 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.NearbyAddress;
+import com.octopus.user_identity_service.util.GeoHash;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Times geohash radius and nearest-neighbour searches against a full scan, and checks that both
+ * return the same addresses. Only runs when given a table size, e.g.
+ * {@code mvn test -Dtest=AddressSearchBenchmarkTest -Dbenchmark.addresses=3000000}; the generated
+ * rows are deleted again afterwards. 80% of the points fall in 200 city-sized clusters, the rest
+ * anywhere, so searches see both dense and empty areas.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark.addresses", matches = "\\d+")
+class AddressSearchBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AddressSearchBenchmarkTest.class);
+
+    private static final String GENERATE_SQL = """
+            WITH centres AS (
+                SELECT c, random() * 140 - 70 AS lat, random() * 360 - 180 AS lon
+                FROM generate_series(0, 199) c
+            ), points AS (
+                SELECT g % 200 AS centre, random() < 0.2 AS scattered,
+                       sqrt(-2 * ln(1 - random())) AS r, 2 * pi() * random() AS theta
+                FROM generate_series(1, ?) g
+            )
+            INSERT INTO addresses (street, city, country, latitude, longitude)
+            SELECT ?, 'Benchmark', 'ZZ',
+                   round((CASE WHEN p.scattered THEN random() * 170 - 85
+                               ELSE greatest(-89.9, least(89.9, c.lat + 0.3 * p.r * cos(p.theta))) END)::numeric, 6),
+                   round((CASE WHEN p.scattered THEN random() * 360 - 180
+                               ELSE mod((c.lon + 0.4 * p.r * sin(p.theta) + 540)::numeric, 360) - 180 END)::numeric, 6)
+            FROM points p
+            JOIN centres c ON c.c = p.centre
+            """;
+
+    private static final String FULL_SCAN_SQL = """
+            SELECT id FROM (
+                SELECT a.id, 2 * %s * asin(least(1, sqrt(
+                    power(sin(radians(a.latitude::float8 - ?) / 2), 2)
+                    + cos(radians(?)) * cos(radians(a.latitude::float8)) * power(sin(radians(a.longitude::float8 - ?) / 2), 2))))
+                    AS distance
+                FROM addresses a
+                WHERE a.latitude IS NOT NULL
+            ) d
+            WHERE distance <= ?
+            ORDER BY distance, id
+            LIMIT ?
+            """.formatted(GeoHash.EARTH_RADIUS_METERS);
+
+    private static final double[] RADII_METERS = {250, 1_000, 5_000, 25_000};
+    private static final int[] NEAREST_COUNTS = {1, 10, 100};
+    private static final int LIMIT = 500;
+
+    @Autowired
+    private AddressService addressService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String marker;
+
+    @BeforeEach
+    void generateAddresses() {
+        int rows = Integer.getInteger("benchmark.addresses");
+        marker = "benchmark " + System.nanoTime();
+        long started = System.nanoTime();
+        jdbcTemplate.update(GENERATE_SQL, rows, marker);
+        jdbcTemplate.execute("ANALYZE addresses");
+        log.info("Generated {} addresses in {} ms", rows, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @AfterEach
+    void removeAddresses() {
+        jdbcTemplate.update("DELETE FROM addresses WHERE street = ?", marker);
+    }
+
+    @Test
+    void testGeohashSearchMatchesFullScan() {
+        int samples = Integer.getInteger("benchmark.samples", 200);
+        List<Map<String, Object>> points = jdbcTemplate.queryForList(
+                "SELECT latitude::float8 AS lat, longitude::float8 AS lon FROM addresses WHERE street = ? ORDER BY random() LIMIT ?",
+                marker, samples);
+
+        // A handful of full scans is enough for a baseline; they all cost about the same.
+        long[] fullScan = new long[Math.min(5, points.size())];
+        for (int i = 0; i < fullScan.length; i++) {
+            double lat = (double) points.get(i).get("lat");
+            double lon = (double) points.get(i).get("lon");
+            long started = System.nanoTime();
+            jdbcTemplate.queryForList(FULL_SCAN_SQL, Long.class, lat, lat, lon, RADII_METERS[0], LIMIT);
+            fullScan[i] = System.nanoTime() - started;
+        }
+        report("full scan", fullScan);
+
+        for (double radius : RADII_METERS) {
+            long[] timings = new long[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                double lat = (double) points.get(i).get("lat");
+                double lon = (double) points.get(i).get("lon");
+                timings[i] = timed(() -> addressService.findAddressesWithinRadius(lat, lon, radius, LIMIT),
+                        lat, lon, radius, LIMIT);
+            }
+            report("within " + (int) radius + " m", timings);
+        }
+
+        for (int count : NEAREST_COUNTS) {
+            long[] timings = new long[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                double lat = (double) points.get(i).get("lat");
+                double lon = (double) points.get(i).get("lon");
+                timings[i] = timed(() -> addressService.findNearestAddresses(lat, lon, count),
+                        lat, lon, Double.MAX_VALUE, count);
+            }
+            report(count + " nearest", timings);
+        }
+    }
+
+    /** Runs the search, checks it against a full scan and returns how long the search took. */
+    private long timed(Supplier<List<NearbyAddress>> search, double lat, double lon, double radius, int limit) {
+        long started = System.nanoTime();
+        List<NearbyAddress> found = search.get();
+        long elapsed = System.nanoTime() - started;
+
+        List<Long> expected = jdbcTemplate.queryForList(FULL_SCAN_SQL, Long.class, lat, lat, lon, radius, limit);
+        List<Long> actual = new ArrayList<>(found.size());
+        found.forEach(address -> actual.add(address.getAddressId()));
+        assertEquals(expected, actual, () -> "search around " + lat + "," + lon + " within " + radius);
+        return elapsed;
+    }
+
+    private static void report(String search, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        log.info("{}: median {} ms, p95 {} ms, max {} ms over {} searches", search,
+                millis(sorted[sorted.length / 2]), millis(sorted[(int) (sorted.length * 0.95)]),
+                millis(sorted[sorted.length - 1]), sorted.length);
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,39 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.VerificationCandidate;
+import com.octopus.user_identity_service.enums.AccountStatus;
+import com.octopus.user_identity_service.enums.VerificationStatus;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultAccountVerifierTest {
+
+    private final DefaultAccountVerifier verifier = new DefaultAccountVerifier();
+
+    @Test
+    void testActiveAccountOfEnabledUserIsVerified() {
+        assertEquals(VerificationStatus.VERIFIED, verifier.verify(candidate("CHE-1A2B3C4D", AccountStatus.ACTIVE, true)));
+    }
+
+    @Test
+    void testUnknownNumberFormatIsReferredNotRejected() {
+        assertEquals(VerificationStatus.REQUIRED, verifier.verify(candidate("ACC-2019-000042", AccountStatus.ACTIVE, true)));
+        assertEquals(VerificationStatus.REQUIRED, verifier.verify(candidate("SAV-79927398714", AccountStatus.ACTIVE, true)));
+    }
+
+    @Test
+    void testInactiveAccountOrDisabledUserIsReferred() {
+        assertEquals(VerificationStatus.REQUIRED, verifier.verify(candidate("CHE-1A2B3C4D", AccountStatus.SUSPENDED, true)));
+        assertEquals(VerificationStatus.REQUIRED, verifier.verify(candidate("CHE-1A2B3C4D", AccountStatus.ACTIVE, false)));
+    }
+
+    private static VerificationCandidate candidate(String accountNumber, AccountStatus status, boolean userEnabled) {
+        return VerificationCandidate.builder()
+                .accountId(1L)
+                .accountNumber(accountNumber)
+                .status(status)
+                .userEnabled(userEnabled)
+                .build();
+    }
+}
@@ -0,0 +1,180 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.DeviceHeartbeat;
+import com.octopus.user_identity_service.dto.DevicePresence;
+import com.octopus.user_identity_service.model.User;
+import com.octopus.user_identity_service.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The scheduled flush and prune are pushed out of the way so the tests decide when they run.
+@SpringBootTest(properties = {
+        "devices.heartbeat.ownership-refresh-ms=0",
+        "devices.heartbeat.flush-interval-ms=3600000",
+        "devices.presence.prune-interval-ms=3600000"
+})
+class DeviceHeartbeatServiceTest {
+
+    @Autowired
+    private DeviceHeartbeatService deviceHeartbeatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private User otherUser;
+    private Long phone;
+    private Long laptop;
+    private Long otherUsersDevice;
+
+    @BeforeEach
+    void createUsers() {
+        user = createUser("heartbeat");
+        otherUser = createUser("heartbeat-other");
+        phone = createDevice(user, "phone");
+        laptop = createDevice(user, "laptop");
+        otherUsersDevice = createDevice(otherUser, "tablet");
+    }
+
+    @AfterEach
+    void removeUsers() {
+        deviceHeartbeatService.flush();
+        jdbcTemplate.update("DELETE FROM devices WHERE user_id IN (?, ?)", user.getId(), otherUser.getId());
+        jdbcTemplate.update("DELETE FROM users WHERE id IN (?, ?)", user.getId(), otherUser.getId());
+    }
+
+    @Test
+    void testRepeatedPingsCoalesceIntoLatest() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        assertEquals(3, deviceHeartbeatService.record(user.getId(), List.of(
+                ping(phone, now.minusSeconds(20)),
+                ping(phone, now.minusSeconds(5)),
+                ping(phone, now.minusSeconds(10)))));
+
+        List<DevicePresence> online = deviceHeartbeatService.getOnlineDevices(user.getId());
+        assertEquals(1, online.size());
+        assertEquals(now.minusSeconds(5), online.get(0).getLastSeenAt());
+        assertNull(lastSeenAt(phone));
+
+        deviceHeartbeatService.flush();
+        assertEquals(now.minusSeconds(5), lastSeenAt(phone));
+    }
+
+    @Test
+    void testFlushNeverMovesLastSeenBackwards() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        deviceHeartbeatService.record(user.getId(), List.of(ping(phone, now.minusSeconds(5)), ping(laptop, now)));
+        deviceHeartbeatService.flush();
+
+        // A late ping from an earlier moment arrives after the flush.
+        deviceHeartbeatService.record(user.getId(), List.of(ping(phone, now.minusSeconds(30))));
+        deviceHeartbeatService.flush();
+
+        assertEquals(now.minusSeconds(5), lastSeenAt(phone));
+        assertEquals(now, lastSeenAt(laptop));
+        assertEquals(List.of(laptop, phone), deviceHeartbeatService.getOnlineDevices(user.getId()).stream()
+                .map(DevicePresence::getDeviceId).toList());
+    }
+
+    @Test
+    void testPingsForOtherUsersDevicesAreDropped() {
+        LocalDateTime now = LocalDateTime.now();
+        assertEquals(1, deviceHeartbeatService.record(user.getId(), List.of(
+                ping(phone, now), ping(otherUsersDevice, now), ping(Long.MAX_VALUE, now))));
+
+        assertEquals(List.of(phone), deviceHeartbeatService.getOnlineDevices(user.getId()).stream()
+                .map(DevicePresence::getDeviceId).toList());
+        deviceHeartbeatService.flush();
+        assertNull(lastSeenAt(otherUsersDevice));
+    }
+
+    @Test
+    void testDeviceRegisteredAfterFirstPingIsAccepted() {
+        deviceHeartbeatService.record(user.getId(), List.of(ping(phone, null)));
+        Long watch = createDevice(user, "watch");
+
+        assertEquals(1, deviceHeartbeatService.record(user.getId(), List.of(ping(watch, null))));
+        assertEquals(2, deviceHeartbeatService.getOnlineDevices(user.getId()).size());
+    }
+
+    @Test
+    void testFuturePingsAreClampedToNow() {
+        LocalDateTime before = LocalDateTime.now();
+        deviceHeartbeatService.record(user.getId(), List.of(ping(phone, before.plusDays(1))));
+        LocalDateTime after = LocalDateTime.now();
+
+        LocalDateTime seenAt = deviceHeartbeatService.getOnlineDevices(user.getId()).get(0).getLastSeenAt();
+        assertFalse(seenAt.isBefore(before));
+        assertFalse(seenAt.isAfter(after));
+    }
+
+    @Test
+    void testPresenceExpiresAfterOnlineWindow() {
+        LocalDateTime stale = LocalDateTime.now().minusMinutes(10).truncatedTo(ChronoUnit.MILLIS);
+        deviceHeartbeatService.record(user.getId(), List.of(ping(phone, stale), ping(laptop, null)));
+
+        assertEquals(List.of(laptop), deviceHeartbeatService.getOnlineDevices(user.getId()).stream()
+                .map(DevicePresence::getDeviceId).toList());
+        // A stale ping is still the latest sighting and gets written.
+        deviceHeartbeatService.flush();
+        assertEquals(stale, lastSeenAt(phone));
+
+        deviceHeartbeatService.pruneOffline();
+        assertEquals(Set.of(laptop), onlineView().get(user.getId()).keySet());
+
+        deviceHeartbeatService.record(otherUser.getId(), List.of(ping(otherUsersDevice, stale)));
+        deviceHeartbeatService.pruneOffline();
+        assertFalse(onlineView().containsKey(otherUser.getId()));
+    }
+
+    @Test
+    void testBatchLimits() {
+        assertThrows(IllegalArgumentException.class, () -> deviceHeartbeatService.record(user.getId(), List.of()));
+        List<DeviceHeartbeat> tooMany = Collections.nCopies(1001, ping(phone, null));
+        assertThrows(IllegalArgumentException.class, () -> deviceHeartbeatService.record(user.getId(), tooMany));
+    }
+
+    private User createUser(String prefix) {
+        String run = Long.toString(System.nanoTime());
+        return userRepository.save(User.builder()
+                .username(prefix + run)
+                .email(prefix + run + "@example.com")
+                .password("secret")
+                .build());
+    }
+
+    private Long createDevice(User owner, String name) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO devices (name, user_id) VALUES (?, ?) RETURNING id", Long.class, name, owner.getId());
+    }
+
+    private LocalDateTime lastSeenAt(Long deviceId) {
+        return jdbcTemplate.queryForObject("SELECT last_seen_at FROM devices WHERE id = ?", LocalDateTime.class, deviceId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Map<Long, LocalDateTime>> onlineView() {
+        return (Map<Long, Map<Long, LocalDateTime>>) ReflectionTestUtils.getField(deviceHeartbeatService, "online");
+    }
+
+    private static DeviceHeartbeat ping(Long deviceId, LocalDateTime seenAt) {
+        return DeviceHeartbeat.builder().deviceId(deviceId).seenAt(seenAt).build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.model.Device;
+import com.octopus.user_identity_service.model.User;
+import com.octopus.user_identity_service.repository.UserRepository;
+import com.octopus.user_identity_service.util.DeviceFingerprint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DeviceServiceTest {
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        String run = Long.toString(System.nanoTime());
+        user = userRepository.save(User.builder()
+                .username("device" + run)
+                .email("device" + run + "@example.com")
+                .password("secret")
+                .build());
+    }
+
+    @AfterEach
+    void removeUser() {
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", user.getId());
+    }
+
+    @Test
+    void testUpdateWithoutUserAgentClearsIt() {
+        Long id = deviceService.registerDevice(device("Mozilla/5.0 (X11; Linux x86_64)"), user.getId()).getId();
+
+        deviceService.updateDevice(id, device(null));
+
+        assertNull(jdbcTemplate.queryForObject("SELECT user_agent_id FROM devices WHERE id = ?", Long.class, id));
+        assertEquals(DeviceFingerprint.of(null, "Linux", "ThinkPad", null),
+                jdbcTemplate.queryForObject("SELECT fingerprint FROM devices WHERE id = ?", String.class, id));
+    }
+
+    @Test
+    void testUpdateReplacesUserAgent() {
+        Long id = deviceService.registerDevice(device("Mozilla/5.0 (X11; Linux x86_64)"), user.getId()).getId();
+
+        deviceService.updateDevice(id, device("curl/8.4.0"));
+
+        assertEquals("curl/8.4.0", jdbcTemplate.queryForObject("""
+                SELECT ua.user_agent FROM devices d JOIN user_agents ua ON ua.id = d.user_agent_id WHERE d.id = ?
+                """, String.class, id));
+        assertEquals(DeviceFingerprint.of("curl/8.4.0", "Linux", "ThinkPad", null),
+                jdbcTemplate.queryForObject("SELECT fingerprint FROM devices WHERE id = ?", String.class, id));
+    }
+
+    private static Device device(String userAgent) {
+        Device device = new Device();
+        device.setName("laptop");
+        device.setOs("Linux");
+        device.setDeviceModel("ThinkPad");
+        device.setUserAgent(userAgent);
+        device.setIsActive(true);
+        return device;
+    }
+}
@@ -0,0 +1,207 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.BatchJobRun;
+import com.octopus.user_identity_service.enums.AccountStatus;
+import com.octopus.user_identity_service.enums.AccountType;
+import com.octopus.user_identity_service.enums.BatchJobStatus;
+import com.octopus.user_identity_service.model.Account;
+import com.octopus.user_identity_service.model.User;
+import com.octopus.user_identity_service.repository.AccountRepository;
+import com.octopus.user_identity_service.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the job for a business date of its own, years back, over accounts backdated to before it.
+ * One worker thread, so the run is a single partition whose checkpoint the tests can set up.
+ */
+@SpringBootTest(properties = {"eod.threads=1", "eod.chunk-size=500", "eod.lease-ms=60000", "velocity.enabled=false"})
+class EndOfDayBatchServiceTest {
+
+    private static final String JOB_NAME = "ACCOUNTS_EOD";
+
+    @Autowired
+    private EndOfDayBatchService endOfDayBatchService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private LocalDate businessDate;
+    private Long first;
+    private Long second;
+
+    @BeforeEach
+    void createAccounts() {
+        String run = Long.toString(System.nanoTime());
+        businessDate = LocalDate.now().minusDays(2 + System.nanoTime() % 5_000);
+        removeRun();
+        user = userRepository.save(User.builder()
+                .username("eod" + run)
+                .email("eod" + run + "@example.com")
+                .password("secret")
+                .build());
+        first = createAccount("EOD-" + run + "-1");
+        second = createAccount("EOD-" + run + "-2");
+        jdbcTemplate.update("UPDATE accounts SET created_at = ?, last_activity_at = ? WHERE id IN (?, ?)",
+                Timestamp.valueOf(LocalDateTime.of(2000, 1, 1, 0, 0)),
+                Timestamp.valueOf(businessDate.atTime(12, 0)), first, second);
+    }
+
+    @AfterEach
+    void removeAccounts() {
+        removeRun();
+        jdbcTemplate.update("DELETE FROM ledger_outbox WHERE account_id IN (?, ?)", first, second);
+        jdbcTemplate.update("DELETE FROM ledger_entries WHERE account_id IN (?, ?)", first, second);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", user.getId());
+    }
+
+    @Test
+    void testSnapshotsBalanceAsOfTheEndOfTheBusinessDay() {
+        // After midnight, so not part of the business day's balance.
+        accountService.deposit(first, new BigDecimal("25.00"));
+        accountService.withdraw(second, new BigDecimal("40.00"));
+
+        BatchJobRun run = endOfDayBatchService.run(businessDate);
+
+        assertEquals(BatchJobStatus.COMPLETED, run.getStatus());
+        assertEquals(0, new BigDecimal("100.00").compareTo(snapshotBalance(first)));
+        assertEquals(0, new BigDecimal("100.00").compareTo(snapshotBalance(second)));
+    }
+
+    @Test
+    void testAccountsOpenedAfterTheBusinessDayAreLeftOut() {
+        jdbcTemplate.update("UPDATE accounts SET created_at = ? WHERE id = ?",
+                Timestamp.valueOf(businessDate.plusDays(1).atTime(9, 0)), second);
+
+        endOfDayBatchService.run(businessDate);
+
+        assertNotNull(snapshotBalance(first));
+        assertNull(snapshotBalance(second));
+    }
+
+    @Test
+    void testMakesIdleAccountsDormant() {
+        jdbcTemplate.update("UPDATE accounts SET last_activity_at = ? WHERE id = ?",
+                Timestamp.valueOf(businessDate.minusDays(400).atStartOfDay()), first);
+
+        endOfDayBatchService.run(businessDate);
+
+        assertEquals(AccountStatus.INACTIVE, accountRepository.findById(first).orElseThrow().getStatus());
+        assertEquals(AccountStatus.ACTIVE, accountRepository.findById(second).orElseThrow().getStatus());
+    }
+
+    @Test
+    void testRejectsBusinessDayThatHasNotEnded() {
+        assertThrows(IllegalArgumentException.class, () -> endOfDayBatchService.run(LocalDate.now()));
+        assertThrows(IllegalArgumentException.class, () -> endOfDayBatchService.run(LocalDate.now().plusDays(3)));
+    }
+
+    @Test
+    void testLiveClaimIsLeftAloneAndStaleClaimIsTakenOver() {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("""
+                INSERT INTO batch_job_runs (job_name, business_date, status, started_at, heartbeat_at)
+                VALUES (?, ?, 'RUNNING', ?, ?)
+                """, JOB_NAME, Date.valueOf(businessDate), Timestamp.valueOf(now), Timestamp.valueOf(now));
+
+        assertEquals(BatchJobStatus.RUNNING, endOfDayBatchService.run(businessDate).getStatus());
+        assertNull(snapshotBalance(first));
+
+        // The owning node stopped heartbeating longer ago than the lease.
+        jdbcTemplate.update("UPDATE batch_job_runs SET heartbeat_at = ? WHERE job_name = ? AND business_date = ?",
+                Timestamp.valueOf(now.minusMinutes(2)), JOB_NAME, Date.valueOf(businessDate));
+
+        BatchJobRun run = endOfDayBatchService.run(businessDate);
+        assertEquals(BatchJobStatus.COMPLETED, run.getStatus());
+        assertNotNull(snapshotBalance(first));
+    }
+
+    @Test
+    void testFailedRunResumesFromItsCheckpoint() {
+        Long runId = jdbcTemplate.queryForObject("""
+                INSERT INTO batch_job_runs (job_name, business_date, status, started_at, heartbeat_at)
+                VALUES (?, ?, 'FAILED', now(), now()) RETURNING id
+                """, Long.class, JOB_NAME, Date.valueOf(businessDate));
+        // Everything up to and including the first account was committed before the run failed.
+        jdbcTemplate.update("""
+                INSERT INTO batch_job_checkpoints (run_id, partition_no, range_start, range_end, last_processed_id, processed_count)
+                SELECT ?, 0, MIN(id), MAX(id), ?, 0 FROM accounts
+                """, runId, first);
+
+        BatchJobRun run = endOfDayBatchService.run(businessDate);
+
+        assertEquals(runId, run.getId());
+        assertEquals(BatchJobStatus.COMPLETED, run.getStatus());
+        assertNull(snapshotBalance(first));
+        assertNotNull(snapshotBalance(second));
+        assertTrue(run.getPartitions().get(0).isCompleted());
+    }
+
+    @Test
+    void testRerunKeepsExistingSnapshots() {
+        endOfDayBatchService.run(businessDate);
+        BigDecimal snapshotted = snapshotBalance(first);
+
+        // Force a full re-run after the balance has moved behind the ledger's back.
+        jdbcTemplate.update("UPDATE accounts SET balance = balance + 500 WHERE id = ?", first);
+        jdbcTemplate.update("UPDATE batch_job_runs SET status = 'FAILED' WHERE job_name = ? AND business_date = ?",
+                JOB_NAME, Date.valueOf(businessDate));
+        jdbcTemplate.update("""
+                UPDATE batch_job_checkpoints c SET last_processed_id = range_start - 1, completed = FALSE
+                FROM batch_job_runs r WHERE r.id = c.run_id AND r.job_name = ? AND r.business_date = ?
+                """, JOB_NAME, Date.valueOf(businessDate));
+
+        BatchJobRun rerun = endOfDayBatchService.run(businessDate);
+
+        assertEquals(BatchJobStatus.COMPLETED, rerun.getStatus());
+        assertEquals(0, snapshotted.compareTo(snapshotBalance(first)));
+        assertEquals(List.of(1), jdbcTemplate.queryForList(
+                "SELECT count(*)::int FROM account_eod_snapshots WHERE business_date = ? AND account_id = ?",
+                Integer.class, Date.valueOf(businessDate), first));
+    }
+
+    private Long createAccount(String accountNumber) {
+        Account account = new Account();
+        account.setAccountNumber(accountNumber);
+        account.setAccountType(AccountType.CHECKING);
+        account.setStatus(AccountStatus.ACTIVE);
+        account.setBalance(new BigDecimal("100.00"));
+        account.setUser(user);
+        return accountRepository.save(account).getId();
+    }
+
+    private BigDecimal snapshotBalance(Long accountId) {
+        List<BigDecimal> balances = jdbcTemplate.queryForList(
+                "SELECT balance FROM account_eod_snapshots WHERE business_date = ? AND account_id = ?",
+                BigDecimal.class, Date.valueOf(businessDate), accountId);
+        return balances.isEmpty() ? null : balances.get(0);
+    }
+
+    private void removeRun() {
+        jdbcTemplate.update("DELETE FROM batch_job_runs WHERE job_name = ? AND business_date = ?", JOB_NAME, Date.valueOf(businessDate));
+        jdbcTemplate.update("DELETE FROM account_eod_snapshots WHERE business_date = ?", Date.valueOf(businessDate));
+    }
+}
@@ -0,0 +1,116 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.exception.IdempotencyKeyConflictException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "idempotency.cache-max-entries=2")
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String alice;
+    private String bob;
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void chooseOwners() {
+        String run = Long.toString(System.nanoTime());
+        alice = "alice" + run;
+        bob = "bob" + run;
+    }
+
+    @AfterEach
+    void removeRecords() {
+        jdbcTemplate.update("DELETE FROM idempotency_records WHERE owner IN (?, ?)", alice, bob);
+    }
+
+    @Test
+    void testDuplicateIsReplayedWithoutRunningAgain() {
+        assertEquals("result 1", idempotencyService.execute(alice, "key", "deposit:1:10", String.class, this::run));
+        assertEquals("result 1", idempotencyService.execute(alice, "key", "deposit:1:10", String.class, this::run));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testKeysAreScopedToTheCaller() {
+        assertEquals("result 1", idempotencyService.execute(alice, "key", "deposit:1:10", String.class, this::run));
+        // Same key and even the same request from someone else is a request of its own.
+        assertEquals("result 2", idempotencyService.execute(bob, "key", "deposit:1:10", String.class, this::run));
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM idempotency_records WHERE idempotency_key = 'key' AND owner IN (?, ?)",
+                Integer.class, alice, bob));
+    }
+
+    @Test
+    void testReusingKeyForDifferentRequestConflicts() {
+        idempotencyService.execute(alice, "key", "deposit:1:10", String.class, this::run);
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> idempotencyService.execute(alice, "key", "withdraw:1:10", String.class, this::run));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testConcurrentDifferentRequestConflictsWithoutWaiting() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute(alice, "key", "deposit:1:10", String.class, () -> {
+                    started.countDown();
+                    await(release);
+                    return run();
+                }));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        try {
+            assertThrows(IdempotencyKeyConflictException.class,
+                    () -> idempotencyService.execute(alice, "key", "withdraw:1:10", String.class, this::run));
+        } finally {
+            release.countDown();
+        }
+        assertEquals("result 1", first.get(10, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testEvictedResultIsReplayedFromTheTable() {
+        idempotencyService.execute(alice, "key", "deposit:1:10", String.class, this::run);
+        // The cache holds two entries; these push the first one out.
+        idempotencyService.execute(alice, "other", "deposit:1:20", String.class, this::run);
+        idempotencyService.execute(alice, "third", "deposit:1:30", String.class, this::run);
+        idempotencyService.execute(alice, "fourth", "deposit:1:40", String.class, this::run);
+
+        assertEquals("result 1", idempotencyService.execute(alice, "key", "deposit:1:10", String.class, this::run));
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> idempotencyService.execute(alice, "key", "withdraw:1:10", String.class, this::run));
+        assertEquals(4, executions.get());
+    }
+
+    private String run() {
+        return "result " + executions.incrementAndGet();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
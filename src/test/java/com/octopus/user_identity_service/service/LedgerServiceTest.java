@@ -0,0 +1,94 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.LedgerBalance;
+import com.octopus.user_identity_service.enums.AccountType;
+import com.octopus.user_identity_service.enums.LedgerEntryType;
+import com.octopus.user_identity_service.model.Account;
+import com.octopus.user_identity_service.model.User;
+import com.octopus.user_identity_service.repository.AccountRepository;
+import com.octopus.user_identity_service.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class LedgerServiceTest {
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+    private Long accountId;
+
+    @BeforeEach
+    void createAccount() {
+        String run = Long.toString(System.nanoTime());
+        user = userRepository.save(User.builder()
+                .username("ledger" + run)
+                .email("ledger" + run + "@example.com")
+                .password("secret")
+                .build());
+        Account account = new Account();
+        account.setAccountNumber("LED-" + run);
+        account.setAccountType(AccountType.CHECKING);
+        account.setBalance(BigDecimal.ZERO);
+        account.setUser(user);
+        accountId = accountRepository.save(account).getId();
+    }
+
+    @AfterEach
+    void removeAccount() {
+        jdbcTemplate.update("DELETE FROM ledger_outbox WHERE account_id = ?", accountId);
+        jdbcTemplate.update("DELETE FROM ledger_entries WHERE account_id = ?", accountId);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", user.getId());
+    }
+
+    @Test
+    void testPostingsCommitWithTheBalanceChange() {
+        accountService.deposit(accountId, new BigDecimal("25.00"));
+
+        // Journalled before any flush: the postings are in the outbox, in the same commit.
+        LedgerBalance balance = ledgerService.getLedgerBalance(accountId);
+        assertTrue(balance.isInSync());
+        assertEquals(0, new BigDecimal("25.00").compareTo(balance.getLedgerBalance()));
+
+        ledgerService.flush();
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM ledger_outbox WHERE account_id = ?", Integer.class, accountId));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM ledger_entries WHERE account_id = ?", Integer.class, accountId));
+        assertTrue(ledgerService.getLedgerBalance(accountId).isInSync());
+    }
+
+    @Test
+    void testRolledBackPostingsAreNotJournalled() {
+        transactionTemplate.executeWithoutResult(status -> {
+            ledgerService.post(LedgerEntryType.DEPOSIT, null, accountId, new BigDecimal("10.00"));
+            status.setRollbackOnly();
+        });
+        ledgerService.flush();
+
+        assertEquals(0, ledgerService.getLedgerBalance(accountId).getTailEntries());
+    }
+}
@@ -0,0 +1,119 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.LoginRisk;
+import com.octopus.user_identity_service.enums.LoginRiskFactor;
+import com.octopus.user_identity_service.model.User;
+import com.octopus.user_identity_service.repository.UserRepository;
+import com.octopus.user_identity_service.util.IpAddressNormalizer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.InetAddress;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class LoginRiskServiceTest {
+
+    private static final String FINGERPRINT = "3f2a9c0d5e7b4a1c";
+    private static final InetAddress HOME = IpAddressNormalizer.parse("203.0.113.10");
+    private static final InetAddress HOME_NEIGHBOUR = IpAddressNormalizer.parse("203.0.113.200");
+    private static final InetAddress ELSEWHERE = IpAddressNormalizer.parse("198.51.100.7");
+
+    @Autowired
+    private LoginRiskService loginRiskService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        String run = Long.toString(System.nanoTime());
+        user = userRepository.save(User.builder()
+                .username("risk" + run)
+                .email("risk" + run + "@example.com")
+                .password("secret")
+                .build());
+    }
+
+    @AfterEach
+    void removeUser() {
+        loginRiskService.flush();
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", user.getId());
+    }
+
+    @Test
+    void testHighRiskLoginIsNotLearnedUntilConfirmed() {
+        LoginRisk first = loginRiskService.assess(user.getId(), true, FINGERPRINT, HOME);
+        assertEquals(List.of(LoginRiskFactor.NEW_DEVICE, LoginRiskFactor.NEW_NETWORK), first.getFactors());
+        assertEquals(0.7, first.getScore(), 1e-9);
+        assertTrue(first.getStepUpRequired());
+
+        // Retrying without passing the second factor must not make the device look familiar.
+        LoginRisk retry = loginRiskService.assess(user.getId(), true, FINGERPRINT, HOME);
+        assertEquals(first.getFactors(), retry.getFactors());
+        assertTrue(retry.getStepUpRequired());
+
+        loginRiskService.confirm(user.getId(), FINGERPRINT, HOME);
+        LoginRisk confirmed = loginRiskService.assess(user.getId(), true, FINGERPRINT, HOME);
+        assertEquals(List.of(), confirmed.getFactors());
+        assertEquals(0.0, confirmed.getScore());
+        assertFalse(confirmed.getStepUpRequired());
+    }
+
+    @Test
+    void testHighRiskLoginIsLearnedForUserWithoutSecondFactor() {
+        LoginRisk first = loginRiskService.assess(user.getId(), false, FINGERPRINT, HOME);
+        assertEquals(List.of(LoginRiskFactor.NEW_DEVICE, LoginRiskFactor.NEW_NETWORK), first.getFactors());
+        assertEquals(0.7, first.getScore(), 1e-9);
+        assertFalse(first.getStepUpRequired());
+
+        // Nothing to step up to, so the next login from the same place is familiar.
+        LoginRisk next = loginRiskService.assess(user.getId(), false, FINGERPRINT, HOME);
+        assertEquals(List.of(), next.getFactors());
+        assertFalse(next.getStepUpRequired());
+    }
+
+    @Test
+    void testLowRiskLoginIsLearned() {
+        loginRiskService.confirm(user.getId(), FINGERPRINT, HOME);
+
+        // Same /24 as a confirmed login: nothing is new.
+        assertEquals(List.of(), loginRiskService.assess(user.getId(), true, FINGERPRINT, HOME_NEIGHBOUR).getFactors());
+
+        LoginRisk newNetwork = loginRiskService.assess(user.getId(), true, FINGERPRINT, ELSEWHERE);
+        assertEquals(List.of(LoginRiskFactor.NEW_NETWORK), newNetwork.getFactors());
+        assertEquals(0.2, newNetwork.getScore(), 1e-9);
+        assertFalse(newNetwork.getStepUpRequired());
+
+        assertEquals(List.of(), loginRiskService.assess(user.getId(), true, FINGERPRINT, ELSEWHERE).getFactors());
+    }
+
+    @Test
+    void testUnidentifiedDevice() {
+        LoginRisk risk = loginRiskService.assess(user.getId(), true, null, null);
+        assertEquals(List.of(LoginRiskFactor.UNIDENTIFIED_DEVICE), risk.getFactors());
+        assertEquals(0.25, risk.getScore(), 1e-9);
+    }
+
+    @Test
+    void testConfirmedSignalsAreStoredOnFlush() {
+        loginRiskService.confirm(user.getId(), FINGERPRINT, HOME);
+        loginRiskService.flush();
+
+        String stored = jdbcTemplate.queryForObject(
+                "SELECT signals::text FROM user_login_signals WHERE user_id = ?", String.class, user.getId());
+        assertNotNull(stored);
+        assertTrue(stored.contains("1"));
+    }
+}
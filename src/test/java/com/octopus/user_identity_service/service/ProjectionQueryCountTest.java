@@ -0,0 +1,116 @@
+package com.octopus.user_identity_service.service;
+
+import com.octopus.user_identity_service.dto.UserSummary;
+import com.octopus.user_identity_service.enums.AccountType;
+import com.octopus.user_identity_service.model.Account;
+import com.octopus.user_identity_service.model.Device;
+import com.octopus.user_identity_service.model.User;
+import com.octopus.user_identity_service.repository.AccountRepository;
+import com.octopus.user_identity_service.repository.DeviceRepository;
+import com.octopus.user_identity_service.repository.RoleRepository;
+import com.octopus.user_identity_service.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the statements issued by the old entity-serialising list path with the projection path.
+ * Needs the same database as {@code UserIdentityServiceApplicationTests}; all data is rolled back.
+ */
+@SpringBootTest
+@Transactional
+class ProjectionQueryCountTest {
+
+    private static final int USERS = 20;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void seedUsers() {
+        String run = Long.toString(System.nanoTime());
+        for (int i = 0; i < USERS; i++) {
+            User user = userRepository.save(User.builder()
+                    .username("proj" + run + i)
+                    .email("proj" + run + i + "@example.com")
+                    .password("secret")
+                    .roles(Set.of(roleRepository.findByName("USER").orElseThrow()))
+                    .build());
+
+            for (int d = 0; d < 2; d++) {
+                Device device = new Device();
+                device.setName("device-" + d);
+                device.setUser(user);
+                deviceRepository.save(device);
+            }
+
+            Account account = new Account();
+            account.setAccountNumber("PRJ-" + run + "-" + i);
+            account.setAccountType(AccountType.CHECKING);
+            account.setUser(user);
+            accountRepository.save(account);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void testProjectionPageUsesConstantNumberOfStatements() {
+        PageRequest pageRequest = PageRequest.of(0, USERS, Sort.by(Sort.Direction.DESC, "id"));
+
+        statistics.clear();
+        List<User> users = userRepository.findAll(pageRequest).getContent();
+        // What Jackson did when serialising the entities: walk every lazy association.
+        users.forEach(user -> {
+            user.getDevices().size();
+            user.getAccounts().size();
+            user.getSecurityQuestions().size();
+        });
+        long entityStatements = statistics.getPrepareStatementCount();
+        entityManager.clear();
+
+        statistics.clear();
+        Page<UserSummary> summaries = userService.getAllUsers(pageRequest);
+        long projectionStatements = statistics.getPrepareStatementCount();
+
+        assertEquals(USERS, summaries.getContent().size());
+        assertTrue(summaries.getContent().stream().allMatch(user -> user.getRoles().contains("USER")));
+        assertTrue(entityStatements > USERS * 3L,
+                "entity path issued " + entityStatements + " statements");
+        assertTrue(projectionStatements <= 3,
+                "projection path issued " + projectionStatements + " statements");
+    }
+}
@@ -0,0 +1,65 @@
+package com.octopus.user_identity_service.util;
+
+import com.octopus.user_identity_service.enums.AccountType;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AccountNumberGeneratorTest {
+
+    @Test
+    void testLuhnCheckDigit() {
+        assertEquals(3, AccountNumberGenerator.luhnCheckDigit("7992739871"));
+        assertEquals(0, AccountNumberGenerator.luhnCheckDigit("0000000000"));
+    }
+
+    @Test
+    void testFormatCarriesTypePrefixAndCheckDigit() {
+        String accountNumber = AccountNumberGenerator.format(AccountType.SAVINGS, 7992739871L);
+        assertEquals("SAV-79927398713", accountNumber);
+        assertTrue(AccountNumberGenerator.isValid(accountNumber));
+    }
+
+    @Test
+    void testMalformedNumbersAreRejected() {
+        assertFalse(AccountNumberGenerator.isValid("SAV-79927398714"));
+        assertFalse(AccountNumberGenerator.isValid("SAV-79927398731"));
+        assertFalse(AccountNumberGenerator.isValid("XYZ-79927398713"));
+        assertFalse(AccountNumberGenerator.isValid("SAV79927398713"));
+        assertFalse(AccountNumberGenerator.isValid(null));
+    }
+
+    @Test
+    void testLegacyNumbersAreAccepted() {
+        assertTrue(AccountNumberGenerator.isValid("CHE-1A2B3C4D"));
+        assertFalse(AccountNumberGenerator.isValid("ABC-1A2B3C4D"));
+        assertTrue(AccountNumberGenerator.isLegacy("CHE-1A2B3C4D"));
+        assertFalse(AccountNumberGenerator.isLegacy("SAV-79927398713"));
+        assertFalse(AccountNumberGenerator.isLegacy(null));
+    }
+
+    @Test
+    void testSerialsComeFromReservedBlocks() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(3L, 9L);
+        AccountNumberGenerator generator = new AccountNumberGenerator(jdbcTemplate);
+
+        Set<String> issued = new HashSet<>();
+        for (int i = 0; i < AccountNumberGenerator.BLOCK_SIZE + 1; i++) {
+            String accountNumber = generator.next(AccountType.CHECKING);
+            assertTrue(AccountNumberGenerator.isValid(accountNumber), accountNumber);
+            assertTrue(issued.add(accountNumber), "duplicate " + accountNumber);
+        }
+
+        verify(jdbcTemplate, times(2)).queryForObject(anyString(), eq(Long.class));
+        assertTrue(issued.contains(AccountNumberGenerator.format(AccountType.CHECKING, 3_000)));
+        assertTrue(issued.contains(AccountNumberGenerator.format(AccountType.CHECKING, 9_000)));
+    }
+}
@@ -0,0 +1,42 @@
+package com.octopus.user_identity_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AddressNormalizerTest {
+
+    @Test
+    void testStreetAbbreviationsAndPunctuation() {
+        assertEquals("12 main street", AddressNormalizer.normaliseStreet("12 Main St."));
+        assertEquals("12 main street", AddressNormalizer.normaliseStreet("  12   main STREET "));
+        assertEquals("400 north lake shore drive apartment 5b",
+                AddressNormalizer.normaliseStreet("400 N. Lake Shore Dr., Apt #5B"));
+    }
+
+    @Test
+    void testSaintIsToldApartFromStreet() {
+        assertEquals("3 saint johns road", AddressNormalizer.normaliseStreet("3 St. John's Rd"));
+        assertEquals("7 saint marks street", AddressNormalizer.normaliseStreet("7 St Marks St"));
+        assertEquals("9 king street west", AddressNormalizer.normaliseStreet("9 King St W"));
+        assertEquals("1 saint john street northwest", AddressNormalizer.normaliseStreet("1 St.John St. N.W."));
+    }
+
+    @Test
+    void testCaseAccentsAndWhitespace() {
+        assertEquals("sao paulo", AddressNormalizer.normalise("  São   PAULO "));
+        assertEquals("grossbeerenstrasse", AddressNormalizer.normalise("Großbeerenstraße"));
+        assertEquals("usa", AddressNormalizer.normalise("U.S.A."));
+        assertNull(AddressNormalizer.normalise(" , "));
+        assertNull(AddressNormalizer.normalise(null));
+    }
+
+    @Test
+    void testMatchKey() {
+        assertEquals(AddressNormalizer.matchKey("12 Main St.", "Springfield", "IL"),
+                AddressNormalizer.matchKey("12 main street", "SPRINGFIELD ", "il"));
+        assertEquals("12 main street|springfield|", AddressNormalizer.matchKey("12 Main St", "Springfield", null));
+        assertNotEquals(AddressNormalizer.matchKey("Springfield", null, null),
+                AddressNormalizer.matchKey(null, "Springfield", null));
+    }
+}
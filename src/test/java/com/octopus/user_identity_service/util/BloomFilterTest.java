@@ -0,0 +1,56 @@
+package com.octopus.user_identity_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void testAddedValuesAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(1024, 5);
+        for (int i = 0; i < 100; i++) {
+            filter.add("d:" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue(filter.mightContain("d:" + i));
+        }
+    }
+
+    @Test
+    void testFalsePositiveRateMatchesSizing() {
+        BloomFilter filter = new BloomFilter(1024, 5);
+        for (int i = 0; i < 100; i++) {
+            filter.add("n:10.0." + i + ".0/24");
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other:" + i)) {
+                falsePositives++;
+            }
+        }
+        // Expected (1 - e^(-5 * 100 / 1024))^5, about 0.9%.
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testAddReportsWhetherValueWasNew() {
+        BloomFilter filter = new BloomFilter(256, 3);
+        assertTrue(filter.add("c:GB"));
+        assertFalse(filter.add("c:GB"));
+    }
+
+    @Test
+    void testBitStringRoundTrip() {
+        BloomFilter filter = new BloomFilter(130, 4);
+        filter.add("a:2856");
+        filter.add("c:FR");
+
+        String bits = filter.toBitString();
+        assertEquals(130, bits.length());
+        BloomFilter restored = BloomFilter.fromBitString(bits, 4);
+        assertEquals(bits, restored.toBitString());
+        assertTrue(restored.mightContain("a:2856"));
+        assertTrue(restored.mightContain("c:FR"));
+    }
+}
@@ -0,0 +1,48 @@
+package com.octopus.user_identity_service.util;
+
+import com.octopus.user_identity_service.dto.CursorPage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorUtilTest {
+
+    @Test
+    void testEncodeDecodeRoundTrip() {
+        String cursor = CursorUtil.encode(12345L);
+        assertEquals(12345L, CursorUtil.decode(cursor));
+    }
+
+    @Test
+    void testMissingCursorStartsFromBeginning() {
+        assertEquals(0L, CursorUtil.decode(null));
+        assertEquals(0L, CursorUtil.decode(""));
+    }
+
+    @Test
+    void testMalformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CursorUtil.decode("not-a-cursor"));
+        assertThrows(IllegalArgumentException.class, () -> CursorUtil.decode("!!!"));
+    }
+
+    @Test
+    void testPageDropsLookaheadRowAndPointsAtLastItem() {
+        CursorPage<Long> page = CursorPage.of(List.of(1L, 2L, 3L), 2, Function.identity());
+
+        assertEquals(List.of(1L, 2L), page.getItems());
+        assertTrue(page.isHasMore());
+        assertEquals(2L, CursorUtil.decode(page.getNextCursor()));
+        assertNull(page.getTotalElements());
+    }
+
+    @Test
+    void testLastPageHasNoCursor() {
+        CursorPage<Long> page = CursorPage.of(List.of(1L), 2, Function.identity());
+
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+    }
+}
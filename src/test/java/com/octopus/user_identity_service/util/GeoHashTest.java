@@ -0,0 +1,74 @@
+package com.octopus.user_identity_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoHashTest {
+
+    @Test
+    void testEncodeKnownPoints() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", GeoHash.encode(42.605, -5.603, 5));
+        assertEquals("s00000", GeoHash.encode(0, 0, 6));
+        assertEquals("7zzzzz", GeoHash.encode(-0.000001, -0.000001, 6));
+    }
+
+    @Test
+    void testCellSizes() {
+        assertEquals(45.0, GeoHash.cellHeight(1));
+        assertEquals(45.0, GeoHash.cellWidth(1));
+        assertEquals(5.625, GeoHash.cellHeight(2));
+        assertEquals(11.25, GeoHash.cellWidth(2));
+    }
+
+    @Test
+    void testCoveringPrefixesContainEveryPointInsideTheCircle() {
+        Random random = new Random(42);
+        double[][] centres = {{51.5, -0.12}, {-33.87, 151.21}, {0.0, 179.99}, {64.1, -21.9}, {-89.9, 0.0}};
+        double[] radii = {50, 1_000, 25_000, 400_000};
+        for (double[] centre : centres) {
+            for (double radius : radii) {
+                List<String> prefixes = GeoHash.coveringPrefixes(centre[0], centre[1], radius, 9);
+                assertNotNull(prefixes);
+                assertTrue(prefixes.size() <= 9);
+                for (int i = 0; i < 2_000; i++) {
+                    double[] point = randomPointWithin(random, centre[0], centre[1], radius);
+                    String hash = GeoHash.encode(point[0], point[1], GeoHash.MAX_PRECISION);
+                    assertTrue(prefixes.stream().anyMatch(hash::startsWith),
+                            () -> "point " + point[0] + "," + point[1] + " outside " + prefixes);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCircleTooLargeForCellsHasNoCover() {
+        assertNull(GeoHash.coveringPrefixes(10, 10, 15_000_000, 9));
+    }
+
+    @Test
+    void testDistance() {
+        // London to Paris.
+        assertEquals(343_500, GeoHash.distanceMeters(51.5074, -0.1278, 48.8566, 2.3522), 1_000);
+        assertEquals(0, GeoHash.distanceMeters(10, 20, 10, 20));
+        // Across the antimeridian.
+        assertEquals(22_239, GeoHash.distanceMeters(0, 179.9, 0, -179.9), 10);
+    }
+
+    private static double[] randomPointWithin(Random random, double latitude, double longitude, double radius) {
+        double distance = radius * Math.sqrt(random.nextDouble()) * 0.999;
+        double bearing = random.nextDouble() * 2 * Math.PI;
+        double angle = distance / GeoHash.EARTH_RADIUS_METERS;
+        double lat1 = Math.toRadians(latitude);
+        double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angle) + Math.cos(lat1) * Math.sin(angle) * Math.cos(bearing));
+        double lon2 = Math.toRadians(longitude) + Math.atan2(Math.sin(bearing) * Math.sin(angle) * Math.cos(lat1),
+                Math.cos(angle) - Math.sin(lat1) * Math.sin(lat2));
+        double lon = Math.toDegrees(lon2);
+        lon = ((lon + 540) % 360) - 180;
+        return new double[]{Math.toDegrees(lat2), lon};
+    }
+}
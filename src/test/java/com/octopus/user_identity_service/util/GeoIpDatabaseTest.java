@@ -0,0 +1,92 @@
+package com.octopus.user_identity_service.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoIpDatabaseTest {
+
+    private static final String CSV = """
+            start_ip,end_ip,country_code,asn
+            # comment
+            10.0.0.0,10.0.0.255,GB,AS2856
+            1.0.0.0,1.0.0.255,au,13335
+            200.0.0.0,255.255.255.255,BR,
+            2001:db8::,2001:db8::ffff,DE,3320
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testLookupFindsEnclosingRange() throws IOException {
+        GeoIpDatabase database = compile(CSV);
+
+        long location = database.lookup(IpAddressNormalizer.parse("10.0.0.17"));
+        assertEquals("GB", GeoIpDatabase.countryCode(location));
+        assertEquals(2856L, GeoIpDatabase.asn(location));
+
+        assertEquals("AU", GeoIpDatabase.countryCode(database.lookup(IpAddressNormalizer.parse("1.0.0.0"))));
+        assertEquals("AU", GeoIpDatabase.countryCode(database.lookup(IpAddressNormalizer.parse("1.0.0.255"))));
+        assertEquals(3, database.getIpv4RangeCount());
+        assertEquals(1, database.getIpv6RangeCount());
+    }
+
+    @Test
+    void testUnsignedAddressesAndMissingAsn() throws IOException {
+        GeoIpDatabase database = compile(CSV);
+
+        long location = database.lookup(IpAddressNormalizer.parse("255.255.255.255"));
+        assertEquals("BR", GeoIpDatabase.countryCode(location));
+        assertNull(GeoIpDatabase.asn(location));
+    }
+
+    @Test
+    void testAddressesOutsideEveryRangeAreNotFound() throws IOException {
+        GeoIpDatabase database = compile(CSV);
+
+        for (String address : new String[] {"0.255.255.255", "1.0.1.0", "10.0.1.0", "199.255.255.255", "2001:db8::1:0", "::1"}) {
+            long location = database.lookup(IpAddressNormalizer.parse(address));
+            assertEquals(GeoIpDatabase.NOT_FOUND, location, address);
+            assertNull(GeoIpDatabase.countryCode(location));
+            assertNull(GeoIpDatabase.asn(location));
+        }
+        assertEquals(GeoIpDatabase.NOT_FOUND, database.lookup(null));
+    }
+
+    @Test
+    void testIpv6Lookup() throws IOException {
+        GeoIpDatabase database = compile(CSV);
+
+        long location = database.lookup(IpAddressNormalizer.parse("2001:db8::abcd"));
+        assertEquals("DE", GeoIpDatabase.countryCode(location));
+        assertEquals(3320L, GeoIpDatabase.asn(location));
+    }
+
+    @Test
+    void testOverlappingRangesAreRejected() {
+        String csv = """
+                10.0.0.0,10.0.0.255,GB,1
+                10.0.0.128,10.0.1.0,FR,2
+                """;
+        assertThrows(IllegalArgumentException.class, () -> compile(csv));
+    }
+
+    @Test
+    void testOpenRejectsOtherFiles() throws IOException {
+        Path file = Files.writeString(directory.resolve("not-a-database.bin"), "definitely not a database");
+        assertThrows(IOException.class, () -> GeoIpDatabase.open(file));
+    }
+
+    private GeoIpDatabase compile(String csv) throws IOException {
+        Path source = Files.writeString(directory.resolve("ranges.csv"), csv);
+        Path target = directory.resolve("ranges.geo");
+        GeoIpDatabase.compile(source, target);
+        return GeoIpDatabase.open(target);
+    }
+}
@@ -0,0 +1,108 @@
+package com.octopus.user_identity_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpAddressNormalizerTest {
+
+    @Test
+    void testParseIpv4() {
+        assertEquals("192.168.1.20", normalised("192.168.1.20"));
+        assertEquals("10.0.0.1", normalised("  10.0.0.1\t"));
+        assertEquals("10.1.0.1", normalised("010.001.000.001"));
+        assertEquals("10.0.0.1", normalised("10.0.0.1:8080"));
+        assertEquals("10.0.0.1", normalised("[10.0.0.1]"));
+        assertEquals("1.2.3.4", normalised("1.2.3.4%eth0"));
+        assertInstanceOf(Inet4Address.class, IpAddressNormalizer.parse("10.0.0.1"));
+    }
+
+    @Test
+    void testParseIpv6() {
+        assertEquals("2001:db8::1", normalised("2001:DB8::1"));
+        assertEquals("2001:db8::1", normalised("2001:db8:0:0:0:0:0:1"));
+        assertEquals("2001:db8::1", normalised("[2001:db8::1]:443"));
+        assertEquals("fe80::1", normalised("fe80::1%eth0"));
+        assertEquals("::1", normalised("::1"));
+        assertEquals("::", normalised("::"));
+        assertInstanceOf(Inet6Address.class, IpAddressNormalizer.parse("::1"));
+    }
+
+    @Test
+    void testMappedIpv4BecomesIpv4() {
+        assertEquals("192.0.2.1", normalised("::ffff:192.0.2.1"));
+        assertInstanceOf(Inet4Address.class, IpAddressNormalizer.parse("::ffff:c000:201"));
+    }
+
+    @Test
+    void testPrefixLengthIsDropped() {
+        assertEquals("10.0.0.1", normalised("10.0.0.1/24"));
+        assertEquals("10.0.0.1", normalised("10.0.0.1/024"));
+        assertEquals("1.2.3.4", normalised("1.2.3.4/0"));
+        assertEquals("2001:db8::1", normalised("2001:db8::1/64"));
+        assertEquals("fe80::1", normalised("fe80::1%eth0/64"));
+        assertEquals("10.0.0.1", normalised("::ffff:10.0.0.1/120"));
+        // Trailing zero octets may be left out while the prefix does not reach into them.
+        assertEquals("10.0.0.0", normalised("10/8"));
+        assertEquals("1.2.3.0", normalised("1.2.3/23"));
+
+        assertInvalid("10.0.0.1/33");
+        assertInvalid("2001:db8::1/129");
+        assertInvalid("10.0.0.1/");
+        assertInvalid("10.0.0.1:80/24");
+        assertInvalid("[2001:db8::1]/64");
+        assertInvalid("10/16");
+        assertInvalid("10.0.0/32");
+    }
+
+    @Test
+    void testBlankIsNull() {
+        assertNull(IpAddressNormalizer.parse(null));
+        assertNull(IpAddressNormalizer.parse(""));
+        assertNull(IpAddressNormalizer.parse("   "));
+    }
+
+    @Test
+    void testRejectsAnythingButALiteral() {
+        assertInvalid("256.1.1.1");
+        assertInvalid("1.2.3");
+        assertInvalid("1.2.3.4.5");
+        assertInvalid("localhost");
+        assertInvalid("example.com");
+        assertInvalid("::g");
+        assertInvalid("unknown");
+    }
+
+    @Test
+    void testParseCidr() {
+        assertEquals("10.1.2.0/24", IpAddressNormalizer.parseCidr("10.1.2.7/24").toString());
+        assertEquals("10.1.2.7/32", IpAddressNormalizer.parseCidr("10.1.2.7").toString());
+        assertEquals("2001:db8::/32", IpAddressNormalizer.parseCidr("2001:db8:ffff::1/32").toString());
+        assertEquals("0.0.0.0/0", IpAddressNormalizer.parseCidr("203.0.113.9/0").toString());
+
+        assertThrows(IllegalArgumentException.class, () -> IpAddressNormalizer.parseCidr("10.1.2.7/33"));
+        assertThrows(IllegalArgumentException.class, () -> IpAddressNormalizer.parseCidr("10.1.2.7/x"));
+        assertThrows(IllegalArgumentException.class, () -> IpAddressNormalizer.parseCidr("10.1.2.7/24/8"));
+        assertThrows(IllegalArgumentException.class, () -> IpAddressNormalizer.parseCidr(" "));
+    }
+
+    @Test
+    void testFormatCompressesLongestZeroRun() {
+        assertEquals("2001:db8::1:0:0:1", normalised("2001:db8:0:0:1:0:0:1"));
+        assertEquals("2001:0:0:1::1", normalised("2001:0:0:1:0:0:0:1"));
+        // A single zero group is not compressed.
+        assertEquals("2001:db8:0:1:1:1:1:1", normalised("2001:db8::1:1:1:1:1"));
+        assertNull(IpAddressNormalizer.format(null));
+    }
+
+    private static String normalised(String value) {
+        return IpAddressNormalizer.format(IpAddressNormalizer.parse(value));
+    }
+
+    private static void assertInvalid(String value) {
+        assertThrows(IllegalArgumentException.class, () -> IpAddressNormalizer.parse(value), value);
+    }
+}
@@ -0,0 +1,92 @@
+package com.octopus.user_identity_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+
+    private static final double ACCURACY = 0.01;
+
+    @Test
+    void testQuantilesWithinRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        Random random = new Random(42);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 2 + 6);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : new double[] {0, 0.5, 0.9, 0.99, 1}) {
+            double expected = values[(int) Math.floor(q * (values.length - 1))];
+            assertEquals(expected, sketch.quantile(q), expected * ACCURACY, "q=" + q);
+        }
+        assertEquals(values.length, sketch.getCount());
+    }
+
+    @Test
+    void testRemoveMovesValues() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        for (int i = 1; i <= 100; i++) {
+            sketch.add(100);
+        }
+        for (int i = 1; i <= 100; i++) {
+            sketch.remove(100);
+            sketch.add(10_000);
+        }
+
+        assertEquals(100, sketch.getCount());
+        assertEquals(10_000, sketch.quantile(0), 10_000 * ACCURACY);
+    }
+
+    @Test
+    void testRemovingAbsentValueIsIgnored() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        sketch.add(5);
+        sketch.remove(5_000);
+        sketch.remove(0);
+
+        assertEquals(1, sketch.getCount());
+    }
+
+    @Test
+    void testNegativeAndZeroValues() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        sketch.add(-250);
+        sketch.add(0);
+        sketch.add(0.001);
+        sketch.add(75);
+
+        assertEquals(-250, sketch.quantile(0), 250 * ACCURACY);
+        assertEquals(0, sketch.quantile(0.34));
+        assertEquals(0, sketch.quantile(0.67));
+        assertEquals(75, sketch.quantile(1), 75 * ACCURACY);
+        assertTrue(Double.isNaN(new QuantileSketch(ACCURACY).quantile(0.5)));
+    }
+
+    @Test
+    void testDecadeHistogram() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        sketch.add(-50);
+        sketch.add(0);
+        sketch.add(3);
+        sketch.add(40);
+        sketch.add(45);
+        sketch.add(5_000);
+
+        List<QuantileSketch.Band> bands = sketch.decadeHistogram();
+
+        assertEquals(List.of(
+                new QuantileSketch.Band(-100, -10, 1),
+                new QuantileSketch.Band(0, 0, 1),
+                new QuantileSketch.Band(1, 10, 1),
+                new QuantileSketch.Band(10, 100, 2),
+                new QuantileSketch.Band(1_000, 10_000, 1)), bands);
+    }
+}
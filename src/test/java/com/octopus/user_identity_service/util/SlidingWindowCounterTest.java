@@ -0,0 +1,82 @@
+package com.octopus.user_identity_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowCounterTest {
+
+    private static final long WINDOW_MILLIS = 60_000;
+
+    @Test
+    void testAddReturnsWindowTotals() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW_MILLIS, 60);
+
+        counter.add(1_000, 1, 500);
+        SlidingWindowCounter.Totals totals = counter.add(30_000, 1, 250);
+
+        assertEquals(2, totals.count());
+        assertEquals(750, totals.amount());
+    }
+
+    @Test
+    void testEventsLeaveTheWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW_MILLIS, 60);
+
+        counter.add(0, 1, 500);
+        counter.add(30_000, 1, 250);
+
+        assertEquals(new SlidingWindowCounter.Totals(2, 750), counter.totals(59_999));
+        assertEquals(new SlidingWindowCounter.Totals(1, 250), counter.totals(60_000));
+        assertTrue(counter.isIdle(90_000));
+    }
+
+    @Test
+    void testReusedBucketIsReset() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW_MILLIS, 60);
+
+        counter.add(500, 1, 500);
+        SlidingWindowCounter.Totals totals = counter.add(WINDOW_MILLIS + 500, 1, 100);
+
+        assertEquals(1, totals.count());
+        assertEquals(100, totals.amount());
+    }
+
+    @Test
+    void testRemoveTakesBackEvent() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW_MILLIS, 60);
+
+        counter.add(WINDOW_MILLIS + 1_000, 1, 500);
+        counter.add(WINDOW_MILLIS + 2_000, 1, 300);
+        counter.remove(WINDOW_MILLIS + 2_000, 1, 300);
+        assertEquals(new SlidingWindowCounter.Totals(1, 500), counter.totals(WINDOW_MILLIS + 3_000));
+
+        // An event whose bucket already left the window is not subtracted from a newer one.
+        counter.remove(1_000, 1, 500);
+        assertEquals(new SlidingWindowCounter.Totals(1, 500), counter.totals(WINDOW_MILLIS + 3_000));
+    }
+
+    @Test
+    void testConcurrentAddsAreNotLost() throws InterruptedException {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW_MILLIS, 60);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 10_000; i++) {
+            long now = i % 50 * 1_000L;
+            executor.submit(() -> counter.add(now, 1, 3));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(new SlidingWindowCounter.Totals(10_000, 30_000), counter.totals(50_000));
+    }
+
+    @Test
+    void testInvalidWindowIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindowCounter(0, 60));
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindowCounter(10, 60));
+    }
+}
@@ -0,0 +1,50 @@
+package com.octopus.user_identity_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserAgentParserTest {
+
+    @Test
+    void testWindowsDesktop() {
+        UserAgentParser.Parsed parsed = UserAgentParser.parse(
+                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
+        assertEquals(new UserAgentParser.Parsed("Windows", "10", null), parsed);
+    }
+
+    @Test
+    void testAndroidModelSkipsFlagsAndLocale() {
+        assertEquals(new UserAgentParser.Parsed("Android", "13", "SM-S908B"), UserAgentParser.parse(
+                "Mozilla/5.0 (Linux; Android 13; SM-S908B) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/112.0.0.0 Mobile Safari/537.36"));
+        assertEquals(new UserAgentParser.Parsed("Android", "4.0.3", "LG-L160L"), UserAgentParser.parse(
+                "Mozilla/5.0 (Linux; U; Android 4.0.3; ko-kr; LG-L160L Build/IML74K) AppleWebkit/534.30 (KHTML, like Gecko) Version/4.0 Mobile Safari/534.30"));
+        assertEquals(new UserAgentParser.Parsed("Android", "10", null), UserAgentParser.parse(
+                "Mozilla/5.0 (Linux; Android 10; K) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Mobile Safari/537.36"));
+    }
+
+    @Test
+    void testAppleDevices() {
+        assertEquals(new UserAgentParser.Parsed("iOS", "16.5", "iPhone"), UserAgentParser.parse(
+                "Mozilla/5.0 (iPhone; CPU iPhone OS 16_5 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/16.5 Mobile/15E148 Safari/604.1"));
+        assertEquals(new UserAgentParser.Parsed("iOS", "17.0", "iPhone"), UserAgentParser.parse(
+                "MyBank/5.2.1 (iPhone; iOS 17.0; Scale/3.00)"));
+        assertEquals(new UserAgentParser.Parsed("macOS", "10.15.7", "Mac"), UserAgentParser.parse(
+                "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.1 Safari/605.1.15"));
+    }
+
+    @Test
+    void testLinuxAndChromeOs() {
+        assertEquals(new UserAgentParser.Parsed("ChromeOS", "14541.0.0", null), UserAgentParser.parse(
+                "Mozilla/5.0 (X11; CrOS x86_64 14541.0.0) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36"));
+        assertEquals(new UserAgentParser.Parsed("Linux", null, null), UserAgentParser.parse(
+                "Mozilla/5.0 (X11; Ubuntu; Linux x86_64; rv:120.0) Gecko/20100101 Firefox/120.0"));
+    }
+
+    @Test
+    void testUnrecognisedAgentsYieldNothing() {
+        assertEquals(UserAgentParser.Parsed.UNKNOWN, UserAgentParser.parse("okhttp/4.9.0"));
+        assertEquals(UserAgentParser.Parsed.UNKNOWN, UserAgentParser.parse("  "));
+        assertEquals(UserAgentParser.Parsed.UNKNOWN, UserAgentParser.parse(null));
+    }
+}